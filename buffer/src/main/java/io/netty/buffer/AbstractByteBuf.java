@@ -1268,6 +1268,21 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     private int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        if (end - start >= 8) {
+            // Scan for the well known delimiters eight bytes at a time.
+            if (processor == ByteProcessor.FIND_LF) {
+                return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\n', (byte) '\n');
+            }
+            if (processor == ByteProcessor.FIND_CRLF) {
+                return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\r', (byte) '\n');
+            }
+            if (processor == ByteProcessor.FIND_CR) {
+                return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\r', (byte) '\r');
+            }
+            if (processor == ByteProcessor.FIND_NUL) {
+                return ByteBufUtil.firstIndexOf(this, start, end, (byte) 0, (byte) 0);
+            }
+        }
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
@@ -45,6 +45,7 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
                 break;
             case ADVANCED:
             case PARANOID:
+            case ADAPTIVE:
                 leak = AbstractByteBuf.leakDetector.track(buf);
                 if (leak != null) {
                     buf = new AdvancedLeakAwareByteBuf(buf, leak);
@@ -56,6 +57,39 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
         return buf;
     }
 
+    /**
+     * Same as {@link #toLeakAwareBuffer(ByteBuf)} if {@code detectLeaks} is {@code true}, but also closes
+     * {@code siteTracker} once the buffer and all of its derived buffers are released. The buffer is wrapped only
+     * once even if both apply.
+     */
+    static ByteBuf toLeakAwareBuffer(ByteBuf buf, ResourceLeakTracker<ByteBuf> siteTracker, boolean detectLeaks) {
+        if (siteTracker == null) {
+            return detectLeaks ? toLeakAwareBuffer(buf) : buf;
+        }
+        if (detectLeaks) {
+            ResourceLeakTracker<ByteBuf> leak;
+            switch (ResourceLeakDetector.getLevel()) {
+                case SIMPLE:
+                    leak = AbstractByteBuf.leakDetector.track(buf);
+                    if (leak != null) {
+                        return new SimpleLeakAwareByteBuf(buf, new CombinedLeakTracker(leak, siteTracker));
+                    }
+                    break;
+                case ADVANCED:
+                case PARANOID:
+                case ADAPTIVE:
+                    leak = AbstractByteBuf.leakDetector.track(buf);
+                    if (leak != null) {
+                        return new AdvancedLeakAwareByteBuf(buf, new CombinedLeakTracker(leak, siteTracker));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new SimpleLeakAwareByteBuf(buf, siteTracker);
+    }
+
     protected static CompositeByteBuf toLeakAwareBuffer(CompositeByteBuf buf) {
         ResourceLeakTracker<ByteBuf> leak;
         switch (ResourceLeakDetector.getLevel()) {
@@ -67,6 +101,7 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
                 break;
             case ADVANCED:
             case PARANOID:
+            case ADAPTIVE:
                 leak = AbstractByteBuf.leakDetector.track(buf);
                 if (leak != null) {
                     buf = new AdvancedLeakAwareCompositeByteBuf(buf, leak);
@@ -282,4 +317,34 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
 
         return Math.min(newCapacity, maxCapacity);
     }
+
+    /**
+     * Records to the leak detector's {@link ResourceLeakTracker} and closes both it and the allocation site's one.
+     */
+    private static final class CombinedLeakTracker implements ResourceLeakTracker<ByteBuf> {
+        private final ResourceLeakTracker<ByteBuf> leak;
+        private final ResourceLeakTracker<ByteBuf> siteTracker;
+
+        CombinedLeakTracker(ResourceLeakTracker<ByteBuf> leak, ResourceLeakTracker<ByteBuf> siteTracker) {
+            this.leak = leak;
+            this.siteTracker = siteTracker;
+        }
+
+        @Override
+        public void record() {
+            leak.record();
+        }
+
+        @Override
+        public void record(Object hint) {
+            leak.record(hint);
+        }
+
+        @Override
+        public boolean close(ByteBuf trackedObject) {
+            // Always close both.
+            boolean closed = siteTracker.close(trackedObject);
+            return leak.close(trackedObject) && closed;
+        }
+    }
 }
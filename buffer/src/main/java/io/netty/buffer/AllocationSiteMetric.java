@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Exposes the memory held by the live buffers that were attributed to an allocation site.
+ *
+ * @see AllocationSites
+ */
+public interface AllocationSiteMetric {
+
+    /**
+     * Returns the tag or stack frame identifying the allocation site.
+     */
+    String site();
+
+    /**
+     * Returns the number of live buffers allocated by the site.
+     */
+    long numActiveAllocations();
+
+    /**
+     * Returns the number of bytes of heap memory held by the live buffers allocated by the site.
+     */
+    long usedHeapMemory();
+
+    /**
+     * Returns the number of bytes of direct memory held by the live buffers allocated by the site.
+     */
+    long usedDirectMemory();
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.ResourceLeakTracker;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Keeps track of the memory an allocator handed out per allocation site, see {@link AllocationSites}.
+ */
+final class AllocationSiteTracker {
+
+    private static final Comparator<AllocationSiteMetric> USED_MEMORY_DESCENDING =
+            new Comparator<AllocationSiteMetric>() {
+        @Override
+        public int compare(AllocationSiteMetric o1, AllocationSiteMetric o2) {
+            long used1 = o1.usedHeapMemory() + o1.usedDirectMemory();
+            long used2 = o2.usedHeapMemory() + o2.usedDirectMemory();
+            return used1 < used2 ? 1 : used1 > used2 ? -1 : 0;
+        }
+    };
+
+    private final ConcurrentMap<String, Site> sites = PlatformDependent.newConcurrentHashMap();
+
+    /**
+     * Attributes {@code buf} to the allocation site of the current thread if it is tracked. Returns the
+     * {@link ResourceLeakTracker} that must be closed once {@code buf} and all of its derived buffers are released,
+     * or {@code null} if the allocation is not tracked.
+     */
+    ResourceLeakTracker<ByteBuf> track(ByteBuf buf) {
+        String name = AllocationSites.currentSite();
+        if (name == null) {
+            return null;
+        }
+        Site site = sites.get(name);
+        if (site == null) {
+            Site newSite = new Site(name);
+            site = sites.putIfAbsent(name, newSite);
+            if (site == null) {
+                site = newSite;
+            }
+        }
+        return site.allocated(buf);
+    }
+
+    /**
+     * Returns up to {@code n} allocation sites, the ones that hold the most memory first.
+     */
+    List<AllocationSiteMetric> topAllocationSites(int n) {
+        checkPositiveOrZero(n, "n");
+        List<AllocationSiteMetric> top = new ArrayList<AllocationSiteMetric>(sites.values());
+        Collections.sort(top, USED_MEMORY_DESCENDING);
+        return top.size() > n ? new ArrayList<AllocationSiteMetric>(top.subList(0, n)) : top;
+    }
+
+    private static final class Site implements AllocationSiteMetric {
+        private final String name;
+        private final LongCounter activeAllocations = PlatformDependent.newLongCounter();
+        private final LongCounter usedHeapMemory = PlatformDependent.newLongCounter();
+        private final LongCounter usedDirectMemory = PlatformDependent.newLongCounter();
+
+        Site(String name) {
+            this.name = name;
+        }
+
+        ResourceLeakTracker<ByteBuf> allocated(ByteBuf buf) {
+            final int capacity = buf.capacity();
+            final LongCounter usedMemory = buf.isDirect() ? usedDirectMemory : usedHeapMemory;
+            activeAllocations.increment();
+            usedMemory.add(capacity);
+            return new ResourceLeakTracker<ByteBuf>() {
+                private boolean closed;
+
+                @Override
+                public void record() {
+                    // NOOP
+                }
+
+                @Override
+                public void record(Object hint) {
+                    // NOOP
+                }
+
+                @Override
+                public boolean close(ByteBuf trackedObject) {
+                    if (closed) {
+                        return false;
+                    }
+                    closed = true;
+                    activeAllocations.decrement();
+                    usedMemory.add(-capacity);
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public String site() {
+            return name;
+        }
+
+        @Override
+        public long numActiveAllocations() {
+            return activeAllocations.value();
+        }
+
+        @Override
+        public long usedHeapMemory() {
+            return usedHeapMemory.value();
+        }
+
+        @Override
+        public long usedDirectMemory() {
+            return usedDirectMemory.value();
+        }
+
+        @Override
+        public String toString() {
+            return StringUtil.simpleClassName(AllocationSiteMetric.class) + '(' + name +
+                    "; numActiveAllocations: " + numActiveAllocations() +
+                    "; usedHeapMemory: " + usedHeapMemory() +
+                    "; usedDirectMemory: " + usedDirectMemory() + ')';
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.util.List;
+
+/**
+ * A {@link ByteBufAllocatorMetric} of an allocator which can attribute its memory to allocation sites, see
+ * {@link AllocationSites}.
+ */
+public interface AllocationSiteTrackingMetric extends ByteBufAllocatorMetric {
+    /**
+     * Returns up to {@code n} allocation sites of a {@link ByteBufAllocator}, the ones that hold the most memory
+     * first. The returned {@link List} is empty unless allocation sites are tracked, see {@link AllocationSites}.
+     */
+    List<AllocationSiteMetric> topAllocationSites(int n);
+}
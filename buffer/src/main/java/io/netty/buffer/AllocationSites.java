@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Attributes the memory of the buffers allocated by {@link PooledByteBufAllocator} and
+ * {@link UnpooledByteBufAllocator} to the site that allocated them, so the biggest consumers can be found via
+ * {@link AllocationSiteTrackingMetric#topAllocationSites(int)} without taking a heap dump.
+ * <p>
+ * A site is either a tag set by the application via {@link #tag(String)}, for example the name of the handler that
+ * is about to allocate, or, in {@link Mode#SAMPLED} mode, the first stack frame outside of this package for a
+ * sample of the untagged allocations. Tracked buffers are wrapped the same way as when leak detection is enabled,
+ * so tracking has a similar cost and is disabled by default.
+ */
+public final class AllocationSites {
+
+    private static final String PROP_MODE = "io.netty.allocator.allocationSites";
+    private static final String PROP_SAMPLING_INTERVAL = "io.netty.allocator.allocationSiteSamplingInterval";
+    private static final int DEFAULT_SAMPLING_INTERVAL = 128;
+    private static final String PACKAGE_PREFIX = AllocationSites.class.getPackage().getName() + '.';
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AllocationSites.class);
+
+    private static final FastThreadLocal<String> TAG = new FastThreadLocal<String>();
+
+    /**
+     * Represents which allocations are attributed to a site.
+     */
+    public enum Mode {
+        /**
+         * Disables the tracking of allocation sites.
+         */
+        DISABLED,
+        /**
+         * Tracks the allocations made while a tag was set via {@link #tag(String)}.
+         */
+        TAGGED,
+        /**
+         * Like {@link #TAGGED}, and additionally tracks a sample of the untagged allocations under the stack frame
+         * that allocated them.
+         */
+        SAMPLED;
+
+        static Mode parseMode(String modeStr) {
+            String trimmedModeStr = modeStr.trim();
+            for (Mode m : values()) {
+                if (trimmedModeStr.equalsIgnoreCase(m.name())) {
+                    return m;
+                }
+            }
+            return DISABLED;
+        }
+    }
+
+    private static volatile Mode mode;
+    private static volatile int samplingInterval;
+
+    static {
+        mode = Mode.parseMode(SystemPropertyUtil.get(PROP_MODE, Mode.DISABLED.name()));
+        samplingInterval = Math.max(1, SystemPropertyUtil.getInt(PROP_SAMPLING_INTERVAL, DEFAULT_SAMPLING_INTERVAL));
+        if (logger.isDebugEnabled()) {
+            logger.debug("-D{}: {}", PROP_MODE, mode.name().toLowerCase());
+            logger.debug("-D{}: {}", PROP_SAMPLING_INTERVAL, samplingInterval);
+        }
+    }
+
+    /**
+     * Sets the allocation site tracking mode.
+     */
+    public static void setMode(Mode mode) {
+        AllocationSites.mode = checkNotNull(mode, "mode");
+    }
+
+    /**
+     * Returns the allocation site tracking mode.
+     */
+    public static Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Sets the interval at which untagged allocations are sampled in {@link Mode#SAMPLED} mode, i.e. on average one
+     * out of {@code samplingInterval} untagged allocations is tracked.
+     */
+    public static void setSamplingInterval(int samplingInterval) {
+        AllocationSites.samplingInterval = checkPositive(samplingInterval, "samplingInterval");
+    }
+
+    /**
+     * Returns the interval at which untagged allocations are sampled in {@link Mode#SAMPLED} mode.
+     */
+    public static int samplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Sets the tag that the allocations of the current thread are attributed to and returns the previous one, so
+     * it can be restored once done:
+     * <pre>
+     * String previous = AllocationSites.tag("MyDecoder");
+     * try {
+     *     ...
+     * } finally {
+     *     AllocationSites.tag(previous);
+     * }
+     * </pre>
+     *
+     * @param tag the new tag or {@code null} to clear it.
+     * @return the previous tag or {@code null} if none was set.
+     */
+    public static String tag(String tag) {
+        String previous = currentTag();
+        if (tag == null) {
+            TAG.remove();
+        } else {
+            TAG.set(tag);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the tag that the allocations of the current thread are attributed to or {@code null} if none is set.
+     */
+    public static String currentTag() {
+        return TAG.isSet() ? TAG.get() : null;
+    }
+
+    /**
+     * Returns the site an allocation of the current thread is attributed to or {@code null} if it is not tracked.
+     */
+    static String currentSite() {
+        Mode mode = AllocationSites.mode;
+        if (mode == Mode.DISABLED) {
+            return null;
+        }
+        String tag = currentTag();
+        if (tag != null || mode != Mode.SAMPLED) {
+            return tag;
+        }
+        if (PlatformDependent.threadLocalRandom().nextInt(samplingInterval) != 0) {
+            return null;
+        }
+        for (StackTraceElement element: new Throwable().getStackTrace()) {
+            if (!element.getClassName().startsWith(PACKAGE_PREFIX)) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    private AllocationSites() { }
+}
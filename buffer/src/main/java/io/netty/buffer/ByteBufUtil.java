@@ -22,6 +22,7 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -254,6 +255,48 @@ public final class ByteBufUtil {
         return true;
     }
 
+    /**
+     * Returns {@code true} if and only if the two specified buffers are identical to each other for {@code length}
+     * bytes starting at {@code aStartIndex} index for the {@code a} buffer and {@code bStartIndex} index for the
+     * {@code b} buffer, ignoring the case of ASCII letters. All other bytes must match exactly.
+     */
+    public static boolean equalsIgnoreCase(ByteBuf a, int aStartIndex, ByteBuf b, int bStartIndex, int length) {
+        if (aStartIndex < 0 || bStartIndex < 0 || length < 0) {
+            throw new IllegalArgumentException("All indexes and lengths must be non-negative");
+        }
+        if (a.writerIndex() - length < aStartIndex || b.writerIndex() - length < bStartIndex) {
+            return false;
+        }
+
+        final int longCount = length >>> 3;
+        final int byteCount = length & 7;
+        final boolean sameOrder = a.order() == b.order();
+
+        for (int i = longCount; i > 0; i --) {
+            long aValue = a.getLong(aStartIndex);
+            long bValue = sameOrder ? b.getLong(bStartIndex) : swapLong(b.getLong(bStartIndex));
+            if (aValue != bValue && SWARUtil.toLowerCaseAscii(aValue) != SWARUtil.toLowerCaseAscii(bValue)) {
+                return false;
+            }
+            aStartIndex += 8;
+            bStartIndex += 8;
+        }
+
+        for (int i = byteCount; i > 0; i --) {
+            if (toLowerCaseAscii(a.getByte(aStartIndex)) != toLowerCaseAscii(b.getByte(bStartIndex))) {
+                return false;
+            }
+            aStartIndex ++;
+            bStartIndex ++;
+        }
+
+        return true;
+    }
+
+    private static byte toLowerCaseAscii(byte value) {
+        return AsciiString.isUpperCase(value) ? (byte) (value + 32) : value;
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other as described in {@link ByteBuf#equals(Object)}.
@@ -274,12 +317,24 @@ public final class ByteBufUtil {
     public static int compare(ByteBuf bufferA, ByteBuf bufferB) {
         final int aLen = bufferA.readableBytes();
         final int bLen = bufferB.readableBytes();
-        final int minLength = Math.min(aLen, bLen);
-        final int uintCount = minLength >>> 2;
-        final int byteCount = minLength & 3;
+        int minLength = Math.min(aLen, bLen);
         int aIndex = bufferA.readerIndex();
         int bIndex = bufferB.readerIndex();
 
+        // Skip the common prefix eight bytes at a time. The first differing word is compared below as before so the
+        // returned value does not change.
+        final boolean sameOrder = bufferA.order() == bufferB.order();
+        for (int longEnd = aIndex + (minLength & ~7); aIndex < longEnd; aIndex += 8, bIndex += 8) {
+            long bValue = sameOrder ? bufferB.getLong(bIndex) : swapLong(bufferB.getLong(bIndex));
+            if (bufferA.getLong(aIndex) != bValue) {
+                break;
+            }
+        }
+        minLength -= aIndex - bufferA.readerIndex();
+
+        final int uintCount = minLength >>> 2;
+        final int byteCount = minLength & 3;
+
         if (uintCount > 0) {
             boolean bufferAIsBigEndian = bufferA.order() == ByteOrder.BIG_ENDIAN;
             final long res;
@@ -445,9 +500,40 @@ public final class ByteBufUtil {
             return -1;
         }
 
+        if (buffer instanceof AbstractByteBuf) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, toIndex - fromIndex);
+            return firstIndexOf(buf, fromIndex, toIndex, value, value);
+        }
         return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    /**
+     * Returns the index of the first byte in {@code [fromIndex, toIndex)} which is equal to {@code value1} or
+     * {@code value2}, or {@code -1} if there is none. The buffer is scanned eight bytes at a time, the caller is
+     * responsible for the bounds checks.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
+        final long pattern1 = SWARUtil.compilePattern(value1);
+        final long pattern2 = SWARUtil.compilePattern(value2);
+        int index = fromIndex;
+        // _getLong(...) is always big endian, so the first byte ends up in the most significant position.
+        for (final int longEnd = toIndex - 7; index < longEnd; index += 8) {
+            final long word = buffer._getLong(index);
+            final long result = SWARUtil.applyPattern(word, pattern1) | SWARUtil.applyPattern(word, pattern2);
+            if (result != 0) {
+                return index + SWARUtil.getIndex(result, true);
+            }
+        }
+        for (; index < toIndex; index ++) {
+            final byte b = buffer._getByte(index);
+            if (b == value1 || b == value2) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
@@ -1188,6 +1274,22 @@ public final class ByteBufUtil {
      * @param length The length of the specified buffer.
      */
     private static boolean isAscii(ByteBuf buf, int index, int length) {
+        if (buf instanceof AbstractByteBuf) {
+            AbstractByteBuf buffer = (AbstractByteBuf) buf;
+            buffer.checkIndex(index, length);
+            final int end = index + length;
+            for (final int longEnd = end - 7; index < longEnd; index += 8) {
+                if (SWARUtil.containsNonAscii(buffer._getLong(index))) {
+                    return false;
+                }
+            }
+            for (; index < end; index ++) {
+                if (buffer._getByte(index) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
         return buf.forEachByte(index, length, FIND_NON_ASCII) == -1;
     }
 
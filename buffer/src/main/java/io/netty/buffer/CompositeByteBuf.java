@@ -52,6 +52,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private final int maxNumComponents;
 
     private boolean freed;
+    // The index of the component that was looked up last, see toComponentIndex0(int).
+    private int lastAccessedIndex;
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
         super(AbstractByteBufAllocator.DEFAULT_MAX_CAPACITY);
@@ -718,8 +720,32 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public int toComponentIndex(int offset) {
         checkIndex(offset);
+        return toComponentIndex0(offset);
+    }
 
-        for (int low = 0, high = components.size(); low <= high;) {
+    private int toComponentIndex0(int offset) {
+        // Most accesses are sequential, so first try the component that was found last time and the one after it.
+        // The cached index is only a hint which is validated against the offsets, so it never needs to be reset
+        // when the components change.
+        int size = components.size();
+        int last = lastAccessedIndex;
+        if (last < size) {
+            Component c = components.get(last);
+            if (offset >= c.offset) {
+                if (offset < c.endOffset) {
+                    return last;
+                }
+                if (++last < size) {
+                    c = components.get(last);
+                    if (offset >= c.offset && offset < c.endOffset) {
+                        lastAccessedIndex = last;
+                        return last;
+                    }
+                }
+            }
+        }
+
+        for (int low = 0, high = size; low <= high;) {
             int mid = low + high >>> 1;
             Component c = components.get(mid);
             if (offset >= c.endOffset) {
@@ -727,6 +753,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             } else if (offset < c.offset) {
                 high = mid - 1;
             } else {
+                assert c.length != 0;
+                lastAccessedIndex = mid;
                 return mid;
             }
         }
@@ -1403,21 +1431,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private Component findComponent(int offset) {
         checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                assert c.length != 0;
-                return c;
-            }
-        }
-
-        throw new Error("should not reach here");
+        return components.get(toComponentIndex0(offset));
     }
 
     @Override
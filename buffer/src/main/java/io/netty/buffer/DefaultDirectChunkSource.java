@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link DirectChunkSource} that is used if none is given, it allocates the memory like
+ * {@link ByteBuffer#allocateDirect(int)} does.
+ */
+public final class DefaultDirectChunkSource implements DirectChunkSource {
+
+    public static final DefaultDirectChunkSource INSTANCE = new DefaultDirectChunkSource();
+
+    private DefaultDirectChunkSource() { }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return PlatformDependent.useDirectBufferNoCleaner() ?
+                PlatformDependent.allocateDirectNoCleaner(capacity) : ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    public int alignment() {
+        // The address depends on the malloc implementation.
+        return 0;
+    }
+
+    @Override
+    public void release(ByteBuffer memory) {
+        if (PlatformDependent.useDirectBufferNoCleaner()) {
+            PlatformDependent.freeDirectNoCleaner(memory);
+        } else {
+            PlatformDependent.freeDirectBuffer(memory);
+        }
+    }
+}
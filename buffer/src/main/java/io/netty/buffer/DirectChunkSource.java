@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the memory of the chunks the direct arenas of a {@link PooledByteBufAllocator} allocate their buffers
+ * out of. Buffers that are larger than a chunk are not pooled and so are never allocated from a
+ * {@link DirectChunkSource}.
+ *
+ * @see MappedFileChunkSource
+ */
+public interface DirectChunkSource {
+
+    /**
+     * Returns a direct {@link ByteBuffer} with a capacity of {@code capacity} bytes.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Returns the alignment (a power of two) of the address of every {@link ByteBuffer} returned by
+     * {@link #allocate(int)}, or {@code 0} if the alignment is not known. If it is at least the
+     * {@code directMemoryCacheAlignment} of the {@link PooledByteBufAllocator} the chunks are used as they are,
+     * otherwise the arena has to allocate the chunks larger than needed, rounded up to a multiple of the
+     * alignment, to align them itself.
+     */
+    int alignment();
+
+    /**
+     * Releases the memory of a {@link ByteBuffer} that was returned by {@link #allocate(int)}. The buffer is not
+     * accessed anymore once this method is called.
+     */
+    void release(ByteBuffer memory);
+}
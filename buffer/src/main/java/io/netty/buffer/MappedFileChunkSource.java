@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A {@link DirectChunkSource} that backs each chunk by a memory-mapped file in a directory.
+ * <p>
+ * Using a directory on a {@code hugetlbfs} mount (for example {@code /dev/hugepages}) backs the chunks by huge
+ * pages, which removes most TLB misses when accessing large pools. The chunk size must be a multiple of the huge
+ * page size in this case. A directory on {@code tmpfs} (for example {@code /dev/shm}) keeps the memory outside of
+ * the limit of {@code -XX:MaxDirectMemorySize}. On a disk backed file system the content of the buffers is written
+ * back to the disk by the operating system, which is rarely what you want.
+ * <p>
+ * The files are deleted right after they were mapped, so they do not outlive the process.
+ */
+public final class MappedFileChunkSource implements DirectChunkSource {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(MappedFileChunkSource.class);
+    // mmap(2) always returns memory aligned to the page size, which is at least 4 KiB on every supported platform.
+    private static final int MIN_PAGE_SIZE = 4096;
+
+    private final File directory;
+    private final int pageSize;
+
+    /**
+     * Creates a new instance that creates the files backing the chunks in the given {@code directory}.
+     */
+    public MappedFileChunkSource(File directory) {
+        this(directory, MIN_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a new instance that creates the files backing the chunks in the given {@code directory}, which is
+     * on a file system with the given {@code pageSize}, for example the huge page size of a {@code hugetlbfs}
+     * mount.
+     */
+    public MappedFileChunkSource(File directory, int pageSize) {
+        this.directory = checkNotNull(directory, "directory");
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("directory: " + directory + " (expected: an existing directory)");
+        }
+        if (pageSize < MIN_PAGE_SIZE || (pageSize & pageSize - 1) != 0) {
+            throw new IllegalArgumentException(
+                    "pageSize: " + pageSize + " (expected: power of two >= " + MIN_PAGE_SIZE + ')');
+        }
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        File file = null;
+        RandomAccessFile raf = null;
+        try {
+            file = File.createTempFile("netty-chunk-", ".tmp", directory);
+            raf = new RandomAccessFile(file, "rw");
+            // The mapping stays valid after the file was closed and deleted.
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            OutOfMemoryError error = new OutOfMemoryError(
+                    "failed to map a chunk of " + capacity + " bytes in " + directory);
+            error.initCause(e);
+            throw error;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close a file: {}", file, e);
+                }
+            }
+            if (file != null && !file.delete()) {
+                logger.warn("Failed to delete a file: {}", file);
+            }
+        }
+    }
+
+    @Override
+    public int alignment() {
+        return pageSize;
+    }
+
+    @Override
+    public void release(ByteBuffer memory) {
+        // Unmaps the file.
+        PlatformDependent.freeDirectBuffer(memory);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileChunkSource(" + directory + ')';
+    }
+}
@@ -39,13 +39,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final int numTinySubpagePools = 512 >>> 4;
 
+    /**
+     * Log2 of the number of size classes per doubling for capacities {@code >= 512}. Each power of two interval is
+     * split into 4 equally spaced classes, which bounds the internal fragmentation to 25%.
+     */
+    private static final int LOG2_SIZE_CLASS_GROUP = 2;
+    private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
+
     final PooledByteBufAllocator parent;
 
     private final int maxOrder;
     final int pageSize;
     final int pageShifts;
     final int chunkSize;
-    final int subpageOverflowMask;
+    /** Capacities below this are served out of {@link PoolSubpage}s. */
+    final int smallMaxCapacity;
     final int numSmallSubpagePools;
     final int directMemoryCacheAlignment;
     final int directMemoryCacheAlignmentMask;
@@ -69,12 +77,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
 
-    private long deallocationsTiny;
-    private long deallocationsSmall;
     private long deallocationsNormal;
+    private long numReleasedIdleChunks;
 
     // We need to use the LongCounter here as this is not guarded via synchronized block.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
+    // Tiny and small deallocations that do not release a run are only guarded by the subpage pool head.
+    private final LongCounter deallocationsTiny = PlatformDependent.newLongCounter();
+    private final LongCounter deallocationsSmall = PlatformDependent.newLongCounter();
 
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
@@ -91,13 +101,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         this.chunkSize = chunkSize;
         directMemoryCacheAlignment = cacheAlignment;
         directMemoryCacheAlignmentMask = cacheAlignment - 1;
-        subpageOverflowMask = ~(pageSize - 1);
+        // Small size classes are allowed to span up to 4 pages so 10k, 12k, ... do not have to use a 16k run.
+        smallMaxCapacity = Math.min(pageSize << LOG2_SIZE_CLASS_GROUP, chunkSize);
         tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
         for (int i = 0; i < tinySubpagePools.length; i ++) {
             tinySubpagePools[i] = newSubpagePoolHead(pageSize);
         }
 
-        numSmallSubpagePools = pageShifts - 9;
+        numSmallSubpagePools = smallMaxCapacity > 512 ? sizeClassIdx(smallMaxCapacity) : 0;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
             smallSubpagePools[i] = newSubpagePoolHead(pageSize);
@@ -152,18 +163,44 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     static int smallIdx(int normCapacity) {
-        int tableIdx = 0;
-        int i = normCapacity >>> 10;
-        while (i != 0) {
-            i >>>= 1;
-            tableIdx ++;
-        }
-        return tableIdx;
+        return sizeClassIdx(normCapacity);
+    }
+
+    /**
+     * Returns the index of the given size class, counted from the {@code 512} class.
+     */
+    static int sizeClassIdx(int normCapacity) {
+        assert !isTiny(normCapacity) : normCapacity;
+        int n = normCapacity - 1;
+        int log2 = log2(n);
+        int shift = log2 - LOG2_SIZE_CLASS_GROUP;
+        return (log2 - 8 << LOG2_SIZE_CLASS_GROUP) + (n >> shift) - ((1 << LOG2_SIZE_CLASS_GROUP + 1) - 1);
+    }
+
+    /**
+     * Rounds the given capacity ({@code >= 512}) up to the next size class. The classes are spaced
+     * {@code 2^(log2(capacity) - 2)} apart, which gives 640, 768, 896, 1024, 1280, ...
+     */
+    static int roundUpSizeClass(int reqCapacity) {
+        int n = reqCapacity - 1;
+        int shift = log2(n) - LOG2_SIZE_CLASS_GROUP;
+        return (n >> shift) + 1 << shift;
+    }
+
+    /**
+     * Returns the index of the given normal size class, counted from {@link #smallMaxCapacity}.
+     */
+    int normalIdx(int normCapacity) {
+        return sizeClassIdx(normCapacity) - numSmallSubpagePools;
+    }
+
+    private static int log2(int val) {
+        return INTEGER_SIZE_MINUS_ONE - Integer.numberOfLeadingZeros(val);
     }
 
-    // capacity < pageSize
+    // capacity < smallMaxCapacity
     boolean isTinyOrSmall(int normCapacity) {
-        return (normCapacity & subpageOverflowMask) == 0;
+        return normCapacity < smallMaxCapacity;
     }
 
     // normCapacity < 512
@@ -173,7 +210,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
         final int normCapacity = normalizeCapacity(reqCapacity);
-        if (isTinyOrSmall(normCapacity)) { // capacity < pageSize
+        if (isTinyOrSmall(normCapacity)) { // capacity < smallMaxCapacity
             int tableIdx;
             PoolSubpage<T>[] table;
             boolean tiny = isTiny(normCapacity);
@@ -197,7 +234,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
             /**
              * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
-             * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
+             * {@link PoolChunk#freeSubpage(long)} may modify the doubly linked list as well.
              */
             synchronized (head) {
                 final PoolSubpage<T> s = head.next;
@@ -256,6 +293,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    private void incTinySmallDeallocation(boolean tiny) {
+        if (tiny) {
+            deallocationsTiny.increment();
+        } else {
+            deallocationsSmall.increment();
+        }
+    }
+
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
         PoolChunk<T> chunk = newUnpooledChunk(reqCapacity);
         activeBytesHuge.add(chunk.chunkSize());
@@ -280,7 +325,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
-    private SizeClass sizeClass(int normCapacity) {
+    SizeClass sizeClass(int normCapacity) {
         if (!isTinyOrSmall(normCapacity)) {
             return SizeClass.Normal;
         }
@@ -288,20 +333,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
+        if (sizeClass != SizeClass.Normal) {
+            incTinySmallDeallocation(sizeClass == SizeClass.Tiny);
+            if (chunk.freeSubpage(handle)) {
+                // The subpage is still in use, so only its pool head was locked and the chunk itself is left
+                // untouched. This keeps buffers that are released on another thread than the one that allocated
+                // them from contending on the arena.
+                return;
+            }
+        }
         final boolean destroyChunk;
         synchronized (this) {
-            switch (sizeClass) {
-            case Normal:
+            if (sizeClass == SizeClass.Normal) {
                 ++deallocationsNormal;
-                break;
-            case Small:
-                ++deallocationsSmall;
-                break;
-            case Tiny:
-                ++deallocationsTiny;
-                break;
-            default:
-                throw new Error();
             }
             destroyChunk = !chunk.parent.free(chunk, handle);
         }
@@ -311,6 +355,31 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    /**
+     * Destroys the {@link PoolChunk}s that had nothing allocated out of them for at least {@code idleNanos}.
+     *
+     * @return the number of destroyed chunks.
+     */
+    int releaseIdleChunks(long idleNanos) {
+        List<PoolChunk<T>> idleChunks = new ArrayList<PoolChunk<T>>();
+        long nowNanos = System.nanoTime();
+        synchronized (this) {
+            // Only chunks in qInit and q000 may be unused, all others are at least 25% in use.
+            qInit.removeIdleChunks(nowNanos, idleNanos, idleChunks);
+            q000.removeIdleChunks(nowNanos, idleNanos, idleChunks);
+            numReleasedIdleChunks += idleChunks.size();
+        }
+        // destroyChunk not need to be called while holding the synchronized lock.
+        for (PoolChunk<T> chunk: idleChunks) {
+            destroyChunk(chunk);
+        }
+        return idleChunks.size();
+    }
+
+    synchronized long numReleasedIdleChunks() {
+        return numReleasedIdleChunks;
+    }
+
     PoolSubpage<T> findSubpagePoolHead(int elemSize) {
         int tableIdx;
         PoolSubpage<T>[] table;
@@ -318,12 +387,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             tableIdx = elemSize >>> 4;
             table = tinySubpagePools;
         } else {
-            tableIdx = 0;
-            elemSize >>>= 10;
-            while (elemSize != 0) {
-                elemSize >>>= 1;
-                tableIdx ++;
-            }
+            tableIdx = smallIdx(elemSize);
             table = smallSubpagePools;
         }
 
@@ -340,22 +404,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         if (!isTiny(reqCapacity)) { // >= 512
-            // Doubled
-
-            int normalizedCapacity = reqCapacity;
-            normalizedCapacity --;
-            normalizedCapacity |= normalizedCapacity >>>  1;
-            normalizedCapacity |= normalizedCapacity >>>  2;
-            normalizedCapacity |= normalizedCapacity >>>  4;
-            normalizedCapacity |= normalizedCapacity >>>  8;
-            normalizedCapacity |= normalizedCapacity >>> 16;
-            normalizedCapacity ++;
-
-            if (normalizedCapacity < 0) {
-                normalizedCapacity >>>= 1;
+            // Size classes, 4 per doubling
+            int normalizedCapacity = roundUpSizeClass(reqCapacity);
+            if (directMemoryCacheAlignment > 0) {
+                while ((normalizedCapacity & directMemoryCacheAlignmentMask) != 0) {
+                    normalizedCapacity = roundUpSizeClass(normalizedCapacity + 1);
+                }
             }
-            assert directMemoryCacheAlignment == 0 || (normalizedCapacity & directMemoryCacheAlignmentMask) == 0;
-
             return normalizedCapacity;
         }
 
@@ -500,19 +555,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     public long numDeallocations() {
         final long deallocs;
         synchronized (this) {
-            deallocs = deallocationsTiny + deallocationsSmall + deallocationsNormal;
+            deallocs = deallocationsNormal;
         }
-        return deallocs + deallocationsHuge.value();
+        return deallocs + deallocationsTiny.value() + deallocationsSmall.value() + deallocationsHuge.value();
     }
 
     @Override
-    public synchronized long numTinyDeallocations() {
-        return deallocationsTiny;
+    public long numTinyDeallocations() {
+        return deallocationsTiny.value();
     }
 
     @Override
-    public synchronized long numSmallDeallocations() {
-        return deallocationsSmall;
+    public long numSmallDeallocations() {
+        return deallocationsSmall.value();
     }
 
     @Override
@@ -533,9 +588,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     @Override
     public  long numActiveAllocations() {
         long val = allocationsTiny.value() + allocationsSmall.value() + allocationsHuge.value()
-                - deallocationsHuge.value();
+                - deallocationsTiny.value() - deallocationsSmall.value() - deallocationsHuge.value();
         synchronized (this) {
-            val += allocationsNormal - (deallocationsTiny + deallocationsSmall + deallocationsNormal);
+            val += allocationsNormal - deallocationsNormal;
         }
         return max(val, 0);
     }
@@ -714,10 +769,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
+        private final DirectChunkSource chunkSource;
+
         DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
                 int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment,
+                    DefaultDirectChunkSource.INSTANCE);
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
+                int pageShifts, int chunkSize, int directMemoryCacheAlignment, DirectChunkSource chunkSource) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize,
                     directMemoryCacheAlignment);
+            this.chunkSource = chunkSource;
         }
 
         @Override
@@ -735,13 +799,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         @Override
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder,
                 int pageShifts, int chunkSize) {
-            if (directMemoryCacheAlignment == 0) {
+            final int sourceAlignment = chunkSource.alignment();
+            if (directMemoryCacheAlignment == 0 || sourceAlignment >= directMemoryCacheAlignment) {
+                // The memory of the source is aligned already.
                 return new PoolChunk<ByteBuffer>(this,
-                        allocateDirect(chunkSize), pageSize, maxOrder,
+                        chunkSource.allocate(chunkSize), pageSize, maxOrder,
                         pageShifts, chunkSize, 0);
             }
-            final ByteBuffer memory = allocateDirect(chunkSize
-                    + directMemoryCacheAlignment);
+            int capacity = chunkSize + directMemoryCacheAlignment;
+            if (sourceAlignment > 0) {
+                // Sources like hugetlbfs can only allocate multiples of their page size.
+                capacity = (capacity + sourceAlignment - 1) & -sourceAlignment;
+            }
+            final ByteBuffer memory = chunkSource.allocate(capacity);
             return new PoolChunk<ByteBuffer>(this, memory, pageSize,
                     maxOrder, pageShifts, chunkSize,
                     offsetCacheLine(memory));
@@ -760,16 +830,15 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         private static ByteBuffer allocateDirect(int capacity) {
-            return PlatformDependent.useDirectBufferNoCleaner() ?
-                    PlatformDependent.allocateDirectNoCleaner(capacity) : ByteBuffer.allocateDirect(capacity);
+            return DefaultDirectChunkSource.INSTANCE.allocate(capacity);
         }
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
-                PlatformDependent.freeDirectNoCleaner(chunk.memory);
+            if (chunk.unpooled) {
+                DefaultDirectChunkSource.INSTANCE.release(chunk.memory);
             } else {
-                PlatformDependent.freeDirectBuffer(chunk.memory);
+                chunkSource.release(chunk.memory);
             }
         }
 
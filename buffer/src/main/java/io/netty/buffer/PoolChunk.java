@@ -31,8 +31,8 @@ package io.netty.buffer;
  * marked as reserved so it is always used by exactly one ByteBuf and no more)
  *
  * For simplicity all sizes are normalized according to PoolArena#normalizeCapacity method
- * This ensures that when we request for memory segments of size >= pageSize the normalizedCapacity
- * equals the next nearest power of 2
+ * This ensures that when we request for memory segments of size >= 4 * pageSize the normalizedCapacity
+ * is a multiple of pageSize (there are 4 size classes per power of 2, e.g. 32k, 40k, 48k, 56k, 64k)
  *
  * To search for the first offset in chunk that has at least requested size available we construct a
  * complete balanced binary tree and store it in an array (just like heaps) - memoryMap
@@ -82,15 +82,23 @@ package io.netty.buffer;
  *
  * Algorithm: [allocateRun(size)]
  * ----------
- * 1) Compute d = log_2(chunkSize/size)
- * 2) Return allocateNode(d)
+ * 1) Compute pages = size/pageSize and d = maxOrder - log_2(nextPowerOfTwo(pages))
+ * 2) id = allocateNode(d)
+ * 3) if pages is not a power of 2, trim the run: only the nodes covering the first pages of the subtree rooted at
+ *    id are marked as unusable, the tail is marked free again so it can serve other allocations
  *
  * Algorithm: [allocateSubpage(size)]
  * ----------
- * 1) use allocateNode(maxOrder) to find an empty (i.e., unused) leaf (i.e., page)
+ * 1) allocate a run of the smallest number of pages that wastes at most 1/16 of the run (one page for tiny and
+ *    small sizes < pageSize, e.g. 4 pages holding 3 elements of 10k for 8k pages)
  * 2) use this handle to construct the PoolSubpage object or if it already exists just call init(normCapacity)
  *    note that this PoolSubpage object is added to subpagesPool in the PoolArena when we init() it
  *
+ * Handle layout:
+ * --------------
+ * run:     (pages << 32) | id
+ * subpage: 0x4000000000000000L | (bitmapIdx << 32) | id
+ *
  * Note:
  * -----
  * In the implementation for improving cache coherence,
@@ -103,6 +111,7 @@ package io.netty.buffer;
 final class PoolChunk<T> implements PoolChunkMetric {
 
     private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
+    private static final long SUBPAGE_FLAG = 0x4000000000000000L;
 
     final PoolArena<T> arena;
     final T memory;
@@ -112,8 +121,6 @@ final class PoolChunk<T> implements PoolChunkMetric {
     private final byte[] memoryMap;
     private final byte[] depthMap;
     private final PoolSubpage<T>[] subpages;
-    /** Used to determine if the requested capacity is equal to or greater than pageSize. */
-    private final int subpageOverflowMask;
     private final int pageSize;
     private final int pageShifts;
     private final int maxOrder;
@@ -124,6 +131,9 @@ final class PoolChunk<T> implements PoolChunkMetric {
     private final byte unusable;
 
     private int freeBytes;
+    // Guarded by synchronized(arena), used by the idle chunk release.
+    private boolean idle;
+    private long idleSinceNanos;
 
     PoolChunkList<T> parent;
     PoolChunk<T> prev;
@@ -143,7 +153,6 @@ final class PoolChunk<T> implements PoolChunkMetric {
         this.offset = offset;
         unusable = (byte) (maxOrder + 1);
         log2ChunkSize = log2(chunkSize);
-        subpageOverflowMask = ~(pageSize - 1);
         freeBytes = chunkSize;
 
         assert maxOrder < 30 : "maxOrder should be < 30, but is: " + maxOrder;
@@ -163,7 +172,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
             }
         }
 
-        subpages = newSubpageArray(maxSubpageAllocs);
+        // Subpages may span more than one page so they are indexed by the id of the node they were allocated at.
+        subpages = newSubpageArray(memoryMap.length);
     }
 
     /** Creates a special chunk that is not pooled. */
@@ -175,7 +185,6 @@ final class PoolChunk<T> implements PoolChunkMetric {
         memoryMap = null;
         depthMap = null;
         subpages = null;
-        subpageOverflowMask = 0;
         pageSize = 0;
         pageShifts = 0;
         maxOrder = 0;
@@ -212,13 +221,71 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     long allocate(int normCapacity) {
-        if ((normCapacity & subpageOverflowMask) != 0) { // >= pageSize
+        idle = false;
+        if (!arena.isTinyOrSmall(normCapacity)) { // >= smallMaxCapacity
             return allocateRun(normCapacity);
         } else {
             return allocateSubpage(normCapacity);
         }
     }
 
+    /**
+     * Returns {@code true} if nothing was allocated out of this chunk for at least {@code idleNanos}, in which case
+     * the runs of {@link PoolSubpage}s without any element in use were released and the chunk can be destroyed.
+     * The chunk is considered idle from the first call that found it unused.
+     * Must be called inside synchronized(arena).
+     */
+    boolean releaseIfIdle(long nowNanos, long idleNanos) {
+        if (!isUnused()) {
+            idle = false;
+            return false;
+        }
+        if (!idle) {
+            idle = true;
+            idleSinceNanos = nowNanos;
+            return false;
+        }
+        if (nowNanos - idleSinceNanos < idleNanos) {
+            return false;
+        }
+        final PoolSubpage<T>[] subpages = this.subpages;
+        for (int id = 1; id < subpages.length; id ++) {
+            PoolSubpage<T> subpage = subpages[id];
+            if (subpage != null && subpage.doNotDestroy) {
+                boolean freed;
+                synchronized (arena.findSubpagePoolHead(subpage.elemSize)) {
+                    freed = subpage.freeIfUnused();
+                }
+                if (freed) {
+                    int pages = subpage.runSize() >>> pageShifts;
+                    freeBytes += pages << pageShifts;
+                    markFree(id, pages);
+                    updateParentsFree(id);
+                }
+            }
+        }
+        return freeBytes == chunkSize;
+    }
+
+    /**
+     * Returns {@code true} if no memory of this chunk is in use, not counting {@link PoolSubpage}s that are kept
+     * in the pool without any element in use.
+     */
+    private boolean isUnused() {
+        int unusedBytes = freeBytes;
+        for (PoolSubpage<T> subpage: subpages) {
+            if (subpage != null && subpage.doNotDestroy) {
+                synchronized (arena.findSubpagePoolHead(subpage.elemSize)) {
+                    if (!subpage.isUnused()) {
+                        return false;
+                    }
+                }
+                unusedBytes += subpage.runSize();
+            }
+        }
+        return unusedBytes == chunkSize;
+    }
+
     /**
      * Update method used by allocate
      * This is triggered only when a successor is allocated and all its predecessors
@@ -298,18 +365,87 @@ final class PoolChunk<T> implements PoolChunkMetric {
      * Allocate a run of pages (>=1)
      *
      * @param normCapacity normalized capacity
-     * @return index in memoryMap
+     * @return handle of the run
      */
     private long allocateRun(int normCapacity) {
-        int d = maxOrder - (log2(normCapacity) - pageShifts);
-        int id = allocateNode(d);
+        int pages = normCapacity >>> pageShifts;
+        assert pages << pageShifts == normCapacity : normCapacity;
+        int id = allocatePages(pages);
         if (id < 0) {
             return id;
         }
-        freeBytes -= runLength(id);
+        freeBytes -= pages << pageShifts;
+        return (long) pages << Integer.SIZE | id;
+    }
+
+    /**
+     * Allocate the first {@code pages} pages of a free node that covers the next power of 2 pages, the remaining
+     * pages of the node stay available.
+     *
+     * @return index in memoryMap
+     */
+    private int allocatePages(int pages) {
+        int runPages = pages == 1 ? 1 : Integer.highestOneBit(pages - 1) << 1;
+        int id = allocateNode(maxOrder - log2(runPages));
+        if (id >= 0 && runPages != pages) {
+            markAllocated(id, pages);
+            updateParentsAlloc(id);
+        }
         return id;
     }
 
+    /**
+     * Mark the first {@code pages} pages of node {@code id} as allocated and the rest as free.
+     * {@code pages} must be less than the number of pages covered by {@code id}.
+     */
+    private void markAllocated(int id, int pages) {
+        int childPages = runPages(id) >>> 1;
+        int left = id << 1;
+        int right = left ^ 1;
+        if (pages <= childPages) {
+            setValue(right, depth(right));
+            if (pages == childPages) {
+                setValue(left, unusable);
+            } else {
+                markAllocated(left, pages);
+            }
+        } else {
+            setValue(left, unusable);
+            markAllocated(right, pages - childPages);
+        }
+        byte val1 = value(left);
+        byte val2 = value(right);
+        setValue(id, val1 < val2 ? val1 : val2);
+    }
+
+    /**
+     * Mark the first {@code pages} pages of node {@code id} as free again, merging fully free siblings.
+     */
+    private void markFree(int id, int pages) {
+        int runPages = runPages(id);
+        if (pages == runPages) {
+            setValue(id, depth(id));
+            return;
+        }
+        int childPages = runPages >>> 1;
+        int left = id << 1;
+        int right = left ^ 1;
+        if (pages <= childPages) {
+            markFree(left, pages);
+        } else {
+            setValue(left, depth(left));
+            markFree(right, pages - childPages);
+        }
+        byte val1 = value(left);
+        byte val2 = value(right);
+        byte childDepth = depth(left);
+        if (val1 == childDepth && val2 == childDepth) {
+            setValue(id, depth(id));
+        } else {
+            setValue(id, val1 < val2 ? val1 : val2);
+        }
+    }
+
     /**
      * Create/ initialize a new PoolSubpage of normCapacity
      * Any PoolSubpage created/ initialized here is added to subpage pool in the PoolArena that owns this PoolChunk
@@ -322,22 +458,21 @@ final class PoolChunk<T> implements PoolChunkMetric {
         // This is need as we may add it back and so alter the linked-list structure.
         PoolSubpage<T> head = arena.findSubpagePoolHead(normCapacity);
         synchronized (head) {
-            int d = maxOrder; // subpages are only be allocated from pages i.e., leaves
-            int id = allocateNode(d);
+            int pages = subpageRunPages(normCapacity);
+            int id = allocatePages(pages);
             if (id < 0) {
                 return id;
             }
 
             final PoolSubpage<T>[] subpages = this.subpages;
-            final int pageSize = this.pageSize;
+            final int runSize = pages << pageShifts;
 
-            freeBytes -= pageSize;
+            freeBytes -= runSize;
 
-            int subpageIdx = subpageIdx(id);
-            PoolSubpage<T> subpage = subpages[subpageIdx];
-            if (subpage == null) {
-                subpage = new PoolSubpage<T>(head, this, id, runOffset(id), pageSize, normCapacity);
-                subpages[subpageIdx] = subpage;
+            PoolSubpage<T> subpage = subpages[id];
+            if (subpage == null || subpage.runSize() != runSize) {
+                subpage = new PoolSubpage<T>(head, this, id, runOffset(id), runSize, normCapacity);
+                subpages[id] = subpage;
             } else {
                 subpage.init(head, normCapacity);
             }
@@ -346,8 +481,58 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     /**
-     * Free a subpage or a run of pages
-     * When a subpage is freed from PoolSubpage, it might be added back to subpage pool of the owning PoolArena
+     * Returns the number of pages backing a subpage of the given element size: the smallest run that wastes at
+     * most 1/16 of its size, or else the smallest run that fits a whole number of elements.
+     */
+    private int subpageRunPages(int elemSize) {
+        if (elemSize < pageSize) {
+            return 1;
+        }
+        int minPages = (elemSize + pageSize - 1) >>> pageShifts;
+        int maxPages = Math.min(elemSize / gcd(elemSize, pageSize), maxSubpageAllocs);
+        for (int pages = minPages; pages < maxPages; pages ++) {
+            int runSize = pages << pageShifts;
+            if ((runSize % elemSize) << 4 <= runSize) {
+                return pages;
+            }
+        }
+        return Math.max(minPages, maxPages);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Free an element of a subpage.
+     * When a subpage is freed from PoolSubpage, it might be added back to subpage pool of the owning PoolArena.
+     * This only synchronizes on the head of that subpage pool, so it may be called without holding the lock of
+     * the owning PoolArena.
+     *
+     * @param handle handle to free
+     * @return {@code true} if the subpage is still in use, {@code false} if it was removed from the subpage pool
+     *         and its run must be released via {@link #free(long)} while holding the lock of the owning PoolArena.
+     */
+    boolean freeSubpage(long handle) {
+        assert isSubpage(handle);
+        PoolSubpage<T> subpage = subpages[memoryMapIdx(handle)];
+        assert subpage != null && subpage.doNotDestroy;
+
+        // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
+        // This is need as we may add it back and so alter the linked-list structure.
+        PoolSubpage<T> head = arena.findSubpagePoolHead(subpage.elemSize);
+        synchronized (head) {
+            return subpage.free(head, bitmapIdx(handle));
+        }
+    }
+
+    /**
+     * Free a run of pages, or the run of a subpage that was released by {@link #freeSubpage(long)}.
      * If the subpage pool in PoolArena has at least one other PoolSubpage of given elemSize, we can
      * completely free the owning Page so it is available for subsequent allocations
      *
@@ -355,55 +540,44 @@ final class PoolChunk<T> implements PoolChunkMetric {
      */
     void free(long handle) {
         int memoryMapIdx = memoryMapIdx(handle);
-        int bitmapIdx = bitmapIdx(handle);
-
-        if (bitmapIdx != 0) { // free a subpage
-            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
-            assert subpage != null && subpage.doNotDestroy;
-
-            // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
-            // This is need as we may add it back and so alter the linked-list structure.
-            PoolSubpage<T> head = arena.findSubpagePoolHead(subpage.elemSize);
-            synchronized (head) {
-                if (subpage.free(head, bitmapIdx & 0x3FFFFFFF)) {
-                    return;
-                }
-            }
+        int pages;
+
+        if (isSubpage(handle)) { // free the run of a subpage
+            PoolSubpage<T> subpage = subpages[memoryMapIdx];
+            assert subpage != null && !subpage.doNotDestroy;
+            pages = subpage.runSize() >>> pageShifts;
+        } else {
+            pages = pages(handle);
         }
-        freeBytes += runLength(memoryMapIdx);
-        setValue(memoryMapIdx, depth(memoryMapIdx));
+        freeBytes += pages << pageShifts;
+        markFree(memoryMapIdx, pages);
         updateParentsFree(memoryMapIdx);
     }
 
     void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity) {
         int memoryMapIdx = memoryMapIdx(handle);
-        int bitmapIdx = bitmapIdx(handle);
-        if (bitmapIdx == 0) {
+        if (!isSubpage(handle)) {
             byte val = value(memoryMapIdx);
-            assert val == unusable : String.valueOf(val);
-            buf.init(this, handle, runOffset(memoryMapIdx) + offset, reqCapacity, runLength(memoryMapIdx),
+            assert val > depth(memoryMapIdx) : String.valueOf(val);
+            buf.init(this, handle, runOffset(memoryMapIdx) + offset, reqCapacity, pages(handle) << pageShifts,
                      arena.parent.threadCache());
         } else {
-            initBufWithSubpage(buf, handle, bitmapIdx, reqCapacity);
+            initBufWithSubpage(buf, handle, reqCapacity);
         }
     }
 
     void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int reqCapacity) {
-        initBufWithSubpage(buf, handle, bitmapIdx(handle), reqCapacity);
-    }
-
-    private void initBufWithSubpage(PooledByteBuf<T> buf, long handle, int bitmapIdx, int reqCapacity) {
-        assert bitmapIdx != 0;
+        assert isSubpage(handle);
 
         int memoryMapIdx = memoryMapIdx(handle);
 
-        PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+        PoolSubpage<T> subpage = subpages[memoryMapIdx];
         assert subpage.doNotDestroy;
         assert reqCapacity <= subpage.elemSize;
 
         buf.init(
             this, handle,
-            runOffset(memoryMapIdx) + (bitmapIdx & 0x3FFFFFFF) * subpage.elemSize + offset,
+            runOffset(memoryMapIdx) + bitmapIdx(handle) * subpage.elemSize + offset,
                 reqCapacity, subpage.elemSize, arena.parent.threadCache());
     }
 
@@ -435,15 +609,24 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return shift * runLength(id);
     }
 
-    private int subpageIdx(int memoryMapIdx) {
-        return memoryMapIdx ^ maxSubpageAllocs; // remove highest set bit, to get offset
+    private int runPages(int id) {
+        // represents the number of pages covered by node 'id' in the tree
+        return 1 << maxOrder - depth(id);
     }
 
     private static int memoryMapIdx(long handle) {
         return (int) handle;
     }
 
+    private static boolean isSubpage(long handle) {
+        return (handle & SUBPAGE_FLAG) != 0;
+    }
+
     private static int bitmapIdx(long handle) {
+        return (int) (handle >>> Integer.SIZE) & 0x3FFFFFFF;
+    }
+
+    private static int pages(long handle) {
         return (int) (handle >>> Integer.SIZE);
     }
 
@@ -109,6 +109,21 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return true;
     }
 
+    /**
+     * Removes the {@link PoolChunk}s that were idle for at least {@code idleNanos} from this list and adds them to
+     * {@code idleChunks} so they can be destroyed.
+     */
+    void removeIdleChunks(long nowNanos, long idleNanos, List<PoolChunk<T>> idleChunks) {
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.releaseIfIdle(nowNanos, idleNanos)) {
+                remove(cur);
+                idleChunks.add(cur);
+            }
+            cur = next;
+        }
+    }
+
     private boolean move(PoolChunk<T> chunk) {
         assert chunk.usage() < maxUsage;
 
@@ -21,7 +21,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
     final PoolChunk<T> chunk;
     private final int memoryMapIdx;
     private final int runOffset;
-    private final int pageSize;
+    private final int runSize;
     private final long[] bitmap;
 
     PoolSubpage<T> prev;
@@ -43,16 +43,16 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         memoryMapIdx = -1;
         runOffset = -1;
         elemSize = -1;
-        this.pageSize = pageSize;
+        runSize = pageSize;
         bitmap = null;
     }
 
-    PoolSubpage(PoolSubpage<T> head, PoolChunk<T> chunk, int memoryMapIdx, int runOffset, int pageSize, int elemSize) {
+    PoolSubpage(PoolSubpage<T> head, PoolChunk<T> chunk, int memoryMapIdx, int runOffset, int runSize, int elemSize) {
         this.chunk = chunk;
         this.memoryMapIdx = memoryMapIdx;
         this.runOffset = runOffset;
-        this.pageSize = pageSize;
-        bitmap = new long[pageSize >>> 10]; // pageSize / 16 / 64
+        this.runSize = runSize;
+        bitmap = new long[runSize >>> 10]; // runSize / 16 / 64
         init(head, elemSize);
     }
 
@@ -60,7 +60,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         doNotDestroy = true;
         this.elemSize = elemSize;
         if (elemSize != 0) {
-            maxNumElems = numAvail = pageSize / elemSize;
+            maxNumElems = numAvail = runSize / elemSize;
             nextAvail = 0;
             bitmapLength = maxNumElems >>> 6;
             if ((maxNumElems & 63) != 0) {
@@ -135,6 +135,27 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         }
     }
 
+    /**
+     * Removes this subpage from the pool if none of its elements is in use, even if it is the last one left.
+     *
+     * @return {@code true} if the subpage was removed and so its run can be released.
+     */
+    boolean freeIfUnused() {
+        if (!doNotDestroy || numAvail != maxNumElems || prev == null) {
+            return false;
+        }
+        doNotDestroy = false;
+        removeFromPool();
+        return true;
+    }
+
+    /**
+     * @return {@code true} if none of the elements of this subpage is in use.
+     */
+    boolean isUnused() {
+        return numAvail == maxNumElems;
+    }
+
     private void addToPool(PoolSubpage<T> head) {
         assert prev == null && next == null;
         prev = head;
@@ -222,7 +243,7 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         }
 
         return "(" + memoryMapIdx + ": " + (maxNumElems - numAvail) + '/' + maxNumElems +
-                ", offset: " + runOffset + ", length: " + pageSize + ", elemSize: " + elemSize + ')';
+                ", offset: " + runOffset + ", length: " + runSize + ", elemSize: " + elemSize + ')';
     }
 
     @Override
@@ -248,7 +269,14 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
 
     @Override
     public int pageSize() {
-        return pageSize;
+        return runSize;
+    }
+
+    /**
+     * Returns the size of the run of pages backing this subpage, which may span more than one page.
+     */
+    int runSize() {
+        return runSize;
     }
 
     void destroy() {
@@ -21,13 +21,17 @@ import io.netty.buffer.PoolArena.SizeClass;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ThreadDeathWatcher;
+import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Queue;
+import java.util.WeakHashMap;
 
 /**
  * Acts a Thread cache for allocations. This implementation is moduled after
@@ -40,6 +44,15 @@ final class PoolThreadCache {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(PoolThreadCache.class);
 
+    // The RemoteFreeQueues the current thread uses to hand buffers back to the caches they were allocated out of.
+    private static final FastThreadLocal<Map<RemoteFrees, RemoteFreeQueue>> REMOTE_FREE_QUEUES =
+            new FastThreadLocal<Map<RemoteFrees, RemoteFreeQueue>>() {
+        @Override
+        protected Map<RemoteFrees, RemoteFreeQueue> initialValue() {
+            return new WeakHashMap<RemoteFrees, RemoteFreeQueue>();
+        }
+    };
+
     final PoolArena<byte[]> heapArena;
     final PoolArena<ByteBuffer> directArena;
 
@@ -51,11 +64,13 @@ final class PoolThreadCache {
     private final MemoryRegionCache<byte[]>[] normalHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
 
-    // Used for bitshifting when calculate the index of normal caches later
-    private final int numShiftsNormalDirect;
-    private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
 
+    // The id of the thread this cache belongs to and the queues through which other threads release buffers into it.
+    // Only the id is kept so the cache never keeps its owner reachable.
+    private final long ownerThreadId;
+    private final RemoteFrees remoteFrees;
+
     private final Thread deathWatchThread;
     private final Runnable freeTask;
 
@@ -67,21 +82,26 @@ final class PoolThreadCache {
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
                     int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                     int maxCachedBufferCapacity, int freeSweepAllocationThreshold,
-                    boolean useThreadDeathWatcher) {
+                    int remoteFreeQueueCapacity, boolean useThreadDeathWatcher) {
         if (maxCachedBufferCapacity < 0) {
             throw new IllegalArgumentException("maxCachedBufferCapacity: "
                     + maxCachedBufferCapacity + " (expected: >= 0)");
         }
+        if (remoteFreeQueueCapacity < 0) {
+            throw new IllegalArgumentException("remoteFreeQueueCapacity: "
+                    + remoteFreeQueueCapacity + " (expected: >= 0)");
+        }
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        ownerThreadId = Thread.currentThread().getId();
+        remoteFrees = remoteFreeQueueCapacity > 0 ? new RemoteFrees(remoteFreeQueueCapacity) : null;
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
             tinySubPageDirectCaches = createSubPageCaches(
                     tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
-            smallSubPageDirectCaches = createSubPageCaches(
-                    smallCacheSize, directArena.numSmallSubpagePools, SizeClass.Small);
+            smallSubPageDirectCaches = createSmallSubPageCaches(
+                    smallCacheSize, normalCacheSize, maxCachedBufferCapacity, directArena);
 
-            numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, directArena);
 
@@ -91,16 +111,14 @@ final class PoolThreadCache {
             tinySubPageDirectCaches = null;
             smallSubPageDirectCaches = null;
             normalDirectCaches = null;
-            numShiftsNormalDirect = -1;
         }
         if (heapArena != null) {
             // Create the caches for the heap allocations
             tinySubPageHeapCaches = createSubPageCaches(
                     tinyCacheSize, PoolArena.numTinySubpagePools, SizeClass.Tiny);
-            smallSubPageHeapCaches = createSubPageCaches(
-                    smallCacheSize, heapArena.numSmallSubpagePools, SizeClass.Small);
+            smallSubPageHeapCaches = createSmallSubPageCaches(
+                    smallCacheSize, normalCacheSize, maxCachedBufferCapacity, heapArena);
 
-            numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, heapArena);
 
@@ -110,7 +128,6 @@ final class PoolThreadCache {
             tinySubPageHeapCaches = null;
             smallSubPageHeapCaches = null;
             normalHeapCaches = null;
-            numShiftsNormalHeap = -1;
         }
 
         // Only check if there are caches in use.
@@ -156,11 +173,31 @@ final class PoolThreadCache {
         }
     }
 
+    /**
+     * Small size classes that span at least a page used to be normal allocations, so they are cached with the
+     * normal cache size and only up to {@code maxCachedBufferCapacity}.
+     */
+    private static <T> MemoryRegionCache<T>[] createSmallSubPageCaches(
+            int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
+        MemoryRegionCache<T>[] cache = createSubPageCaches(smallCacheSize, area.numSmallSubpagePools, SizeClass.Small);
+        if (cache != null) {
+            int size = 512;
+            for (int i = 0; i < cache.length; i++, size = PoolArena.roundUpSizeClass(size + 1)) {
+                if (size >= area.pageSize) {
+                    cache[i] = normalCacheSize > 0 && size <= maxCachedBufferCapacity ?
+                            new SubPageMemoryRegionCache<T>(normalCacheSize, SizeClass.Small) : null;
+                }
+            }
+        }
+        return cache;
+    }
+
     private static <T> MemoryRegionCache<T>[] createNormalCaches(
             int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
-        if (cacheSize > 0 && maxCachedBufferCapacity > 0) {
-            int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
-            int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
+        int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
+        if (cacheSize > 0 && max >= area.smallMaxCapacity) {
+            // One cache per normal size class between smallMaxCapacity and max.
+            int arraySize = area.normalIdx(PoolArena.roundUpSizeClass(max + 1));
 
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
@@ -173,15 +210,6 @@ final class PoolThreadCache {
         }
     }
 
-    private static int log2(int val) {
-        int res = 0;
-        while (val > 1) {
-            val >>= 1;
-            res++;
-        }
-        return res;
-    }
-
     /**
      * Try to allocate a tiny buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
@@ -210,6 +238,10 @@ final class PoolThreadCache {
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity);
+        if (!allocated && drainRemoteFrees()) {
+            // Other threads released buffers back to this cache, try again now that they were added.
+            allocated = cache.allocate(buf, reqCapacity);
+        }
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
             trim();
@@ -220,6 +252,8 @@ final class PoolThreadCache {
     /**
      * Add {@link PoolChunk} and {@code handle} to the cache if there is enough room.
      * Returns {@code true} if it fit into the cache {@code false} otherwise.
+     * If called from another thread than the one owning this cache, the buffer is queued in a
+     * {@link RemoteFreeQueue} of the calling thread and only added once the owner drains it.
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity, SizeClass sizeClass) {
@@ -227,9 +261,96 @@ final class PoolThreadCache {
         if (cache == null) {
             return false;
         }
+        if (remoteFrees != null && !isOwnerThread()) {
+            return addRemote(chunk, handle, normCapacity);
+        }
         return cache.add(chunk, handle);
     }
 
+    private boolean addRemote(PoolChunk<?> chunk, long handle, int normCapacity) {
+        if (remoteFrees.freed) {
+            // The owner is gone, let the caller release it to the arena.
+            return false;
+        }
+        Map<RemoteFrees, RemoteFreeQueue> queues = REMOTE_FREE_QUEUES.get();
+        RemoteFreeQueue queue = queues.get(remoteFrees);
+        if (queue == null) {
+            queue = new RemoteFreeQueue(remoteFrees.queueCapacity, Thread.currentThread());
+            remoteFrees.add(queue);
+            queues.put(remoteFrees, queue);
+        }
+        if (!queue.offer(chunk, handle, normCapacity)) {
+            return false;
+        }
+        if (remoteFrees.freed) {
+            // The owner was freed concurrently and may have missed what we just queued, so release it ourselves.
+            queue.drain(null);
+        }
+        return true;
+    }
+
+    /**
+     * Moves the buffers other threads released into the {@link RemoteFreeQueue}s of this cache into the caches of
+     * their size class. Must only be called by the owning thread.
+     *
+     * @return {@code true} if at least one buffer was drained.
+     */
+    private boolean drainRemoteFrees() {
+        if (remoteFrees == null) {
+            return false;
+        }
+        RemoteFreeQueue cursor = remoteFrees.head;
+        if (cursor == null) {
+            return false;
+        }
+        int drained = 0;
+        RemoteFreeQueue prev = null;
+        do {
+            drained += cursor.drain(this);
+            RemoteFreeQueue next = cursor.next;
+            if (prev != null && cursor.isEmpty() && !cursor.isReleaserAlive()) {
+                // The releasing thread is gone, so nothing is ever added to this queue anymore. Never unlink the
+                // head as other threads may concurrently add new queues in front of it.
+                prev.next = next;
+            } else {
+                prev = cursor;
+            }
+            cursor = next;
+        } while (cursor != null);
+        return drained > 0;
+    }
+
+    /**
+     * Releases the buffers other threads released into the {@link RemoteFreeQueue}s of this cache to their arena.
+     * Safe to call from any thread.
+     *
+     * @return the number of released buffers.
+     */
+    private int releaseRemoteFrees() {
+        if (remoteFrees == null) {
+            return 0;
+        }
+        int numFreed = 0;
+        for (RemoteFreeQueue queue = remoteFrees.head; queue != null; queue = queue.next) {
+            numFreed += queue.drain(null);
+        }
+        return numFreed;
+    }
+
+    private boolean isOwnerThread() {
+        return Thread.currentThread().getId() == ownerThreadId;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void addDrained(PoolChunk chunk, long handle, int normCapacity) {
+        PoolArena<?> area = chunk.arena;
+        SizeClass sizeClass = area.sizeClass(normCapacity);
+        MemoryRegionCache<?> cache = cache(area, normCapacity, sizeClass);
+        if (cache == null || !cache.add(chunk, handle)) {
+            area.freeChunk(chunk, handle, sizeClass);
+        }
+    }
+
     private MemoryRegionCache<?> cache(PoolArena<?> area, int normCapacity, SizeClass sizeClass) {
         switch (sizeClass) {
         case Normal:
@@ -255,7 +376,14 @@ final class PoolThreadCache {
     }
 
     private void free0() {
-        int numFreed = free(tinySubPageDirectCaches) +
+        if (remoteFrees != null) {
+            // Stop other threads from queueing buffers, everything that was queued so far is released below.
+            remoteFrees.freed = true;
+        }
+        // free0() may run on the ThreadDeathWatcher, so release the queued buffers straight to their arena instead
+        // of draining them into the caches which only the owner may touch.
+        int numFreed = releaseRemoteFrees() +
+                free(tinySubPageDirectCaches) +
                 free(smallSubPageDirectCaches) +
                 free(normalDirectCaches) +
                 free(tinySubPageHeapCaches) +
@@ -295,6 +423,11 @@ final class PoolThreadCache {
     }
 
     void trim() {
+        if (isOwnerThread()) {
+            drainRemoteFrees();
+        } else {
+            releaseRemoteFrees();
+        }
         trim(tinySubPageDirectCaches);
         trim(smallSubPageDirectCaches);
         trim(normalDirectCaches);
@@ -336,11 +469,10 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        int idx = area.normalIdx(normCapacity);
         if (area.isDirect()) {
-            int idx = log2(normCapacity >> numShiftsNormalDirect);
             return cache(normalDirectCaches, idx);
         }
-        int idx = log2(normCapacity >> numShiftsNormalHeap);
         return cache(normalHeapCaches, idx);
     }
 
@@ -381,6 +513,118 @@ final class PoolThreadCache {
         }
     }
 
+    /**
+     * The {@link RemoteFreeQueue}s through which other threads release buffers into a {@link PoolThreadCache}.
+     * This does not reference the {@link PoolThreadCache} itself so the releasing threads can hold it weakly.
+     */
+    private static final class RemoteFrees {
+        final int queueCapacity;
+        volatile RemoteFreeQueue head;
+        // Set once the owning thread freed its cache, nothing must be queued anymore from then on.
+        volatile boolean freed;
+
+        RemoteFrees(int queueCapacity) {
+            this.queueCapacity = MathUtil.safeFindNextPositivePowerOfTwo(queueCapacity);
+        }
+
+        synchronized void add(RemoteFreeQueue queue) {
+            queue.next = head;
+            head = queue;
+        }
+    }
+
+    /**
+     * A bounded queue of buffers that a single thread released and that were allocated out of the
+     * {@link PoolThreadCache} of another thread. This is similar in spirit to the {@code WeakOrderQueue} of the
+     * {@link Recycler}: only the releasing thread offers, so releasing a buffer neither contends with other
+     * releasing threads nor needs an atomic read-modify-write, while the owner drains all queued buffers at once.
+     */
+    private static final class RemoteFreeQueue {
+        private final PoolChunk<?>[] chunks;
+        private final long[] handles;
+        private final int[] normCapacities;
+        private final int mask;
+        private final WeakReference<Thread> releaser;
+
+        // Only written by the releasing thread.
+        private volatile int writeIndex;
+        // Only written while holding the lock of this queue.
+        private volatile int readIndex;
+
+        // Guarded by the lock of the owning RemoteFrees when this queue is added, afterwards only unlinked by the
+        // owning thread.
+        RemoteFreeQueue next;
+
+        RemoteFreeQueue(int capacity, Thread releaser) {
+            chunks = new PoolChunk[capacity];
+            handles = new long[capacity];
+            normCapacities = new int[capacity];
+            mask = capacity - 1;
+            this.releaser = new WeakReference<Thread>(releaser);
+        }
+
+        /**
+         * Queues the buffer, must only be called by the releasing thread.
+         * Returns {@code false} if the queue is full.
+         */
+        boolean offer(PoolChunk<?> chunk, long handle, int normCapacity) {
+            int writeIndex = this.writeIndex;
+            if (writeIndex - readIndex == chunks.length) {
+                return false;
+            }
+            int idx = writeIndex & mask;
+            chunks[idx] = chunk;
+            handles[idx] = handle;
+            normCapacities[idx] = normCapacity;
+            // Publishes the entry to the owner. This is a volatile write so it is ordered before the check whether
+            // the owner was freed which follows it.
+            this.writeIndex = writeIndex + 1;
+            return true;
+        }
+
+        /**
+         * Moves all queued buffers into {@code cache}, or releases them to their arena if {@code cache} is
+         * {@code null}. Returns the number of drained buffers.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        int drain(PoolThreadCache cache) {
+            if (isEmpty()) {
+                return 0;
+            }
+            // Usually only the owner drains, but the releasing thread may do so as well once the owner was freed.
+            synchronized (this) {
+                int readIndex = this.readIndex;
+                int writeIndex = this.writeIndex;
+                for (int i = readIndex; i != writeIndex; i++) {
+                    int idx = i & mask;
+                    PoolChunk chunk = chunks[idx];
+                    long handle = handles[idx];
+                    int normCapacity = normCapacities[idx];
+                    // null out so the chunk can be GC'ed once it was destroyed.
+                    chunks[idx] = null;
+                    if (cache != null) {
+                        cache.addDrained(chunk, handle, normCapacity);
+                    } else {
+                        PoolArena area = chunk.arena;
+                        area.freeChunk(chunk, handle, area.sizeClass(normCapacity));
+                    }
+                }
+                // Hands the slots back to the releasing thread.
+                this.readIndex = writeIndex;
+                return writeIndex - readIndex;
+            }
+        }
+
+        boolean isEmpty() {
+            return readIndex == writeIndex;
+        }
+
+        boolean isReleaserAlive() {
+            Thread thread = releaser.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
     private abstract static class MemoryRegionCache<T> {
         private final int size;
         private final Queue<Entry<T>> queue;
@@ -103,7 +103,7 @@ abstract class PooledByteBuf<T> extends AbstractReferenceCountedByteBuf {
                             setIndex(Math.min(readerIndex(), newCapacity), Math.min(writerIndex(), newCapacity));
                             return this;
                         }
-                    } else { // > 512 (i.e. >= 1024)
+                    } else if (chunk.arena.normalizeCapacity(newCapacity) == maxLength) { // > 512, same size class
                         length = newCapacity;
                         setIndex(Math.min(readerIndex(), newCapacity), Math.min(writerIndex(), newCapacity));
                         return this;
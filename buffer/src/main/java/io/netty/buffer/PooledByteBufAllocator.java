@@ -17,18 +17,26 @@
 package io.netty.buffer;
 
 import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.Future;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
 
@@ -43,8 +51,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
     private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
+    private static final int DEFAULT_REMOTE_FREE_QUEUE_CAPACITY;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
+    private static final long DEFAULT_IDLE_CHUNK_RELEASE_MILLIS;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -110,12 +120,21 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_CACHE_TRIM_INTERVAL = SystemPropertyUtil.getInt(
                 "io.netty.allocator.cacheTrimInterval", 8192);
 
+        // the number of buffers another thread may queue for the thread cache they were allocated out of before
+        // it releases them to the arena itself, 0 disables the queues
+        DEFAULT_REMOTE_FREE_QUEUE_CAPACITY = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.remoteFreeQueueCapacity", 256));
+
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", true);
 
         DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
 
+        // the time after which chunks that have nothing allocated out of them are released, 0 disables the release
+        DEFAULT_IDLE_CHUNK_RELEASE_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.idleChunkReleaseMillis", 0));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -135,7 +154,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.normalCacheSize: {}", DEFAULT_NORMAL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
+            logger.debug("-Dio.netty.allocator.remoteFreeQueueCapacity: {}", DEFAULT_REMOTE_FREE_QUEUE_CAPACITY);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+            logger.debug("-Dio.netty.allocator.idleChunkReleaseMillis: {}", DEFAULT_IDLE_CHUNK_RELEASE_MILLIS);
         }
     }
 
@@ -150,6 +171,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
+    private final AllocationSiteTracker allocationSites = new AllocationSiteTracker();
     private final int chunkSize;
     private final PooledByteBufAllocatorMetric metric;
 
@@ -200,7 +222,21 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, DefaultDirectChunkSource.INSTANCE);
+    }
+
+    /**
+     * Creates a new instance whose direct arenas allocate the memory of their chunks from the given
+     * {@link DirectChunkSource}, for example a {@link MappedFileChunkSource} on a {@code hugetlbfs} mount.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  DirectChunkSource directChunkSource) {
         super(preferDirect);
+        checkNotNull(directChunkSource, "directChunkSource");
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
         this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
@@ -250,7 +286,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment, directChunkSource);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -260,6 +296,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             directArenaMetrics = Collections.emptyList();
         }
         metric = new PooledByteBufAllocatorMetric(this);
+
+        if (DEFAULT_IDLE_CHUNK_RELEASE_MILLIS > 0) {
+            IdleChunkReleaseTask.schedule(this, DEFAULT_IDLE_CHUNK_RELEASE_MILLIS);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -311,7 +351,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                     new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
         }
 
-        return toLeakAwareBuffer(buf);
+        return toLeakAwareBuffer(buf, allocationSites.track(buf), true);
     }
 
     @Override
@@ -328,7 +368,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                     new UnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
         }
 
-        return toLeakAwareBuffer(buf);
+        return toLeakAwareBuffer(buf, allocationSites.track(buf), true);
     }
 
     /**
@@ -444,10 +484,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                         !((FastThreadLocalThread) current).willCleanupFastThreadLocals() : true;
                 return new PoolThreadCache(
                         heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL, useTheadWatcher);
+                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL,
+                        DEFAULT_REMOTE_FREE_QUEUE_CAPACITY, useTheadWatcher);
             }
             // No caching for non FastThreadLocalThreads.
-            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0, false);
+            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0, 0, false);
         }
 
         @Override
@@ -472,6 +513,72 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         }
     }
 
+    /**
+     * Releases the memory of the pooled chunks that had nothing allocated out of them for at least the given
+     * time and returns the number of released chunks. A chunk is considered idle from the first call of this
+     * method that found it unused, so it is meant to be called periodically, for example from an event loop.
+     * Buffers that are cached by the thread local caches keep their chunks in use.
+     */
+    public int releaseIdleChunks(long idleTime, TimeUnit unit) {
+        if (idleTime < 0) {
+            throw new IllegalArgumentException("idleTime: " + idleTime + " (expected: >= 0)");
+        }
+        long idleNanos = unit.toNanos(idleTime);
+        return releaseIdleChunks(heapArenas, idleNanos) + releaseIdleChunks(directArenas, idleNanos);
+    }
+
+    private static int releaseIdleChunks(PoolArena<?>[] arenas, long idleNanos) {
+        if (arenas == null) {
+            return 0;
+        }
+        int released = 0;
+        for (PoolArena<?> arena: arenas) {
+            released += arena.releaseIdleChunks(idleNanos);
+        }
+        return released;
+    }
+
+    /**
+     * Periodically calls {@link #releaseIdleChunks(long, TimeUnit)} from a shared daemon thread until the
+     * allocator was garbage collected.
+     */
+    private static final class IdleChunkReleaseTask implements Runnable {
+        private static final EventExecutor EXECUTOR = new DefaultEventExecutor(
+                new DefaultThreadFactory("pooledByteBufAllocatorIdleRelease", true, Thread.MIN_PRIORITY));
+
+        private final WeakReference<PooledByteBufAllocator> allocatorRef;
+        private final long idleMillis;
+        private volatile Future<?> future;
+
+        private IdleChunkReleaseTask(PooledByteBufAllocator allocator, long idleMillis) {
+            allocatorRef = new WeakReference<PooledByteBufAllocator>(allocator);
+            this.idleMillis = idleMillis;
+        }
+
+        static void schedule(PooledByteBufAllocator allocator, long idleMillis) {
+            IdleChunkReleaseTask task = new IdleChunkReleaseTask(allocator, idleMillis);
+            // Check twice per idle period so a chunk is released at most 1.5 idle periods after its last use.
+            long interval = Math.max(1, idleMillis >>> 1);
+            task.future = EXECUTOR.scheduleAtFixedRate(task, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            PooledByteBufAllocator allocator = allocatorRef.get();
+            if (allocator == null) {
+                Future<?> future = this.future;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            int released = allocator.releaseIdleChunks(idleMillis, TimeUnit.MILLISECONDS);
+            if (released > 0 && logger.isDebugEnabled()) {
+                logger.debug("Released {} idle chunk(s)", released);
+            }
+        }
+    }
+
     @Override
     public PooledByteBufAllocatorMetric metric() {
         return metric;
@@ -585,6 +692,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return usedMemory(directArenas);
     }
 
+    final List<AllocationSiteMetric> topAllocationSites(int n) {
+        return allocationSites.topAllocationSites(n);
+    }
+
     private static long usedMemory(PoolArena<?>... arenas) {
         if (arenas == null) {
             return -1;
@@ -599,6 +710,21 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return used;
     }
 
+    final long numReleasedIdleChunks() {
+        return numReleasedIdleChunks(heapArenas) + numReleasedIdleChunks(directArenas);
+    }
+
+    private static long numReleasedIdleChunks(PoolArena<?>[] arenas) {
+        if (arenas == null) {
+            return 0;
+        }
+        long released = 0;
+        for (PoolArena<?> arena: arenas) {
+            released += arena.numReleasedIdleChunks();
+        }
+        return released;
+    }
+
     final PoolThreadCache threadCache() {
         PoolThreadCache cache =  threadCache.get();
         assert cache != null;
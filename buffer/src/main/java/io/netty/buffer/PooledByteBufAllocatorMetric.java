@@ -23,7 +23,7 @@ import java.util.List;
  * Exposed metric for {@link PooledByteBufAllocator}.
  */
 @SuppressWarnings("deprecation")
-public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetric {
+public final class PooledByteBufAllocatorMetric implements AllocationSiteTrackingMetric {
 
     private final PooledByteBufAllocator allocator;
 
@@ -94,6 +94,15 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.chunkSize();
     }
 
+    /**
+     * Return the number of chunks that were released because nothing was allocated out of them for the idle period.
+     *
+     * @see PooledByteBufAllocator#releaseIdleChunks(long, java.util.concurrent.TimeUnit)
+     */
+    public long numReleasedIdleChunks() {
+        return allocator.numReleasedIdleChunks();
+    }
+
     @Override
     public long usedHeapMemory() {
         return allocator.usedHeapMemory();
@@ -104,6 +113,11 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.usedDirectMemory();
     }
 
+    @Override
+    public List<AllocationSiteMetric> topAllocationSites(int n) {
+        return allocator.topAllocationSites(n);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(256);
@@ -116,7 +130,8 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
-                .append("; chunkSize: ").append(chunkSize()).append(')');
+                .append("; chunkSize: ").append(chunkSize())
+                .append("; numReleasedIdleChunks: ").append(numReleasedIdleChunks()).append(')');
         return sb.toString();
     }
 }
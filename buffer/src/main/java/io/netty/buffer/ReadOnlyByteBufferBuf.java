@@ -15,6 +15,7 @@
  */
 package io.netty.buffer;
 
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.io.IOException;
@@ -35,9 +36,15 @@ class ReadOnlyByteBufferBuf extends AbstractReferenceCountedByteBuf {
 
     protected final ByteBuffer buffer;
     private final ByteBufAllocator allocator;
+    // The buffer which is freed (or unmapped) once the reference count drops to 0, null if it is not owned.
+    private final ByteBuffer ownedBuffer;
     private ByteBuffer tmpNioBuf;
 
     ReadOnlyByteBufferBuf(ByteBufAllocator allocator, ByteBuffer buffer) {
+        this(allocator, buffer, false);
+    }
+
+    ReadOnlyByteBufferBuf(ByteBufAllocator allocator, ByteBuffer buffer, boolean freeOnRelease) {
         super(buffer.remaining());
         if (!buffer.isReadOnly()) {
             throw new IllegalArgumentException("must be a readonly buffer: " + StringUtil.simpleClassName(buffer));
@@ -46,10 +53,15 @@ class ReadOnlyByteBufferBuf extends AbstractReferenceCountedByteBuf {
         this.allocator = allocator;
         this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
         writerIndex(this.buffer.limit());
+        ownedBuffer = freeOnRelease ? buffer : null;
     }
 
     @Override
-    protected void deallocate() { }
+    protected void deallocate() {
+        if (ownedBuffer != null) {
+            PlatformDependent.freeDirectBuffer(ownedBuffer);
+        }
+    }
 
     @Override
     public byte getByte(int index) {
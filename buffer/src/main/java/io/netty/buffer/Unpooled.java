@@ -17,9 +17,13 @@ package io.netty.buffer;
 
 import io.netty.util.internal.PlatformDependent;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -207,6 +211,62 @@ public final class Unpooled {
         }
     }
 
+    /**
+     * Creates a new read-only buffer which maps {@code length} bytes of the specified {@link FileChannel}, starting
+     * at {@code position}, into memory without copying them. The mapping is released as soon as the reference count
+     * of the returned buffer drops to {@code 0}, so neither the returned buffer nor any buffer derived from it must be
+     * accessed after that. If the current platform does not support releasing the mapping explicitly it is released
+     * once the buffer is garbage collected.
+     * <p>
+     * The file must not be truncated while it is mapped, as accessing a mapped region beyond the end of the file
+     * may crash the JVM.
+     */
+    public static ByteBuf mappedBuffer(FileChannel channel, long position, int length) throws IOException {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("position: " + position + " (expected: >= 0)");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("length: " + length + " (expected: >= 0)");
+        }
+        long size = channel.size();
+        if (position + length > size) {
+            throw new IllegalArgumentException(
+                    "position + length: " + (position + length) + " (expected: <= " + size + ')');
+        }
+        if (length == 0) {
+            return EMPTY_BUFFER;
+        }
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        if (PlatformDependent.hasUnsafe()) {
+            return new ReadOnlyUnsafeDirectByteBuf(ALLOC, buffer, true);
+        }
+        return new ReadOnlyByteBufferBuf(ALLOC, buffer, true);
+    }
+
+    /**
+     * Creates a new read-only buffer which maps the whole content of the specified {@link File} into memory
+     * without copying it. See {@link #mappedBuffer(FileChannel, long, int)} for details.
+     */
+    public static ByteBuf mappedBuffer(File file) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("file too large to be mapped: " + file + " (" + length + " bytes)");
+            }
+            // The mapping stays valid after the channel was closed.
+            return mappedBuffer(raf.getChannel(), 0, (int) length);
+        } finally {
+            raf.close();
+        }
+    }
+
     /**
      * Creates a new buffer which wraps the specified memory address. If {@code doFree} is true the
      * memoryAddress will automatically be freed once the reference count of the {@link ByteBuf} reaches {@code 0}.
@@ -20,6 +20,7 @@ import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Simplistic {@link ByteBufAllocator} implementation that does not pool anything.
@@ -79,9 +80,10 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator imp
 
     @Override
     protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
-        return PlatformDependent.hasUnsafe() ?
+        ByteBuf buf = PlatformDependent.hasUnsafe() ?
                 new InstrumentedUnpooledUnsafeHeapByteBuf(this, initialCapacity, maxCapacity) :
                 new InstrumentedUnpooledHeapByteBuf(this, initialCapacity, maxCapacity);
+        return toLeakAwareBuffer(buf, metric.allocationSites.track(buf), false);
     }
 
     @Override
@@ -93,7 +95,7 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator imp
         } else {
             buf = new InstrumentedUnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
         }
-        return disableLeakDetector ? buf : toLeakAwareBuffer(buf);
+        return toLeakAwareBuffer(buf, metric.allocationSites.track(buf), !disableLeakDetector);
     }
 
     @Override
@@ -246,9 +248,10 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator imp
         }
     }
 
-    private static final class UnpooledByteBufAllocatorMetric implements ByteBufAllocatorMetric {
+    private static final class UnpooledByteBufAllocatorMetric implements AllocationSiteTrackingMetric {
         final LongCounter directCounter = PlatformDependent.newLongCounter();
         final LongCounter heapCounter = PlatformDependent.newLongCounter();
+        final AllocationSiteTracker allocationSites = new AllocationSiteTracker();
 
         @Override
         public long usedHeapMemory() {
@@ -260,6 +263,11 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator imp
             return directCounter.value();
         }
 
+        @Override
+        public List<AllocationSiteMetric> topAllocationSites(int n) {
+            return allocationSites.topAllocationSites(n);
+        }
+
         @Override
         public String toString() {
             return StringUtil.simpleClassName(this) +
@@ -18,7 +18,11 @@ package io.netty.buffer;
 import io.netty.util.internal.PlatformDependent;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -134,6 +138,83 @@ public abstract class AbstractByteBufAllocatorTest<T extends AbstractByteBufAllo
         assertEquals(expectedUsedMemoryAfterRelease(allocator, capacity), metric.usedHeapMemory());
     }
 
+    @Test
+    public void testTopAllocationSitesTagged() {
+        T allocator = newAllocator(true);
+        AllocationSiteTrackingMetric metric =
+                (AllocationSiteTrackingMetric) ((ByteBufAllocatorMetricProvider) allocator).metric();
+        AllocationSites.Mode mode = AllocationSites.mode();
+        AllocationSites.setMode(AllocationSites.Mode.TAGGED);
+        try {
+            // Untagged allocations are not tracked.
+            allocator.directBuffer(1024).release();
+            assertTrue(metric.topAllocationSites(10).isEmpty());
+
+            assertNull(AllocationSites.tag("first"));
+            ByteBuf direct1 = allocator.directBuffer(1024);
+            ByteBuf direct2 = allocator.directBuffer(1024);
+            assertEquals("first", AllocationSites.tag("second"));
+            ByteBuf heap = allocator.heapBuffer(512);
+            assertEquals("second", AllocationSites.tag(null));
+            // The site tracking shares the wrapper of the leak detector.
+            assertFalse(direct1.unwrap() instanceof SimpleLeakAwareByteBuf);
+
+            List<AllocationSiteMetric> sites = metric.topAllocationSites(10);
+            assertEquals(2, sites.size());
+            assertSite(sites.get(0), "first", 2, 0, direct1.capacity() + direct2.capacity());
+            assertSite(sites.get(1), "second", 1, heap.capacity(), 0);
+            assertEquals(1, metric.topAllocationSites(1).size());
+
+            // Derived buffers keep the memory attributed until they are released as well.
+            ByteBuf slice = direct1.retainedSlice();
+            assertFalse(direct1.release());
+            assertSite(metric.topAllocationSites(1).get(0), "first", 2, 0, direct1.capacity() + direct2.capacity());
+            assertTrue(slice.release());
+            assertTrue(direct2.release());
+            assertTrue(heap.release());
+            for (AllocationSiteMetric site: metric.topAllocationSites(10)) {
+                assertEquals(0, site.numActiveAllocations());
+                assertEquals(0, site.usedHeapMemory());
+                assertEquals(0, site.usedDirectMemory());
+            }
+        } finally {
+            AllocationSites.tag(null);
+            AllocationSites.setMode(mode);
+        }
+    }
+
+    @Test
+    public void testTopAllocationSitesSampled() {
+        T allocator = newAllocator(true);
+        AllocationSiteTrackingMetric metric =
+                (AllocationSiteTrackingMetric) ((ByteBufAllocatorMetricProvider) allocator).metric();
+        AllocationSites.Mode mode = AllocationSites.mode();
+        int samplingInterval = AllocationSites.samplingInterval();
+        AllocationSites.setMode(AllocationSites.Mode.SAMPLED);
+        AllocationSites.setSamplingInterval(1);
+        try {
+            ByteBuf buffer = allocator.heapBuffer(256);
+            List<AllocationSiteMetric> sites = metric.topAllocationSites(10);
+            assertEquals(1, sites.size());
+            // Attributed to the first frame outside of the buffer package.
+            assertFalse(sites.get(0).site(), sites.get(0).site().startsWith("io.netty.buffer."));
+            assertSite(sites.get(0), sites.get(0).site(), 1, buffer.capacity(), 0);
+            assertTrue(buffer.release());
+            assertEquals(0, sites.get(0).numActiveAllocations());
+        } finally {
+            AllocationSites.setSamplingInterval(samplingInterval);
+            AllocationSites.setMode(mode);
+        }
+    }
+
+    private static void assertSite(AllocationSiteMetric site, String name, long numActiveAllocations,
+                                   long usedHeapMemory, long usedDirectMemory) {
+        assertEquals(name, site.site());
+        assertEquals(numActiveAllocations, site.numActiveAllocations());
+        assertEquals(usedHeapMemory, site.usedHeapMemory());
+        assertEquals(usedDirectMemory, site.usedDirectMemory());
+    }
+
     protected long expectedUsedMemory(T allocator, int capacity) {
         return capacity;
     }
@@ -106,6 +106,54 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         return false;
     }
 
+    @Test
+    public void testToComponentIndexAfterComponentsChanged() {
+        CompositeByteBuf buf = compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            buf.addComponent(true, buffer(2).writeByte(i).writeByte(i));
+        }
+        assertComponentIndexes(buf);
+
+        // Remove and insert components after the lookups were done, the cached index must not be used blindly.
+        buf.removeComponent(50);
+        buf.addComponent(0, buffer(3).writeByte(-1).writeByte(-1).writeByte(-1));
+        buf.addComponent(10, EMPTY_BUFFER);
+        buf.writerIndex(buf.capacity());
+        assertEquals(100, buf.toComponentIndex(buf.capacity() - 1));
+        assertComponentIndexes(buf);
+        assertEquals(-1, buf.getByte(2));
+        assertEquals(0, buf.getByte(3));
+        assertEquals(48, buf.getByte(buf.toByteIndex(50)));
+        assertEquals(51, buf.getByte(buf.toByteIndex(52)));
+
+        buf.discardReadComponents();
+        buf.readerIndex(5);
+        buf.discardReadComponents();
+        assertComponentIndexes(buf);
+        assertEquals(1, buf.getByte(0));
+        buf.release();
+    }
+
+    private static void assertComponentIndexes(CompositeByteBuf buf) {
+        // Access sequentially, backwards and in a scattered order.
+        for (int i = 0; i < buf.capacity(); i++) {
+            assertComponentIndex(buf, i);
+        }
+        for (int i = buf.capacity() - 1; i >= 0; i--) {
+            assertComponentIndex(buf, i);
+        }
+        for (int i = 0; i < buf.capacity(); i++) {
+            assertComponentIndex(buf, i * 31 % buf.capacity());
+        }
+    }
+
+    private static void assertComponentIndex(CompositeByteBuf buf, int offset) {
+        int cIndex = buf.toComponentIndex(offset);
+        int start = buf.toByteIndex(cIndex);
+        assertTrue(start <= offset);
+        assertTrue(offset < start + buf.internalComponent(cIndex).readableBytes());
+    }
+
     /**
      * Tests the "getBufferFor" method
      */
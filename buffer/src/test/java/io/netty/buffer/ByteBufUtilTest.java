@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
@@ -551,4 +552,112 @@ public class ByteBufUtilTest {
             buffer.release();
         }
     }
+
+    @Test
+    public void testIndexOfWordAtATime() {
+        ByteBuf[] buffers = { Unpooled.buffer(64), Unpooled.directBuffer(64), Unpooled.compositeBuffer()
+                .addComponents(true, Unpooled.buffer(13).writeZero(13), Unpooled.buffer(51).writeZero(51)) };
+        for (ByteBuf buffer : buffers) {
+            try {
+                buffer.writerIndex(64).setZero(0, 64);
+                for (int i = 0; i < 64; i++) {
+                    buffer.setByte(i, 'x');
+                    if (i > 0) {
+                        // A byte which only differs in the high bit must not be reported.
+                        buffer.setByte(i - 1, 'x' | 0x80);
+                    }
+                    for (int from = 0; from <= i; from++) {
+                        assertEquals(i, buffer.indexOf(from, 64, (byte) 'x'));
+                        assertEquals(i, ByteBufUtil.indexOf(buffer, from, 64, (byte) 'x'));
+                    }
+                    assertEquals(-1, buffer.indexOf(i + 1, 64, (byte) 'x'));
+                    assertEquals(-1, buffer.indexOf(0, i, (byte) 'x'));
+                    buffer.setByte(i, 0);
+                }
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testForEachByteFindCrlfWordAtATime() {
+        ByteBuf buffer = Unpooled.buffer(40);
+        try {
+            buffer.writeBytes(new byte[40], 0, 40);
+            for (int i = 0; i < 40; i++) {
+                buffer.setByte(i, '\r');
+                assertEquals(i, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+                assertEquals(i, buffer.forEachByte(ByteProcessor.FIND_CR));
+                assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_LF));
+                buffer.setByte(i, '\n');
+                assertEquals(i, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+                assertEquals(i, buffer.forEachByte(ByteProcessor.FIND_LF));
+                assertEquals(i == 39 ? -1 : i + 1, buffer.forEachByte(ByteProcessor.FIND_NUL));
+                buffer.setByte(i, 'a');
+            }
+            assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_NUL));
+            assertEquals(-1, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testIsTextWithAsciiWordAtATime() {
+        byte[] bytes = new byte[37];
+        Arrays.fill(bytes, (byte) 'a');
+        assertIsText(bytes, true, CharsetUtil.US_ASCII);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) 0x80;
+            assertIsText(bytes, false, CharsetUtil.US_ASCII);
+            bytes[i] = 'a';
+        }
+    }
+
+    @Test
+    public void testEqualsIgnoreCase() {
+        ByteBuf a = Unpooled.copiedBuffer("Content-Type: Text/Plain; charset=UTF-8", CharsetUtil.US_ASCII);
+        ByteBuf b = Unpooled.copiedBuffer("xcontent-type: text/plain; CHARSET=utf-8", CharsetUtil.US_ASCII);
+        ByteBuf c = Unpooled.copiedBuffer("content-type: text/plain; charset=utf-9", CharsetUtil.US_ASCII);
+        // '@' and '[' are adjacent to the upper case letters, '`' and '{' to the lower case ones.
+        ByteBuf d = Unpooled.copiedBuffer("@[@[@[@[`{", CharsetUtil.US_ASCII);
+        ByteBuf e = Unpooled.copiedBuffer("`{`{`{`{@[", CharsetUtil.US_ASCII);
+        try {
+            assertTrue(ByteBufUtil.equalsIgnoreCase(a, 0, b, 1, a.readableBytes()));
+            assertTrue(ByteBufUtil.equalsIgnoreCase(a, 0, b.order(ByteOrder.LITTLE_ENDIAN), 1, a.readableBytes()));
+            assertFalse(ByteBufUtil.equalsIgnoreCase(a, 0, c, 0, a.readableBytes()));
+            assertTrue(ByteBufUtil.equalsIgnoreCase(a, 0, c, 0, a.readableBytes() - 1));
+            assertFalse(ByteBufUtil.equalsIgnoreCase(a, 0, b, 0, a.readableBytes()));
+            assertFalse(ByteBufUtil.equalsIgnoreCase(d, 0, e, 0, d.readableBytes()));
+            assertFalse(ByteBufUtil.equalsIgnoreCase(d, 8, e, 8, 2));
+        } finally {
+            a.release();
+            b.release();
+            c.release();
+            d.release();
+            e.release();
+        }
+    }
+
+    @Test
+    public void testCompareWithCommonPrefix() {
+        for (int i = 0; i < 40; i++) {
+            byte[] bytes = new byte[40];
+            Arrays.fill(bytes, (byte) 'a');
+            ByteBuf a = Unpooled.wrappedBuffer(bytes.clone());
+            bytes[i] = 'b';
+            ByteBuf b = Unpooled.wrappedBuffer(bytes);
+            try {
+                assertTrue(ByteBufUtil.compare(a, b) < 0);
+                assertTrue(ByteBufUtil.compare(b, a) > 0);
+                assertTrue(ByteBufUtil.compare(a, b.order(ByteOrder.LITTLE_ENDIAN)) < 0);
+                assertEquals(0, ByteBufUtil.compare(a, a.duplicate()));
+                assertTrue(ByteBufUtil.compare(a.slice(0, i), b) < 0);
+            } finally {
+                a.release();
+                b.release();
+            }
+        }
+    }
 }
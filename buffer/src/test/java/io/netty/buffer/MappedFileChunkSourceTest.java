@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class MappedFileChunkSourceTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("netty-chunks", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(directory.delete());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoDirectory() {
+        new MappedFileChunkSource(new File(directory, "missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPageSize() {
+        new MappedFileChunkSource(directory, 4097);
+    }
+
+    @Test
+    public void testAllocateAndRelease() {
+        MappedFileChunkSource source = new MappedFileChunkSource(directory);
+        ByteBuffer memory = source.allocate(8192);
+        try {
+            assertTrue(memory.isDirect());
+            assertEquals(8192, memory.capacity());
+            // The file is deleted once it was mapped.
+            assertEquals(0, directory.list().length);
+            memory.putLong(8184, 42);
+            assertEquals(42, memory.getLong(8184));
+        } finally {
+            source.release(memory);
+        }
+    }
+
+    @Test
+    public void testPooledAllocator() {
+        CountingChunkSource source = new CountingChunkSource(new MappedFileChunkSource(directory));
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 4, 0, 0, 0, true, 0, source);
+        ByteBuf buffer = allocator.directBuffer(1024);
+        try {
+            assertEquals(1, source.allocated);
+            buffer.writeLong(1).writeBytes(new byte[1000]).writeLong(2);
+            assertEquals(1, buffer.readLong());
+            assertEquals(2, buffer.getLong(buffer.writerIndex() - 8));
+
+            // Huge buffers are not pooled and so not allocated out of the chunk source.
+            ByteBuf huge = allocator.directBuffer(allocator.metric().chunkSize() + 1);
+            huge.release();
+            assertEquals(1, source.allocated);
+        } finally {
+            buffer.release();
+        }
+        allocator.releaseIdleChunks(0, TimeUnit.MILLISECONDS);
+        allocator.releaseIdleChunks(0, TimeUnit.MILLISECONDS);
+        assertEquals(1, source.released);
+    }
+
+    @Test
+    public void testPooledAllocatorWithAlignment() {
+        assumeTrue(PooledByteBufAllocator.isDirectMemoryCacheAlignmentSupported());
+        CountingChunkSource source = new CountingChunkSource(new MappedFileChunkSource(directory));
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 4, 0, 0, 0, true, 64, source);
+        ByteBuf buffer = allocator.directBuffer(1024);
+        try {
+            // The mapped memory is page aligned, so the chunk is not allocated any larger.
+            assertEquals(allocator.metric().chunkSize(), source.lastCapacity);
+            assertEquals(0, buffer.memoryAddress() & 63);
+        } finally {
+            buffer.release();
+        }
+        allocator.releaseIdleChunks(0, TimeUnit.MILLISECONDS);
+        allocator.releaseIdleChunks(0, TimeUnit.MILLISECONDS);
+        assertEquals(1, source.released);
+    }
+
+    private static final class CountingChunkSource implements DirectChunkSource {
+        private final DirectChunkSource source;
+        int allocated;
+        int released;
+        int lastCapacity;
+
+        CountingChunkSource(DirectChunkSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public ByteBuffer allocate(int capacity) {
+            allocated++;
+            lastCapacity = capacity;
+            return source.allocate(capacity);
+        }
+
+        @Override
+        public int alignment() {
+            return source.alignment();
+        }
+
+        @Override
+        public void release(ByteBuffer memory) {
+            released++;
+            source.release(memory);
+        }
+    }
+}
@@ -20,14 +20,18 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PoolArenaTest {
 
     @Test
     public void testNormalizeCapacity() throws Exception {
         PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 0);
-        int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
-        int[] expectedResult = {0, 16, 512, 1024, 1024, 2048};
+        int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025, 9 * 1024, 33 * 1024};
+        int[] expectedResult = {0, 16, 512, 1024, 1024, 1280, 10 * 1024, 40 * 1024};
         for (int i = 0; i < reqCapacities.length; i ++) {
             Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
         }
@@ -36,8 +40,8 @@ public class PoolArenaTest {
     @Test
     public void testNormalizeAlignedCapacity() throws Exception {
         PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 64);
-        int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
-        int[] expectedResult = {0, 64, 512, 1024, 1024, 2048};
+        int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025, 513};
+        int[] expectedResult = {0, 64, 512, 1024, 1024, 1280, 640};
         for (int i = 0; i < reqCapacities.length; i ++) {
             Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
         }
@@ -62,7 +66,7 @@ public class PoolArenaTest {
         // create small buffer
         final ByteBuf b2 = allocator.directBuffer(800);
         // create normal buffer
-        final ByteBuf b3 = allocator.directBuffer(8192 * 2);
+        final ByteBuf b3 = allocator.directBuffer(8192 * 4);
 
         Assert.assertNotNull(b1);
         Assert.assertNotNull(b2);
@@ -87,4 +91,127 @@ public class PoolArenaTest {
         Assert.assertEquals(1, metric.numNormalDeallocations());
         Assert.assertEquals(1, metric.numNormalAllocations());
     }
+
+    @Test
+    public void testFinerSizeClassesReduceChunkUsage() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true);
+        PoolArenaMetric metric = allocator.directArenas().get(0);
+
+        // 9k is served out of a 4 page subpage run that holds 3 elements, 33k out of a trimmed 5 page run.
+        ByteBuf small = allocator.directBuffer(9 * 1024);
+        ByteBuf normal = allocator.directBuffer(33 * 1024);
+        try {
+            Assert.assertEquals(1, metric.numSmallAllocations());
+            Assert.assertEquals(1, metric.numNormalAllocations());
+            Assert.assertEquals(8192 * 4 + 40 * 1024, usedBytes(metric));
+        } finally {
+            small.release();
+            normal.release();
+        }
+        // The last subpage of a size class is kept in the pool.
+        Assert.assertEquals(8192 * 4, usedBytes(metric));
+        Assert.assertEquals(8192 * 4, subpageBytes(metric));
+    }
+
+    @Test
+    public void testRandomAllocationsDoNotOverlap() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 7, 0, 0, 0, true);
+        PoolArenaMetric metric = allocator.directArenas().get(0);
+        Random random = new Random(42);
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        for (int i = 0; i < 2000; i ++) {
+            if (!buffers.isEmpty() && random.nextInt(3) == 0) {
+                ByteBuf buf = buffers.remove(random.nextInt(buffers.size()));
+                assertFilled(buf);
+                buf.release();
+            } else {
+                int size = random.nextInt(random.nextBoolean() ? 4096 : 8192 * 40) + 1;
+                ByteBuf buf = allocator.directBuffer(size);
+                buf.writerIndex(size);
+                for (int j = 0; j < size; j ++) {
+                    buf.setByte(j, i);
+                }
+                buffers.add(buf);
+            }
+        }
+        for (ByteBuf buf: buffers) {
+            assertFilled(buf);
+            buf.release();
+        }
+        Assert.assertEquals(subpageBytes(metric), usedBytes(metric));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentCrossThreadRelease() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0, true);
+        PoolArenaMetric metric = allocator.directArenas().get(0);
+        final int numThreads = 4;
+        final int numBuffers = 4096;
+        final List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        Random random = new Random();
+        for (int i = 0; i < numBuffers; i++) {
+            buffers.add(allocator.directBuffer(16 + random.nextInt(4096)));
+        }
+
+        // Release the buffers from other threads than the one that allocated them while it keeps allocating.
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < numThreads; i++) {
+            final int offset = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = offset; j < numBuffers; j += numThreads) {
+                            Assert.assertTrue(buffers.get(j).release());
+                        }
+                    } catch (Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (int i = 0; i < numBuffers; i++) {
+            ByteBuf buf = allocator.directBuffer(16 + random.nextInt(4096));
+            buf.release();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        Assert.assertNull(error.get());
+
+        Assert.assertEquals(0, metric.numActiveAllocations());
+        Assert.assertEquals(metric.numAllocations(), metric.numDeallocations());
+        Assert.assertEquals(subpageBytes(metric), usedBytes(metric));
+    }
+
+    private static void assertFilled(ByteBuf buf) {
+        byte expected = buf.getByte(0);
+        for (int i = 1; i < buf.writerIndex(); i ++) {
+            Assert.assertEquals(expected, buf.getByte(i));
+        }
+    }
+
+    private static long subpageBytes(PoolArenaMetric metric) {
+        long used = 0;
+        for (PoolSubpageMetric subpage: metric.tinySubpages()) {
+            used += subpage.pageSize();
+        }
+        for (PoolSubpageMetric subpage: metric.smallSubpages()) {
+            used += subpage.pageSize();
+        }
+        return used;
+    }
+
+    private static long usedBytes(PoolArenaMetric metric) {
+        long used = 0;
+        for (PoolChunkListMetric list: metric.chunkLists()) {
+            for (PoolChunkMetric chunk: list) {
+                used += chunk.chunkSize() - chunk.freeBytes();
+            }
+        }
+        return used;
+    }
 }
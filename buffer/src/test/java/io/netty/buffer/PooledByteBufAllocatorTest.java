@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
@@ -165,6 +166,43 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertEquals(max, m.maxUsage());
     }
 
+    @Test
+    public void testReleaseIdleChunks() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, 0);
+        ByteBuf normal = allocator.directBuffer(64 * 1024);
+        ByteBuf small = allocator.directBuffer(1024);
+        ByteBuf tiny = allocator.directBuffer(16);
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+        long chunkSize = metric.chunkSize();
+        try {
+            // Chunks that are in use are never released.
+            assertEquals(0, allocator.releaseIdleChunks(0, MILLISECONDS));
+            assertEquals(0, allocator.releaseIdleChunks(0, MILLISECONDS));
+            assertEquals(chunkSize, metric.usedDirectMemory());
+        } finally {
+            normal.release();
+            small.release();
+            tiny.release();
+        }
+        // The empty subpages are still kept in their pools but do not keep the chunk alive.
+        assertEquals(chunkSize, metric.usedDirectMemory());
+        assertEquals(0, allocator.releaseIdleChunks(1, TimeUnit.HOURS));
+        assertEquals(0, allocator.releaseIdleChunks(1, TimeUnit.HOURS));
+        assertEquals(chunkSize, metric.usedDirectMemory());
+
+        // The chunk is idle since the first of the previous calls.
+        assertEquals(1, allocator.releaseIdleChunks(0, MILLISECONDS));
+        assertEquals(0, metric.usedDirectMemory());
+        assertEquals(1, metric.numReleasedIdleChunks());
+        assertEquals(0, metric.directArenas().get(0).smallSubpages().size() +
+                metric.directArenas().get(0).tinySubpages().size());
+
+        // The allocator keeps working after the release.
+        ByteBuf buffer = allocator.directBuffer(1024);
+        assertEquals(chunkSize, metric.usedDirectMemory());
+        buffer.release();
+    }
+
     @Test
     public void testSmallSubpageMetric() {
         PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
@@ -245,6 +283,88 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         testThreadCacheDestroyedByThreadDeathWatcher(false);
     }
 
+    @Test(timeout = 4000)
+    public void testReleaseFromOtherThreadReturnsToOwnerCache() throws InterruptedException {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 64, 64, 16, true);
+        PoolArenaMetric metric = allocator.metric().directArenas().get(0);
+        final ByteBuf buf = allocator.directBuffer(1024);
+        assertEquals(1, metric.numSmallAllocations());
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                buf.release();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        // The buffer was handed back to the cache of this thread instead of the arena.
+        assertEquals(0, metric.numSmallDeallocations());
+        ByteBuf buf2 = allocator.directBuffer(1024);
+        assertEquals(1, metric.numSmallAllocations());
+        buf2.release();
+        assertEquals(0, metric.numSmallDeallocations());
+    }
+
+    @Test(timeout = 4000)
+    public void testReleaseFromOtherThreadAfterOwnerExit() throws InterruptedException {
+        final PooledByteBufAllocator allocator =
+                new PooledByteBufAllocator(true, 0, 1, 8192, 11, 64, 64, 16, true);
+        PoolArenaMetric metric = allocator.metric().directArenas().get(0);
+        final AtomicReference<ByteBuf> ref = new AtomicReference<ByteBuf>();
+        FastThreadLocalThread thread = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                ref.set(allocator.directBuffer(1024));
+            }
+        });
+        assertTrue(thread.willCleanupFastThreadLocals());
+        thread.start();
+        thread.join();
+        assertEquals(0, allocator.metric().numThreadLocalCaches());
+
+        // The cache of the allocating thread is gone, so the buffer must be released to the arena.
+        assertTrue(ref.get().release());
+        assertEquals(1, metric.numSmallDeallocations());
+        assertEquals(0, metric.numActiveAllocations());
+    }
+
+    @Test(timeout = 4000)
+    public void testQueuedRemoteFreesReleasedWhenOwnerExits() throws InterruptedException {
+        final PooledByteBufAllocator allocator =
+                new PooledByteBufAllocator(true, 0, 1, 8192, 11, 64, 64, 16, true);
+        PoolArenaMetric metric = allocator.metric().directArenas().get(0);
+        final AtomicReference<ByteBuf> ref = new AtomicReference<ByteBuf>();
+        final CountDownLatch allocated = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        FastThreadLocalThread thread = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                ref.set(allocator.directBuffer(1024));
+                allocated.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        allocated.await();
+
+        // The owner is still alive, so the buffer is queued for it instead of being released to the arena.
+        assertTrue(ref.get().release());
+        assertEquals(0, metric.numSmallDeallocations());
+        released.countDown();
+        thread.join();
+
+        // Freeing the cache of the owner must also release what other threads queued for it.
+        assertEquals(0, allocator.metric().numThreadLocalCaches());
+        assertEquals(1, metric.numSmallDeallocations());
+        assertEquals(0, metric.numActiveAllocations());
+    }
+
     @Test (timeout = 4000)
     public void testThreadCacheDestroyedAfterExitRun() throws InterruptedException {
         testThreadCacheDestroyedByThreadDeathWatcher(true);
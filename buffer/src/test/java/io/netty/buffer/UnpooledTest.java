@@ -18,7 +18,10 @@ package io.netty.buffer;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.ArrayList;
@@ -721,4 +724,51 @@ public class UnpooledTest {
             wrappedBuffer.release();
         }
     }
+
+    @Test
+    public void testMappedBuffer() throws Exception {
+        byte[] bytes = new byte[4096 + 17];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        File file = File.createTempFile("netty-", ".tmp");
+        file.deleteOnExit();
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+
+            ByteBuf buffer = mappedBuffer(file);
+            assertTrue(buffer.isReadOnly());
+            assertTrue(buffer.isDirect());
+            assertEquals(wrappedBuffer(bytes), buffer);
+            assertTrue(buffer.release());
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                buffer = mappedBuffer(raf.getChannel(), 4095, 18);
+                assertEquals(wrappedBuffer(bytes, 4095, 18), buffer);
+                // The retained slice keeps the mapping alive.
+                ByteBuf slice = buffer.retainedSlice(1, 2);
+                assertFalse(buffer.release());
+                assertEquals(bytes[4096], slice.getByte(0));
+                assertTrue(slice.release());
+
+                assertSame(EMPTY_BUFFER, mappedBuffer(raf.getChannel(), bytes.length, 0));
+                try {
+                    mappedBuffer(raf.getChannel(), 1, bytes.length);
+                    fail();
+                } catch (IllegalArgumentException expected) {
+                    // expected
+                }
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
 }
@@ -108,7 +108,10 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
                 return promise;
             }
 
-            PromiseCombiner combiner = new PromiseCombiner();
+            // Nobody can observe the outcome of the writes if the promise is void, so pass it on as it is instead of
+            // combining intermediate promises.
+            final boolean isVoidPromise = promise.isVoid();
+            PromiseCombiner combiner = isVoidPromise ? null : new PromiseCombiner();
             for (;;) {
                 ByteBuf nextBuf = nextReadableBuf(channel);
                 boolean compressedEndOfStream = nextBuf == null && endOfStream;
@@ -117,8 +120,13 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
                     compressedEndOfStream = nextBuf == null;
                 }
 
-                ChannelPromise bufPromise = ctx.newPromise();
-                combiner.add(bufPromise);
+                ChannelPromise bufPromise;
+                if (isVoidPromise) {
+                    bufPromise = promise;
+                } else {
+                    bufPromise = ctx.newPromise();
+                    combiner.add(bufPromise);
+                }
                 super.writeData(ctx, streamId, buf, padding, compressedEndOfStream, bufPromise);
                 if (nextBuf == null) {
                     break;
@@ -127,7 +135,9 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
                 padding = 0; // Padding is only communicated once on the first iteration
                 buf = nextBuf;
             }
-            combiner.finish(promise);
+            if (combiner != null) {
+                combiner.finish(promise);
+            }
         } catch (Throwable cause) {
             promise.tryFailure(cause);
         } finally {
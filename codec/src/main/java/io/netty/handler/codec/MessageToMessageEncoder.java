@@ -112,12 +112,14 @@ public abstract class MessageToMessageEncoder<I> extends ChannelOutboundHandlerA
                 } else if (sizeMinusOne > 0) {
                     // Check if we can use a voidPromise for our extra writes to reduce GC-Pressure
                     // See https://github.com/netty/netty/issues/2525
-                    ChannelPromise voidPromise = ctx.voidPromise();
-                    boolean isVoidPromise = promise == voidPromise;
+                    //
+                    // Any void promise is passed on as it is, so the extra writes keep the semantics of the promise
+                    // the message was written with.
+                    boolean isVoidPromise = promise.isVoid();
                     for (int i = 0; i < sizeMinusOne; i ++) {
                         ChannelPromise p;
                         if (isVoidPromise) {
-                            p = voidPromise;
+                            p = promise;
                         } else {
                             p = ctx.newPromise();
                         }
@@ -16,11 +16,16 @@
 package io.netty.handler.codec;
 
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.*;
+
 
 public class MessageToMessageEncoderTest {
 
@@ -37,4 +42,36 @@ public class MessageToMessageEncoderTest {
         });
         channel.writeOutbound(new Object());
     }
+
+    @Test
+    public void testVoidPromiseIsPreserved() {
+        final List<ChannelPromise> promises = new ArrayList<ChannelPromise>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                promises.add(promise);
+                ctx.write(msg, promise);
+            }
+        }, new MessageToMessageEncoder<String>() {
+            @Override
+            protected void encode(ChannelHandlerContext ctx, String msg, List<Object> out) throws Exception {
+                for (int i = 0; i < msg.length(); i++) {
+                    out.add(msg.charAt(i));
+                }
+            }
+        });
+
+        ChannelPromise voidPromise = channel.unsafe().voidPromise();
+        channel.writeAndFlush("abc", voidPromise);
+
+        assertEquals(3, promises.size());
+        for (ChannelPromise promise : promises) {
+            assertSame(voidPromise, promise);
+        }
+        assertEquals('a', channel.readOutbound());
+        assertEquals('b', channel.readOutbound());
+        assertEquals('c', channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
 }
@@ -0,0 +1,667 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.StringUtil.simpleClassName;
+
+/**
+ * A {@link Timer} which uses a hierarchy of timing wheels and so is optimized for a large number of pending
+ * approximated timeouts.
+ *
+ * <h3>Tick Duration and Levels</h3>
+ *
+ * Like {@link HashedWheelTimer} this timer does not execute the scheduled {@link TimerTask} on time but checks on
+ * every tick if there are any {@link TimerTask}s behind the schedule. Unlike {@link HashedWheelTimer}, which keeps
+ * every timeout in a single wheel and so has to visit long timeouts once per revolution, this timer keeps timeouts
+ * in one of several levels of wheels. Level {@code n} covers {@code ticksPerWheel^(n + 1)} ticks, so each slot of a
+ * higher level covers a whole revolution of the level below it. When the wheel below completes a revolution the
+ * matching slot of the next level is cascaded (its timeouts are moved to the lower levels), which means every
+ * timeout is touched at most once per level instead of once per revolution.
+ * <p>
+ * Adding and cancelling a {@link Timeout} are both O(1): new and cancelled timeouts are handed to the worker thread
+ * through lock-free queues and processed on the next tick.
+ *
+ * <h3>Expiry Executor</h3>
+ *
+ * By default the expired {@link TimerTask}s are executed on the worker thread. If an {@link EventExecutor} is
+ * supplied all the {@link TimerTask}s which expire in the same tick are handed to it as a single batch, which keeps
+ * the worker thread free to tick and lets the tasks run on the thread that owns the state they touch.
+ *
+ * <h3>Do not create many instances.</h3>
+ *
+ * {@link HierarchicalWheelTimer} creates a new thread whenever it is instantiated and started, so share one instance
+ * across your application.
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int workerState; // 0 - init, 1 - started, 2 - shut down
+
+    private final Worker worker = new Worker();
+    private final Thread workerThread;
+    private final EventExecutor expiryExecutor;
+
+    private final long tickDuration;
+    // wheels[level][slot]
+    private final Bucket[][] wheels;
+    private final int wheelBits;
+    private final int mask;
+    // The maximum number of ticks a timeout can be placed in the future, timeouts which are further away will be
+    // placed in the last slot of the highest level and re-placed once it is cascaded.
+    private final long maxTicks;
+
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+    private final Queue<HierarchicalWheelTimeout> timeouts = PlatformDependent.newMpscQueue();
+    private final Queue<HierarchicalWheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+    private final long maxPendingTimeouts;
+
+    private volatile long startTime;
+
+    /**
+     * Creates a new timer with the default thread factory ({@link Executors#defaultThreadFactory()}), a tick
+     * duration of 100 milliseconds and 4 levels of 256 ticks each.
+     */
+    public HierarchicalWheelTimer() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new timer with a tick duration of 100 milliseconds and 4 levels of 256 ticks each.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with 4 levels of 256 ticks each.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which is dedicated to
+     *                       {@link TimerTask} execution.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, null);
+    }
+
+    /**
+     * Creates a new timer with 4 levels of 256 ticks each.
+     *
+     * @param threadFactory  a {@link ThreadFactory} that creates a background {@link Thread} which drives the wheels.
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @param expiryExecutor the {@link EventExecutor} on which the expired {@link TimerTask}s are executed or
+     *                       {@code null} if they should be executed by the background {@link Thread}.
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit,
+                                  EventExecutor expiryExecutor) {
+        this(threadFactory, tickDuration, unit, 256, 4, expiryExecutor, -1);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory      a {@link ThreadFactory} that creates a background {@link Thread} which drives the
+     *                           wheels.
+     * @param tickDuration       the duration between tick
+     * @param unit               the time unit of the {@code tickDuration}
+     * @param ticksPerWheel      the size of each wheel, will be rounded up to the next power of two
+     * @param levels             the number of wheels
+     * @param expiryExecutor     the {@link EventExecutor} on which the expired {@link TimerTask}s are executed or
+     *                           {@code null} if they should be executed by the background {@link Thread}.
+     * @param maxPendingTimeouts the maximum number of pending timeouts after which call to {@code newTimeout} will
+     *                           result in {@link RejectedExecutionException} being thrown. No maximum pending
+     *                           timeouts limit is assumed if this value is 0 or negative.
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if either of {@code tickDuration}, {@code ticksPerWheel} and
+     *                                  {@code levels} is &lt;= 0 or the wheels would cover more than 2^62 ticks
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit,
+                                  int ticksPerWheel, int levels, EventExecutor expiryExecutor,
+                                  long maxPendingTimeouts) {
+        if (threadFactory == null) {
+            throw new NullPointerException("threadFactory");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1073741824) {
+            throw new IllegalArgumentException("ticksPerWheel: " + ticksPerWheel + " (expected: 0-1073741824)");
+        }
+        if (levels <= 0) {
+            throw new IllegalArgumentException("levels must be greater than 0: " + levels);
+        }
+
+        // Normalize ticksPerWheel to power of two (and at least 2 so every level covers more than a single tick).
+        wheelBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(ticksPerWheel - 1));
+        if ((long) wheelBits * levels > 62) {
+            throw new IllegalArgumentException(
+                    "ticksPerWheel^levels must not be greater than 2^62: " + ticksPerWheel + '^' + levels);
+        }
+        mask = (1 << wheelBits) - 1;
+        maxTicks = (1L << wheelBits * levels) - 1;
+        wheels = new Bucket[levels][1 << wheelBits];
+        for (Bucket[] wheel: wheels) {
+            for (int i = 0; i < wheel.length; i ++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.expiryExecutor = expiryExecutor;
+        this.maxPendingTimeouts = maxPendingTimeouts;
+        workerThread = threadFactory.newThread(worker);
+    }
+
+    /**
+     * Starts the background thread explicitly.  The background thread will start automatically on demand even if
+     * you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+
+        // Wait until the startTime is initialized by the worker.
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() + ".stop() cannot be called from " +
+                    TimerTask.class.getSimpleName());
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            WORKER_STATE_UPDATER.set(this, WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        long pendingTimeoutsCount = pendingTimeouts.incrementAndGet();
+
+        if (maxPendingTimeouts > 0 && pendingTimeoutsCount > maxPendingTimeouts) {
+            pendingTimeouts.decrementAndGet();
+            throw new RejectedExecutionException("Number of pending timeouts ("
+                + pendingTimeoutsCount + ") is greater than or equal to maximum allowed pending "
+                + "timeouts (" + maxPendingTimeouts + ")");
+        }
+
+        start();
+
+        // Add the timeout to the timeout queue which will be processed on the next tick.
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HierarchicalWheelTimeout timeout = new HierarchicalWheelTimeout(this, task, deadline);
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts of this {@link Timer}.
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    private final class Worker implements Runnable {
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        private final List<HierarchicalWheelTimeout> expired = new ArrayList<HierarchicalWheelTimeout>();
+
+        private long tick;
+
+        @Override
+        public void run() {
+            // Initialize the startTime.
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // We use 0 as an indicator for the uninitialized value here, so make sure it's not 0 when initialized.
+                startTime = 1;
+            }
+
+            // Notify the other threads waiting for the initialization at start().
+            startTimeInitialized.countDown();
+
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    processCancelledTasks();
+                    cascade();
+                    transferTimeoutsToBuckets();
+                    expireTimeouts(wheels[0][(int) (tick & mask)]);
+                    tick++;
+                }
+            } while (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (Bucket[] wheel: wheels) {
+                for (Bucket bucket: wheel) {
+                    bucket.clearTimeouts(unprocessedTimeouts);
+                }
+            }
+            for (;;) {
+                HierarchicalWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTasks();
+        }
+
+        /**
+         * Moves the timeouts of the higher level slots which start at the current tick to the lower levels.
+         */
+        private void cascade() {
+            // Find the highest level whose lower levels all completed a revolution.
+            int level = 0;
+            while (level + 1 < wheels.length && (tick >>> wheelBits * level & mask) == 0) {
+                level++;
+            }
+            // Cascade top-down so the timeouts can trickle down more than one level in the same tick.
+            for (; level > 0; level--) {
+                Bucket bucket = wheels[level][(int) (tick >>> wheelBits * level & mask)];
+                for (;;) {
+                    HierarchicalWheelTimeout timeout = bucket.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    if (!timeout.isCancelled()) {
+                        place(timeout);
+                    }
+                }
+            }
+        }
+
+        private void transferTimeoutsToBuckets() {
+            // transfer only max. 100000 timeouts per tick to prevent a thread to stale the workerThread when it just
+            // adds new timeouts in a loop.
+            for (int i = 0; i < 100000; i++) {
+                HierarchicalWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    // all processed
+                    break;
+                }
+                if (timeout.isCancelled()) {
+                    // Was cancelled in the meantime.
+                    continue;
+                }
+                place(timeout);
+            }
+        }
+
+        private void place(HierarchicalWheelTimeout timeout) {
+            // Ensure we don't schedule for past.
+            long ticks = Math.max(timeout.deadline / tickDuration, tick);
+            long remaining = ticks - tick;
+            if (remaining > maxTicks) {
+                remaining = maxTicks;
+                ticks = tick + maxTicks;
+            }
+            int level = 0;
+            while (remaining >>> wheelBits * (level + 1) != 0) {
+                level++;
+            }
+            wheels[level][(int) (ticks >>> wheelBits * level & mask)].add(timeout);
+        }
+
+        private void expireTimeouts(Bucket bucket) {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = bucket.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.compareAndSetState(HierarchicalWheelTimeout.ST_INIT,
+                                                HierarchicalWheelTimeout.ST_EXPIRED)) {
+                    // Cancelled, the pending count is updated once the cancellation is processed.
+                    continue;
+                }
+                pendingTimeouts.decrementAndGet();
+                if (expiryExecutor == null) {
+                    timeout.expire();
+                } else {
+                    expired.add(timeout);
+                }
+            }
+            if (!expired.isEmpty()) {
+                final HierarchicalWheelTimeout[] batch = expired.toArray(new HierarchicalWheelTimeout[0]);
+                expired.clear();
+                try {
+                    expiryExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (HierarchicalWheelTimeout timeout: batch) {
+                                timeout.expire();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Failed to submit {} expired timeout(s) to {}", batch.length, expiryExecutor, e);
+                }
+            }
+        }
+
+        private void processCancelledTasks() {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    // all processed
+                    break;
+                }
+                timeout.remove();
+            }
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise (with Long.MIN_VALUE changed by +1)
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return -Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+
+                // See https://github.com/netty/netty/issues/356
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    private static final class HierarchicalWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final TimerTask task;
+        private final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // This will be used to chain timeouts in a Bucket via a double-linked-list.
+        // As only the workerThread will act on it there is no need for synchronization / volatile.
+        HierarchicalWheelTimeout next;
+        HierarchicalWheelTimeout prev;
+
+        // The bucket to which the timeout was added
+        Bucket bucket;
+
+        HierarchicalWheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // The worker thread unlinks the timeout from its bucket on the next tick.
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        void remove() {
+            Bucket bucket = this.bucket;
+            if (bucket != null) {
+                bucket.remove(this);
+            }
+            timer.pendingTimeouts.decrementAndGet();
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE_UPDATER.compareAndSet(this, expected, state);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+
+    /**
+     * Bucket that stores HierarchicalWheelTimeouts in a double-linked-list so a cancelled timeout can be removed
+     * in O(1). The timeouts act as the nodes themselves so no extra object creation is needed.
+     */
+    private static final class Bucket {
+        private HierarchicalWheelTimeout head;
+        private HierarchicalWheelTimeout tail;
+
+        void add(HierarchicalWheelTimeout timeout) {
+            assert timeout.bucket == null;
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(HierarchicalWheelTimeout timeout) {
+            HierarchicalWheelTimeout next = timeout.next;
+            HierarchicalWheelTimeout prev = timeout.prev;
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            } else {
+                tail = prev;
+            }
+            // null out prev, next and bucket to allow for GC.
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        HierarchicalWheelTimeout poll() {
+            HierarchicalWheelTimeout head = this.head;
+            if (head != null) {
+                remove(head);
+            }
+            return head;
+        }
+
+        /**
+         * Clear this bucket and add all not expired / cancelled {@link Timeout}s to the given {@link Set}.
+         */
+        void clearTimeouts(Set<Timeout> set) {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isExpired() || timeout.isCancelled()) {
+                    continue;
+                }
+                set.add(timeout);
+            }
+        }
+    }
+}
@@ -46,7 +46,18 @@ public class ResourceLeakDetector<T> {
     private static final String PROP_TARGET_RECORDS = "io.netty.leakDetection.targetRecords";
     private static final int DEFAULT_TARGET_RECORDS = 4;
 
+    private static final String PROP_MAX_TRACKED = "io.netty.leakDetection.maxTracked";
+    private static final int DEFAULT_MAX_TRACKED = 1024;
+
+    private static final String PROP_RECORD_SAMPLING_INTERVAL = "io.netty.leakDetection.recordSamplingInterval";
+    private static final int DEFAULT_RECORD_SAMPLING_INTERVAL = 16;
+
+    // The sampling interval of the ADAPTIVE level never grows beyond this.
+    private static final int MAX_ADAPTIVE_SAMPLING_INTERVAL = 1 << 20;
+
     private static final int TARGET_RECORDS;
+    static final int MAX_TRACKED;
+    private static final int RECORD_SAMPLING_INTERVAL;
 
     /**
      * Represents the level of resource leak detection.
@@ -70,12 +81,20 @@ public class ResourceLeakDetector<T> {
          * Enables paranoid resource leak detection which reports where the leaked object was accessed recently,
          * at the cost of the highest possible overhead (for testing purposes only).
          */
-        PARANOID;
+        PARANOID,
+        /**
+         * Enables adaptive sampling resource leak detection which reports where the leaked object was accessed
+         * recently at a bounded overhead, so it can be left enabled in production. Objects are sampled at least as
+         * rarely as with {@link #SIMPLE}, and less often when more than {@code io.netty.leakDetection.maxTracked}
+         * objects are tracked at the same time. Only one out of {@code io.netty.leakDetection.recordSamplingInterval}
+         * accesses of a tracked object is recorded.
+         */
+        ADAPTIVE;
 
         /**
          * Returns level based on string value. Accepts also string that represents ordinal number of enum.
          *
-         * @param levelStr - level string : DISABLED, SIMPLE, ADVANCED, PARANOID. Ignores case.
+         * @param levelStr - level string : DISABLED, SIMPLE, ADVANCED, PARANOID, ADAPTIVE. Ignores case.
          * @return corresponding level or SIMPLE level in case of no match.
          */
         static Level parseLevel(String levelStr) {
@@ -115,11 +134,16 @@ public class ResourceLeakDetector<T> {
         Level level = Level.parseLevel(levelStr);
 
         TARGET_RECORDS = SystemPropertyUtil.getInt(PROP_TARGET_RECORDS, DEFAULT_TARGET_RECORDS);
+        MAX_TRACKED = Math.max(1, SystemPropertyUtil.getInt(PROP_MAX_TRACKED, DEFAULT_MAX_TRACKED));
+        RECORD_SAMPLING_INTERVAL = Math.max(1, SystemPropertyUtil.getInt(
+                PROP_RECORD_SAMPLING_INTERVAL, DEFAULT_RECORD_SAMPLING_INTERVAL));
 
         ResourceLeakDetector.level = level;
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_TARGET_RECORDS, TARGET_RECORDS);
+            logger.debug("-D{}: {}", PROP_MAX_TRACKED, MAX_TRACKED);
+            logger.debug("-D{}: {}", PROP_RECORD_SAMPLING_INTERVAL, RECORD_SAMPLING_INTERVAL);
         }
     }
 
@@ -158,6 +182,37 @@ public class ResourceLeakDetector<T> {
         return level;
     }
 
+    /**
+     * Receives the leaks detected by all {@link ResourceLeakDetector}s instead of them being logged.
+     */
+    public interface LeakListener {
+
+        /**
+         * Called once for each distinct leak that was detected.
+         *
+         * @param resourceType the type of the leaked resource.
+         * @param records the recent access records of the leaked resource or an empty {@link String} if the leak
+         *                was not traced.
+         */
+        void onLeak(String resourceType, String records);
+    }
+
+    private static volatile LeakListener leakListener;
+
+    /**
+     * Sets the {@link LeakListener} that receives all detected leaks, or {@code null} to log them again.
+     */
+    public static void setLeakListener(LeakListener leakListener) {
+        ResourceLeakDetector.leakListener = leakListener;
+    }
+
+    /**
+     * Returns the {@link LeakListener} that receives all detected leaks or {@code null} if they are logged.
+     */
+    public static LeakListener getLeakListener() {
+        return leakListener;
+    }
+
     /** the collection of active resources */
     private final ConcurrentMap<DefaultResourceLeak<?>, LeakEntry> allLeaks = PlatformDependent.newConcurrentHashMap();
 
@@ -166,6 +221,8 @@ public class ResourceLeakDetector<T> {
 
     private final String resourceType;
     private final int samplingInterval;
+    // The current sampling interval of the ADAPTIVE level.
+    private volatile int adaptiveSamplingInterval;
 
     /**
      * @deprecated use {@link ResourceLeakDetectorFactory#newResourceLeakDetector(Class, int, long)}.
@@ -220,6 +277,7 @@ public class ResourceLeakDetector<T> {
 
         this.resourceType = resourceType;
         this.samplingInterval = samplingInterval;
+        adaptiveSamplingInterval = samplingInterval;
     }
 
     /**
@@ -252,15 +310,53 @@ public class ResourceLeakDetector<T> {
             return null;
         }
 
-        if (level.ordinal() < Level.PARANOID.ordinal()) {
+        if (level == Level.ADAPTIVE) {
+            int interval = adaptiveSamplingInterval;
+            if ((PlatformDependent.threadLocalRandom().nextInt(interval)) == 0) {
+                reportLeak();
+                if (adaptSamplingInterval(interval)) {
+                    return new DefaultResourceLeak(obj, refQueue, allLeaks, RECORD_SAMPLING_INTERVAL);
+                }
+            }
+            return null;
+        }
+        if (level != Level.PARANOID) {
             if ((PlatformDependent.threadLocalRandom().nextInt(samplingInterval)) == 0) {
                 reportLeak();
-                return new DefaultResourceLeak(obj, refQueue, allLeaks);
+                return new DefaultResourceLeak(obj, refQueue, allLeaks, 1);
             }
             return null;
         }
         reportLeak();
-        return new DefaultResourceLeak(obj, refQueue, allLeaks);
+        return new DefaultResourceLeak(obj, refQueue, allLeaks, 1);
+    }
+
+    /**
+     * Adapts the sampling interval of the {@link Level#ADAPTIVE} level to the number of currently tracked objects.
+     * This is only called for sampled objects, so its cost does not matter much.
+     *
+     * @return {@code true} if the sampled object should be tracked, {@code false} if the budget is exhausted.
+     */
+    private boolean adaptSamplingInterval(int interval) {
+        int tracked = allLeaks.size();
+        if (tracked >= MAX_TRACKED) {
+            // Over budget, so sample less often. The interval stays a power of two if it was one.
+            if (interval < MAX_ADAPTIVE_SAMPLING_INTERVAL) {
+                adaptiveSamplingInterval = interval << 1;
+            }
+            return false;
+        }
+        if (tracked < MAX_TRACKED >>> 1 && interval > samplingInterval) {
+            adaptiveSamplingInterval = Math.max(samplingInterval, interval >>> 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current sampling interval of the {@link Level#ADAPTIVE} level.
+     */
+    final int adaptiveSamplingInterval() {
+        return adaptiveSamplingInterval;
     }
 
     private void clearRefQueue() {
@@ -275,7 +371,7 @@ public class ResourceLeakDetector<T> {
     }
 
     private void reportLeak() {
-        if (!logger.isErrorEnabled()) {
+        if (leakListener == null && !logger.isErrorEnabled()) {
             clearRefQueue();
             return;
         }
@@ -308,6 +404,9 @@ public class ResourceLeakDetector<T> {
      * have been detected.
      */
     protected void reportTracedLeak(String resourceType, String records) {
+        if (notifyLeakListener(resourceType, records)) {
+            return;
+        }
         logger.error(
                 "LEAK: {}.release() was not called before it's garbage-collected. " +
                 "See http://netty.io/wiki/reference-counted-objects.html for more information.{}",
@@ -319,6 +418,9 @@ public class ResourceLeakDetector<T> {
      * have been detected.
      */
     protected void reportUntracedLeak(String resourceType) {
+        if (notifyLeakListener(resourceType, EMPTY_STRING)) {
+            return;
+        }
         logger.error("LEAK: {}.release() was not called before it's garbage-collected. " +
                 "Enable advanced leak reporting to find out where the leak occurred. " +
                 "To enable advanced leak reporting, " +
@@ -327,6 +429,19 @@ public class ResourceLeakDetector<T> {
                 resourceType, PROP_LEVEL, Level.ADVANCED.name().toLowerCase(), simpleClassName(this));
     }
 
+    private static boolean notifyLeakListener(String resourceType, String records) {
+        LeakListener listener = leakListener;
+        if (listener == null) {
+            return false;
+        }
+        try {
+            listener.onLeak(resourceType, records);
+        } catch (Throwable t) {
+            logger.warn("An exception was thrown by {}.onLeak()", listener.getClass().getName(), t);
+        }
+        return true;
+    }
+
     /**
      * @deprecated This method will no longer be invoked by {@link ResourceLeakDetector}.
      */
@@ -355,11 +470,14 @@ public class ResourceLeakDetector<T> {
 
         private final ConcurrentMap<DefaultResourceLeak<?>, LeakEntry> allLeaks;
         private final int trackedHash;
+        // Only one out of recordSamplingInterval accesses is recorded.
+        private final int recordSamplingInterval;
 
         DefaultResourceLeak(
                 Object referent,
                 ReferenceQueue<Object> refQueue,
-                ConcurrentMap<DefaultResourceLeak<?>, LeakEntry> allLeaks) {
+                ConcurrentMap<DefaultResourceLeak<?>, LeakEntry> allLeaks,
+                int recordSamplingInterval) {
             super(referent, refQueue);
 
             assert referent != null;
@@ -371,6 +489,7 @@ public class ResourceLeakDetector<T> {
             allLeaks.put(this, LeakEntry.INSTANCE);
             headUpdater.set(this, Record.BOTTOM);
             this.allLeaks = allLeaks;
+            this.recordSamplingInterval = recordSamplingInterval;
         }
 
         @Override
@@ -410,6 +529,11 @@ public class ResourceLeakDetector<T> {
          * thread won the race.
          */
         private void record0(Object hint) {
+            // Always record the first access so the report shows at least roughly where the object was created.
+            if (recordSamplingInterval > 1 && headUpdater.get(this) != Record.BOTTOM &&
+                    PlatformDependent.threadLocalRandom().nextInt(recordSamplingInterval) != 0) {
+                return;
+            }
             // Check TARGET_RECORDS > 0 here to avoid similar check before remove from and add to lastRecords
             if (TARGET_RECORDS > 0) {
                 Record oldHead;
@@ -15,6 +15,9 @@
  */
 package io.netty.util.concurrent;
 
+import io.netty.util.internal.MpscBlockingConsumerQueue;
+
+import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -58,6 +61,13 @@ public final class DefaultEventExecutor extends SingleThreadEventExecutor {
         super(parent, executor, true, maxPendingTasks, rejectedExecutionHandler);
     }
 
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This executor only ever consumes from its own thread, so a lock-free MPSC queue keeps producers from
+        // contending on the lock of a LinkedBlockingQueue while still allowing takeTask() to block.
+        return new MpscBlockingConsumerQueue<Runnable>(maxPendingTasks);
+    }
+
     @Override
     protected void run() {
         for (;;) {
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link EventExecutorMetrics} which keeps counters and a histogram of the task execution times. One instance should
+ * be used per {@link SingleThreadEventExecutor}. All values may be read from any thread.
+ */
+@UnstableApi
+public final class DefaultEventExecutorMetrics implements EventExecutorMetrics {
+    // Bucket i holds the tasks with an execution time in [2^i, 2^(i+1)) nanoseconds, and bucket 0 also those with 0.
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray taskTimeHistogram = new AtomicLongArray(BUCKETS);
+    private final LongCounter wakeups = PlatformDependent.newLongCounter();
+
+    // Only written by the thread of the SingleThreadEventExecutor.
+    private volatile long taskCount;
+    private volatile long taskTimeNanos;
+    private volatile long maxTaskTimeNanos;
+    private volatile long ioTimeNanos;
+    private volatile int pendingTasks;
+    private volatile int maxPendingTasks;
+    private volatile long scheduledTaskCount;
+    private volatile long scheduledTaskLagNanos;
+    private volatile long maxScheduledTaskLagNanos;
+
+    @Override
+    public void tasksPending(int pendingTasks) {
+        this.pendingTasks = pendingTasks;
+        if (pendingTasks > maxPendingTasks) {
+            maxPendingTasks = pendingTasks;
+        }
+    }
+
+    @Override
+    public void taskExecuted(long executionTimeNanos) {
+        taskCount++;
+        taskTimeNanos += executionTimeNanos;
+        if (executionTimeNanos > maxTaskTimeNanos) {
+            maxTaskTimeNanos = executionTimeNanos;
+        }
+        int bucket = executionTimeNanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(executionTimeNanos);
+        taskTimeHistogram.lazySet(bucket, taskTimeHistogram.get(bucket) + 1);
+    }
+
+    @Override
+    public void scheduledTaskDue(long lagNanos) {
+        scheduledTaskCount++;
+        scheduledTaskLagNanos += lagNanos;
+        if (lagNanos > maxScheduledTaskLagNanos) {
+            maxScheduledTaskLagNanos = lagNanos;
+        }
+    }
+
+    @Override
+    public void ioProcessed(long ioTimeNanos) {
+        this.ioTimeNanos += ioTimeNanos;
+    }
+
+    @Override
+    public void wakeup() {
+        wakeups.increment();
+    }
+
+    /**
+     * Returns the number of tasks that were run.
+     */
+    public long taskCount() {
+        return taskCount;
+    }
+
+    /**
+     * Returns the total time spent running tasks.
+     */
+    public long taskTimeNanos() {
+        return taskTimeNanos;
+    }
+
+    /**
+     * Returns the longest time it took to run a single task.
+     */
+    public long maxTaskTimeNanos() {
+        return maxTaskTimeNanos;
+    }
+
+    /**
+     * Returns the total time spent processing I/O. Together with {@link #taskTimeNanos()} this gives the split of
+     * the time an event loop spent on I/O versus tasks.
+     */
+    public long ioTimeNanos() {
+        return ioTimeNanos;
+    }
+
+    /**
+     * Returns the number of pending tasks which was reported last.
+     */
+    public int pendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * Returns the highest number of pending tasks which was reported.
+     */
+    public int maxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    /**
+     * Returns the number of scheduled tasks which became due.
+     */
+    public long scheduledTaskCount() {
+        return scheduledTaskCount;
+    }
+
+    /**
+     * Returns the total time by which scheduled tasks were late.
+     */
+    public long scheduledTaskLagNanos() {
+        return scheduledTaskLagNanos;
+    }
+
+    /**
+     * Returns the longest time by which a scheduled task was late.
+     */
+    public long maxScheduledTaskLagNanos() {
+        return maxScheduledTaskLagNanos;
+    }
+
+    /**
+     * Returns the number of times the {@link SingleThreadEventExecutor} was woken up by another thread.
+     */
+    public long wakeupCount() {
+        return wakeups.value();
+    }
+
+    /**
+     * Returns a copy of the histogram of the task execution times. The element {@code i} holds the number of tasks
+     * which took at least {@code 2^i} (or {@code 0} for {@code i == 0}) and less than {@code 2^(i+1)} nanoseconds.
+     */
+    public long[] taskTimeHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = taskTimeHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the task execution times, based on
+     * {@link #taskTimeHistogram()}.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}.
+     */
+    public long taskTimePercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0-100)");
+        }
+        long[] histogram = taskTimeHistogram();
+        long total = 0;
+        for (long count: histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(256)
+                .append("DefaultEventExecutorMetrics(taskCount: ").append(taskCount)
+                .append("; taskTimeNanos: ").append(taskTimeNanos)
+                .append("; maxTaskTimeNanos: ").append(maxTaskTimeNanos)
+                .append("; ioTimeNanos: ").append(ioTimeNanos)
+                .append("; pendingTasks: ").append(pendingTasks)
+                .append("; maxPendingTasks: ").append(maxPendingTasks)
+                .append("; scheduledTaskCount: ").append(scheduledTaskCount)
+                .append("; maxScheduledTaskLagNanos: ").append(maxScheduledTaskLagNanos)
+                .append("; wakeupCount: ").append(wakeupCount())
+                .append(')').toString();
+    }
+}
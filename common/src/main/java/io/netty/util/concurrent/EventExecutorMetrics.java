@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Receives metrics of a {@link SingleThreadEventExecutor}, see
+ * {@link SingleThreadEventExecutor#setMetrics(EventExecutorMetrics)}. All methods but {@link #wakeup()} are called by
+ * the thread of the {@link SingleThreadEventExecutor}, so implementations must be cheap and must not block.
+ *
+ * @see DefaultEventExecutorMetrics
+ */
+@UnstableApi
+public interface EventExecutorMetrics {
+
+    /**
+     * Called before the {@link SingleThreadEventExecutor} starts to run the tasks in its task queue.
+     *
+     * @param pendingTasks the number of tasks in the task queue.
+     */
+    void tasksPending(int pendingTasks);
+
+    /**
+     * Called after a task was run.
+     *
+     * @param executionTimeNanos the time it took to run the task.
+     */
+    void taskExecuted(long executionTimeNanos);
+
+    /**
+     * Called when a scheduled task is due and so moved to the task queue.
+     *
+     * @param lagNanos the time since the deadline of the scheduled task.
+     */
+    void scheduledTaskDue(long lagNanos);
+
+    /**
+     * Called by event loops after processing I/O.
+     *
+     * @param ioTimeNanos the time it took to process the I/O events.
+     */
+    void ioProcessed(long ioTimeNanos);
+
+    /**
+     * Called when another thread wakes up the {@link SingleThreadEventExecutor}. May be called by any thread.
+     */
+    void wakeup();
+}
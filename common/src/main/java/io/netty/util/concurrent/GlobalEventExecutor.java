@@ -15,13 +15,13 @@
  */
 package io.netty.util.concurrent;
 
+import io.netty.util.internal.MpscBlockingConsumerQueue;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -40,7 +40,8 @@ public final class GlobalEventExecutor extends AbstractScheduledEventExecutor {
 
     public static final GlobalEventExecutor INSTANCE = new GlobalEventExecutor();
 
-    final BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<Runnable>();
+    // Only the single TaskRunner thread that is currently started consumes from this queue.
+    final BlockingQueue<Runnable> taskQueue = new MpscBlockingConsumerQueue<Runnable>();
     final ScheduledFutureTask<Void> quietPeriodTask = new ScheduledFutureTask<Void>(
             this, Executors.<Void>callable(new Runnable() {
         @Override
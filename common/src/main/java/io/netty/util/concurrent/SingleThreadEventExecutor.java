@@ -98,6 +98,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     @SuppressWarnings({ "FieldMayBeFinal", "unused" })
     private volatile int state = ST_NOT_STARTED;
 
+    private volatile EventExecutorMetrics metrics;
+
     private volatile long gracefulShutdownQuietPeriod;
     private volatile long gracefulShutdownTimeout;
     private long gracefulShutdownStartTime;
@@ -273,12 +275,16 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
     private boolean fetchFromScheduledTaskQueue() {
         long nanoTime = AbstractScheduledEventExecutor.nanoTime();
         Runnable scheduledTask  = pollScheduledTask(nanoTime);
+        EventExecutorMetrics metrics = scheduledTask == null ? null : this.metrics;
         while (scheduledTask != null) {
             if (!taskQueue.offer(scheduledTask)) {
                 // No space left in the task queue add it back to the scheduledTaskQueue so we pick it up again.
                 scheduledTaskQueue().add((ScheduledFutureTask<?>) scheduledTask);
                 return false;
             }
+            if (metrics != null) {
+                metrics.scheduledTaskDue(nanoTime - ((ScheduledFutureTask<?>) scheduledTask).deadlineNanos());
+            }
             scheduledTask  = pollScheduledTask(nanoTime);
         }
         return true;
@@ -349,6 +355,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         assert inEventLoop();
         boolean fetchedAll;
         boolean ranAtLeastOne = false;
+        reportPendingTasks();
 
         do {
             fetchedAll = fetchFromScheduledTaskQueue();
@@ -376,8 +383,9 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (task == null) {
             return false;
         }
+        final EventExecutorMetrics metrics = this.metrics;
         for (;;) {
-            safeExecute(task);
+            safeExecute(task, metrics);
             task = pollTaskFrom(taskQueue);
             if (task == null) {
                 return true;
@@ -390,6 +398,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
      * the tasks in the task queue and returns if it ran longer than {@code timeoutNanos}.
      */
     protected boolean runAllTasks(long timeoutNanos) {
+        reportPendingTasks();
         fetchFromScheduledTaskQueue();
         Runnable task = pollTask();
         if (task == null) {
@@ -397,11 +406,12 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
 
+        final EventExecutorMetrics metrics = this.metrics;
         final long deadline = ScheduledFutureTask.nanoTime() + timeoutNanos;
         long runTasks = 0;
         long lastExecutionTime;
         for (;;) {
-            safeExecute(task);
+            safeExecute(task, metrics);
 
             runTasks ++;
 
@@ -426,6 +436,42 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         return true;
     }
 
+    private void reportPendingTasks() {
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.tasksPending(taskQueue.size());
+        }
+    }
+
+    private static void safeExecute(Runnable task, EventExecutorMetrics metrics) {
+        if (metrics == null) {
+            safeExecute(task);
+        } else {
+            long startTime = System.nanoTime();
+            safeExecute(task);
+            metrics.taskExecuted(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Set the {@link EventExecutorMetrics} which receives the metrics of this {@link SingleThreadEventExecutor}, or
+     * {@code null} (the default) to not collect any metrics. Sub-classes which process I/O or wake up their thread
+     * themselves should report these via {@link #metrics()}.
+     */
+    @UnstableApi
+    public final void setMetrics(EventExecutorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetrics} of this {@link SingleThreadEventExecutor} or {@code null} if none is
+     * set.
+     */
+    @UnstableApi
+    public final EventExecutorMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * Invoked before returning from {@link #runAllTasks()} and {@link #runAllTasks(long)}.
      */
@@ -470,7 +516,12 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (!inEventLoop || state == ST_SHUTTING_DOWN) {
             // Use offer as we actually only need this to unblock the thread and if offer fails we do not care as there
             // is already something in the queue.
-            taskQueue.offer(WAKEUP_TASK);
+            if (taskQueue.offer(WAKEUP_TASK)) {
+                EventExecutorMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.wakeup();
+                }
+            }
         }
     }
 
@@ -767,8 +818,17 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         } else {
             startThread();
             addTask(task);
-            if (isShutdown() && removeTask(task)) {
-                reject();
+            if (isShutdown()) {
+                boolean reject = false;
+                try {
+                    reject = removeTask(task);
+                } catch (UnsupportedOperationException e) {
+                    // The task queue does not support removal (like the lock-free MPSC queues) so the best thing we
+                    // can do is to move on and hope the task is picked up before the executor is terminated.
+                }
+                if (reject) {
+                    reject();
+                }
             }
         }
 
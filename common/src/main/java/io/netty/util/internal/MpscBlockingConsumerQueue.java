@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A {@link BlockingQueue} which is safe to use for multiple producers (different threads) and a single consumer
+ * (one thread!). It is backed by the lock-free queue returned by {@link PlatformDependent#newMpscQueue()} and only
+ * the consumer side is blocking: {@link #take()} and {@link #poll(long, TimeUnit)} park the consumer thread, which is
+ * unparked by the next successful {@link #offer(Object)}. Producers never take a lock.
+ * <p>
+ * <strong>This class is for internal use only and may change or be removed without notice.</strong>
+ */
+public final class MpscBlockingConsumerQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final Queue<E> queue;
+    private final int capacity;
+
+    // The consumer thread that is currently parked (or about to park), null otherwise.
+    private volatile Thread waiter;
+
+    /**
+     * Create a new unbounded instance.
+     */
+    public MpscBlockingConsumerQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new instance which will hold at most {@code maxCapacity} elements.
+     */
+    public MpscBlockingConsumerQueue(int maxCapacity) {
+        capacity = checkPositive(maxCapacity, "maxCapacity");
+        queue = maxCapacity == Integer.MAX_VALUE ? PlatformDependent.<E>newMpscQueue()
+                                                 : PlatformDependent.<E>newMpscQueue(maxCapacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (!queue.offer(checkNotNull(e, "e"))) {
+            return false;
+        }
+        // The backing queue publishes the element with a full fence (the CAS on the producer index), so either the
+        // consumer observes the element when it re-checks the queue after publishing itself as waiter, or we observe
+        // the waiter here.
+        Thread waiter = this.waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = queue.poll();
+        if (e != null) {
+            return e;
+        }
+        waiter = Thread.currentThread();
+        try {
+            for (;;) {
+                e = queue.poll();
+                if (e != null) {
+                    return e;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = queue.poll();
+        if (e != null) {
+            return e;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try {
+            for (;;) {
+                e = queue.poll();
+                if (e != null) {
+                    return e;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public E poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public E peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(0, capacity - size());
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c, "c");
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int i = 0;
+        for (; i < maxElements; i++) {
+            E e = queue.poll();
+            if (e == null) {
+                break;
+            }
+            c.add(e);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the iterator of the backing queue, which may throw an {@link UnsupportedOperationException}.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return queue.iterator();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods which operate on eight bytes packed into a {@code long} at once
+ * (SIMD within a register).
+ */
+public final class SWARUtil {
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private SWARUtil() {
+    }
+
+    /**
+     * Returns a word which holds {@code value} in each of its eight bytes.
+     */
+    public static long compilePattern(byte value) {
+        return (value & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Returns a word which has the high bit set in exactly those bytes of {@code word} which are equal to the
+     * byte compiled into {@code pattern} via {@link #compilePattern(byte)}, and all other bits cleared.
+     * Unlike the classic {@code (x - 0x01..) & ~x & 0x80..} trick this never reports false positives, so the
+     * result can be used to locate the match regardless of the byte order.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(tmp | input | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Returns the offset of the first matching byte in a non-zero result of {@link #applyPattern(long, long)}.
+     *
+     * @param result the result of {@link #applyPattern(long, long)}.
+     * @param isBigEndian {@code true} if the word was read in big endian byte order.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+
+    /**
+     * Returns {@code true} if any of the eight bytes of {@code word} is not a valid ASCII character.
+     */
+    public static boolean containsNonAscii(long word) {
+        return (word & HIGH_BITS) != 0;
+    }
+
+    /**
+     * Converts all ASCII upper case characters among the eight bytes of {@code word} to lower case, leaving
+     * all other bytes untouched.
+     */
+    public static long toLowerCaseAscii(long word) {
+        long heptets = word & LOW_SEVEN_BITS;
+        // The high bit of each byte is set if the byte is >= 'A', respectively >= 'Z' + 1. Neither sum can carry
+        // into the neighbouring byte as the high bits were masked out before.
+        long geA = heptets + 0x3F3F3F3F3F3F3F3FL;
+        long geZ1 = heptets + 0x2525252525252525L;
+        long upper = (geA ^ geZ1) & ~word & HIGH_BITS;
+        return word | (upper >>> 2);
+    }
+}
@@ -18,11 +18,19 @@ package io.netty.util;
 import org.junit.Test;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
 public class ResourceLeakDetectorTest {
 
     @Test(timeout = 60000)
@@ -95,6 +103,74 @@ public class ResourceLeakDetectorTest {
         assertNoErrors(error);
     }
 
+    @Test(timeout = 60000)
+    public void testAdaptiveLevelRespectsBudget() {
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.ADAPTIVE);
+        try {
+            ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(Object.class, 1);
+            List<Object> objects = new ArrayList<Object>();
+            List<ResourceLeakTracker<Object>> leaks = new ArrayList<ResourceLeakTracker<Object>>();
+            for (int i = 0; i < ResourceLeakDetector.MAX_TRACKED * 2; i++) {
+                Object object = new Object();
+                objects.add(object);
+                ResourceLeakTracker<Object> leak = detector.track(object);
+                if (leak != null) {
+                    leaks.add(leak);
+                }
+            }
+            // Once the budget is exhausted the detector backs off.
+            assertEquals(ResourceLeakDetector.MAX_TRACKED, leaks.size());
+            assertTrue(detector.adaptiveSamplingInterval() > 1);
+
+            for (int i = 0; i < leaks.size(); i++) {
+                assertTrue(leaks.get(i).close(objects.get(i)));
+            }
+            // With nothing tracked anymore it goes back to the configured sampling interval.
+            while (detector.adaptiveSamplingInterval() > 1) {
+                Object object = new Object();
+                ResourceLeakTracker<Object> leak = detector.track(object);
+                if (leak != null) {
+                    assertTrue(leak.close(object));
+                }
+            }
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLeakListener() throws Exception {
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        final BlockingQueue<String> leakedTypes = new LinkedBlockingQueue<String>();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        ResourceLeakDetector.setLeakListener(new ResourceLeakDetector.LeakListener() {
+            @Override
+            public void onLeak(String resourceType, String records) {
+                leakedTypes.add(resourceType);
+            }
+        });
+        try {
+            ResourceLeakDetector<Object> detector = new ResourceLeakDetector<Object>(Object.class, 1);
+            leak(detector);
+            // Leaks are reported when the next object is tracked.
+            while (leakedTypes.isEmpty()) {
+                System.gc();
+                Object object = new Object();
+                assertTrue(detector.track(object).close(object));
+                Thread.sleep(10);
+            }
+            assertEquals("Object", leakedTypes.take());
+        } finally {
+            ResourceLeakDetector.setLeakListener(null);
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    private static void leak(ResourceLeakDetector<Object> detector) {
+        assertNotNull(detector.track(new Object()));
+    }
+
     // Mimic the way how we implement our classes that should help with leak detection
     private static final  class LeakAwareResource implements Resource {
         private final Resource resource;
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DefaultEventExecutorMetricsTest {
+
+    @Test
+    public void testTaskTimeHistogram() {
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics();
+        metrics.taskExecuted(0);
+        metrics.taskExecuted(1);
+        metrics.taskExecuted(1000);
+        metrics.taskExecuted(1023);
+        metrics.taskExecuted(1024);
+
+        long[] histogram = metrics.taskTimeHistogram();
+        assertEquals(2, histogram[0]);
+        assertEquals(2, histogram[9]);
+        assertEquals(1, histogram[10]);
+        assertEquals(5, metrics.taskCount());
+        assertEquals(3048, metrics.taskTimeNanos());
+        assertEquals(1024, metrics.maxTaskTimeNanos());
+    }
+
+    @Test
+    public void testTaskTimePercentile() {
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics();
+        assertEquals(0, metrics.taskTimePercentileNanos(99));
+        for (int i = 0; i < 99; i++) {
+            metrics.taskExecuted(100);
+        }
+        metrics.taskExecuted(1000000);
+
+        assertEquals(127, metrics.taskTimePercentileNanos(50));
+        assertEquals(127, metrics.taskTimePercentileNanos(99));
+        assertEquals((1 << 20) - 1, metrics.taskTimePercentileNanos(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new DefaultEventExecutorMetrics().taskTimePercentileNanos(101);
+    }
+
+    @Test
+    public void testPendingTasksAndScheduledLag() {
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics();
+        metrics.tasksPending(10);
+        metrics.tasksPending(3);
+        assertEquals(3, metrics.pendingTasks());
+        assertEquals(10, metrics.maxPendingTasks());
+
+        metrics.scheduledTaskDue(5);
+        metrics.scheduledTaskDue(20);
+        assertEquals(2, metrics.scheduledTaskCount());
+        assertEquals(25, metrics.scheduledTaskLagNanos());
+        assertEquals(20, metrics.maxScheduledTaskLagNanos());
+
+        metrics.wakeup();
+        metrics.ioProcessed(42);
+        assertEquals(1, metrics.wakeupCount());
+        assertEquals(42, metrics.ioTimeNanos());
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -100,6 +101,66 @@ public class SingleThreadEventExecutorTest {
         executor.shutdownGracefully();
     }
 
+    @Test(timeout = 5000)
+    public void testMetrics() throws Exception {
+        final SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null,
+                Executors.defaultThreadFactory(), false) {
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                    }
+                    runAllTasks();
+                }
+            }
+        };
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics();
+        executor.setMetrics(metrics);
+        Assert.assertSame(metrics, executor.metrics());
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            // Queue up some tasks while the executor is blocked in the task it took via takeTask(), so these are run
+            // via runAllTasks().
+            for (int i = 0; i < 10; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                });
+            }
+            ScheduledFuture<?> scheduled = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            Thread.sleep(10);
+            latch.countDown();
+            scheduled.syncUninterruptibly();
+
+            Assert.assertTrue(metrics.wakeupCount() > 0);
+            Assert.assertEquals(1, metrics.scheduledTaskCount());
+            Assert.assertTrue(metrics.maxScheduledTaskLagNanos() >= 0);
+            Assert.assertTrue(metrics.taskCount() >= 10);
+            Assert.assertTrue(metrics.maxPendingTasks() >= 10);
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Test(expected = RejectedExecutionException.class, timeout = 3000)
     public void testInvokeAnyInEventLoop() {
         testInvokeInEventLoop(true, false);
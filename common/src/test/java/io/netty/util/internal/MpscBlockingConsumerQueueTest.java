@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MpscBlockingConsumerQueueTest {
+
+    @Test(timeout = 5000)
+    public void testTakeIsWokenUpByOffer() throws Exception {
+        final MpscBlockingConsumerQueue<Integer> queue = new MpscBlockingConsumerQueue<Integer>();
+        final AtomicReference<Integer> taken = new AtomicReference<Integer>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(queue.take());
+                } catch (InterruptedException ignore) {
+                    // ignore
+                }
+                latch.countDown();
+            }
+        });
+        consumer.start();
+        Thread.sleep(100);
+        assertTrue(queue.offer(1));
+        latch.await();
+        assertEquals(Integer.valueOf(1), taken.get());
+        consumer.join();
+    }
+
+    @Test(timeout = 5000)
+    public void testPollTimesOut() throws Exception {
+        MpscBlockingConsumerQueue<Integer> queue = new MpscBlockingConsumerQueue<Integer>();
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(queue.offer(2));
+        assertEquals(Integer.valueOf(2), queue.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testTakeIsInterruptible() throws Exception {
+        final MpscBlockingConsumerQueue<Integer> queue = new MpscBlockingConsumerQueue<Integer>();
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                } catch (Throwable t) {
+                    cause.set(t);
+                }
+            }
+        });
+        consumer.start();
+        Thread.sleep(100);
+        consumer.interrupt();
+        consumer.join();
+        assertTrue(cause.get() instanceof InterruptedException);
+    }
+
+    @Test(timeout = 10000)
+    public void testMultipleProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+        final MpscBlockingConsumerQueue<Integer> queue = new MpscBlockingConsumerQueue<Integer>();
+        for (int i = 0; i < producers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perProducer; j++) {
+                        queue.offer(j);
+                    }
+                }
+            }).start();
+        }
+        long sum = 0;
+        for (int i = 0; i < producers * perProducer; i++) {
+            sum += queue.take();
+        }
+        assertEquals((long) producers * perProducer * (perProducer - 1) / 2, sum);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDrainTo() {
+        MpscBlockingConsumerQueue<Integer> queue = new MpscBlockingConsumerQueue<Integer>();
+        for (int i = 0; i < 5; i++) {
+            queue.offer(i);
+        }
+        List<Integer> drained = new ArrayList<Integer>();
+        assertEquals(3, queue.drainTo(drained, 3));
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals(5, drained.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), drained.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOfferNull() {
+        new MpscBlockingConsumerQueue<Integer>().offer(null);
+    }
+
+    @Test
+    public void testInvalidCapacity() {
+        try {
+            new MpscBlockingConsumerQueue<Integer>(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
@@ -108,6 +108,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     };
 
     private final boolean observeOutput;
+    private final boolean useTimerWheel;
     private final long readerIdleTimeNanos;
     private final long writerIdleTimeNanos;
     private final long allIdleTimeNanos;
@@ -189,11 +190,45 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     public IdleStateHandler(boolean observeOutput,
             long readerIdleTime, long writerIdleTime, long allIdleTime,
             TimeUnit unit) {
+        this(observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit, false);
+    }
+
+    /**
+     * Creates a new instance firing {@link IdleStateEvent}s.
+     *
+     * @param observeOutput
+     *        whether or not the consumption of {@code bytes} should be taken into
+     *        consideration when assessing write idleness. The default is {@code false}.
+     * @param readerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#READER_IDLE}
+     *        will be triggered when no read was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param writerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#WRITER_IDLE}
+     *        will be triggered when no write was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param allIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#ALL_IDLE}
+     *        will be triggered when neither read nor write was performed for
+     *        the specified period of time.  Specify {@code 0} to disable.
+     * @param unit
+     *        the {@link TimeUnit} of {@code readerIdleTime},
+     *        {@code writeIdleTime}, and {@code allIdleTime}
+     * @param useTimerWheel
+     *        {@code true} if the timeouts should be tracked by a coarse timer wheel which is shared by all
+     *        handlers of the same {@link io.netty.channel.EventLoop} instead of scheduling a task per timeout.
+     *        Scheduling and cancelling becomes O(1) but an event may be fired up to one tick late (100 milliseconds
+     *        by default, see {@code -Dio.netty.handler.timeout.timerWheelTickMillis}).
+     */
+    public IdleStateHandler(boolean observeOutput,
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit, boolean useTimerWheel) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
 
         this.observeOutput = observeOutput;
+        this.useTimerWheel = useTimerWheel;
 
         if (readerIdleTime <= 0) {
             readerIdleTimeNanos = 0;
@@ -343,6 +378,9 @@ public class IdleStateHandler extends ChannelDuplexHandler {
      * This method is visible for testing!
      */
     ScheduledFuture<?> schedule(ChannelHandlerContext ctx, Runnable task, long delay, TimeUnit unit) {
+        if (useTimerWheel && ctx.executor().inEventLoop()) {
+            return TimeoutWheel.schedule(ctx.executor(), task, delay, unit);
+        }
         return ctx.executor().schedule(task, delay, unit);
     }
 
@@ -81,7 +81,22 @@ public class ReadTimeoutHandler extends IdleStateHandler {
      *        the {@link TimeUnit} of {@code timeout}
      */
     public ReadTimeoutHandler(long timeout, TimeUnit unit) {
-        super(timeout, 0, 0, unit);
+        this(timeout, unit, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeout
+     *        read timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     * @param useTimerWheel
+     *        {@code true} if the timeout should be tracked by the coarse timer wheel of the
+     *        {@link io.netty.channel.EventLoop}, see {@link IdleStateHandler}.
+     */
+    public ReadTimeoutHandler(long timeout, TimeUnit unit, boolean useTimerWheel) {
+        super(false, timeout, 0, 0, unit, useTimerWheel);
     }
 
     @Override
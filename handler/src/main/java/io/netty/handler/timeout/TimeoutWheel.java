@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.BlockingOperationException;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A coarse-grained timer wheel which is shared by all the timeout handlers that run on the same
+ * {@link EventExecutor}. Scheduling and cancelling a timeout are O(1) linked-list operations and the whole wheel is
+ * driven by a single scheduled task per {@link EventExecutor}, which is only scheduled while there are pending
+ * timeouts. The price is precision: a timeout may fire up to one tick late.
+ * <p>
+ * All methods must be called from the {@link EventExecutor} thread, except {@link ScheduledFuture#cancel(boolean)}
+ * which is handed over to the {@link EventExecutor} if needed, and {@link ScheduledFuture#get()} which may only be
+ * called from other threads.
+ */
+final class TimeoutWheel implements Runnable {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(TimeoutWheel.class);
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(1, SystemPropertyUtil.getInt("io.netty.handler.timeout.timerWheelTickMillis", 100)));
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int SLOT_NONE = -1;
+    private static final int SLOT_DETACHED = -2;
+
+    // There is one wheel per EventExecutor, which is normally the same as one per thread. The map is only needed for
+    // executors that share a thread like the EmbeddedEventLoop.
+    private static final FastThreadLocal<Map<EventExecutor, TimeoutWheel>> WHEELS =
+            new FastThreadLocal<Map<EventExecutor, TimeoutWheel>>() {
+                @Override
+                protected Map<EventExecutor, TimeoutWheel> initialValue() {
+                    return new IdentityHashMap<EventExecutor, TimeoutWheel>(2);
+                }
+            };
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.handler.timeout.timerWheelTickMillis: {}",
+                    TimeUnit.NANOSECONDS.toMillis(TICK_NANOS));
+        }
+    }
+
+    /**
+     * Schedules the given {@link Runnable} on the timer wheel of the given {@link EventExecutor}, which must be the
+     * calling thread.
+     */
+    static ScheduledFuture<?> schedule(EventExecutor executor, Runnable task, long delay, TimeUnit unit) {
+        assert executor.inEventLoop();
+        Map<EventExecutor, TimeoutWheel> wheels = WHEELS.get();
+        TimeoutWheel wheel = wheels.get(executor);
+        if (wheel == null) {
+            wheel = new TimeoutWheel(executor);
+            wheels.put(executor, wheel);
+        }
+        return wheel.add(task, unit.toNanos(delay));
+    }
+
+    private final EventExecutor executor;
+    private final WheelTimeout[] heads = new WheelTimeout[WHEEL_SIZE];
+    private final WheelTimeout[] tails = new WheelTimeout[WHEEL_SIZE];
+    private final long startTime = System.nanoTime();
+    // The next tick to process.
+    private long tick;
+    private int size;
+    private boolean ticking;
+
+    private TimeoutWheel(EventExecutor executor) {
+        this.executor = executor;
+    }
+
+    private WheelTimeout add(Runnable task, long delayNanos) {
+        long deadline = System.nanoTime() + Math.max(0, delayNanos);
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        // Round up so the timeout never fires early.
+        long deadlineTick = Math.max(tick, (deadline - startTime + TICK_NANOS - 1) / TICK_NANOS);
+        timeout.remainingRounds = (deadlineTick - tick) / WHEEL_SIZE;
+        link(timeout, (int) (deadlineTick & MASK));
+        if (++size == 1 && !ticking) {
+            scheduleTick();
+        }
+        return timeout;
+    }
+
+    private void scheduleTick() {
+        ticking = true;
+        executor.schedule(this, startTime + tick * TICK_NANOS - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+        try {
+            long target = (System.nanoTime() - startTime) / TICK_NANOS;
+            while (tick <= target && size > 0) {
+                // Increment first so timeouts which are scheduled by an expiring task are placed in a later tick.
+                int slot = (int) (tick++ & MASK);
+                // Detach the list of the slot before processing it. Timeouts which are scheduled by an expiring task
+                // and land in this slot are only visited in the next round, and cancelling a detached timeout does not
+                // touch the links we are iterating over.
+                WheelTimeout timeout = heads[slot];
+                heads[slot] = tails[slot] = null;
+                for (WheelTimeout t = timeout; t != null; t = t.next) {
+                    t.slot = SLOT_DETACHED;
+                }
+                while (timeout != null) {
+                    WheelTimeout next = timeout.next;
+                    timeout.prev = timeout.next = null;
+                    if (timeout.slot != SLOT_DETACHED) {
+                        // Cancelled while another timeout of this slot expired, already removed.
+                    } else if (timeout.state != WheelTimeout.ST_INIT) {
+                        // Cancelled from outside the EventExecutor, the removal task is still pending.
+                        removed(timeout);
+                    } else if (timeout.remainingRounds <= 0) {
+                        removed(timeout);
+                        timeout.expire();
+                    } else {
+                        timeout.remainingRounds--;
+                        link(timeout, slot);
+                    }
+                    timeout = next;
+                }
+            }
+        } finally {
+            if (size == 0) {
+                // Nothing left to do, stop ticking and release the wheel so no state is kept for idle executors.
+                ticking = false;
+                WHEELS.get().remove(executor);
+            } else {
+                scheduleTick();
+            }
+        }
+    }
+
+    private void link(WheelTimeout timeout, int slot) {
+        timeout.slot = slot;
+        WheelTimeout tail = tails[slot];
+        if (tail == null) {
+            heads[slot] = tails[slot] = timeout;
+        } else {
+            tail.next = timeout;
+            timeout.prev = tail;
+            tails[slot] = timeout;
+        }
+    }
+
+    private void unlink(WheelTimeout timeout) {
+        int slot = timeout.slot;
+        if (slot == SLOT_DETACHED) {
+            // Part of the slot which is processed by run() right now, which will skip it.
+            removed(timeout);
+            return;
+        }
+        WheelTimeout prev = timeout.prev;
+        WheelTimeout next = timeout.next;
+        if (prev == null) {
+            heads[slot] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tails[slot] = prev;
+        } else {
+            next.prev = prev;
+        }
+        timeout.prev = timeout.next = null;
+        removed(timeout);
+    }
+
+    private void removed(WheelTimeout timeout) {
+        timeout.slot = SLOT_NONE;
+        size--;
+    }
+
+    private static final class WheelTimeout implements ScheduledFuture<Object>, Runnable {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_RUNNING = 2;
+        private static final int ST_EXPIRED = 3;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final TimeoutWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+        private Throwable cause;
+        // Only modified while holding the lock of this timeout.
+        private volatile int waiters;
+
+        // Only touched by the EventExecutor thread.
+        WheelTimeout prev;
+        WheelTimeout next;
+        int slot = SLOT_NONE;
+        long remainingRounds;
+
+        WheelTimeout(TimeoutWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_RUNNING)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                cause = t;
+                logger.warn("A task raised an exception. Task: {}", task, t);
+            }
+            state = ST_EXPIRED;
+            notifyWaiters();
+        }
+
+        private void notifyWaiters() {
+            // The state was written before, so either we see the waiter here or the waiter sees the new state.
+            if (waiters > 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            notifyWaiters();
+            if (wheel.executor.inEventLoop()) {
+                run();
+            } else {
+                wheel.executor.execute(this);
+            }
+            return true;
+        }
+
+        // Removes the cancelled timeout from the wheel.
+        @Override
+        public void run() {
+            if (slot != SLOT_NONE) {
+                wheel.unlink(this);
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            int state = this.state;
+            return state == ST_CANCELLED || state == ST_EXPIRED;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long d = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            if (!isDone()) {
+                checkDeadLock();
+                synchronized (this) {
+                    waiters++;
+                    try {
+                        while (!isDone()) {
+                            wait();
+                        }
+                    } finally {
+                        waiters--;
+                    }
+                }
+            }
+            return result();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!isDone()) {
+                checkDeadLock();
+                long deadline = System.nanoTime() + unit.toNanos(timeout);
+                synchronized (this) {
+                    waiters++;
+                    try {
+                        while (!isDone()) {
+                            long waitNanos = deadline - System.nanoTime();
+                            if (waitNanos <= 0) {
+                                throw new TimeoutException();
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                        }
+                    } finally {
+                        waiters--;
+                    }
+                }
+            }
+            return result();
+        }
+
+        // Waiting from the EventExecutor thread would dead-lock as the timeout can only complete on it.
+        private void checkDeadLock() {
+            if (wheel.executor.inEventLoop()) {
+                throw new BlockingOperationException(toString());
+            }
+        }
+
+        private Object result() throws ExecutionException {
+            if (state == ST_CANCELLED) {
+                throw new CancellationException();
+            }
+            Throwable cause = this.cause;
+            if (cause != null) {
+                throw new ExecutionException(cause);
+            }
+            return null;
+        }
+    }
+}
@@ -66,6 +66,7 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
     private static final long MIN_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
     private final long timeoutNanos;
+    private final boolean useTimerWheel;
 
     /**
      * A doubly-linked list to track all WriteTimeoutTasks
@@ -93,9 +94,27 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
      *        the {@link TimeUnit} of {@code timeout}
      */
     public WriteTimeoutHandler(long timeout, TimeUnit unit) {
+        this(timeout, unit, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeout
+     *        write timeout
+     * @param unit
+     *        the {@link TimeUnit} of {@code timeout}
+     * @param useTimerWheel
+     *        {@code true} if the timeouts should be tracked by a coarse timer wheel which is shared by all
+     *        handlers of the same {@link io.netty.channel.EventLoop} instead of scheduling a task per write.
+     *        Scheduling and cancelling becomes O(1) but a timeout may be detected up to one tick late (100
+     *        milliseconds by default, see {@code -Dio.netty.handler.timeout.timerWheelTickMillis}).
+     */
+    public WriteTimeoutHandler(long timeout, TimeUnit unit, boolean useTimerWheel) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
+        this.useTimerWheel = useTimerWheel;
 
         if (timeout <= 0) {
             timeoutNanos = 0;
@@ -129,7 +148,11 @@ public class WriteTimeoutHandler extends ChannelOutboundHandlerAdapter {
     private void scheduleTimeout(final ChannelHandlerContext ctx, final ChannelPromise promise) {
         // Schedule a timeout.
         final WriteTimeoutTask task = new WriteTimeoutTask(ctx, promise);
-        task.scheduledFuture = ctx.executor().schedule(task, timeoutNanos, TimeUnit.NANOSECONDS);
+        if (useTimerWheel && ctx.executor().inEventLoop()) {
+            task.scheduledFuture = TimeoutWheel.schedule(ctx.executor(), task, timeoutNanos, TimeUnit.NANOSECONDS);
+        } else {
+            task.scheduledFuture = ctx.executor().schedule(task, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
 
         if (!task.scheduledFuture.isDone()) {
             addWriteTimeoutTask(task);
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.BlockingOperationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimeoutWheelTest {
+
+    private EventLoop loop;
+
+    @Before
+    public void setUp() {
+        loop = new DefaultEventLoop();
+    }
+
+    @After
+    public void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutsExpireInOrderAndNotEarly() throws Exception {
+        final BlockingQueue<Long> expired = new LinkedBlockingQueue<Long>();
+        final long start = System.nanoTime();
+        final long[] delays = { 250, 0, 120 };
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (final long delay : delays) {
+                    TimeoutWheel.schedule(loop, new Runnable() {
+                        @Override
+                        public void run() {
+                            assertTrue(loop.inEventLoop());
+                            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                            expired.add(elapsed >= delay ? delay : -delay);
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }).sync();
+        assertEquals(0L, (long) expired.take());
+        assertEquals(120L, (long) expired.take());
+        assertEquals(250L, (long) expired.take());
+    }
+
+    @Test(timeout = 5000)
+    public void testCancel() throws Exception {
+        final BlockingQueue<Object> expired = new LinkedBlockingQueue<Object>();
+        final ScheduledFuture<?> future = loop.submit(new Callable<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> call() {
+                return TimeoutWheel.schedule(loop, new Runnable() {
+                    @Override
+                    public void run() {
+                        expired.add(this);
+                    }
+                }, 100, TimeUnit.MILLISECONDS);
+            }
+        }).sync().getNow();
+
+        // Cancel from outside the EventLoop.
+        assertTrue(future.cancel(false));
+        assertFalse(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+        assertNull(expired.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testCancelDuringExpiry() throws Exception {
+        final BlockingQueue<Integer> expired = new LinkedBlockingQueue<Integer>();
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                final ScheduledFuture<?>[] futures = new ScheduledFuture<?>[3];
+                for (int i = 0; i < futures.length; i++) {
+                    final int id = i;
+                    futures[i] = TimeoutWheel.schedule(loop, new Runnable() {
+                        @Override
+                        public void run() {
+                            expired.add(id);
+                            if (id == 0) {
+                                // Cancel a timeout of the same slot which was not processed yet.
+                                assertTrue(futures[1].cancel(false));
+                            }
+                        }
+                    }, 50, TimeUnit.MILLISECONDS);
+                }
+            }
+        }).sync();
+        assertEquals(0, (int) expired.take());
+        assertEquals(2, (int) expired.take());
+
+        // The wheel must still work afterwards.
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                TimeoutWheel.schedule(loop, new Runnable() {
+                    @Override
+                    public void run() {
+                        expired.add(3);
+                    }
+                }, 50, TimeUnit.MILLISECONDS);
+            }
+        }).sync();
+        assertEquals(3, (int) expired.take());
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void testGet() throws Exception {
+        final BlockingQueue<Object> expired = new LinkedBlockingQueue<Object>();
+        final ScheduledFuture<?> future = loop.submit(new Callable<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> call() {
+                ScheduledFuture<?> timeout = TimeoutWheel.schedule(loop, new Runnable() {
+                    @Override
+                    public void run() {
+                        expired.add(this);
+                    }
+                }, 200, TimeUnit.MILLISECONDS);
+                try {
+                    timeout.get();
+                    fail();
+                } catch (BlockingOperationException expected) {
+                    // expected
+                } catch (Exception e) {
+                    fail(e.toString());
+                }
+                return timeout;
+            }
+        }).sync().getNow();
+
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException expected) {
+            // expected
+        }
+        assertNull(future.get());
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+        assertEquals(1, expired.size());
+    }
+
+    @Test(timeout = 5000)
+    public void testGetCancelled() throws Exception {
+        final ScheduledFuture<?> future = loop.submit(new Callable<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> call() {
+                return TimeoutWheel.schedule(loop, new Runnable() {
+                    @Override
+                    public void run() {
+                        fail();
+                    }
+                }, 1, TimeUnit.SECONDS);
+            }
+        }).sync().getNow();
+
+        loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.cancel(false);
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadTimeoutHandler() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ReadTimeoutHandler(10, TimeUnit.MILLISECONDS, true));
+        Thread.sleep(300);
+        channel.runScheduledPendingTasks();
+        try {
+            channel.checkException();
+            fail();
+        } catch (ReadTimeoutException expected) {
+            // expected
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testWriteTimeoutHandler() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new WriteTimeoutHandler(10, TimeUnit.MILLISECONDS, true));
+        // Not flushed, so the write can not complete.
+        channel.write("test");
+        Thread.sleep(300);
+        channel.runScheduledPendingTasks();
+        try {
+            channel.checkException();
+            fail();
+        } catch (WriteTimeoutException expected) {
+            // expected
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testWriteTimeoutHandlerCompletedWrite() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new WriteTimeoutHandler(10, TimeUnit.MILLISECONDS, true));
+        assertTrue(channel.writeOutbound("test"));
+        Thread.sleep(300);
+        channel.runScheduledPendingTasks();
+        channel.checkException();
+        assertTrue(channel.finish());
+        assertEquals("test", channel.readOutbound());
+    }
+}
@@ -15,17 +15,27 @@
  */
 package io.netty.microbench.buffer;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
 @State(Scope.Benchmark)
 @Warmup(iterations = 5)
 @Measurement(iterations = 10)
@@ -33,12 +43,70 @@ import org.openjdk.jmh.annotations.Warmup;
 public class ByteBufAllocatorConcurrentBenchmark  extends AbstractMicrobenchmark {
 
     private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true, true);
+    private static final ByteBufAllocator pooledAllocator = new PooledByteBufAllocator(true);
+    // No thread caches, so every allocation and release goes to the arenas.
+    private static final ByteBufAllocator pooledNoCacheAllocator = new PooledByteBufAllocator(true,
+            PooledByteBufAllocator.defaultNumHeapArena(), PooledByteBufAllocator.defaultNumDirectArena(),
+            PooledByteBufAllocator.defaultPageSize(), PooledByteBufAllocator.defaultMaxOrder(), 0, 0, 0, false);
+
+    @Param({ "unpooled", "pooled", "pooledNoCache" })
+    public String allocatorType;
 
     @Param({ "00064", "00256", "01024", "04096" })
     public int size;
 
+    private ByteBufAllocator allocator;
+    private Queue<ByteBuf> handoff;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("pooled".equals(allocatorType)) {
+            allocator = pooledAllocator;
+        } else if ("pooledNoCache".equals(allocatorType)) {
+            allocator = pooledNoCacheAllocator;
+        } else {
+            allocator = unpooledAllocator;
+        }
+        handoff = new ArrayBlockingQueue<ByteBuf>(1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (;;) {
+            ByteBuf buf = handoff.poll();
+            if (buf == null) {
+                break;
+            }
+            buf.release();
+        }
+    }
+
     @Benchmark
     public boolean allocateRelease() {
-        return unpooledAllocator.directBuffer(size).release();
+        return allocator.directBuffer(size).release();
+    }
+
+    /**
+     * Allocates buffers which are released by the {@link #crossThreadRelease()} threads, like buffers that are
+     * allocated on one event loop and released on another.
+     */
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(4)
+    public boolean crossThreadAllocate() {
+        ByteBuf buf = allocator.directBuffer(size);
+        if (!handoff.offer(buf)) {
+            // The releasing threads fell behind, release it here so the queue never blocks.
+            return buf.release();
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(4)
+    public boolean crossThreadRelease() {
+        ByteBuf buf = handoff.poll();
+        return buf != null && buf.release();
     }
 }
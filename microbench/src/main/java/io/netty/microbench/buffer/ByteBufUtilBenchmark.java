@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -182,4 +183,25 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public int indexOfAscii() {
+        return asciiBuffer.indexOf(asciiBuffer.readerIndex(), asciiBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int findCrlfAscii() {
+        return asciiBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public boolean isTextAscii() {
+        return ByteBufUtil.isText(asciiBuffer, CharsetUtil.US_ASCII);
+    }
+
+    @Benchmark
+    public boolean equalsIgnoreCaseAscii() {
+        return ByteBufUtil.equalsIgnoreCase(asciiBuffer, asciiBuffer.readerIndex(),
+                asciiBuffer, asciiBuffer.readerIndex(), asciiBuffer.readableBytes());
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Measures {@link CompositeByteBuf}s which are made of many small components, as built when aggregating a stream.
+ */
+@State(Scope.Benchmark)
+public class CompositeByteBufBenchmark extends AbstractMicrobenchmark {
+    static {
+        System.setProperty("io.netty.buffer.bytebuf.checkAccessible", "false");
+    }
+
+    @Param({ "16", "256", "4096" })
+    public int numComponents;
+
+    @Param({ "64" })
+    public int componentSize;
+
+    private ByteBuf component;
+    private CompositeByteBuf composite;
+    private int[] randomIndexes;
+    private int randomIdx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        component = Unpooled.directBuffer(componentSize).writeZero(componentSize);
+        composite = newComposite();
+        Random random = new Random(42);
+        randomIndexes = new int[1024];
+        for (int i = 0; i < randomIndexes.length; i++) {
+            randomIndexes[i] = random.nextInt(composite.capacity() - 8);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        composite.release();
+        component.release();
+    }
+
+    private CompositeByteBuf newComposite() {
+        CompositeByteBuf composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < numComponents; i++) {
+            composite.addComponent(true, component.retainedDuplicate());
+        }
+        return composite;
+    }
+
+    @Benchmark
+    public boolean append() {
+        return newComposite().release();
+    }
+
+    @Benchmark
+    public long randomGetLong() {
+        int idx = randomIdx;
+        randomIdx = idx + 1 & randomIndexes.length - 1;
+        return composite.getLong(randomIndexes[idx]);
+    }
+
+    @Benchmark
+    public long sequentialGetByte() {
+        long sum = 0;
+        for (int i = 0, capacity = composite.capacity(); i < capacity; i += 8) {
+            sum += composite.getByte(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuffer[] nioBuffers() {
+        return composite.nioBuffers();
+    }
+}
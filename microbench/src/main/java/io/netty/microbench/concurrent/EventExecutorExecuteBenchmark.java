@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.MpscBlockingConsumerQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class benchmarks the throughput of {@link SingleThreadEventExecutor#execute(Runnable)} when it is called from
+ * multiple threads at once, using either a {@link LinkedBlockingQueue} or a {@link MpscBlockingConsumerQueue} as the
+ * task queue.
+ */
+@Threads(4)
+@State(Scope.Benchmark)
+public class EventExecutorExecuteBenchmark extends AbstractMicrobenchmark {
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Param({ "LinkedBlockingQueue", "MpscBlockingConsumerQueue" })
+    public String queueType;
+
+    @Param({ "16", "256" })
+    public int burstSize;
+
+    private SingleThreadEventExecutor executor;
+
+    @Setup
+    public void setup() {
+        final boolean mpsc = "MpscBlockingConsumerQueue".equals(queueType);
+        executor = new SingleThreadEventExecutor(null, new DefaultThreadFactory("bench"), true) {
+            @Override
+            protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+                return mpsc ? new MpscBlockingConsumerQueue<Runnable>(maxPendingTasks)
+                            : new LinkedBlockingQueue<Runnable>(maxPendingTasks);
+            }
+
+            @Override
+            protected void run() {
+                for (;;) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                        updateLastExecutionTime();
+                    }
+
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Benchmark
+    public void executeBurst() {
+        // Submit a burst of tasks and wait for the last one so the queue can not grow without bounds.
+        for (int i = 1; i < burstSize; i++) {
+            executor.execute(NO_OP);
+        }
+        executor.submit(NO_OP).syncUninterruptibly();
+    }
+}
@@ -517,6 +517,14 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
             super.flush0();
         }
 
+        /**
+         * Called once a EPOLLERR event is ready to be processed, before {@link #epollOutReady()} and
+         * {@link #epollInReady()} are called for it.
+         */
+        void epollErrReady() {
+            // NOOP
+        }
+
         /**
          * Called once a EPOLLOUT event is ready to be processed
          */
@@ -37,6 +37,7 @@ import io.netty.channel.unix.SocketWritableByteChannel;
 import io.netty.channel.unix.UnixChannelUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.ThrowableUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
@@ -47,8 +48,11 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -61,6 +65,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
                     StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractEpollStreamChannel.class);
+    // How long to wait for the MSG_ZEROCOPY completions of a closed channel before the connection is reset.
+    private static final long ZEROCOPY_CLOSE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            SystemPropertyUtil.getLong("io.netty.epoll.zeroCopyCloseTimeoutMillis", 30000));
+    private static final long ZEROCOPY_CLOSE_POLL_MILLIS = 10;
     private static final ClosedChannelException CLEAR_SPLICE_QUEUE_CLOSED_CHANNEL_EXCEPTION =
             ThrowableUtil.unknownStackTrace(new ClosedChannelException(),
                     AbstractEpollStreamChannel.class, "clearSpliceQueue()");
@@ -84,6 +92,15 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     private WritableByteChannel byteChannel;
 
+    // Lazy init these if we need to write via MSG_ZEROCOPY.
+    private ZeroCopyGatheringProcessor zeroCopyGatheringProcessor;
+    private ArrayDeque<ZeroCopyWrite> zeroCopyWrites;
+    private int[] zeroCopyCompletions;
+    // The id the kernel will assign to the next successful MSG_ZEROCOPY send.
+    private int zeroCopyNextId;
+    // Set once the kernel signaled that it had to copy the data anyway, in which case MSG_ZEROCOPY only adds overhead.
+    private boolean zeroCopyCopied;
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -269,6 +286,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
 
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
+            if (isZeroCopyWrite(buf)) {
+                return writeBytesZeroCopy(in, buf);
+            }
             return doWriteBytes(in, buf);
         } else {
             ByteBuffer[] nioBuffers = buf.nioBuffers();
@@ -277,6 +297,164 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Write bytes from the given {@link ByteBuf} via {@code MSG_ZEROCOPY}. The {@link ByteBuf} is retained until the
+     * kernel signaled that the send was completed.
+     * @param in the collection which contains objects to write.
+     * @param buf the {@link ByteBuf} from which the bytes should be written
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, ByteBuf buf) throws Exception {
+        int localFlushedAmount = socket.sendZeroCopyAddress(buf.memoryAddress(), buf.readerIndex(), buf.writerIndex());
+        if (localFlushedAmount > 0) {
+            if (zeroCopyWrites == null) {
+                zeroCopyWrites = new ArrayDeque<ZeroCopyWrite>();
+            }
+            // Retain the buffer as the ChannelOutboundBuffer will release it once all bytes were written but the
+            // kernel may still access the memory until it signals the completion.
+            zeroCopyWrites.add(new ZeroCopyWrite(zeroCopyNextId++, buf.retain()));
+            in.removeBytes(localFlushedAmount);
+            return 1;
+        }
+        if (localFlushedAmount < 0) {
+            // The kernel could not pin the memory at the moment, so fallback to a normal write.
+            return doWriteBytes(in, buf);
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    /**
+     * Returns {@code true} if the given message should be written via {@code MSG_ZEROCOPY}.
+     */
+    private boolean isZeroCopyWrite(Object msg) {
+        if (zeroCopyCopied || !(msg instanceof ByteBuf)) {
+            return false;
+        }
+        int threshold = zeroCopyWriteThreshold();
+        if (threshold < 0) {
+            return false;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        return buf.hasMemoryAddress() && buf.readableBytes() >= threshold;
+    }
+
+    /**
+     * Returns the minimum number of bytes a write needs to have to be done via {@code MSG_ZEROCOPY} or {@code -1} if
+     * {@code MSG_ZEROCOPY} should not be used at all.
+     */
+    int zeroCopyWriteThreshold() {
+        return -1;
+    }
+
+    /**
+     * Process the {@code MSG_ZEROCOPY} completions which are reported via the error queue of the socket and release
+     * the buffers that are not used by the kernel anymore.
+     */
+    final void processZeroCopyCompletions() throws IOException {
+        if (zeroCopyWrites == null || zeroCopyWrites.isEmpty()) {
+            return;
+        }
+        if (zeroCopyCompletions == null) {
+            zeroCopyCompletions = new int[3 * 16];
+        }
+        if (readZeroCopyCompletions(socket, zeroCopyWrites, zeroCopyCompletions)) {
+            zeroCopyCopied = true;
+        }
+    }
+
+    /**
+     * Read the {@code MSG_ZEROCOPY} completions from the error queue of the given socket and release the buffers of
+     * the completed writes. Returns {@code true} if the kernel signaled that it had to copy the data.
+     */
+    private static boolean readZeroCopyCompletions(
+            LinuxSocket socket, ArrayDeque<ZeroCopyWrite> writes, int[] completions) throws IOException {
+        boolean copied = false;
+        int read;
+        do {
+            read = socket.readZeroCopyCompletions(completions);
+            for (int i = 0; i < read; i++) {
+                int idx = i * 3;
+                completeZeroCopyWrites(writes, completions[idx], completions[idx + 1]);
+                if (completions[idx + 2] != 0) {
+                    copied = true;
+                }
+            }
+        } while (read == completions.length / 3);
+        return copied;
+    }
+
+    private static void completeZeroCopyWrites(ArrayDeque<ZeroCopyWrite> writes, int firstId, int lastId) {
+        // Completions are usually reported in order, but be prepared for the case when these are not.
+        for (ZeroCopyWrite write : writes) {
+            // Use subtraction to correctly handle the wrap around of the ids.
+            if (write.id - firstId >= 0 && lastId - write.id >= 0) {
+                write.completed = true;
+            } else if (write.id - lastId > 0) {
+                break;
+            }
+        }
+        for (;;) {
+            ZeroCopyWrite write = writes.peek();
+            if (write == null || !write.completed) {
+                break;
+            }
+            writes.poll().buf.release();
+        }
+    }
+
+    private static void releaseZeroCopyWrites(ArrayDeque<ZeroCopyWrite> writes) {
+        if (writes == null) {
+            return;
+        }
+        for (;;) {
+            ZeroCopyWrite write = writes.poll();
+            if (write == null) {
+                break;
+            }
+            write.buf.release();
+        }
+    }
+
+    /**
+     * Called before the socket is closed. If there are {@code MSG_ZEROCOPY} writes which the kernel did not complete
+     * yet, it may still send from their memory after the socket was closed. In this case the buffers are handed to a
+     * {@link ZeroCopyCloseDrainer} which keeps a duplicate of the socket to receive the outstanding completions.
+     * Returns {@code null} if there is nothing to wait for.
+     */
+    private ZeroCopyCloseDrainer newZeroCopyCloseDrainer() {
+        if (zeroCopyWrites == null || zeroCopyWrites.isEmpty()) {
+            return null;
+        }
+        try {
+            processZeroCopyCompletions();
+            if (zeroCopyWrites.isEmpty() || socket.getSoLinger() == 0) {
+                // Either everything is completed already or the close will reset the connection, in which case the
+                // kernel drops all data that was not sent yet.
+                return null;
+            }
+            LinuxSocket dup = socket.dup();
+            try {
+                // Closing the channel's file descriptor does not close the connection as long as the duplicate is
+                // open, so shutdown to still signal the end of the stream to the remote peer.
+                socket.shutdown();
+            } catch (IOException e) {
+                logger.debug("Failed to shutdown {} while waiting for MSG_ZEROCOPY completions", this, e);
+            }
+            ZeroCopyCloseDrainer drainer = new ZeroCopyCloseDrainer(eventLoop(), dup, zeroCopyWrites);
+            zeroCopyWrites = null;
+            return drainer;
+        } catch (IOException e) {
+            logger.debug("Failed to wait for MSG_ZEROCOPY completions of {}", this, e);
+            return null;
+        }
+    }
+
     private void adjustMaxBytesPerGatheringWrite(long attempted, long written, long oldMaxBytesPerGatheringWrite) {
         // By default we track the SO_SNDBUF when ever it is explicitly set. However some OSes may dynamically change
         // SO_SNDBUF (and other characteristics that determine how much data can be written at once) so we should try
@@ -427,8 +605,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         int writeSpinCount = config().getWriteSpinCount();
         do {
             final int msgCount = in.size();
-            // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
-            if (msgCount > 1 && in.current() instanceof ByteBuf) {
+            // Do gathering write if the outbound buffer entries start with more than one ByteBuf, unless the first one
+            // should be written via MSG_ZEROCOPY.
+            if (msgCount > 1 && in.current() instanceof ByteBuf && !isZeroCopyWrite(in.current())) {
                 writeSpinCount -= doWriteMultiple(in);
             } else if (msgCount == 0) {
                 // Wrote all messages.
@@ -508,7 +687,20 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         if (PlatformDependent.hasUnsafe()) {
             IovArray array = ((EpollEventLoop) eventLoop()).cleanArray();
             array.maxBytes(maxBytesPerGatheringWrite);
-            in.forEachFlushedMessage(array);
+            if (zeroCopyWriteThreshold() >= 0 && !zeroCopyCopied) {
+                // Stop gathering at the first buffer which should be written via MSG_ZEROCOPY.
+                if (zeroCopyGatheringProcessor == null) {
+                    zeroCopyGatheringProcessor = new ZeroCopyGatheringProcessor();
+                }
+                zeroCopyGatheringProcessor.array = array;
+                try {
+                    in.forEachFlushedMessage(zeroCopyGatheringProcessor);
+                } finally {
+                    zeroCopyGatheringProcessor.array = null;
+                }
+            } else {
+                in.forEachFlushedMessage(array);
+            }
 
             if (array.count() >= 1) {
                 // TODO: Handle the case where cnt == 1 specially.
@@ -680,6 +872,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     protected void doClose() throws Exception {
+        // The MSG_ZEROCOPY completions can only be read while the socket is open.
+        ZeroCopyCloseDrainer zeroCopyCloseDrainer = newZeroCopyCloseDrainer();
         try {
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
@@ -687,6 +881,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            if (zeroCopyCloseDrainer != null) {
+                zeroCopyCloseDrainer.schedule();
+            } else {
+                // Nothing is in flight anymore.
+                releaseZeroCopyWrites(zeroCopyWrites);
+            }
         }
     }
 
@@ -722,6 +922,16 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return super.prepareToClose();
         }
 
+        @Override
+        void epollErrReady() {
+            try {
+                processZeroCopyCompletions();
+            } catch (IOException e) {
+                // Any real error of the socket is reported via the read or write path.
+                logger.debug("Failed to process MSG_ZEROCOPY completions for {}", AbstractEpollStreamChannel.this, e);
+            }
+        }
+
         private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
                 EpollRecvByteAllocatorHandle allocHandle) {
             if (byteBuf != null) {
@@ -1040,6 +1250,89 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    private static final class ZeroCopyWrite {
+        final int id;
+        final ByteBuf buf;
+        boolean completed;
+
+        ZeroCopyWrite(int id, ByteBuf buf) {
+            this.id = id;
+            this.buf = buf;
+        }
+    }
+
+    /**
+     * Releases the buffers of {@code MSG_ZEROCOPY} writes of a closed channel once the kernel completed them. If this
+     * does not happen in time the connection is reset, so the kernel drops the data which still uses the buffers.
+     */
+    private static final class ZeroCopyCloseDrainer implements Runnable {
+        private final EventLoop loop;
+        private final LinuxSocket socket;
+        private final ArrayDeque<ZeroCopyWrite> writes;
+        private final int[] completions = new int[3 * 16];
+        private final long deadline = System.nanoTime() + ZEROCOPY_CLOSE_TIMEOUT_NANOS;
+
+        ZeroCopyCloseDrainer(EventLoop loop, LinuxSocket socket, ArrayDeque<ZeroCopyWrite> writes) {
+            this.loop = loop;
+            this.socket = socket;
+            this.writes = writes;
+        }
+
+        void schedule() {
+            try {
+                loop.schedule(this, ZEROCOPY_CLOSE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Failed to wait for MSG_ZEROCOPY completions, resetting the connection", e);
+                close(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean completed;
+            try {
+                readZeroCopyCompletions(socket, writes, completions);
+                completed = writes.isEmpty();
+            } catch (IOException e) {
+                logger.debug("Failed to read MSG_ZEROCOPY completions, resetting the connection", e);
+                completed = false;
+            }
+            if (completed) {
+                close(true);
+            } else if (System.nanoTime() - deadline < 0 && socket.isOpen()) {
+                schedule();
+            } else {
+                close(false);
+            }
+        }
+
+        private void close(boolean completed) {
+            if (!completed) {
+                try {
+                    socket.setSoLinger(0);
+                } catch (IOException e) {
+                    logger.debug("Failed to set SO_LINGER", e);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close the socket after MSG_ZEROCOPY completions", e);
+            } finally {
+                releaseZeroCopyWrites(writes);
+            }
+        }
+    }
+
+    private final class ZeroCopyGatheringProcessor implements ChannelOutboundBuffer.MessageProcessor {
+        IovArray array;
+
+        @Override
+        public boolean processMessage(Object msg) throws Exception {
+            return !isZeroCopyWrite(msg) && array.processMessage(msg);
+        }
+    }
+
     private final class EpollSocketWritableByteChannel extends SocketWritableByteChannel {
         EpollSocketWritableByteChannel() {
             super(socket);
@@ -26,10 +26,13 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultAddressedEnvelope;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramChannelConfig;
+import io.netty.channel.epoll.NativeDatagramPacketArray.NativeDatagramPacket;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.unix.DatagramSocketAddress;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.UncheckedBooleanSupplier;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
 import java.io.IOException;
@@ -39,6 +42,8 @@ import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketDgram;
 
@@ -269,7 +274,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
             try {
                 // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // A SegmentedDatagramPacket always needs sendmmsg(...) as the segment size is passed as control
+                // message.
+                if (Native.IS_SUPPORTING_SENDMMSG && (in.size() > 1 || msg instanceof SegmentedDatagramPacket)) {
                     NativeDatagramPacketArray array = NativeDatagramPacketArray.getInstance(in);
                     int cnt = array.count();
 
@@ -373,6 +380,17 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            if (!Native.IS_SUPPORTING_SENDMMSG || !Native.IS_SUPPORTING_UDP_SEGMENT) {
+                throw new UnsupportedOperationException(
+                        "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+            }
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
+
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -429,6 +447,8 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     }
 
     final class EpollDatagramChannelUnsafe extends AbstractEpollUnsafe {
+        // Holds the DatagramPackets read via recvmmsg(...) until these are fired through the pipeline.
+        private final List<DatagramPacket> readPackets = new ArrayList<DatagramPacket>();
 
         @Override
         void epollInReady() {
@@ -448,38 +468,46 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
             Throwable exception = null;
             try {
+                int maxDatagramsPerRecvmmsg = ((EpollDatagramChannelConfig) config).getMaxDatagramsPerRecvmmsg();
                 ByteBuf data = null;
                 try {
-                    do {
-                        data = allocHandle.allocate(allocator);
-                        allocHandle.attemptedBytesRead(data.writableBytes());
-                        final DatagramSocketAddress remoteAddress;
-                        if (data.hasMemoryAddress()) {
-                            // has a memory address so use optimized call
-                            remoteAddress = socket.recvFromAddress(data.memoryAddress(), data.writerIndex(),
-                                                                 data.capacity());
-                        } else {
-                            ByteBuffer nioData = data.internalNioBuffer(data.writerIndex(), data.writableBytes());
-                            remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
-                        }
+                    // recvmmsg(...) needs the memory address of the buffers so only use it if we have Unsafe. It is
+                    // also needed to receive the segment size if UDP_GRO is used.
+                    if ((maxDatagramsPerRecvmmsg > 1 || ((EpollDatagramChannelConfig) config).isUdpGro()) &&
+                            Native.IS_SUPPORTING_RECVMMSG && PlatformDependent.hasUnsafe()) {
+                        recvmmsg(allocHandle, allocator, pipeline, maxDatagramsPerRecvmmsg);
+                    } else {
+                        do {
+                            data = allocHandle.allocate(allocator);
+                            allocHandle.attemptedBytesRead(data.writableBytes());
+                            final DatagramSocketAddress remoteAddress;
+                            if (data.hasMemoryAddress()) {
+                                // has a memory address so use optimized call
+                                remoteAddress = socket.recvFromAddress(data.memoryAddress(), data.writerIndex(),
+                                                                     data.capacity());
+                            } else {
+                                ByteBuffer nioData = data.internalNioBuffer(data.writerIndex(), data.writableBytes());
+                                remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
+                            }
 
-                        if (remoteAddress == null) {
-                            allocHandle.lastBytesRead(-1);
-                            data.release();
-                            data = null;
-                            break;
-                        }
+                            if (remoteAddress == null) {
+                                allocHandle.lastBytesRead(-1);
+                                data.release();
+                                data = null;
+                                break;
+                            }
 
-                        allocHandle.incMessagesRead(1);
-                        allocHandle.lastBytesRead(remoteAddress.receivedAmount());
-                        data.writerIndex(data.writerIndex() + allocHandle.lastBytesRead());
+                            allocHandle.incMessagesRead(1);
+                            allocHandle.lastBytesRead(remoteAddress.receivedAmount());
+                            data.writerIndex(data.writerIndex() + allocHandle.lastBytesRead());
 
-                        readPending = false;
-                        pipeline.fireChannelRead(
-                                new DatagramPacket(data, (InetSocketAddress) localAddress(), remoteAddress));
+                            readPending = false;
+                            pipeline.fireChannelRead(
+                                    new DatagramPacket(data, (InetSocketAddress) localAddress(), remoteAddress));
 
-                        data = null;
-                    } while (allocHandle.continueReading());
+                            data = null;
+                        } while (allocHandle.continueReading());
+                    }
                 } catch (Throwable t) {
                     if (data != null) {
                         data.release();
@@ -497,5 +525,101 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 epollInFinally(config);
             }
         }
+
+        private void recvmmsg(EpollRecvByteAllocatorHandle allocHandle, ByteBufAllocator allocator,
+                              ChannelPipeline pipeline, int maxDatagrams) throws IOException {
+            final InetSocketAddress localAddress = (InetSocketAddress) localAddress();
+            final List<DatagramPacket> packets = readPackets;
+            int received;
+            do {
+                NativeDatagramPacketArray array = NativeDatagramPacketArray.getInstance();
+                received = 0;
+                int created = 0;
+                int totalBytes = 0;
+                int attemptedBytes = 0;
+                try {
+                    for (int i = 0; i < maxDatagrams; i++) {
+                        ByteBuf data = allocHandle.allocate(allocator);
+                        if (!data.hasMemoryAddress()) {
+                            // recvmmsg(...) needs the memory address, so fallback to a direct buffer.
+                            ByteBuf direct = allocator.directBuffer(data.writableBytes());
+                            data.release();
+                            data = direct;
+                        }
+                        int writable = data.writableBytes();
+                        if (!array.addWritable(data)) {
+                            data.release();
+                            break;
+                        }
+                        attemptedBytes += writable;
+                    }
+                    allocHandle.attemptedBytesRead(attemptedBytes);
+
+                    received = Native.recvmmsg(socket.intValue(), array.packets(), 0, array.count());
+                    if (received == 0) {
+                        allocHandle.lastBytesRead(-1);
+                        break;
+                    }
+
+                    // Create all the DatagramPackets before firing any of them as the NativeDatagramPacketArray is
+                    // shared with the write path and so may be modified by a write done in a handler.
+                    NativeDatagramPacket[] nativePackets = array.packets();
+                    for (; created < received; created++) {
+                        NativeDatagramPacket nativePacket = nativePackets[created];
+                        InetSocketAddress remoteAddress = nativePacket.remoteAddress();
+                        int bytes = nativePacket.receivedAmount();
+                        ByteBuf data = array.buffer(created);
+                        data.writerIndex(data.writerIndex() + bytes);
+                        addDatagramPackets(packets, data, nativePacket.segmentSize(), localAddress, remoteAddress);
+                        totalBytes += bytes;
+                    }
+                } catch (Throwable cause) {
+                    for (int i = 0; i < packets.size(); i++) {
+                        packets.get(i).release();
+                    }
+                    packets.clear();
+                    PlatformDependent.throwException(cause);
+                } finally {
+                    // Release all the buffers that were not handed out as part of a DatagramPacket.
+                    for (int i = created; i < array.count(); i++) {
+                        array.buffer(i).release();
+                    }
+                }
+
+                allocHandle.incMessagesRead(packets.size());
+                allocHandle.lastBytesRead(totalBytes);
+                readPending = false;
+                try {
+                    for (int i = 0; i < packets.size(); i++) {
+                        pipeline.fireChannelRead(packets.set(i, null));
+                    }
+                } finally {
+                    packets.clear();
+                }
+                // In edge-triggered mode we need to read until EAGAIN, otherwise only continue if the whole batch was
+                // filled as there may be more datagrams left.
+            } while (allocHandle.continueReading(allocHandle.isEdgeTriggered() || received == maxDatagrams ?
+                    UncheckedBooleanSupplier.TRUE_SUPPLIER : UncheckedBooleanSupplier.FALSE_SUPPLIER));
+        }
+
+        /**
+         * Add the {@link DatagramPacket}s for the given received data. If the kernel coalesced multiple datagrams via
+         * UDP_GRO the data is split into the original datagrams again.
+         */
+        private void addDatagramPackets(List<DatagramPacket> packets, ByteBuf data, int segmentSize,
+                                        InetSocketAddress localAddress, InetSocketAddress remoteAddress) {
+            if (segmentSize <= 0 || data.readableBytes() <= segmentSize) {
+                packets.add(new DatagramPacket(data, localAddress, remoteAddress));
+                return;
+            }
+            try {
+                while (data.isReadable()) {
+                    ByteBuf segment = data.readRetainedSlice(Math.min(data.readableBytes(), segmentSize));
+                    packets.add(new DatagramPacket(segment, localAddress, remoteAddress));
+                }
+            } finally {
+                data.release();
+            }
+        }
     }
 }
@@ -23,6 +23,7 @@ import io.netty.channel.MessageSizeEstimator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.DatagramChannelConfig;
+import io.netty.channel.unix.Limits;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -32,6 +33,8 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
     private static final RecvByteBufAllocator DEFAULT_RCVBUF_ALLOCATOR = new FixedRecvByteBufAllocator(2048);
     private final EpollDatagramChannel datagramChannel;
     private boolean activeOnOpen;
+    private volatile int maxDatagramsPerRecvmmsg = 1;
+    private volatile boolean udpGro;
 
     EpollDatagramChannelConfig(EpollDatagramChannel channel) {
         super(channel);
@@ -48,7 +51,9 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
                 ChannelOption.SO_REUSEADDR, ChannelOption.IP_MULTICAST_LOOP_DISABLED,
                 ChannelOption.IP_MULTICAST_ADDR, ChannelOption.IP_MULTICAST_IF, ChannelOption.IP_MULTICAST_TTL,
                 ChannelOption.IP_TOS, ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION,
-                EpollChannelOption.SO_REUSEPORT);
+                EpollChannelOption.SO_REUSEPORT, EpollChannelOption.MAX_DATAGRAMS_PER_RECVMMSG,
+                EpollChannelOption.UDP_SEGMENT, EpollChannelOption.UDP_GRO, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.SO_PREFER_BUSY_POLL);
     }
 
     @SuppressWarnings({ "unchecked", "deprecation" })
@@ -87,6 +92,21 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         if (option == EpollChannelOption.SO_REUSEPORT) {
             return (T) Boolean.valueOf(isReusePort());
         }
+        if (option == EpollChannelOption.MAX_DATAGRAMS_PER_RECVMMSG) {
+            return (T) Integer.valueOf(getMaxDatagramsPerRecvmmsg());
+        }
+        if (option == EpollChannelOption.UDP_SEGMENT) {
+            return (T) Integer.valueOf(getUdpSegment());
+        }
+        if (option == EpollChannelOption.UDP_GRO) {
+            return (T) Boolean.valueOf(isUdpGro());
+        }
+        if (option == EpollChannelOption.SO_BUSY_POLL) {
+            return (T) Integer.valueOf(getBusyPoll());
+        }
+        if (option == EpollChannelOption.SO_PREFER_BUSY_POLL) {
+            return (T) Boolean.valueOf(isPreferBusyPoll());
+        }
         return super.getOption(option);
     }
 
@@ -117,6 +137,16 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             setActiveOnOpen((Boolean) value);
         } else if (option == EpollChannelOption.SO_REUSEPORT) {
             setReusePort((Boolean) value);
+        } else if (option == EpollChannelOption.MAX_DATAGRAMS_PER_RECVMMSG) {
+            setMaxDatagramsPerRecvmmsg((Integer) value);
+        } else if (option == EpollChannelOption.UDP_SEGMENT) {
+            setUdpSegment((Integer) value);
+        } else if (option == EpollChannelOption.UDP_GRO) {
+            setUdpGro((Boolean) value);
+        } else if (option == EpollChannelOption.SO_BUSY_POLL) {
+            setBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.SO_PREFER_BUSY_POLL) {
+            setPreferBusyPoll((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -371,4 +401,129 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             throw new ChannelException(e);
         }
     }
+
+    /**
+     * Returns the maximum number of datagrams that are read with one
+     * <a href="http://linux.die.net/man/2/recvmmsg">recvmmsg(...)</a> call. A value of {@code 1} means
+     * {@code recvmmsg(...)} is not used at all.
+     */
+    public int getMaxDatagramsPerRecvmmsg() {
+        return maxDatagramsPerRecvmmsg;
+    }
+
+    /**
+     * Set the maximum number of datagrams that are read with one
+     * <a href="http://linux.die.net/man/2/recvmmsg">recvmmsg(...)</a> call. Every datagram is read into its own
+     * buffer obtained via the {@link RecvByteBufAllocator}. A value greater than {@code 1} will only have an effect
+     * if {@code recvmmsg(...)} is supported by the system, and a value of {@code 1} (the default) disables
+     * the usage of {@code recvmmsg(...)}.
+     */
+    public EpollDatagramChannelConfig setMaxDatagramsPerRecvmmsg(int maxDatagramsPerRecvmmsg) {
+        if (maxDatagramsPerRecvmmsg < 1 || maxDatagramsPerRecvmmsg > Limits.UIO_MAX_IOV) {
+            throw new IllegalArgumentException("maxDatagramsPerRecvmmsg: " + maxDatagramsPerRecvmmsg +
+                    " (expected: 1-" + Limits.UIO_MAX_IOV + ')');
+        }
+        this.maxDatagramsPerRecvmmsg = maxDatagramsPerRecvmmsg;
+        return this;
+    }
+
+    /**
+     * Returns the segment size which is used by the kernel to split every datagram that is written (UDP GSO), or
+     * {@code 0} if disabled.
+     */
+    public int getUdpSegment() {
+        try {
+            return datagramChannel.socket.getUdpSegment();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the UDP_SEGMENT option on the underlying Channel. If set to a value greater than {@code 0}, the kernel
+     * splits every datagram that is written into datagrams of the given size (UDP GSO). This allows to write a batch
+     * of datagrams with one syscall. Use {@link SegmentedDatagramPacket} to set the segment size per message instead.
+     */
+    public EpollDatagramChannelConfig setUdpSegment(int segmentSize) {
+        try {
+            datagramChannel.socket.setUdpSegment(segmentSize);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the UDP_GRO option is set.
+     */
+    public boolean isUdpGro() {
+        return udpGro;
+    }
+
+    /**
+     * Set the UDP_GRO option on the underlying Channel. If enabled, the kernel may coalesce multiple datagrams of the
+     * same flow into one buffer, which is split into the original datagrams again before these are passed through
+     * the {@link io.netty.channel.ChannelPipeline}. To benefit from this the {@link RecvByteBufAllocator} should
+     * provide buffers that are big enough to hold multiple datagrams.
+     */
+    public EpollDatagramChannelConfig setUdpGro(boolean gro) {
+        try {
+            datagramChannel.socket.setUdpGro(gro);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+        this.udpGro = gro;
+        return this;
+    }
+
+    /**
+     * Set the {@code SO_BUSY_POLL} option on the socket, which is the approximate time in microseconds to busy poll
+     * the device queue on a blocking receive when there is no data. Increasing the value above the system default
+     * requires {@code CAP_NET_ADMIN}. Most useful in combination with
+     * {@link EpollEventLoopGroup#setBusyPollBudget(long, java.util.concurrent.TimeUnit)}.
+     */
+    public EpollDatagramChannelConfig setBusyPoll(int busyPollMicros) {
+        try {
+            datagramChannel.socket.setBusyPoll(busyPollMicros);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns the value of the {@code SO_BUSY_POLL} option in microseconds.
+     */
+    public int getBusyPoll() {
+        try {
+            return datagramChannel.socket.getBusyPoll();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the {@code SO_PREFER_BUSY_POLL} option on the socket. Requires Linux kernel 5.11 or later and
+     * {@code CAP_NET_ADMIN}. If enabled, the kernel prefers busy polling over softirq processing of the device queue
+     * while the application keeps polling.
+     */
+    public EpollDatagramChannelConfig setPreferBusyPoll(boolean preferBusyPoll) {
+        try {
+            datagramChannel.socket.setPreferBusyPoll(preferBusyPoll);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_PREFER_BUSY_POLL} is enabled, {@code false} otherwise.
+     */
+    public boolean isPreferBusyPoll() {
+        try {
+            return datagramChannel.socket.isPreferBusyPoll();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
 }
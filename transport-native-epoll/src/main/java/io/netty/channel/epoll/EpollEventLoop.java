@@ -25,9 +25,11 @@ import io.netty.channel.unix.IovArray;
 import io.netty.util.IntSupplier;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -37,6 +39,7 @@ import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static java.lang.Math.min;
@@ -48,6 +51,8 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollEventLoop.class);
     private static final AtomicIntegerFieldUpdater<EpollEventLoop> WAKEN_UP_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(EpollEventLoop.class, "wakenUp");
+    private static final long DEFAULT_BUSY_POLL_NANOS =
+            Math.max(0, SystemPropertyUtil.getLong("io.netty.epoll.busyPollNanos", 0));
 
     static {
         // Ensure JNI is initialized by the time this class is loaded by this time!
@@ -75,8 +80,11 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             return EpollEventLoop.super.pendingTasks();
         }
     };
+    private final Metric metric = new Metric();
     private volatile int wakenUp;
     private volatile int ioRatio = 50;
+    private volatile long busyPollNanos = DEFAULT_BUSY_POLL_NANOS;
+    private volatile int cpuAffinity = -1;
 
     EpollEventLoop(EventLoopGroup parent, Executor executor, int maxEvents,
                    SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
@@ -148,6 +156,10 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
             // write to the evfd which will then wake-up epoll_wait(...)
             Native.eventFdWrite(eventFd.intValue(), 1L);
+            EventExecutorMetrics metrics = metrics();
+            if (metrics != null) {
+                metrics.wakeup();
+            }
         }
     }
 
@@ -221,6 +233,59 @@ final class EpollEventLoop extends SingleThreadEventLoop {
         this.ioRatio = ioRatio;
     }
 
+    /**
+     * Returns the time in nanoseconds this event loop spins on {@code epoll_wait(...)} before it parks.
+     */
+    public long getBusyPollBudgetNanos() {
+        return busyPollNanos;
+    }
+
+    /**
+     * Sets the time this event loop spins on {@code epoll_wait(...)} with a zero timeout before it parks in a blocking
+     * {@code epoll_wait(...)} call. {@code 0} disables busy polling.
+     */
+    public void setBusyPollBudget(long budget, TimeUnit unit) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget: " + budget + " (expected: >= 0)");
+        }
+        busyPollNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * Returns the cpu the thread of this event loop is pinned to, or {@code -1} if it is not pinned.
+     */
+    int cpuAffinity() {
+        return cpuAffinity;
+    }
+
+    /**
+     * Pin the thread of this event loop to the given cpu. This is done asynchronously by the event loop itself, so
+     * it takes effect before any task which is submitted after this method returns.
+     */
+    void setCpuAffinity(final int cpu) {
+        if (cpu < 0) {
+            throw new IllegalArgumentException("cpu: " + cpu + " (expected: >= 0)");
+        }
+        cpuAffinity = cpu;
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Native.setCpuAffinity(cpu);
+                } catch (IOException e) {
+                    logger.warn("Failed to pin the event loop thread to cpu {}.", cpu, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the {@link EpollEventLoopMetric} of this event loop.
+     */
+    EpollEventLoopMetric metric() {
+        return metric;
+    }
+
     private int epollWait(boolean oldWakeup) throws IOException {
         // If a task was submitted when wakenUp value was 1, the task didn't get a chance to produce wakeup event.
         // So we need to check task queue again before calling epoll_wait. If we don't, the task might be pended
@@ -230,10 +295,44 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             return epollWaitNow();
         }
 
-        long totalDelay = delayNanos(System.nanoTime());
+        final long startTime = System.nanoTime();
+        long totalDelay = delayNanos(startTime);
         int delaySeconds = (int) min(totalDelay / 1000000000L, Integer.MAX_VALUE);
-        return Native.epollWait(epollFd, events, timerFd, delaySeconds,
-                (int) min(totalDelay - delaySeconds * 1000000000L, Integer.MAX_VALUE));
+        try {
+            return Native.epollWait(epollFd, events, timerFd, delaySeconds,
+                    (int) min(totalDelay - delaySeconds * 1000000000L, Integer.MAX_VALUE));
+        } finally {
+            metric.parked(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Spin on {@code epoll_wait(...)} with a zero timeout until either events are ready, tasks are pending or the
+     * given budget is used up. Returns the number of ready events, or {@link SelectStrategy#SELECT} if the budget was
+     * used up and the caller should park in {@link #epollWait(boolean)}.
+     */
+    private int epollBusyWait(long budgetNanos) throws IOException {
+        final long startTime = System.nanoTime();
+        boolean hit = true;
+        try {
+            for (;;) {
+                int ready = epollWaitNow();
+                if (ready != 0 || hasTasks()) {
+                    return ready;
+                }
+                long currentTime = System.nanoTime();
+                if (delayNanos(currentTime) <= 0) {
+                    // A scheduled task is due, let the caller run it.
+                    return 0;
+                }
+                if (currentTime - startTime >= budgetNanos) {
+                    hit = false;
+                    return SelectStrategy.SELECT;
+                }
+            }
+        } finally {
+            metric.spun(System.nanoTime() - startTime, hit);
+        }
     }
 
     private int epollWaitNow() throws IOException {
@@ -249,6 +348,14 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     case SelectStrategy.CONTINUE:
                         continue;
                     case SelectStrategy.SELECT:
+                        final long busyPollNanos = this.busyPollNanos;
+                        if (busyPollNanos > 0) {
+                            strategy = epollBusyWait(busyPollNanos);
+                            if (strategy != SelectStrategy.SELECT) {
+                                // Either events are ready or there is some work to do, so no need to park.
+                                break;
+                            }
+                        }
                         strategy = epollWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
@@ -287,7 +394,8 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                 }
 
                 final int ioRatio = this.ioRatio;
-                if (ioRatio == 100) {
+                final EventExecutorMetrics metrics = metrics();
+                if (ioRatio == 100 && metrics == null) {
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
@@ -306,7 +414,14 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     } finally {
                         // Ensure we always run tasks.
                         final long ioTime = System.nanoTime() - ioStartTime;
-                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        if (metrics != null) {
+                            metrics.ioProcessed(ioTime);
+                        }
+                        if (ioRatio == 100) {
+                            runAllTasks();
+                        } else {
+                            runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        }
                     }
                 }
                 if (allowGrowing && strategy == events.length()) {
@@ -381,6 +496,12 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     // past.
                     AbstractEpollUnsafe unsafe = (AbstractEpollUnsafe) ch.unsafe();
 
+                    // EPOLLERR is also used to signal that there is something in the error queue of the socket, like
+                    // the completion notifications of MSG_ZEROCOPY.
+                    if ((ev & Native.EPOLLERR) != 0) {
+                        unsafe.epollErrReady();
+                    }
+
                     // First check for EPOLLOUT as we may need to fail the connect ChannelPromise before try
                     // to read from the file descriptor.
                     // See https://github.com/netty/netty/issues/3785
@@ -449,4 +570,53 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             events.free();
         }
     }
+
+    /**
+     * Only updated by the {@link EpollEventLoop} itself, but may be read by any thread.
+     */
+    private static final class Metric implements EpollEventLoopMetric {
+        private volatile long spinTimeNanos;
+        private volatile long spinCount;
+        private volatile long spinHitCount;
+        private volatile long parkTimeNanos;
+        private volatile long parkCount;
+
+        void spun(long nanos, boolean hit) {
+            spinTimeNanos += nanos;
+            spinCount++;
+            if (hit) {
+                spinHitCount++;
+            }
+        }
+
+        void parked(long nanos) {
+            parkTimeNanos += nanos;
+            parkCount++;
+        }
+
+        @Override
+        public long spinTimeNanos() {
+            return spinTimeNanos;
+        }
+
+        @Override
+        public long spinCount() {
+            return spinCount;
+        }
+
+        @Override
+        public long spinHitCount() {
+            return spinHitCount;
+        }
+
+        @Override
+        public long parkTimeNanos() {
+            return parkTimeNanos;
+        }
+
+        @Override
+        public long parkCount() {
+            return parkCount;
+        }
+    }
 }
@@ -25,8 +25,12 @@ import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link EventLoopGroup} which uses epoll under the covers. Because of this
@@ -129,6 +133,51 @@ public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Sets the time the child event loops spin on {@code epoll_wait(...)} with a zero timeout before they park in a
+     * blocking {@code epoll_wait(...)} call. Busy polling trades CPU for lower latency on the idle-to-busy transition,
+     * as no wakeup of a parked thread is needed when new events arrive within the budget. Use {@code 0} (the default)
+     * to disable busy polling. This is usually combined with {@link EpollChannelOption#SO_BUSY_POLL}.
+     */
+    public void setBusyPollBudget(long budget, TimeUnit unit) {
+        for (EventExecutor e: this) {
+            ((EpollEventLoop) e).setBusyPollBudget(budget, unit);
+        }
+    }
+
+    /**
+     * Pins the thread of the {@code i}th child event loop to {@code cpus[i % cpus.length]}. This keeps the state of
+     * each event loop, and of the {@link io.netty.channel.Channel}s it serves, local to one cpu. Pinning is done
+     * asynchronously by each event loop before it runs any task which is submitted after this method returns.
+     *
+     * @see EpollReusePortServerBootstrap
+     */
+    public void setCpuAffinity(int... cpus) {
+        if (cpus == null || cpus.length == 0) {
+            throw new IllegalArgumentException("cpus must contain at least one cpu");
+        }
+        for (int cpu: cpus) {
+            if (cpu < 0) {
+                throw new IllegalArgumentException("cpu: " + cpu + " (expected: >= 0)");
+            }
+        }
+        int i = 0;
+        for (EventExecutor e: this) {
+            ((EpollEventLoop) e).setCpuAffinity(cpus[i++ % cpus.length]);
+        }
+    }
+
+    /**
+     * Returns the {@link EpollEventLoopMetric} of each of the child event loops.
+     */
+    public List<EpollEventLoopMetric> metrics() {
+        List<EpollEventLoopMetric> metrics = new ArrayList<EpollEventLoopMetric>(executorCount());
+        for (EventExecutor e: this) {
+            metrics.add(((EpollEventLoop) e).metric());
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         return new EpollEventLoop(this, executor, (Integer) args[0],
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes how much time an epoll based {@link io.netty.channel.EventLoop} spent busy polling versus parked in
+ * {@code epoll_wait(...)}. See {@link EpollEventLoopGroup#setBusyPollBudget(long, TimeUnit)}.
+ */
+public interface EpollEventLoopMetric {
+
+    /**
+     * Returns the total time in nanoseconds spent spinning on {@code epoll_wait(...)} with a zero timeout.
+     */
+    long spinTimeNanos();
+
+    /**
+     * Returns the number of times the {@link io.netty.channel.EventLoop} started to busy poll.
+     */
+    long spinCount();
+
+    /**
+     * Returns the number of times busy polling found ready events or tasks before the budget was used up, and so
+     * avoided to park the {@link io.netty.channel.EventLoop}.
+     */
+    long spinHitCount();
+
+    /**
+     * Returns the total time in nanoseconds spent blocked in {@code epoll_wait(...)}.
+     */
+    long parkTimeNanos();
+
+    /**
+     * Returns the number of times the {@link io.netty.channel.EventLoop} blocked in {@code epoll_wait(...)}.
+     */
+    long parkCount();
+}
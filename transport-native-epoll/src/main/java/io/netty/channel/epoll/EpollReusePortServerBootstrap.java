@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binds one {@link EpollServerSocketChannel} per {@link EventLoop} of an {@link EpollEventLoopGroup} to the same
+ * address using {@code SO_REUSEPORT}. Each {@link EventLoop} accepts its own connections and also serves them, so
+ * no single acceptor becomes the bottleneck and accepted {@link Channel}s are never handed off to another thread.
+ * <p>
+ * If the threads of the {@link EpollEventLoopGroup} were pinned via {@link EpollEventLoopGroup#setCpuAffinity(int...)}
+ * {@link #steerByCpu(boolean)} can be used to attach a {@code SO_ATTACH_REUSEPORT_CBPF} program which hands a new
+ * connection to the {@link EventLoop} running on the cpu that processed its packets, which keeps the whole
+ * connection local to one cpu. This requires Linux kernel 4.5 or later.
+ * <pre>
+ * EpollEventLoopGroup group = new EpollEventLoopGroup(4);
+ * group.setCpuAffinity(0, 1, 2, 3);
+ * ServerBootstrap bootstrap = new ServerBootstrap()
+ *         .channel(EpollServerSocketChannel.class)
+ *         .childHandler(new MyInitializer());
+ * List&lt;Channel&gt; serverChannels = new EpollReusePortServerBootstrap(bootstrap, group)
+ *         .steerByCpu(true)
+ *         .bind(8080).syncUninterruptibly().getNow();
+ * </pre>
+ */
+public final class EpollReusePortServerBootstrap {
+    private final ServerBootstrap bootstrap;
+    private final EpollEventLoopGroup group;
+    private volatile boolean steerByCpu;
+
+    /**
+     * Create a new instance.
+     *
+     * @param bootstrap the {@link ServerBootstrap} used as template for every {@link EventLoop}. Its channel must be
+     *                  an {@link EpollServerSocketChannel} and it must not have an {@link EpollEventLoopGroup} set.
+     * @param group     the {@link EpollEventLoopGroup} which is used to accept and serve the connections.
+     */
+    public EpollReusePortServerBootstrap(ServerBootstrap bootstrap, EpollEventLoopGroup group) {
+        ObjectUtil.checkNotNull(bootstrap, "bootstrap");
+        if (bootstrap.config().group() != null || bootstrap.config().childGroup() != null) {
+            throw new IllegalArgumentException("bootstrap must not have an EventLoopGroup set");
+        }
+        this.bootstrap = bootstrap.clone();
+        this.group = ObjectUtil.checkNotNull(group, "group");
+    }
+
+    /**
+     * If {@code true} new connections are handed to the {@link EventLoop} running on the cpu that processed their
+     * packets. Requires that the threads of the {@link EpollEventLoopGroup} are pinned via
+     * {@link EpollEventLoopGroup#setCpuAffinity(int...)}. Default is {@code false}, which lets the kernel select the
+     * {@link EventLoop} by hashing the connection.
+     */
+    public EpollReusePortServerBootstrap steerByCpu(boolean steerByCpu) {
+        this.steerByCpu = steerByCpu;
+        return this;
+    }
+
+    /**
+     * @see #bind(SocketAddress)
+     */
+    public Future<List<Channel>> bind(int inetPort) {
+        return bind(new InetSocketAddress(inetPort));
+    }
+
+    /**
+     * Bind one {@link EpollServerSocketChannel} per {@link EventLoop} to the given address. If the port is {@code 0}
+     * all {@link Channel}s are bound to the port which was selected for the first {@link Channel}. The returned
+     * {@link Future} is notified with the bound {@link Channel}s, in the order of the {@link EventLoop}s. If one
+     * bind fails all {@link Channel}s that were bound already are closed.
+     */
+    public Future<List<Channel>> bind(SocketAddress localAddress) {
+        ObjectUtil.checkNotNull(localAddress, "localAddress");
+        List<EventLoop> loops = new ArrayList<EventLoop>(group.executorCount());
+        for (EventExecutor executor: group) {
+            loops.add((EventLoop) executor);
+        }
+        int[] cpus = null;
+        if (steerByCpu) {
+            cpus = new int[loops.size()];
+            for (int i = 0; i < cpus.length; i++) {
+                cpus[i] = ((EpollEventLoop) loops.get(i)).cpuAffinity();
+                if (cpus[i] < 0) {
+                    throw new IllegalStateException(
+                            "steerByCpu requires pinned threads, see EpollEventLoopGroup.setCpuAffinity(...)");
+                }
+            }
+        }
+        Promise<List<Channel>> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        // The sockets need to be bound one after each other, as the index of each socket in the reuseport group is
+        // given by the order in which the sockets start to listen.
+        bind(loops, cpus, localAddress, new ArrayList<Channel>(loops.size()), promise);
+        return promise;
+    }
+
+    private void bind(final List<EventLoop> loops, final int[] cpus, final SocketAddress localAddress,
+                      final List<Channel> channels, final Promise<List<Channel>> promise) {
+        EventLoop loop = loops.get(channels.size());
+        ChannelFuture future = bootstrap.clone().group(loop, loop)
+                .option(EpollChannelOption.SO_REUSEPORT, true)
+                .bind(localAddress);
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    fail(channels, promise, future.cause());
+                    return;
+                }
+                Channel channel = future.channel();
+                channels.add(channel);
+                if (!(channel instanceof EpollServerSocketChannel)) {
+                    fail(channels, promise, new IllegalArgumentException(
+                            "channel must be an EpollServerSocketChannel: " + channel.getClass().getName()));
+                    return;
+                }
+                if (channels.size() < loops.size()) {
+                    SocketAddress address = localAddress;
+                    if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getPort() == 0) {
+                        // Use the port the kernel selected for the first Channel.
+                        address = channel.localAddress();
+                    }
+                    bind(loops, cpus, address, channels, promise);
+                    return;
+                }
+                if (cpus != null) {
+                    try {
+                        ((EpollServerSocketChannel) channels.get(0)).socket.attachReusePortCpuFilter(cpus);
+                    } catch (Throwable cause) {
+                        fail(channels, promise, cause);
+                        return;
+                    }
+                }
+                promise.setSuccess(Collections.unmodifiableList(channels));
+            }
+        });
+    }
+
+    private static void fail(List<Channel> channels, Promise<List<Channel>> promise, Throwable cause) {
+        for (Channel channel: channels) {
+            channel.close();
+        }
+        promise.setFailure(cause);
+    }
+}
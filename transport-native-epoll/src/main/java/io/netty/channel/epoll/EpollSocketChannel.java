@@ -100,6 +100,11 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return config;
     }
 
+    @Override
+    int zeroCopyWriteThreshold() {
+        return config.isZeroCopy() ? config.getZeroCopyWriteThreshold() : -1;
+    }
+
     @Override
     public ServerSocketChannel parent() {
         return (ServerSocketChannel) super.parent();
@@ -36,10 +36,17 @@ import static io.netty.channel.ChannelOption.SO_RCVBUF;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
+    // Zerocopy is generally only effective for writes of more than 10KB.
+    // See https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html
+    private static final int DEFAULT_ZEROCOPY_WRITE_THRESHOLD = 10 * 1024;
+
     private final EpollSocketChannel channel;
     private volatile boolean allowHalfClosure;
+    private volatile boolean zeroCopy;
+    private volatile int zeroCopyWriteThreshold = DEFAULT_ZEROCOPY_WRITE_THRESHOLD;
 
     /**
      * Creates a new instance.
@@ -62,7 +69,9 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_ZEROCOPY,
+                EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.SO_PREFER_BUSY_POLL);
     }
 
     @SuppressWarnings("unchecked")
@@ -119,6 +128,18 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.TCP_FASTOPEN_CONNECT) {
             return (T) Boolean.valueOf(isTcpFastOpenConnect());
         }
+        if (option == EpollChannelOption.SO_ZEROCOPY) {
+            return (T) Boolean.valueOf(isZeroCopy());
+        }
+        if (option == EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyWriteThreshold());
+        }
+        if (option == EpollChannelOption.SO_BUSY_POLL) {
+            return (T) Integer.valueOf(getBusyPoll());
+        }
+        if (option == EpollChannelOption.SO_PREFER_BUSY_POLL) {
+            return (T) Boolean.valueOf(isPreferBusyPoll());
+        }
         return super.getOption(option);
     }
 
@@ -164,6 +185,14 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpQuickAck((Boolean) value);
         } else if (option == EpollChannelOption.TCP_FASTOPEN_CONNECT) {
             setTcpFastOpenConnect((Boolean) value);
+        } else if (option == EpollChannelOption.SO_ZEROCOPY) {
+            setZeroCopy((Boolean) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD) {
+            setZeroCopyWriteThreshold((Integer) value);
+        } else if (option == EpollChannelOption.SO_BUSY_POLL) {
+            setBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.SO_PREFER_BUSY_POLL) {
+            setPreferBusyPoll((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -549,6 +578,97 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the {@code SO_ZEROCOPY} option on the socket. Requires Linux kernel 4.14 or later. If enabled, writes of
+     * at least {@link #getZeroCopyWriteThreshold()} bytes from buffers that have a memory address are done with
+     * {@code MSG_ZEROCOPY}. The buffers are released once the kernel signaled that it does not need the memory anymore.
+     * See <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">MSG_ZEROCOPY</a>
+     * for more details.
+     */
+    public EpollSocketChannelConfig setZeroCopy(boolean zeroCopy) {
+        try {
+            channel.socket.setZeroCopy(zeroCopy);
+            this.zeroCopy = zeroCopy;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_ZEROCOPY} is enabled, {@code false} otherwise.
+     */
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Set the minimum number of bytes a write needs to have to be done with {@code MSG_ZEROCOPY} if
+     * {@link #isZeroCopy()} is enabled.
+     */
+    public EpollSocketChannelConfig setZeroCopyWriteThreshold(int zeroCopyWriteThreshold) {
+        this.zeroCopyWriteThreshold = checkPositiveOrZero(zeroCopyWriteThreshold, "zeroCopyWriteThreshold");
+        return this;
+    }
+
+    /**
+     * Returns the minimum number of bytes a write needs to have to be done with {@code MSG_ZEROCOPY}.
+     */
+    public int getZeroCopyWriteThreshold() {
+        return zeroCopyWriteThreshold;
+    }
+
+    /**
+     * Set the {@code SO_BUSY_POLL} option on the socket, which is the approximate time in microseconds to busy poll
+     * the device queue on a blocking receive when there is no data. Increasing the value above the system default
+     * requires {@code CAP_NET_ADMIN}. Most useful in combination with
+     * {@link EpollEventLoopGroup#setBusyPollBudget(long, java.util.concurrent.TimeUnit)}.
+     */
+    public EpollSocketChannelConfig setBusyPoll(int busyPollMicros) {
+        try {
+            channel.socket.setBusyPoll(busyPollMicros);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns the value of the {@code SO_BUSY_POLL} option in microseconds.
+     */
+    public int getBusyPoll() {
+        try {
+            return channel.socket.getBusyPoll();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the {@code SO_PREFER_BUSY_POLL} option on the socket. Requires Linux kernel 5.11 or later and
+     * {@code CAP_NET_ADMIN}. If enabled, the kernel prefers busy polling over softirq processing of the device queue
+     * while the application keeps polling.
+     */
+    public EpollSocketChannelConfig setPreferBusyPoll(boolean preferBusyPoll) {
+        try {
+            channel.socket.setPreferBusyPoll(preferBusyPoll);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code SO_PREFER_BUSY_POLL} is enabled, {@code false} otherwise.
+     */
+    public boolean isPreferBusyPoll() {
+        try {
+            return channel.socket.isPreferBusyPoll();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
     @Override
     public boolean isAllowHalfClosure() {
         return allowHalfClosure;
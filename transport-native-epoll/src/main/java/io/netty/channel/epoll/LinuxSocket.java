@@ -29,6 +29,7 @@ import java.nio.channels.ClosedChannelException;
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
 import static io.netty.channel.unix.Errors.ioResult;
 import static io.netty.channel.unix.Errors.newConnectionResetException;
+import static io.netty.channel.unix.Errors.newIOException;
 
 /**
  * A socket which provides access Linux native methods.
@@ -39,6 +40,11 @@ final class LinuxSocket extends Socket {
             newConnectionResetException("syscall:sendfile(...)", ERRNO_EPIPE_NEGATIVE);
     private static final ClosedChannelException SENDFILE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendfile(...)");
+    private static final NativeIoException SEND_ZEROCOPY_CONNECTION_RESET_EXCEPTION =
+            newConnectionResetException("syscall:send(...)", ERRNO_EPIPE_NEGATIVE);
+    private static final ClosedChannelException SEND_ZEROCOPY_CLOSED_CHANNEL_EXCEPTION =
+            ThrowableUtil.unknownStackTrace(new ClosedChannelException(),
+                    LinuxSocket.class, "sendZeroCopyAddress(...)");
 
     public LinuxSocket(int fd) {
         super(fd);
@@ -99,6 +105,35 @@ final class LinuxSocket extends Socket {
         setIpTransparent(intValue(), enabled ? 1 : 0);
     }
 
+    void setZeroCopy(boolean zeroCopy) throws IOException {
+        setZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
+    void setBusyPoll(int busyPollMicros) throws IOException {
+        setBusyPoll(intValue(), busyPollMicros);
+    }
+
+    void setPreferBusyPoll(boolean preferBusyPoll) throws IOException {
+        setPreferBusyPoll(intValue(), preferBusyPoll ? 1 : 0);
+    }
+
+    /**
+     * Attach a classic BPF program to the {@code SO_REUSEPORT} group of this socket which selects the socket that
+     * accepts a new connection by the cpu that processed the packet. Connections processed by {@code cpus[i]} are
+     * handed to the {@code i}th socket of the group, all other connections are spread over the group by cpu id.
+     */
+    void attachReusePortCpuFilter(int[] cpus) throws IOException {
+        attachReusePortCpuFilter(intValue(), cpus);
+    }
+
+    void setUdpSegment(int segmentSize) throws IOException {
+        setUdpSegment(intValue(), segmentSize);
+    }
+
+    void setUdpGro(boolean gro) throws IOException {
+        setUdpGro(intValue(), gro ? 1 : 0);
+    }
+
     void getTcpInfo(EpollTcpInfo info) throws IOException {
         getTcpInfo(intValue(), info.info);
     }
@@ -148,6 +183,68 @@ final class LinuxSocket extends Socket {
         return isIpTransparent(intValue()) != 0;
     }
 
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
+    int getBusyPoll() throws IOException {
+        return getBusyPoll(intValue());
+    }
+
+    boolean isPreferBusyPoll() throws IOException {
+        return isPreferBusyPoll(intValue()) != 0;
+    }
+
+    /**
+     * Write the given memory region with {@code MSG_ZEROCOPY}. Returns the number of bytes written, {@code 0} if
+     * nothing could be written at the moment or {@code -1} if the kernel could not pin the memory, in which case the
+     * caller should fallback to a normal write.
+     */
+    int sendZeroCopyAddress(long memoryAddress, int pos, int limit) throws IOException {
+        int res = sendZeroCopyAddress(intValue(), memoryAddress, pos, limit);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == Native.ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("send", res, SEND_ZEROCOPY_CONNECTION_RESET_EXCEPTION, SEND_ZEROCOPY_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    /**
+     * Read the {@code MSG_ZEROCOPY} completion notifications from the error queue of the socket. Every notification
+     * is stored as three {@code int}s in the given array: the first and last id of the completed sends (inclusive)
+     * and {@code 1} if the kernel had to copy the data anyway, {@code 0} otherwise. Returns the number of
+     * notifications that were read.
+     */
+    int readZeroCopyCompletions(int[] completions) throws IOException {
+        int res = readZeroCopyCompletions(intValue(), completions);
+        if (res < 0) {
+            throw newIOException("recvmsg", res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns a new {@link LinuxSocket} which refers to the same socket as this one. The socket itself is only closed
+     * once both are closed.
+     */
+    LinuxSocket dup() throws IOException {
+        int res = dup(intValue());
+        if (res < 0) {
+            throw newIOException("dup", res);
+        }
+        return new LinuxSocket(res);
+    }
+
+    int getUdpSegment() throws IOException {
+        return getUdpSegment(intValue());
+    }
+
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
     PeerCredentials getPeerCredentials() throws IOException {
         return getPeerCredentials(intValue());
     }
@@ -189,6 +286,14 @@ final class LinuxSocket extends Socket {
     private static native int getTcpUserTimeout(int fd) throws IOException;
     private static native int isIpFreeBind(int fd) throws IOException;
     private static native int isIpTransparent(int fd) throws IOException;
+    private static native int getUdpSegment(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
+    private static native int sendZeroCopyAddress(int fd, long memoryAddress, int pos, int limit);
+    private static native int readZeroCopyCompletions(int fd, int[] completions);
+    private static native int dup(int fd);
+    private static native int isUdpGro(int fd) throws IOException;
+    private static native int getBusyPoll(int fd) throws IOException;
+    private static native int isPreferBusyPoll(int fd) throws IOException;
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
@@ -205,5 +310,11 @@ final class LinuxSocket extends Socket {
     private static native void setTcpUserTimeout(int fd, int milliseconds)throws IOException;
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
+    private static native void setUdpSegment(int fd, int segmentSize) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native void setBusyPoll(int fd, int busyPollMicros) throws IOException;
+    private static native void attachReusePortCpuFilter(int fd, int[] cpus) throws IOException;
+    private static native void setPreferBusyPoll(int fd, int preferBusyPoll) throws IOException;
     private static native void setTcpMd5Sig(int fd, byte[] address, int scopeId, byte[] key) throws IOException;
 }
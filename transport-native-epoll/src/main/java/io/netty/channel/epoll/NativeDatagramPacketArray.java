@@ -23,12 +23,13 @@ import io.netty.util.concurrent.FastThreadLocal;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 
 import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
-import static io.netty.channel.unix.NativeInetAddress.ipv4MappedIpv6Address;
 
 /**
- * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+
+ * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+ and
+ * <a href="http://linux.die.net/man/2/recvmmsg">recvmmsg(...)</a> on linux with GLIBC 2.12+
  */
 final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessageProcessor {
 
@@ -51,6 +52,8 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
 
     // Use UIO_MAX_IOV as this is the maximum number we can write with one sendmmsg(...) call.
     private final NativeDatagramPacket[] packets = new NativeDatagramPacket[UIO_MAX_IOV];
+    // The buffers the packets read into when used for recvmmsg(...).
+    private final ByteBuf[] buffers = new ByteBuf[UIO_MAX_IOV];
     private int count;
 
     private NativeDatagramPacketArray() {
@@ -74,7 +77,9 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         }
         NativeDatagramPacket p = packets[count];
         InetSocketAddress recipient = packet.recipient();
-        if (!p.init(content, recipient)) {
+        int segmentSize = packet instanceof SegmentedDatagramPacket ?
+                ((SegmentedDatagramPacket) packet).segmentSize() : 0;
+        if (!p.init(content, recipient, segmentSize)) {
             return false;
         }
 
@@ -82,6 +87,32 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         return true;
     }
 
+    /**
+     * Try to add the writable bytes of the given {@link ByteBuf} as target of the next
+     * {@link Native#recvmmsg(int, NativeDatagramPacket[], int, int)} call. Returns {@code true} on success,
+     * {@code false} otherwise.
+     */
+    boolean addWritable(ByteBuf buf) {
+        if (count == packets.length) {
+            return false;
+        }
+        if (!packets[count].initWritable(buf)) {
+            return false;
+        }
+        buffers[count++] = buf;
+        return true;
+    }
+
+    /**
+     * Returns the {@link ByteBuf} that was added via {@link #addWritable(ByteBuf)} at the given index and clears the
+     * reference to it. The caller takes over the ownership.
+     */
+    ByteBuf buffer(int index) {
+        ByteBuf buf = buffers[index];
+        buffers[index] = null;
+        return buf;
+    }
+
     @Override
     public boolean processMessage(Object msg) throws Exception {
         return msg instanceof DatagramPacket && add((DatagramPacket) msg);
@@ -112,11 +143,23 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         return array;
     }
 
+    /**
+     * Returns an empty {@link NativeDatagramPacketArray} which can be filled via {@link #addWritable(ByteBuf)}.
+     */
+    static NativeDatagramPacketArray getInstance() {
+        NativeDatagramPacketArray array = ARRAY.get();
+        array.count = 0;
+        return array;
+    }
+
     /**
      * Used to pass needed data to JNI.
      */
     @SuppressWarnings("unused")
     static final class NativeDatagramPacket {
+        private static final byte[] IPV4_MAPPED_IPV6_PREFIX = {
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, (byte) 0xff };
+
         // Each NativeDatagramPackets holds a IovArray which is used for gathering writes.
         // This is ok as NativeDatagramPacketArray is always obtained via a FastThreadLocal and
         // so the memory needed is quite small anyway.
@@ -126,9 +169,14 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         private long memoryAddress;
         private int count;
 
-        private byte[] addr;
+        // Always holds an ipv6 or ipv4 mapped ipv6 address, which is filled by recvmmsg(...) for received packets.
+        private final byte[] addr = new byte[16];
         private int scopeId;
         private int port;
+        // The number of bytes received by recvmmsg(...).
+        private int receivedAmount;
+        // The segment size used for UDP_SEGMENT when sending, or the one reported via UDP_GRO when receiving.
+        private int segmentSize;
 
         private void release() {
             array.release();
@@ -137,7 +185,7 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         /**
          * Init this instance and return {@code true} if the init was successful.
          */
-        private boolean init(ByteBuf buf, InetSocketAddress recipient) {
+        private boolean init(ByteBuf buf, InetSocketAddress recipient, int segmentSize) {
             array.clear();
             if (!array.add(buf)) {
                 return false;
@@ -148,13 +196,71 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
 
             InetAddress address = recipient.getAddress();
             if (address instanceof Inet6Address) {
-                addr = address.getAddress();
+                System.arraycopy(address.getAddress(), 0, addr, 0, 16);
                 scopeId = ((Inet6Address) address).getScopeId();
             } else {
-                addr = ipv4MappedIpv6Address(address.getAddress());
+                // convert to ipv4 mapped ipv6 address;
+                System.arraycopy(IPV4_MAPPED_IPV6_PREFIX, 0, addr, 0, IPV4_MAPPED_IPV6_PREFIX.length);
+                System.arraycopy(address.getAddress(), 0, addr, 12, 4);
                 scopeId = 0;
             }
             port = recipient.getPort();
+            this.segmentSize = segmentSize;
+            return true;
+        }
+
+        /**
+         * Init this instance to receive into the writable bytes of the given {@link ByteBuf} and return {@code true}
+         * if the init was successful.
+         */
+        private boolean initWritable(ByteBuf buf) {
+            array.clear();
+            if (!array.add(buf, buf.writerIndex(), buf.writableBytes())) {
+                return false;
+            }
+            memoryAddress = array.memoryAddress(0);
+            count = array.count();
+            receivedAmount = 0;
+            segmentSize = 0;
+            return true;
+        }
+
+        /**
+         * Returns the address of the sender of the datagram received by the last recvmmsg(...) call.
+         */
+        InetSocketAddress remoteAddress() throws UnknownHostException {
+            final InetAddress address;
+            if (isIpv4Mapped(addr)) {
+                byte[] ipv4 = new byte[4];
+                System.arraycopy(addr, 12, ipv4, 0, 4);
+                address = InetAddress.getByAddress(ipv4);
+            } else {
+                address = Inet6Address.getByAddress(null, addr.clone(), scopeId);
+            }
+            return new InetSocketAddress(address, port);
+        }
+
+        /**
+         * Returns the number of bytes received by the last recvmmsg(...) call.
+         */
+        int receivedAmount() {
+            return receivedAmount;
+        }
+
+        /**
+         * Returns the size of the segments the datagrams received by the last recvmmsg(...) call were coalesced from
+         * via UDP_GRO, or {@code 0} if no coalescing took place.
+         */
+        int segmentSize() {
+            return segmentSize;
+        }
+
+        private static boolean isIpv4Mapped(byte[] addr) {
+            for (int i = 0; i < IPV4_MAPPED_IPV6_PREFIX.length; i++) {
+                if (addr[i] != IPV4_MAPPED_IPV6_PREFIX[i]) {
+                    return false;
+                }
+            }
             return true;
         }
     }
@@ -16,14 +16,117 @@
 package io.netty.channel.epoll;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
 import io.netty.testsuite.transport.TestsuitePermutation;
 import io.netty.testsuite.transport.socket.DatagramUnicastTest;
+import org.junit.Test;
 
+import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 public class EpollDatagramUnicastTest extends DatagramUnicastTest {
     @Override
     protected List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> newFactories() {
         return EpollSocketTestPermutation.INSTANCE.datagram();
     }
+
+    @Test
+    public void testSendSegmentedDatagramPacket() throws Throwable {
+        run();
+    }
+
+    public void testSendSegmentedDatagramPacket(Bootstrap sb, Bootstrap cb) throws Throwable {
+        testSendSegmentedDatagramPacket(sb, cb, false);
+    }
+
+    @Test
+    public void testSendSegmentedDatagramPacketWithGro() throws Throwable {
+        run();
+    }
+
+    public void testSendSegmentedDatagramPacketWithGro(Bootstrap sb, Bootstrap cb) throws Throwable {
+        testSendSegmentedDatagramPacket(sb, cb, true);
+    }
+
+    private void testSendSegmentedDatagramPacket(Bootstrap sb, Bootstrap cb, boolean gro) throws Throwable {
+        // Only the epoll transport can send a SegmentedDatagramPacket.
+        if (!(cb.config().group() instanceof EpollEventLoopGroup)) {
+            return;
+        }
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+
+        final int segmentSize = 100;
+        final int numSegments = 10;
+        final CountDownLatch latch = new CountDownLatch(numSegments);
+        final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            if (gro) {
+                // Use big enough buffers so the kernel can coalesce the segments again.
+                sb.option(EpollChannelOption.UDP_GRO, true)
+                  .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(segmentSize * numSegments));
+            }
+            sc = sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                private int received;
+
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+                    try {
+                        ByteBuf content = packet.content();
+                        assertEquals(segmentSize, content.readableBytes());
+                        for (int i = content.readerIndex(); i < content.writerIndex(); i++) {
+                            assertEquals(received, content.getByte(i));
+                        }
+                        received++;
+                    } catch (Throwable cause) {
+                        errorRef.compareAndSet(null, cause);
+                    }
+                    latch.countDown();
+                }
+            }).bind(newSocketAddress()).sync().channel();
+            cc = cb.handler(new SimpleChannelInboundHandler<Object>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                    // Nothing will be sent.
+                }
+            }).bind(newSocketAddress()).sync().channel();
+
+            ByteBuf buf = Unpooled.directBuffer(segmentSize * numSegments);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = 0; j < segmentSize; j++) {
+                    buf.writeByte(i);
+                }
+            }
+            cc.writeAndFlush(new SegmentedDatagramPacket(
+                    buf, segmentSize, (InetSocketAddress) sc.localAddress())).sync();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Throwable error = errorRef.get();
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.util.concurrent.Future;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EpollEventLoopTest {
+
+    @Test
+    public void testBusyPollRunsTasks() throws Exception {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            group.setBusyPollBudget(10, TimeUnit.MILLISECONDS);
+            EpollEventLoopMetric metric = group.metrics().get(0);
+
+            for (int i = 0; i < 100; i++) {
+                final int value = i;
+                Future<Integer> future = group.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return value;
+                    }
+                });
+                assertEquals(value, (int) future.get(5, TimeUnit.SECONDS));
+            }
+
+            Future<?> scheduled = group.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            scheduled.get(5, TimeUnit.SECONDS);
+
+            assertTrue(metric.spinCount() > 0);
+            assertTrue(metric.spinTimeNanos() > 0);
+            assertTrue(metric.spinHitCount() <= metric.spinCount());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testBusyPollDisabledByDefault() throws Exception {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            group.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }, 10, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+
+            EpollEventLoopMetric metric = group.metrics().get(0);
+            assertEquals(0, metric.spinCount());
+            assertTrue(metric.parkCount() > 0);
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testCpuAffinity() throws Exception {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            group.setCpuAffinity(0);
+            int cpu = group.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return Native.currentCpu();
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertEquals(0, cpu);
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCpuAffinity() {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            group.setCpuAffinity(-1);
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testInvalidBusyPollBudget() {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            group.setBusyPollBudget(-1, TimeUnit.MICROSECONDS);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+}
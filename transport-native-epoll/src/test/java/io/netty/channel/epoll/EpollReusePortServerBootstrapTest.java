@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.util.NetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EpollReusePortServerBootstrapTest {
+    private static final int CONNECTIONS = 16;
+
+    private EpollEventLoopGroup group;
+    private BlockingQueue<Channel[]> accepted;
+    private ServerBootstrap bootstrap;
+
+    @Before
+    public void setUp() {
+        group = new EpollEventLoopGroup(2);
+        accepted = new LinkedBlockingQueue<Channel[]>();
+        bootstrap = new ServerBootstrap()
+                .channel(EpollServerSocketChannel.class)
+                .childHandler(new AcceptedHandler());
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBootstrapWithGroup() {
+        new EpollReusePortServerBootstrap(bootstrap.clone().group(group), group);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSteerByCpuRequiresPinnedThreads() {
+        new EpollReusePortServerBootstrap(bootstrap, group).steerByCpu(true).bind(0);
+    }
+
+    @Test(timeout = 10000)
+    public void testChildServedByAcceptingEventLoop() throws Exception {
+        List<Channel> channels = new EpollReusePortServerBootstrap(bootstrap, group)
+                .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).syncUninterruptibly().getNow();
+        try {
+            assertEquals(2, channels.size());
+            assertEquals(channels.get(0).localAddress(), channels.get(1).localAddress());
+            assertTrue(channels.get(0).eventLoop() != channels.get(1).eventLoop());
+
+            connect((InetSocketAddress) channels.get(0).localAddress());
+            for (int i = 0; i < CONNECTIONS; i++) {
+                Channel[] parentAndChild = accepted.poll(5, TimeUnit.SECONDS);
+                assertNotNull(parentAndChild);
+                assertSame(parentAndChild[0].eventLoop(), parentAndChild[1].eventLoop());
+            }
+        } finally {
+            close(channels);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSteerByCpu() throws Exception {
+        // Pin both threads to the first cpu, so all connections need to be accepted by the first Channel.
+        group.setCpuAffinity(0);
+        List<Channel> channels = new EpollReusePortServerBootstrap(bootstrap, group).steerByCpu(true)
+                .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).syncUninterruptibly().getNow();
+        try {
+            EventLoop first = channels.get(0).eventLoop();
+            connect((InetSocketAddress) channels.get(0).localAddress());
+            for (int i = 0; i < CONNECTIONS; i++) {
+                Channel[] parentAndChild = accepted.poll(5, TimeUnit.SECONDS);
+                assertNotNull(parentAndChild);
+                assertSame(channels.get(0), parentAndChild[0]);
+                assertSame(first, parentAndChild[1].eventLoop());
+            }
+        } finally {
+            close(channels);
+        }
+    }
+
+    @Sharable
+    private final class AcceptedHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            accepted.add(new Channel[] { ctx.channel().parent(), ctx.channel() });
+            ctx.close();
+        }
+    }
+
+    private static void connect(InetSocketAddress address) throws Exception {
+        for (int i = 0; i < CONNECTIONS; i++) {
+            // Use a new source port for every connection so these are hashed to different sockets.
+            Socket socket = new Socket(address.getAddress(), address.getPort());
+            socket.close();
+        }
+    }
+
+    private static void close(List<Channel> channels) {
+        for (Channel channel: channels) {
+            channel.close().syncUninterruptibly();
+        }
+    }
+}
@@ -134,6 +134,57 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testZeroCopy() {
+        try {
+            ch.config().setZeroCopy(true);
+        } catch (ChannelException e) {
+            // SO_ZEROCOPY requires linux 4.14+
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().isZeroCopy());
+        ch.config().setZeroCopy(false);
+        assertFalse(ch.config().isZeroCopy());
+    }
+
+    @Test
+    public void testZeroCopyWriteThreshold() {
+        ch.config().setZeroCopyWriteThreshold(1024);
+        assertEquals(1024, ch.config().getZeroCopyWriteThreshold());
+        try {
+            ch.config().setZeroCopyWriteThreshold(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertEquals(1024, ch.config().getZeroCopyWriteThreshold());
+    }
+
+    @Test
+    public void testBusyPoll() {
+        try {
+            ch.config().setBusyPoll(50);
+        } catch (ChannelException e) {
+            // Increasing SO_BUSY_POLL requires CAP_NET_ADMIN
+            assumeNoException(e);
+        }
+        assertEquals(50, ch.config().getBusyPoll());
+        assertEquals(50, (int) ch.config().getOption(EpollChannelOption.SO_BUSY_POLL));
+    }
+
+    @Test
+    public void testPreferBusyPoll() {
+        try {
+            ch.config().setPreferBusyPoll(true);
+        } catch (ChannelException e) {
+            // SO_PREFER_BUSY_POLL requires linux 5.11+ and CAP_NET_ADMIN
+            assumeNoException(e);
+        }
+        assertTrue(ch.config().isPreferBusyPoll());
+        ch.config().setPreferBusyPoll(false);
+        assertFalse(ch.config().isPreferBusyPoll());
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class EpollSocketZeroCopyGatheringWriteTest extends EpollSocketGatheringWriteTest {
+
+    @Override
+    protected void configure(ServerBootstrap bootstrap, Bootstrap bootstrap2, ByteBufAllocator allocator) {
+        super.configure(bootstrap, bootstrap2, allocator);
+        bootstrap.childOption(EpollChannelOption.SO_ZEROCOPY, true)
+                .childOption(EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD, 1024);
+        bootstrap2.option(EpollChannelOption.SO_ZEROCOPY, true)
+                .option(EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD, 1024);
+    }
+
+    @Test(timeout = 60000)
+    public void testCloseAfterZeroCopyWrite() throws Throwable {
+        run();
+    }
+
+    public void testCloseAfterZeroCopyWrite(ServerBootstrap sb, Bootstrap cb) throws Throwable {
+        byte[] data = new byte[1024 * 1024 * 16];
+        new Random().nextBytes(data);
+
+        final ByteBuf received = Unpooled.buffer(data.length);
+        final Promise<Void> serverDonePromise = ImmediateEventExecutor.INSTANCE.newPromise();
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                received.writeBytes(msg);
+            }
+
+            @Override
+            public void channelInactive(ChannelHandlerContext ctx) {
+                serverDonePromise.trySuccess(null);
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                serverDonePromise.tryFailure(cause);
+            }
+        });
+        cb.option(ChannelOption.SO_SNDBUF, 1024 * 1024 * 32)
+                .handler(new ChannelInboundHandlerAdapter());
+
+        Channel sc = sb.bind().sync().channel();
+        Channel cc = cb.connect(sc.localAddress()).sync().channel();
+
+        ByteBuf buf = Unpooled.directBuffer(data.length).writeBytes(data);
+        try {
+            // Close as soon as the data was handed to the kernel, which may still send it from the buffer's memory.
+            cc.writeAndFlush(buf.retain()).addListener(ChannelFutureListener.CLOSE);
+            cc.closeFuture().sync();
+
+            serverDonePromise.sync();
+            assertEquals(Unpooled.wrappedBuffer(data), received);
+
+            // The buffer is released once the kernel reported the completion of the write.
+            while (buf.refCnt() != 1) {
+                Thread.sleep(10);
+            }
+        } finally {
+            buf.release();
+            received.release();
+            sc.close().sync();
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+#define _GNU_SOURCE
+#include <jni.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <stdio.h>
+#include <string.h>
+#include <errno.h>
+#include <dlfcn.h>
+#include <sys/eventfd.h>
+#include <sys/mman.h>
+#include <sys/socket.h>
+#include <sys/syscall.h>
+#include <sys/types.h>
+#include <sys/uio.h>
+#include <netinet/in.h>
+#include <unistd.h>
+#include <time.h>
+#include <linux/io_uring.h>
+
+#include "netty_unix_errors.h"
+#include "netty_unix_filedescriptor.h"
+#include "netty_unix_jni.h"
+#include "netty_unix_limits.h"
+#include "netty_unix_socket.h"
+#include "netty_unix_util.h"
+
+// The layout of the array returned by ioUringSetup0(...). Must be kept in sync with Native.java
+#define RING_SQ_HEAD 0
+#define RING_SQ_TAIL 1
+#define RING_SQ_MASK 2
+#define RING_SQ_ENTRIES 3
+#define RING_SQ_FLAGS 4
+#define RING_SQ_DROPPED 5
+#define RING_SQ_ARRAY 6
+#define RING_SQ_SQES 7
+#define RING_SQ_RING_SIZE 8
+#define RING_SQ_RING_ADDRESS 9
+#define RING_CQ_HEAD 10
+#define RING_CQ_TAIL 11
+#define RING_CQ_MASK 12
+#define RING_CQ_ENTRIES 13
+#define RING_CQ_OVERFLOW 14
+#define RING_CQ_CQES 15
+#define RING_CQ_RING_SIZE 16
+#define RING_CQ_RING_ADDRESS 17
+#define RING_FD 18
+#define RING_FEATURES 19
+#define RING_SQES_SIZE 20
+#define RING_LENGTH 21
+
+// util methods
+static inline int sys_io_uring_setup(unsigned int entries, struct io_uring_params* p) {
+    return (int) syscall(__NR_io_uring_setup, entries, p);
+}
+
+static inline int sys_io_uring_enter(int fd, unsigned int toSubmit, unsigned int minComplete, unsigned int flags,
+                                     void* arg, size_t argSize) {
+    return (int) syscall(__NR_io_uring_enter, fd, toSubmit, minComplete, flags, arg, argSize);
+}
+
+// JNI Registered Methods Begin
+static jlongArray netty_io_uring_native_ioUringSetup0(JNIEnv* env, jclass clazz, jint entries) {
+    struct io_uring_params p;
+    memset(&p, 0, sizeof(p));
+
+    int ringFd = sys_io_uring_setup((unsigned int) entries, &p);
+    if (ringFd < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "io_uring_setup() failed: ", errno);
+        return NULL;
+    }
+
+    size_t sqRingSize = p.sq_off.array + p.sq_entries * sizeof(unsigned int);
+    size_t cqRingSize = p.cq_off.cqes + p.cq_entries * sizeof(struct io_uring_cqe);
+    if ((p.features & IORING_FEAT_SINGLE_MMAP) != 0 && cqRingSize > sqRingSize) {
+        sqRingSize = cqRingSize;
+    }
+
+    void* sqRing = mmap(NULL, sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd, IORING_OFF_SQ_RING);
+    if (sqRing == MAP_FAILED) {
+        int err = errno;
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission queue failed: ", err);
+        return NULL;
+    }
+
+    void* cqRing;
+    if ((p.features & IORING_FEAT_SINGLE_MMAP) != 0) {
+        // Both rings share the same mapping, which means we must only unmap it once.
+        cqRing = sqRing;
+        cqRingSize = 0;
+    } else {
+        cqRing = mmap(NULL, cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd, IORING_OFF_CQ_RING);
+        if (cqRing == MAP_FAILED) {
+            int err = errno;
+            munmap(sqRing, sqRingSize);
+            close(ringFd);
+            netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the completion queue failed: ", err);
+            return NULL;
+        }
+    }
+
+    size_t sqesSize = p.sq_entries * sizeof(struct io_uring_sqe);
+    void* sqes = mmap(NULL, sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd, IORING_OFF_SQES);
+    if (sqes == MAP_FAILED) {
+        int err = errno;
+        munmap(sqRing, sqRingSize);
+        if (cqRingSize != 0) {
+            munmap(cqRing, cqRingSize);
+        }
+        close(ringFd);
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "mmap() of the submission queue entries failed: ", err);
+        return NULL;
+    }
+
+    jlong ring[RING_LENGTH];
+    ring[RING_SQ_HEAD] = (jlong) (sqRing + p.sq_off.head);
+    ring[RING_SQ_TAIL] = (jlong) (sqRing + p.sq_off.tail);
+    ring[RING_SQ_MASK] = (jlong) (sqRing + p.sq_off.ring_mask);
+    ring[RING_SQ_ENTRIES] = (jlong) (sqRing + p.sq_off.ring_entries);
+    ring[RING_SQ_FLAGS] = (jlong) (sqRing + p.sq_off.flags);
+    ring[RING_SQ_DROPPED] = (jlong) (sqRing + p.sq_off.dropped);
+    ring[RING_SQ_ARRAY] = (jlong) (sqRing + p.sq_off.array);
+    ring[RING_SQ_SQES] = (jlong) sqes;
+    ring[RING_SQ_RING_SIZE] = (jlong) sqRingSize;
+    ring[RING_SQ_RING_ADDRESS] = (jlong) sqRing;
+    ring[RING_CQ_HEAD] = (jlong) (cqRing + p.cq_off.head);
+    ring[RING_CQ_TAIL] = (jlong) (cqRing + p.cq_off.tail);
+    ring[RING_CQ_MASK] = (jlong) (cqRing + p.cq_off.ring_mask);
+    ring[RING_CQ_ENTRIES] = (jlong) (cqRing + p.cq_off.ring_entries);
+    ring[RING_CQ_OVERFLOW] = (jlong) (cqRing + p.cq_off.overflow);
+    ring[RING_CQ_CQES] = (jlong) (cqRing + p.cq_off.cqes);
+    ring[RING_CQ_RING_SIZE] = (jlong) cqRingSize;
+    ring[RING_CQ_RING_ADDRESS] = (jlong) cqRing;
+    ring[RING_FD] = (jlong) ringFd;
+    ring[RING_FEATURES] = (jlong) p.features;
+    ring[RING_SQES_SIZE] = (jlong) sqesSize;
+
+    jlongArray array = (*env)->NewLongArray(env, RING_LENGTH);
+    if (array == NULL) {
+        munmap(sqes, sqesSize);
+        munmap(sqRing, sqRingSize);
+        if (cqRingSize != 0) {
+            munmap(cqRing, cqRingSize);
+        }
+        close(ringFd);
+        // We ran out of memory and the exception is already pending.
+        return NULL;
+    }
+    (*env)->SetLongArrayRegion(env, array, 0, RING_LENGTH, ring);
+    return array;
+}
+
+static void netty_io_uring_native_ioUringExit0(JNIEnv* env, jclass clazz, jint ringFd,
+        jlong sqRingAddress, jlong sqRingSize, jlong cqRingAddress, jlong cqRingSize,
+        jlong sqesAddress, jlong sqesSize) {
+    munmap((void*) sqesAddress, (size_t) sqesSize);
+    munmap((void*) sqRingAddress, (size_t) sqRingSize);
+    if (cqRingSize != 0) {
+        munmap((void*) cqRingAddress, (size_t) cqRingSize);
+    }
+    close(ringFd);
+}
+
+static jint netty_io_uring_native_ioUringEnter0(JNIEnv* env, jclass clazz, jint ringFd, jint toSubmit,
+        jint minComplete, jint flags, jlong timeoutNanos) {
+    int result;
+    if (timeoutNanos >= 0 && (flags & IORING_ENTER_GETEVENTS) != 0) {
+        struct __kernel_timespec ts;
+        ts.tv_sec = timeoutNanos / 1000000000;
+        ts.tv_nsec = timeoutNanos % 1000000000;
+
+        struct io_uring_getevents_arg arg;
+        memset(&arg, 0, sizeof(arg));
+        arg.ts = (uint64_t) (uintptr_t) &ts;
+
+        result = sys_io_uring_enter(ringFd, (unsigned int) toSubmit, (unsigned int) minComplete,
+                                    ((unsigned int) flags) | IORING_ENTER_EXT_ARG, &arg, sizeof(arg));
+    } else {
+        result = sys_io_uring_enter(ringFd, (unsigned int) toSubmit, (unsigned int) minComplete,
+                                    (unsigned int) flags, NULL, 0);
+    }
+    if (result < 0) {
+        return -errno;
+    }
+    return result;
+}
+
+static jint netty_io_uring_native_eventFd(JNIEnv* env, jclass clazz) {
+    jint eventFD = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd() failed: ", errno);
+    }
+    return eventFD;
+}
+
+static void netty_io_uring_native_eventFdWrite(JNIEnv* env, jclass clazz, jint fd, jlong value) {
+    jint eventFD = eventfd_write(fd, (eventfd_t) value);
+
+    if (eventFD < 0) {
+        netty_unix_errors_throwChannelExceptionErrorNo(env, "eventfd_write() failed: ", errno);
+    }
+}
+
+static jboolean netty_io_uring_native_isIPv6(JNIEnv* env, jclass clazz, jint fd) {
+    int domain;
+    if (netty_unix_socket_getOption(env, fd, SOL_SOCKET, SO_DOMAIN, &domain, sizeof(domain)) == -1) {
+        return JNI_FALSE;
+    }
+    return domain == AF_INET6 ? JNI_TRUE : JNI_FALSE;
+}
+
+static jint netty_io_uring_native_ioringOpRead(JNIEnv* env, jclass clazz) {
+    return IORING_OP_READ;
+}
+
+static jint netty_io_uring_native_ioringOpWrite(JNIEnv* env, jclass clazz) {
+    return IORING_OP_WRITE;
+}
+
+static jint netty_io_uring_native_ioringOpWritev(JNIEnv* env, jclass clazz) {
+    return IORING_OP_WRITEV;
+}
+
+static jint netty_io_uring_native_ioringOpRecv(JNIEnv* env, jclass clazz) {
+    return IORING_OP_RECV;
+}
+
+static jint netty_io_uring_native_ioringOpAccept(JNIEnv* env, jclass clazz) {
+    return IORING_OP_ACCEPT;
+}
+
+static jint netty_io_uring_native_ioringOpConnect(JNIEnv* env, jclass clazz) {
+    return IORING_OP_CONNECT;
+}
+
+static jint netty_io_uring_native_ioringOpRecvmsg(JNIEnv* env, jclass clazz) {
+    return IORING_OP_RECVMSG;
+}
+
+static jint netty_io_uring_native_ioringOpSendmsg(JNIEnv* env, jclass clazz) {
+    return IORING_OP_SENDMSG;
+}
+
+static jint netty_io_uring_native_ioringOpAsyncCancel(JNIEnv* env, jclass clazz) {
+    return IORING_OP_ASYNC_CANCEL;
+}
+
+static jint netty_io_uring_native_ioringEnterGetevents(JNIEnv* env, jclass clazz) {
+    return IORING_ENTER_GETEVENTS;
+}
+
+static jint netty_io_uring_native_ioringSqCqOverflow(JNIEnv* env, jclass clazz) {
+    return IORING_SQ_CQ_OVERFLOW;
+}
+
+static jint netty_io_uring_native_ioringFeatNodrop(JNIEnv* env, jclass clazz) {
+    return IORING_FEAT_NODROP;
+}
+
+static jint netty_io_uring_native_ioringFeatExtArg(JNIEnv* env, jclass clazz) {
+    return IORING_FEAT_EXT_ARG;
+}
+
+static jint netty_io_uring_native_sizeofIoUringSqe(JNIEnv* env, jclass clazz) {
+    return sizeof(struct io_uring_sqe);
+}
+
+static jint netty_io_uring_native_sizeofIoUringCqe(JNIEnv* env, jclass clazz) {
+    return sizeof(struct io_uring_cqe);
+}
+
+static jint netty_io_uring_native_sizeofSockaddrStorage(JNIEnv* env, jclass clazz) {
+    return sizeof(struct sockaddr_storage);
+}
+
+static jint netty_io_uring_native_sizeofMsghdr(JNIEnv* env, jclass clazz) {
+    return sizeof(struct msghdr);
+}
+
+static jint netty_io_uring_native_sizeofIovec(JNIEnv* env, jclass clazz) {
+    return sizeof(struct iovec);
+}
+
+static jint netty_io_uring_native_afInet(JNIEnv* env, jclass clazz) {
+    return AF_INET;
+}
+
+static jint netty_io_uring_native_afInet6(JNIEnv* env, jclass clazz) {
+    return AF_INET6;
+}
+
+static jint netty_io_uring_native_sockNonblockCloexec(JNIEnv* env, jclass clazz) {
+    return SOCK_NONBLOCK | SOCK_CLOEXEC;
+}
+
+static jint netty_io_uring_native_msgDontwait(JNIEnv* env, jclass clazz) {
+    return MSG_DONTWAIT;
+}
+
+static jint netty_io_uring_native_ecanceled(JNIEnv* env, jclass clazz) {
+    return ECANCELED;
+}
+
+static jint netty_io_uring_native_etime(JNIEnv* env, jclass clazz) {
+    return ETIME;
+}
+
+static jint netty_io_uring_native_eintr(JNIEnv* env, jclass clazz) {
+    return EINTR;
+}
+
+static jint netty_io_uring_native_ebusy(JNIEnv* env, jclass clazz) {
+    return EBUSY;
+}
+// JNI Registered Methods End
+
+// JNI Method Registration Table Begin
+static const JNINativeMethod statically_referenced_fixed_method_table[] = {
+  { "ioringOpRead", "()I", (void *) netty_io_uring_native_ioringOpRead },
+  { "ioringOpWrite", "()I", (void *) netty_io_uring_native_ioringOpWrite },
+  { "ioringOpWritev", "()I", (void *) netty_io_uring_native_ioringOpWritev },
+  { "ioringOpRecv", "()I", (void *) netty_io_uring_native_ioringOpRecv },
+  { "ioringOpAccept", "()I", (void *) netty_io_uring_native_ioringOpAccept },
+  { "ioringOpConnect", "()I", (void *) netty_io_uring_native_ioringOpConnect },
+  { "ioringOpRecvmsg", "()I", (void *) netty_io_uring_native_ioringOpRecvmsg },
+  { "ioringOpSendmsg", "()I", (void *) netty_io_uring_native_ioringOpSendmsg },
+  { "ioringOpAsyncCancel", "()I", (void *) netty_io_uring_native_ioringOpAsyncCancel },
+  { "ioringEnterGetevents", "()I", (void *) netty_io_uring_native_ioringEnterGetevents },
+  { "ioringSqCqOverflow", "()I", (void *) netty_io_uring_native_ioringSqCqOverflow },
+  { "ioringFeatNodrop", "()I", (void *) netty_io_uring_native_ioringFeatNodrop },
+  { "ioringFeatExtArg", "()I", (void *) netty_io_uring_native_ioringFeatExtArg },
+  { "sizeofIoUringSqe", "()I", (void *) netty_io_uring_native_sizeofIoUringSqe },
+  { "sizeofIoUringCqe", "()I", (void *) netty_io_uring_native_sizeofIoUringCqe },
+  { "sizeofSockaddrStorage", "()I", (void *) netty_io_uring_native_sizeofSockaddrStorage },
+  { "sizeofMsghdr", "()I", (void *) netty_io_uring_native_sizeofMsghdr },
+  { "sizeofIovec", "()I", (void *) netty_io_uring_native_sizeofIovec },
+  { "afInet", "()I", (void *) netty_io_uring_native_afInet },
+  { "afInet6", "()I", (void *) netty_io_uring_native_afInet6 },
+  { "sockNonblockCloexec", "()I", (void *) netty_io_uring_native_sockNonblockCloexec },
+  { "msgDontwait", "()I", (void *) netty_io_uring_native_msgDontwait },
+  { "ecanceled", "()I", (void *) netty_io_uring_native_ecanceled },
+  { "etime", "()I", (void *) netty_io_uring_native_etime },
+  { "eintr", "()I", (void *) netty_io_uring_native_eintr },
+  { "ebusy", "()I", (void *) netty_io_uring_native_ebusy }
+};
+static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
+static const JNINativeMethod fixed_method_table[] = {
+  { "ioUringSetup0", "(I)[J", (void *) netty_io_uring_native_ioUringSetup0 },
+  { "ioUringExit0", "(IJJJJJJ)V", (void *) netty_io_uring_native_ioUringExit0 },
+  { "ioUringEnter0", "(IIIIJ)I", (void *) netty_io_uring_native_ioUringEnter0 },
+  { "eventFd", "()I", (void *) netty_io_uring_native_eventFd },
+  { "eventFdWrite", "(IJ)V", (void *) netty_io_uring_native_eventFdWrite },
+  { "isIPv6", "(I)Z", (void *) netty_io_uring_native_isIPv6 }
+};
+static const jint fixed_method_table_size = sizeof(fixed_method_table) / sizeof(fixed_method_table[0]);
+// JNI Method Registration Table End
+
+static jint netty_io_uring_native_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    // We must register the statically referenced methods first!
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/NativeStaticallyReferencedJniMethods",
+            statically_referenced_fixed_method_table,
+            statically_referenced_fixed_method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    // Register the methods which are not referenced by static member variables
+    if (netty_unix_util_register_natives(env,
+            packagePrefix,
+            "io/netty/channel/uring/Native",
+            fixed_method_table,
+            fixed_method_table_size) != 0) {
+        return JNI_ERR;
+    }
+    // Load all c modules that we depend upon
+    if (netty_unix_limits_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_errors_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_filedescriptor_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    if (netty_unix_socket_JNI_OnLoad(env, packagePrefix) == JNI_ERR) {
+        return JNI_ERR;
+    }
+    return NETTY_JNI_VERSION;
+}
+
+static void netty_io_uring_native_JNI_OnUnLoad(JNIEnv* env) {
+    netty_unix_limits_JNI_OnUnLoad(env);
+    netty_unix_errors_JNI_OnUnLoad(env);
+    netty_unix_filedescriptor_JNI_OnUnLoad(env);
+    netty_unix_socket_JNI_OnUnLoad(env);
+}
+
+// Invoked by the JVM when statically linked
+jint JNI_OnLoad_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        return JNI_ERR;
+    }
+    char* packagePrefix = NULL;
+#ifndef NETTY_BUILD_STATIC
+    Dl_info dlinfo;
+    jint status = 0;
+    // We need to use an address of a function that is uniquely part of this library, so choose a static
+    // function. See https://github.com/netty/netty/issues/4840.
+    if (!dladdr((void*) netty_io_uring_native_JNI_OnUnLoad, &dlinfo)) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI call to dladdr failed!\n");
+        return JNI_ERR;
+    }
+    packagePrefix = netty_unix_util_parse_package_prefix(dlinfo.dli_fname, "netty_transport_native_io_uring", &status);
+    if (status == JNI_ERR) {
+        fprintf(stderr, "FATAL: transport-native-io_uring JNI encountered unexpected dlinfo.dli_fname: %s\n", dlinfo.dli_fname);
+        return JNI_ERR;
+    }
+#endif /* NETTY_BUILD_STATIC */
+    jint ret = netty_io_uring_native_JNI_OnLoad(env, packagePrefix);
+
+    if (packagePrefix != NULL) {
+      free(packagePrefix);
+      packagePrefix = NULL;
+    }
+
+    return ret;
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT jint JNI_OnLoad(JavaVM* vm, void* reserved) {
+    return JNI_OnLoad_netty_transport_native_io_uring(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
+
+// Invoked by the JVM when statically linked
+void JNI_OnUnload_netty_transport_native_io_uring(JavaVM* vm, void* reserved) {
+    JNIEnv* env;
+    if ((*vm)->GetEnv(vm, (void**) &env, NETTY_JNI_VERSION) != JNI_OK) {
+        // Something is wrong but nothing we can do about this :(
+        return;
+    }
+    netty_io_uring_native_JNI_OnUnLoad(env);
+}
+
+#ifndef NETTY_BUILD_STATIC
+JNIEXPORT void JNI_OnUnload(JavaVM* vm, void* reserved) {
+  JNI_OnUnload_netty_transport_native_io_uring(vm, reserved);
+}
+#endif /* NETTY_BUILD_STATIC */
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+abstract class AbstractIOUringServerChannel extends AbstractIOUringChannel implements ServerChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    AbstractIOUringServerChannel(Socket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    abstract Channel newChildChannel(int fd, InetSocketAddress remote) throws Exception;
+
+    final class IOUringServerSocketUnsafe extends AbstractIOUringUnsafe {
+
+        @Override
+        public void connect(SocketAddress socketAddress, SocketAddress socketAddress2, ChannelPromise channelPromise) {
+            // Connect not supported by ServerChannel implementations
+            channelPromise.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        void scheduleRead() {
+            // The kernel writes the address of the peer into the sockaddr_storage and updates the length which
+            // follows it, so we need to reset the length before each accept.
+            long address = addressMemory();
+            long lengthAddress = address + Native.SIZEOF_SOCKADDR_STORAGE;
+            PlatformDependent.putInt(lengthAddress, Native.SIZEOF_SOCKADDR_STORAGE);
+            recvBufAllocHandle().attemptedBytesRead(1);
+            readUserData = UserData.encode(id, Native.IORING_OP_ACCEPT, 0);
+            submissionQueue().addAccept(socket.intValue(), address, lengthAddress, readUserData);
+        }
+
+        @Override
+        void readComplete(int res) {
+            readUserData = 0;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isOpen()) {
+                if (res >= 0) {
+                    // We accepted a connection after the channel was closed, just close it again.
+                    try {
+                        new Socket(res).close();
+                    } catch (IOException ignore) {
+                        // ignore
+                    }
+                }
+                return;
+            }
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            try {
+                if (res < 0) {
+                    throw Errors.newIOException("accept", res);
+                }
+                // lastBytesRead represents the fd. We use lastBytesRead because it must be set so that the
+                // RecvByteBufAllocator.Handle knows the read was successful.
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+
+                readPending = false;
+                pipeline.fireChannelRead(newChildChannel(res, SockaddrIn.read(addressMemory())));
+            } catch (Throwable t) {
+                exception = t;
+            }
+            // Each accept submission waits until there is a connection which can be accepted, so we notify the
+            // completion of the read right away instead of waiting for the next connection.
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+            readCompleteFinally();
+        }
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+}
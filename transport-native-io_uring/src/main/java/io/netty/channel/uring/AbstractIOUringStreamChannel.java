@@ -0,0 +1,421 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    // The failure of the last write submission, thrown from the next doWrite(...) call so AbstractUnsafe handles it.
+    private IOException writeFailure;
+    // The IovArray which is used by the in flight writev submission.
+    private IovArray writeIovArray;
+    // The buffers which are referenced by the in flight write submission. These are retained until the submission
+    // completed or was cancelled, as the ChannelOutboundBuffer releases its references when the channel is closed
+    // while the kernel may still read from their memory.
+    private final List<ByteBuf> writeBuffers = new ArrayList<ByteBuf>(4);
+    private final MessageProcessor writeBuffersProcessor = new MessageProcessor() {
+        @Override
+        public boolean processMessage(Object msg) throws Exception {
+            if (!writeIovArray.processMessage(msg)) {
+                return false;
+            }
+            writeBuffers.add(((ByteBuf) msg).retain());
+            return true;
+        }
+    };
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd) {
+        super(parent, fd, true);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    AbstractIOUringStreamChannel(Socket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException cause = writeFailure;
+        if (cause != null) {
+            writeFailure = null;
+            throw cause;
+        }
+        if (writeUserData != 0) {
+            // A write is in flight already, the remaining data is written once it completes.
+            return;
+        }
+
+        Object msg;
+        while ((msg = in.current()) != null && !((ByteBuf) msg).isReadable()) {
+            in.remove();
+        }
+        if (msg == null) {
+            return;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        if (in.size() == 1 && buf.nioBufferCount() == 1) {
+            int readableBytes = buf.readableBytes();
+            writeBuffers.add(buf.retain());
+            writeUserData = UserData.encode(id, Native.IORING_OP_WRITE, 0);
+            submissionQueue().addWrite(socket.intValue(), memoryAddress(buf, buf.readerIndex(), readableBytes),
+                    readableBytes, writeUserData);
+        } else {
+            IovArray array = ((IOUringEventLoop) eventLoop()).acquireIovArray();
+            writeIovArray = array;
+            in.forEachFlushedMessage(writeBuffersProcessor);
+            writeUserData = UserData.encode(id, Native.IORING_OP_WRITEV, 0);
+            submissionQueue().addWritev(socket.intValue(), array.memoryAddress(0), array.count(), writeUserData);
+        }
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @UnstableApi
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        Executor closeExecutor = ((IOUringStreamUnsafe) unsafe()).prepareToClose();
+        if (closeExecutor != null) {
+            closeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        } else {
+            EventLoop loop = eventLoop();
+            if (loop.inEventLoop()) {
+                shutdownInput0(promise);
+            } else {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        shutdownInput0(promise);
+                    }
+                });
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    private void releaseWriteBuffers() {
+        for (int i = 0; i < writeBuffers.size(); i++) {
+            writeBuffers.get(i).release();
+        }
+        writeBuffers.clear();
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the in flight read submission writes into.
+        private ByteBuf readBuffer;
+
+        // Overridden here just to be able to access this method from AbstractIOUringStreamChannel
+        @Override
+        protected Executor prepareToClose() {
+            return super.prepareToClose();
+        }
+
+        @Override
+        void scheduleRead() {
+            scheduleRead(0);
+        }
+
+        private void scheduleRead(int msgFlags) {
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            ByteBuf byteBuf = allocHandle.allocate(config().getAllocator());
+            if (!byteBuf.isDirect()) {
+                // The kernel needs a stable memory address to read into.
+                ByteBuf directBuf = config().getAllocator().directBuffer(byteBuf.capacity());
+                byteBuf.release();
+                byteBuf = directBuf;
+            }
+            int writableBytes = byteBuf.writableBytes();
+            allocHandle.attemptedBytesRead(writableBytes);
+            readBuffer = byteBuf;
+            readUserData = UserData.encode(id, Native.IORING_OP_RECV, 0);
+            submissionQueue().addRecv(socket.intValue(), memoryAddress(byteBuf, byteBuf.writerIndex(), writableBytes),
+                    writableBytes, msgFlags, readUserData);
+        }
+
+        @Override
+        void readComplete(int res) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isOpen()) {
+                // The read was cancelled as the channel was closed in the meantime.
+                readUserData = 0;
+                byteBuf.release();
+                return;
+            }
+
+            final ChannelConfig config = config();
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            boolean close = false;
+            try {
+                if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                    // Nothing left to read for now, this can only happen for the reads which continue a read loop
+                    // as these must not wait for more data.
+                    byteBuf.release();
+                    byteBuf = null;
+                    allocHandle.lastBytesRead(0);
+                } else if (res < 0) {
+                    throw Errors.newIOException("read", res);
+                } else if (res == 0) {
+                    // EOF
+                    byteBuf.release();
+                    byteBuf = null;
+                    allocHandle.lastBytesRead(-1);
+                    close = true;
+                    // There is nothing left to read as we received an EOF.
+                    readPending = false;
+                } else {
+                    byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                    allocHandle.lastBytesRead(res);
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                    byteBuf = null;
+
+                    if (allocHandle.continueReading() && isActive() && !shouldBreakRead(config)) {
+                        // There may be more data, try to read it without waiting for new data so we can notify
+                        // channelReadComplete(...) as soon as the socket is drained.
+                        scheduleRead(Native.MSG_DONTWAIT);
+                        return;
+                    }
+                }
+
+                readUserData = 0;
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+
+                if (close) {
+                    shutdownInput(false);
+                }
+            } catch (Throwable t) {
+                readUserData = 0;
+                handleReadException(pipeline, byteBuf, t, close, allocHandle);
+            } finally {
+                readCompleteFinally();
+            }
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
+                RecvByteBufAllocator.Handle allocHandle) {
+            if (byteBuf != null) {
+                if (byteBuf.isReadable()) {
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                } else {
+                    byteBuf.release();
+                }
+            }
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+            if (close || cause instanceof IOException) {
+                shutdownInput(false);
+            }
+        }
+
+        @Override
+        void writeComplete(int res) {
+            writeUserData = 0;
+            IovArray array = writeIovArray;
+            if (array != null) {
+                writeIovArray = null;
+                ((IOUringEventLoop) eventLoop()).releaseIovArray(array);
+            }
+            releaseWriteBuffers();
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The channel was closed and so the outbound buffer was failed already.
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null) {
+                return;
+            }
+            if (res >= 0) {
+                in.removeBytes(res);
+            } else {
+                // Let flush0() handle the failure the same way as if it was thrown by a write(...) syscall.
+                writeFailure = Errors.newIOException("write", res);
+            }
+            flush0();
+        }
+    }
+}
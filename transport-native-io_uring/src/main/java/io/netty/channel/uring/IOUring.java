@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Tells if {@code netty-transport-native-io_uring} is supported.
+ * <p>
+ * The transport requires a Linux kernel which supports {@code IORING_FEAT_EXT_ARG} (5.11+), as this is needed to wait
+ * for completions with a timeout without using an extra submission.
+ */
+public final class IOUring {
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    static {
+        Throwable cause = null;
+        RingBuffer ringBuffer = null;
+        try {
+            ringBuffer = Native.createRingBuffer(1);
+            int features = ringBuffer.features();
+            if ((features & Native.IORING_FEAT_EXT_ARG) == 0) {
+                cause = new UnsupportedOperationException(
+                        "io_uring of this kernel does not support IORING_FEAT_EXT_ARG (Linux 5.11+ required)");
+            } else if ((features & Native.IORING_FEAT_NODROP) == 0) {
+                cause = new UnsupportedOperationException(
+                        "io_uring of this kernel does not support IORING_FEAT_NODROP");
+            }
+        } catch (Throwable t) {
+            cause = t;
+        } finally {
+            if (ringBuffer != null) {
+                try {
+                    ringBuffer.close();
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        }
+
+        if (cause != null) {
+            UNAVAILABILITY_CAUSE = cause;
+        } else if (!PlatformDependent.hasUnsafe()) {
+            UNAVAILABILITY_CAUSE = new IllegalStateException(
+                    "sun.misc.Unsafe not available", PlatformDependent.getUnsafeUnavailabilityCause());
+        } else if (PlatformDependent.addressSize() != 8) {
+            // The native structures which are shared with the kernel are written with the LP64 layout.
+            UNAVAILABILITY_CAUSE = new UnsupportedOperationException("io_uring transport requires a 64-bit JVM");
+        } else {
+            UNAVAILABILITY_CAUSE = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if the {@code netty-transport-native-io_uring} is available.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensure that {@code netty-transport-native-io_uring} is available.
+     *
+     * @throws UnsatisfiedLinkError if unavailable
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the required native library").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the cause of unavailability of {@code netty-transport-native-io_uring}.
+     *
+     * @return the cause if unavailable. {@code null} if available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private IOUring() { }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion queue of an io_uring instance.
+ * <p>
+ * Only the owning {@link IOUringEventLoop} is allowed to access this class.
+ */
+final class IOUringCompletionQueue {
+    private static final int CQE_SIZE = Native.SIZEOF_IO_URING_CQE;
+
+    // Offsets of the fields in struct io_uring_cqe, see linux/io_uring.h
+    private static final int CQE_USER_DATA_FIELD = 0;
+    private static final int CQE_RES_FIELD = 8;
+    private static final int CQE_FLAGS_FIELD = 12;
+
+    /**
+     * Callback which is notified for every completion.
+     */
+    interface CompletionCallback {
+        /**
+         * Handle a completion.
+         *
+         * @param res the result of the operation, which is the negative {@code errno} on failure.
+         * @param flags the {@code IORING_CQE_F_*} flags.
+         * @param userData the {@code user_data} of the matching submission.
+         */
+        void handle(int res, int flags, long userData);
+    }
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long kOverflowAddress;
+    private final long cqesAddress;
+    final long ringSize;
+    final long ringAddress;
+    final int ringFd;
+    private final int ringEntries;
+    private final int ringMask;
+
+    private int head;
+
+    IOUringCompletionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kOverflowAddress, long cqesAddress, long ringSize, long ringAddress, int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.kOverflowAddress = kOverflowAddress;
+        this.cqesAddress = cqesAddress;
+        this.ringSize = ringSize;
+        this.ringAddress = ringAddress;
+        this.ringFd = ringFd;
+        ringEntries = PlatformDependent.getIntVolatile(kRingEntriesAddress);
+        ringMask = PlatformDependent.getIntVolatile(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    /**
+     * Returns {@code true} if there are completions which were not processed yet.
+     */
+    boolean hasCompletions() {
+        return head != PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    /**
+     * Process all the completions which are ready at the time of the call and return the number of processed
+     * completions. Completions which are posted while processing are left for the next call, so a busy kernel can't
+     * keep the caller in this method forever.
+     */
+    int process(CompletionCallback callback) {
+        final int tail = PlatformDependent.getIntVolatile(kTailAddress);
+        int i = 0;
+        while (head != tail) {
+            long cqe = cqesAddress + (long) (head & ringMask) * CQE_SIZE;
+            long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+            int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+            int flags = PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD);
+
+            // Release the slot before calling the callback so the kernel can reuse it as soon as possible.
+            PlatformDependent.putIntOrdered(kHeadAddress, ++head);
+            i++;
+            callback.handle(res, flags, userData);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the number of completions the kernel had to drop because the ring was full.
+     */
+    int overflow() {
+        return PlatformDependent.getIntVolatile(kOverflowAddress);
+    }
+
+    int ringEntries() {
+        return ringEntries;
+    }
+}
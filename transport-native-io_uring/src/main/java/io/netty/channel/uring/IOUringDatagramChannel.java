@@ -0,0 +1,517 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.UncheckedBooleanSupplier;
+import io.netty.util.internal.StringUtil;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.SocketException;
+
+import static io.netty.channel.unix.Socket.newSocketDgram;
+
+/**
+ * {@link DatagramChannel} implementation that uses io_uring for all its I/O.
+ */
+public final class IOUringDatagramChannel extends AbstractIOUringChannel implements DatagramChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(true);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+            StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
+            StringUtil.simpleClassName(ByteBuf.class) + ", " +
+            StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
+            StringUtil.simpleClassName(ByteBuf.class) + ')';
+
+    private final IOUringDatagramChannelConfig config;
+    private final boolean ipv6;
+    private volatile boolean connected;
+
+    // Only accessed from the EventLoop and allocated on first use.
+    private MsgHdrMemory recvHeader;
+    private MsgHdrMemory sendHeader;
+    private IovArray sendIovArray;
+    // The buffer of the in flight sendmsg submission, retained until the submission completed or was cancelled.
+    private ByteBuf sendBuffer;
+
+    public IOUringDatagramChannel() {
+        super(newSocketDgram());
+        config = new IOUringDatagramChannelConfig(this);
+        ipv6 = Native.isIPv6(socket.intValue());
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean isActive() {
+        return socket.isOpen() && (config.getActiveOnOpen() && isRegistered() || active);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress) {
+        return joinGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return joinGroup(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return joinGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface,
+            ChannelPromise promise) {
+        return joinGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return joinGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress source, final ChannelPromise promise) {
+
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress) {
+        return leaveGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return leaveGroup(
+                    multicastAddress, NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return leaveGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress,
+            NetworkInterface networkInterface, ChannelPromise promise) {
+        return leaveGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return leaveGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface, final InetAddress source,
+            final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface,
+            InetAddress sourceToBlock) {
+        return block(multicastAddress, networkInterface, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress sourceToBlock, final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (sourceToBlock == null) {
+            throw new NullPointerException("sourceToBlock");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock) {
+        return block(multicastAddress, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, InetAddress sourceToBlock, ChannelPromise promise) {
+        try {
+            return block(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    sourceToBlock, promise);
+        } catch (Throwable e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringDatagramChannelUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        active = true;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        if (writeUserData != 0) {
+            // A message is in flight already, the next one is written once it completes.
+            return;
+        }
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                // Wrote all messages.
+                return;
+            }
+            final ByteBuf data;
+            final InetSocketAddress remoteAddress;
+            if (msg instanceof AddressedEnvelope) {
+                @SuppressWarnings("unchecked")
+                AddressedEnvelope<ByteBuf, InetSocketAddress> envelope =
+                        (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+                data = envelope.content();
+                remoteAddress = envelope.recipient();
+            } else {
+                data = (ByteBuf) msg;
+                remoteAddress = null;
+            }
+
+            if (!data.isReadable()) {
+                in.remove();
+                continue;
+            }
+
+            try {
+                if (sendHeader == null) {
+                    sendHeader = new MsgHdrMemory();
+                }
+                if (data.nioBufferCount() == 1) {
+                    int dataLen = data.readableBytes();
+                    sendHeader.prepareSend(ipv6, remoteAddress,
+                            memoryAddress(data, data.readerIndex(), dataLen), dataLen);
+                } else {
+                    IovArray array = ((IOUringEventLoop) eventLoop()).acquireIovArray();
+                    sendIovArray = array;
+                    array.add(data);
+                    sendHeader.prepareSendIov(ipv6, remoteAddress, array.memoryAddress(0), array.count());
+                }
+            } catch (Exception e) {
+                // Continue on write error as a DatagramChannel can write to multiple remote peers
+                //
+                // See https://github.com/netty/netty/issues/2665
+                releaseSendIovArray();
+                in.remove(e);
+                continue;
+            }
+            sendBuffer = data.retain();
+            writeUserData = UserData.encode(id, Native.IORING_OP_SENDMSG, 0);
+            submissionQueue().addSendmsg(socket.intValue(), sendHeader.address(), writeUserData);
+            return;
+        }
+    }
+
+    private void releaseSendIovArray() {
+        IovArray array = sendIovArray;
+        if (array != null) {
+            sendIovArray = null;
+            ((IOUringEventLoop) eventLoop()).releaseIovArray(array);
+        }
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+        }
+
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf) : buf;
+        }
+
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<Object, SocketAddress> e = (AddressedEnvelope<Object, SocketAddress>) msg;
+            if (e.content() instanceof ByteBuf &&
+                (e.recipient() == null || e.recipient() instanceof InetSocketAddress)) {
+
+                ByteBuf content = (ByteBuf) e.content();
+                return UnixChannelUtil.isBufferCopyNeededForWrite(content)?
+                        new DefaultAddressedEnvelope<ByteBuf, InetSocketAddress>(
+                            newDirectBuffer(e, content), (InetSocketAddress) e.recipient()) : e;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    public IOUringDatagramChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        socket.disconnect();
+        connected = active = false;
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (super.doConnect(remoteAddress, localAddress)) {
+            connected = true;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean doConnect0(InetSocketAddress remoteAddress) throws Exception {
+        // Connecting a datagram socket never blocks.
+        return socket.connect(remoteAddress);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        super.doClose();
+        connected = false;
+    }
+
+    @Override
+    void freeResources() {
+        super.freeResources();
+        if (recvHeader != null) {
+            recvHeader.release();
+            recvHeader = null;
+        }
+        if (sendHeader != null) {
+            sendHeader.release();
+            sendHeader = null;
+        }
+    }
+
+    final class IOUringDatagramChannelUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the in flight recvmsg submission writes into.
+        private ByteBuf readBuffer;
+
+        @Override
+        void scheduleRead() {
+            scheduleRead(0);
+        }
+
+        private void scheduleRead(int msgFlags) {
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            ByteBuf data = allocHandle.allocate(config.getAllocator());
+            if (!data.isDirect()) {
+                // The kernel needs a stable memory address to read into.
+                ByteBuf directData = config.getAllocator().directBuffer(data.capacity());
+                data.release();
+                data = directData;
+            }
+            if (recvHeader == null) {
+                recvHeader = new MsgHdrMemory();
+            }
+            int writableBytes = data.writableBytes();
+            allocHandle.attemptedBytesRead(writableBytes);
+            recvHeader.prepareReceive(memoryAddress(data, data.writerIndex(), writableBytes), writableBytes);
+            readBuffer = data;
+            readUserData = UserData.encode(id, Native.IORING_OP_RECVMSG, 0);
+            submissionQueue().addRecvmsg(socket.intValue(), recvHeader.address(), msgFlags, readUserData);
+        }
+
+        @Override
+        void readComplete(int res) {
+            ByteBuf data = readBuffer;
+            readBuffer = null;
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE || !isOpen()) {
+                // The read was cancelled as the channel was closed in the meantime.
+                readUserData = 0;
+                data.release();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final RecvByteBufAllocator.ExtendedHandle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            try {
+                if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                    // No datagram left for now.
+                    allocHandle.lastBytesRead(-1);
+                    data.release();
+                    data = null;
+                } else if (res == Errors.ERROR_ECONNREFUSED_NEGATIVE) {
+                    throw new PortUnreachableException("recvmsg() failed");
+                } else if (res < 0) {
+                    throw Errors.newIOException("recvmsg", res);
+                } else {
+                    allocHandle.incMessagesRead(1);
+                    allocHandle.lastBytesRead(res);
+                    data.writerIndex(data.writerIndex() + res);
+
+                    readPending = false;
+                    pipeline.fireChannelRead(
+                            new DatagramPacket(data, (InetSocketAddress) localAddress(), recvHeader.sender()));
+                    data = null;
+
+                    // Every datagram is a message on its own, so we can't tell from its size if there are more.
+                    if (allocHandle.continueReading(UncheckedBooleanSupplier.TRUE_SUPPLIER) && isActive()) {
+                        // Don't wait for new datagrams so channelReadComplete(...) is notified once drained.
+                        scheduleRead(Native.MSG_DONTWAIT);
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                if (data != null) {
+                    data.release();
+                }
+                exception = t;
+            }
+
+            readUserData = 0;
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+
+            if (exception != null) {
+                pipeline.fireExceptionCaught(exception);
+            }
+            readCompleteFinally();
+        }
+
+        @Override
+        void writeComplete(int res) {
+            writeUserData = 0;
+            releaseSendIovArray();
+            ByteBuf buf = sendBuffer;
+            if (buf != null) {
+                sendBuffer = null;
+                buf.release();
+            }
+            if (res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The channel was closed and so the outbound buffer was failed already.
+                return;
+            }
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in == null) {
+                return;
+            }
+            if (res >= 0) {
+                in.remove();
+            } else {
+                // Continue on write error as a DatagramChannel can write to multiple remote peers
+                //
+                // See https://github.com/netty/netty/issues/2665
+                in.remove(res == Errors.ERROR_ECONNREFUSED_NEGATIVE ?
+                        new PortUnreachableException("sendmsg failed") : Errors.newIOException("sendmsg", res));
+            }
+            flush0();
+        }
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.uring.AbstractIOUringChannel.AbstractIOUringUnsafe;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.IovArray;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.EventExecutorMetrics;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ * <p>
+ * All the submissions which are queued while processing completions and running tasks are handed to the kernel with
+ * a single {@code io_uring_enter} call, which is also used to wait for new completions.
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueue.CompletionCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+    private static final AtomicIntegerFieldUpdater<IOUringEventLoop> WAKEN_UP_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOUringEventLoop.class, "wakenUp");
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    // Channel ids start at 1, so 0 is used for the submissions of the EventLoop itself.
+    private static final long EVENTFD_READ_USER_DATA = UserData.encode(0, Native.IORING_OP_READ, 0);
+    private static final long CANCEL_USER_DATA = UserData.encode(0, Native.IORING_OP_ASYNC_CANCEL, 0);
+    private static final int MAX_POOLED_IOV_ARRAYS = 64;
+    private static final int CLEANUP_MAX_WAITS = 10;
+    private static final long CLEANUP_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RingBuffer ringBuffer;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final FileDescriptor eventFd;
+    // The eventfd is read by a submission, this is where the kernel stores the value.
+    private final long eventFdReadBuffer;
+    private final IntObjectMap<AbstractIOUringChannel> channels =
+            new IntObjectHashMap<AbstractIOUringChannel>(4096);
+    private final ArrayDeque<IovArray> iovArrays = new ArrayDeque<IovArray>();
+    private final Callable<Integer> pendingTasksCallable = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            return IOUringEventLoop.super.pendingTasks();
+        }
+    };
+    private int lastChannelId;
+    private boolean eventFdReadPending;
+    private volatile int wakenUp;
+    private volatile int ioRatio = 50;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     RejectedExecutionHandler rejectedExecutionHandler) {
+        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+        RingBuffer ringBuffer = Native.createRingBuffer(ringSize);
+        boolean success = false;
+        try {
+            eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                ringBuffer.close();
+            }
+        }
+        this.ringBuffer = ringBuffer;
+        submissionQueue = ringBuffer.submissionQueue();
+        completionQueue = ringBuffer.completionQueue();
+        submissionQueue.completionHandler(completionQueue, this);
+        eventFdReadBuffer = PlatformDependent.allocateMemory(8);
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    /**
+     * Return a cleared {@link IovArray} which must be given back via {@link #releaseIovArray(IovArray)} once the
+     * submission which uses it completed.
+     */
+    IovArray acquireIovArray() {
+        IovArray array = iovArrays.pollLast();
+        if (array == null) {
+            return new IovArray();
+        }
+        array.clear();
+        return array;
+    }
+
+    void releaseIovArray(IovArray array) {
+        if (iovArrays.size() < MAX_POOLED_IOV_ARRAYS) {
+            iovArrays.addLast(array);
+        } else {
+            array.release();
+        }
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
+            // write to the evfd which will then complete the read submission we wait for.
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+            EventExecutorMetrics metrics = metrics();
+            if (metrics != null) {
+                metrics.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop}.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        if (ch.removed && channels.get(ch.id) == ch) {
+            // Registered again before all the submissions of the last registration completed, keep the id so these
+            // are still delivered.
+            ch.removed = false;
+            return;
+        }
+        int id;
+        do {
+            id = ++lastChannelId;
+            if (id <= 0) {
+                lastChannelId = 0;
+                id = ++lastChannelId;
+            }
+        } while (channels.containsKey(id));
+        ch.id = id;
+        ch.removed = false;
+        channels.put(id, ch);
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}. All the submissions which are still in flight are
+     * cancelled and the channel is only forgotten once they completed.
+     */
+    void remove(AbstractIOUringChannel ch) throws IOException {
+        assert inEventLoop();
+        if (ch.removed || channels.get(ch.id) != ch) {
+            return;
+        }
+        ch.removed = true;
+        if (ch.hasInFlight()) {
+            cancel(ch.readUserData);
+            cancel(ch.writeUserData);
+            cancel(ch.connectUserData);
+            // The kernel only resolves the file descriptor of a submission once it is handed over. Do this now, as
+            // the caller is about to close the file descriptor and its number may be reused by a new channel before
+            // the next io_uring_enter(...) call.
+            submissionQueue.submit();
+        } else {
+            channels.remove(ch.id);
+            ch.freeResources();
+        }
+    }
+
+    private void cancel(long userData) {
+        if (userData != 0) {
+            submissionQueue.addCancel(userData, CANCEL_USER_DATA);
+        }
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                                                    : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    @Override
+    public int pendingTasks() {
+        // As we use a MpscQueue we need to ensure pendingTasks() is only executed from within the EventLoop as
+        // otherwise we may see unexpected behavior (as size() is only allowed to be called by a single consumer).
+        // See https://github.com/netty/netty/issues/5297
+        if (inEventLoop()) {
+            return super.pendingTasks();
+        } else {
+            return submit(pendingTasksCallable).syncUninterruptibly().getNow();
+        }
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    private void submitAndWait(boolean oldWakeup) throws IOException {
+        if (!eventFdReadPending) {
+            // Consume the wakeups which are written to the eventfd by other threads.
+            eventFdReadPending = true;
+            submissionQueue.addRead(eventFd.intValue(), eventFdReadBuffer, 8, EVENTFD_READ_USER_DATA);
+        }
+
+        // If a task was submitted when wakenUp value was 1, the task didn't get a chance to produce wakeup event.
+        // So we need to check task queue again before waiting. If we don't, the task might be pended until the
+        // wait timed out. It might be pended until idle timeout if IdleStateHandler existed in pipeline.
+        if (oldWakeup && hasTasks() || completionQueue.hasCompletions()) {
+            submissionQueue.submit();
+        } else {
+            submissionQueue.submitAndWait(delayNanos(System.nanoTime()));
+        }
+    }
+
+    @Override
+    protected void run() {
+        for (;;) {
+            try {
+                if (hasTasks()) {
+                    // Hand over everything which was queued in the last run but don't wait as there is work to do.
+                    submissionQueue.submit();
+                } else {
+                    submitAndWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+
+                    // See EpollEventLoop.run() for an explanation why we need to write to the eventfd again if
+                    // wakenUp is still set.
+                    if (wakenUp == 1) {
+                        Native.eventFdWrite(eventFd.intValue(), 1L);
+                    }
+                }
+
+                final int ioRatio = this.ioRatio;
+                final EventExecutorMetrics metrics = metrics();
+                if (ioRatio == 100 && metrics == null) {
+                    try {
+                        processCompletions();
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+
+                    try {
+                        processCompletions();
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        if (metrics != null) {
+                            metrics.ioProcessed(ioTime);
+                        }
+                        if (ioRatio == 100) {
+                            runAllTasks();
+                        } else {
+                            runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    private void processCompletions() throws IOException {
+        completionQueue.process(this);
+        if (submissionQueue.isCompletionQueueOverflown()) {
+            // The completion queue was full so the kernel buffered the remaining completions, flush these into the
+            // ring and process them now.
+            submissionQueue.submitAndGetEvents();
+            completionQueue.process(this);
+        }
+    }
+
+    @Override
+    public void handle(int res, int flags, long userData) {
+        final int id = UserData.decodeId(userData);
+        final int op = UserData.decodeOp(userData);
+        if (id == 0) {
+            if (op == Native.IORING_OP_READ) {
+                // consume wakeup event, the read is submitted again before we wait the next time.
+                eventFdReadPending = false;
+            }
+            return;
+        }
+        final AbstractIOUringChannel ch = channels.get(id);
+        if (ch == null) {
+            return;
+        }
+        try {
+            AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) ch.unsafe();
+            if (op == Native.IORING_OP_RECV || op == Native.IORING_OP_ACCEPT || op == Native.IORING_OP_RECVMSG) {
+                unsafe.readComplete(res);
+            } else if (op == Native.IORING_OP_WRITE || op == Native.IORING_OP_WRITEV ||
+                    op == Native.IORING_OP_SENDMSG) {
+                unsafe.writeComplete(res);
+            } else if (op == Native.IORING_OP_CONNECT) {
+                unsafe.connectComplete(res);
+            }
+        } catch (Throwable t) {
+            logger.warn("Unexpected exception while processing the completion of {}.", ch, t);
+        } finally {
+            if (ch.removed && !ch.hasInFlight()) {
+                channels.remove(id);
+                ch.freeResources();
+            }
+        }
+    }
+
+    private static void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        Collection<AbstractIOUringChannel> array = new ArrayList<AbstractIOUringChannel>(channels.size());
+
+        for (AbstractIOUringChannel channel: channels.values()) {
+            if (!channel.removed) {
+                array.add(channel);
+            }
+        }
+
+        for (AbstractIOUringChannel ch: array) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            // The kernel may still write into the memory which belongs to the in flight submissions, so wait until
+            // they are cancelled before releasing anything.
+            if (eventFdReadPending) {
+                cancel(EVENTFD_READ_USER_DATA);
+            }
+            for (int i = 0; i < CLEANUP_MAX_WAITS && (eventFdReadPending || !channels.isEmpty()); i++) {
+                submissionQueue.submitAndWait(CLEANUP_WAIT_NANOS);
+                completionQueue.process(this);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to wait for the in flight submissions.", e);
+        }
+        try {
+            eventFd.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the event fd.", e);
+        }
+        ringBuffer.close();
+
+        // release native memory, unless the kernel did not give up the read in time.
+        if (!eventFdReadPending) {
+            PlatformDependent.freeMemory(eventFdReadBuffer);
+        }
+        for (AbstractIOUringChannel ch: channels.values()) {
+            if (!ch.hasInFlight()) {
+                ch.freeResources();
+            }
+        }
+        channels.clear();
+        for (IovArray array: iovArrays) {
+            array.release();
+        }
+        iovArrays.clear();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+
+/**
+ * The submission queue of an io_uring instance. Entries are only written into the shared ring by
+ * {@link #enqueue(int, int, long, int, long, int, long)} and are handed to the kernel in batches by
+ * {@link #submit()} and {@link #submitAndWait(long)}, which means a single {@code io_uring_enter} covers all the
+ * operations which were queued during one run of the event loop.
+ * <p>
+ * Only the owning {@link IOUringEventLoop} is allowed to access this class.
+ */
+final class IOUringSubmissionQueue {
+    private static final int SQE_SIZE = Native.SIZEOF_IO_URING_SQE;
+    private static final int INT_SIZE = 4;
+
+    // Offsets of the fields in struct io_uring_sqe, see linux/io_uring.h
+    private static final int SQE_OP_CODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_RW_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long kFlagsAddress;
+    private final long arrayAddress;
+    final long sqesAddress;
+    final long sqesSize;
+    final long ringSize;
+    final long ringAddress;
+    final int ringFd;
+    private final int ringEntries;
+    private final int ringMask;
+
+    private int head;
+    private int tail;
+    private IOUringCompletionQueue completionQueue;
+    private IOUringCompletionQueue.CompletionCallback completionCallback;
+
+    IOUringSubmissionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long kFlagsAddress, long arrayAddress, long sqesAddress,
+                           long sqesSize, long ringSize, long ringAddress, int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.kFlagsAddress = kFlagsAddress;
+        this.arrayAddress = arrayAddress;
+        this.sqesAddress = sqesAddress;
+        this.sqesSize = sqesSize;
+        this.ringSize = ringSize;
+        this.ringAddress = ringAddress;
+        this.ringFd = ringFd;
+        ringEntries = PlatformDependent.getIntVolatile(kRingEntriesAddress);
+        ringMask = PlatformDependent.getIntVolatile(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        // We always fill the entries in ring order, so the indirection array can be set up once and never be touched
+        // again.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(arrayAddress + (long) i * INT_SIZE, i);
+        }
+    }
+
+    /**
+     * Set the {@link IOUringCompletionQueue} and the {@link IOUringCompletionQueue.CompletionCallback} which are used
+     * to make room for new submissions if the kernel refuses to consume the queued entries.
+     */
+    void completionHandler(IOUringCompletionQueue completionQueue,
+                           IOUringCompletionQueue.CompletionCallback completionCallback) {
+        this.completionQueue = completionQueue;
+        this.completionCallback = completionCallback;
+    }
+
+    /**
+     * Queue a new submission. If the ring is full all the pending entries are submitted first to make room.
+     */
+    void enqueue(int op, int fd, long address, int len, long offset, int rwFlags, long userData) {
+        if (tail - head >= ringEntries) {
+            makeRoom();
+        }
+        long sqe = sqesAddress + (long) (tail & ringMask) * SQE_SIZE;
+        PlatformDependent.putByte(sqe + SQE_OP_CODE_FIELD, (byte) op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) 0);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, len);
+        PlatformDependent.putInt(sqe + SQE_RW_FLAGS_FIELD, rwFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+        // buf_index, personality, splice_fd_in and the trailing padding must all be zero.
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD, 0);
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD + 8, 0);
+        PlatformDependent.putLong(sqe + SQE_PAD_FIELD + 16, 0);
+        tail++;
+    }
+
+    private void makeRoom() {
+        try {
+            // The ring is full, so hand everything over to the kernel which will free up the slots.
+            submit();
+            while (tail - head >= ringEntries) {
+                // The kernel did not consume any entry, which happens if it can not post any more completions
+                // (EBUSY). Flush and process the completions so it has room again, and retry.
+                submitAndGetEvents();
+                completionQueue.process(completionCallback);
+                submit();
+            }
+        } catch (IOException e) {
+            // Submitting without waiting does only fail if the ring itself is broken.
+            throw new IllegalStateException("Unable to submit to io_uring", e);
+        }
+    }
+
+    void addRead(int fd, long bufferAddress, int len, long userData) {
+        enqueue(Native.IORING_OP_READ, fd, bufferAddress, len, 0, 0, userData);
+    }
+
+    void addWrite(int fd, long bufferAddress, int len, long userData) {
+        enqueue(Native.IORING_OP_WRITE, fd, bufferAddress, len, 0, 0, userData);
+    }
+
+    void addWritev(int fd, long iovecArrayAddress, int count, long userData) {
+        enqueue(Native.IORING_OP_WRITEV, fd, iovecArrayAddress, count, 0, 0, userData);
+    }
+
+    void addRecv(int fd, long bufferAddress, int len, int msgFlags, long userData) {
+        enqueue(Native.IORING_OP_RECV, fd, bufferAddress, len, 0, msgFlags, userData);
+    }
+
+    void addAccept(int fd, long sockaddrAddress, long sockaddrLengthAddress, long userData) {
+        enqueue(Native.IORING_OP_ACCEPT, fd, sockaddrAddress, 0, sockaddrLengthAddress,
+                Native.SOCK_NONBLOCK_CLOEXEC, userData);
+    }
+
+    void addConnect(int fd, long sockaddrAddress, int sockaddrLength, long userData) {
+        enqueue(Native.IORING_OP_CONNECT, fd, sockaddrAddress, 0, sockaddrLength, 0, userData);
+    }
+
+    void addRecvmsg(int fd, long msghdrAddress, int msgFlags, long userData) {
+        enqueue(Native.IORING_OP_RECVMSG, fd, msghdrAddress, 1, 0, msgFlags, userData);
+    }
+
+    void addSendmsg(int fd, long msghdrAddress, long userData) {
+        enqueue(Native.IORING_OP_SENDMSG, fd, msghdrAddress, 1, 0, 0, userData);
+    }
+
+    void addCancel(long targetUserData, long userData) {
+        enqueue(Native.IORING_OP_ASYNC_CANCEL, -1, targetUserData, 0, 0, 0, userData);
+    }
+
+    /**
+     * Returns the number of entries which were queued but not yet consumed by the kernel.
+     */
+    int pending() {
+        return tail - head;
+    }
+
+    /**
+     * Returns {@code true} if the kernel signals that completions were buffered because the completion queue was
+     * full. These are only moved back into the ring by a call to {@code io_uring_enter}.
+     */
+    boolean isCompletionQueueOverflown() {
+        return (PlatformDependent.getIntVolatile(kFlagsAddress) & Native.IORING_SQ_CQ_OVERFLOW) != 0;
+    }
+
+    /**
+     * Submits all pending entries without waiting for any completion.
+     */
+    int submit() throws IOException {
+        return submit(0, 0, -1);
+    }
+
+    /**
+     * Submits all pending entries and waits until either at least one completion is ready or
+     * {@code timeoutNanos} elapsed. A negative timeout waits without a deadline.
+     */
+    int submitAndWait(long timeoutNanos) throws IOException {
+        return submit(1, Native.IORING_ENTER_GETEVENTS, timeoutNanos);
+    }
+
+    /**
+     * Submits all pending entries and flushes completions which may have been buffered by the kernel.
+     */
+    int submitAndGetEvents() throws IOException {
+        return submit(0, Native.IORING_ENTER_GETEVENTS, -1);
+    }
+
+    private int submit(int minComplete, int flags, long timeoutNanos) throws IOException {
+        int toSubmit = tail - head;
+        if (toSubmit != 0) {
+            // Publish the new entries to the kernel, this must happen after all the entries are written.
+            PlatformDependent.putIntOrdered(kTailAddress, tail);
+        } else if (flags == 0) {
+            return 0;
+        }
+        int submitted = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags, timeoutNanos);
+        // The kernel may not consume all the entries at once, the remaining ones will be picked up with the next
+        // submit.
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        return submitted;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Native memory which holds a {@code struct msghdr} together with the {@code struct sockaddr_storage} and the single
+ * {@code struct iovec} it points to, as used by the {@code IORING_OP_RECVMSG} and {@code IORING_OP_SENDMSG}
+ * submissions.
+ * <p>
+ * The memory must not be released while a submission which uses it is in flight.
+ */
+final class MsgHdrMemory {
+    // Offsets of the fields in struct msghdr and struct iovec for LP64, see IOUring.
+    private static final int MSG_NAME_FIELD = 0;
+    private static final int MSG_NAMELEN_FIELD = 8;
+    private static final int MSG_IOV_FIELD = 16;
+    private static final int MSG_IOVLEN_FIELD = 24;
+    private static final int MSG_CONTROL_FIELD = 32;
+    private static final int MSG_CONTROLLEN_FIELD = 40;
+    private static final int MSG_FLAGS_FIELD = 48;
+    private static final int IOV_BASE_FIELD = 0;
+    private static final int IOV_LEN_FIELD = 8;
+
+    private final long memory;
+    private final long sockaddrAddress;
+    private final long iovAddress;
+
+    MsgHdrMemory() {
+        int size = Native.SIZEOF_MSGHDR + Native.SIZEOF_SOCKADDR_STORAGE + Native.SIZEOF_IOVEC;
+        memory = PlatformDependent.allocateMemory(size);
+        PlatformDependent.setMemory(memory, size, (byte) 0);
+        sockaddrAddress = memory + Native.SIZEOF_MSGHDR;
+        iovAddress = sockaddrAddress + Native.SIZEOF_SOCKADDR_STORAGE;
+    }
+
+    /**
+     * Returns the address of the {@code struct msghdr}.
+     */
+    long address() {
+        return memory;
+    }
+
+    /**
+     * Prepare the header to receive a message into the given buffer.
+     */
+    void prepareReceive(long bufferAddress, int length) {
+        setIov(bufferAddress, length);
+        set(sockaddrAddress, Native.SIZEOF_SOCKADDR_STORAGE, iovAddress, 1);
+    }
+
+    /**
+     * Prepare the header to send the content of the given buffer to {@code recipient}, or to the connected peer if
+     * {@code recipient} is {@code null}.
+     */
+    void prepareSend(boolean ipv6, InetSocketAddress recipient, long bufferAddress, int length) {
+        setIov(bufferAddress, length);
+        prepareSendIov(ipv6, recipient, iovAddress, 1);
+    }
+
+    /**
+     * Prepare the header to send the content described by {@code iovCount} {@code struct iovec}s which are stored at
+     * {@code iovArrayAddress}.
+     */
+    void prepareSendIov(boolean ipv6, InetSocketAddress recipient, long iovArrayAddress, int iovCount) {
+        if (recipient == null) {
+            set(0, 0, iovArrayAddress, iovCount);
+        } else {
+            int nameLength = SockaddrIn.write(ipv6, sockaddrAddress, recipient);
+            set(sockaddrAddress, nameLength, iovArrayAddress, iovCount);
+        }
+    }
+
+    /**
+     * Returns the address of the peer which sent the last received message.
+     */
+    InetSocketAddress sender() {
+        return SockaddrIn.read(sockaddrAddress);
+    }
+
+    void release() {
+        PlatformDependent.freeMemory(memory);
+    }
+
+    private void setIov(long bufferAddress, int length) {
+        PlatformDependent.putLong(iovAddress + IOV_BASE_FIELD, bufferAddress);
+        PlatformDependent.putLong(iovAddress + IOV_LEN_FIELD, length);
+    }
+
+    private void set(long name, int nameLength, long iov, int iovLength) {
+        PlatformDependent.putLong(memory + MSG_NAME_FIELD, name);
+        PlatformDependent.putInt(memory + MSG_NAMELEN_FIELD, nameLength);
+        PlatformDependent.putLong(memory + MSG_IOV_FIELD, iov);
+        PlatformDependent.putLong(memory + MSG_IOVLEN_FIELD, iovLength);
+        PlatformDependent.putLong(memory + MSG_CONTROL_FIELD, 0);
+        PlatformDependent.putLong(memory + MSG_CONTROLLEN_FIELD, 0);
+        PlatformDependent.putInt(memory + MSG_FLAGS_FIELD, 0);
+    }
+}
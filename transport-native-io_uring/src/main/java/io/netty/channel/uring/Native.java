@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.afInet6;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ebusy;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ecanceled;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.eintr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.etime;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringEnterGetevents;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringFeatExtArg;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringFeatNodrop;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpAccept;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpAsyncCancel;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpConnect;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpRead;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpRecv;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpRecvmsg;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpSendmsg;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpWrite;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringOpWritev;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ioringSqCqOverflow;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msgDontwait;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofIoUringCqe;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofIoUringSqe;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofIovec;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofMsghdr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sizeofSockaddrStorage;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.sockNonblockCloexec;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            sizeofIoUringSqe();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+    }
+
+    static final int IORING_OP_READ = ioringOpRead();
+    static final int IORING_OP_WRITE = ioringOpWrite();
+    static final int IORING_OP_WRITEV = ioringOpWritev();
+    static final int IORING_OP_RECV = ioringOpRecv();
+    static final int IORING_OP_ACCEPT = ioringOpAccept();
+    static final int IORING_OP_CONNECT = ioringOpConnect();
+    static final int IORING_OP_RECVMSG = ioringOpRecvmsg();
+    static final int IORING_OP_SENDMSG = ioringOpSendmsg();
+    static final int IORING_OP_ASYNC_CANCEL = ioringOpAsyncCancel();
+    static final int IORING_ENTER_GETEVENTS = ioringEnterGetevents();
+    static final int IORING_SQ_CQ_OVERFLOW = ioringSqCqOverflow();
+    static final int IORING_FEAT_NODROP = ioringFeatNodrop();
+    static final int IORING_FEAT_EXT_ARG = ioringFeatExtArg();
+
+    static final int SIZEOF_IO_URING_SQE = sizeofIoUringSqe();
+    static final int SIZEOF_IO_URING_CQE = sizeofIoUringCqe();
+    static final int SIZEOF_SOCKADDR_STORAGE = sizeofSockaddrStorage();
+    static final int SIZEOF_MSGHDR = sizeofMsghdr();
+    static final int SIZEOF_IOVEC = sizeofIovec();
+
+    static final int AF_INET = afInet();
+    static final int AF_INET6 = afInet6();
+    static final int SOCK_NONBLOCK_CLOEXEC = sockNonblockCloexec();
+    static final int MSG_DONTWAIT = msgDontwait();
+
+    static final int ERRNO_ECANCELED_NEGATIVE = -ecanceled();
+    static final int ERRNO_ETIME_NEGATIVE = -etime();
+    static final int ERRNO_EINTR_NEGATIVE = -eintr();
+    static final int ERRNO_EBUSY_NEGATIVE = -ebusy();
+
+    // Must be kept in sync with netty_io_uring_native.c
+    private static final int RING_SQ_HEAD = 0;
+    private static final int RING_SQ_TAIL = 1;
+    private static final int RING_SQ_MASK = 2;
+    private static final int RING_SQ_ENTRIES = 3;
+    private static final int RING_SQ_FLAGS = 4;
+    private static final int RING_SQ_ARRAY = 6;
+    private static final int RING_SQ_SQES = 7;
+    private static final int RING_SQ_RING_SIZE = 8;
+    private static final int RING_SQ_RING_ADDRESS = 9;
+    private static final int RING_CQ_HEAD = 10;
+    private static final int RING_CQ_TAIL = 11;
+    private static final int RING_CQ_MASK = 12;
+    private static final int RING_CQ_ENTRIES = 13;
+    private static final int RING_CQ_OVERFLOW = 14;
+    private static final int RING_CQ_CQES = 15;
+    private static final int RING_CQ_RING_SIZE = 16;
+    private static final int RING_CQ_RING_ADDRESS = 17;
+    private static final int RING_FD = 18;
+    private static final int RING_FEATURES = 19;
+    private static final int RING_SQES_SIZE = 20;
+
+    /**
+     * Creates a new io_uring instance with {@code entries} submission queue entries and maps its rings into memory.
+     */
+    static RingBuffer createRingBuffer(int entries) {
+        long[] ring = ioUringSetup0(entries);
+        int ringFd = (int) ring[RING_FD];
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                ring[RING_SQ_HEAD], ring[RING_SQ_TAIL], ring[RING_SQ_MASK], ring[RING_SQ_ENTRIES],
+                ring[RING_SQ_FLAGS], ring[RING_SQ_ARRAY], ring[RING_SQ_SQES],
+                ring[RING_SQES_SIZE], ring[RING_SQ_RING_SIZE], ring[RING_SQ_RING_ADDRESS], ringFd);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                ring[RING_CQ_HEAD], ring[RING_CQ_TAIL], ring[RING_CQ_MASK], ring[RING_CQ_ENTRIES],
+                ring[RING_CQ_OVERFLOW], ring[RING_CQ_CQES], ring[RING_CQ_RING_SIZE], ring[RING_CQ_RING_ADDRESS],
+                ringFd);
+        return new RingBuffer(submissionQueue, completionQueue, (int) ring[RING_FEATURES]);
+    }
+
+    private static native long[] ioUringSetup0(int entries);
+
+    static void ioUringExit(IOUringSubmissionQueue submissionQueue, IOUringCompletionQueue completionQueue) {
+        ioUringExit0(submissionQueue.ringFd,
+                submissionQueue.ringAddress, submissionQueue.ringSize,
+                completionQueue.ringAddress, completionQueue.ringSize,
+                submissionQueue.sqesAddress, submissionQueue.sqesSize);
+    }
+
+    private static native void ioUringExit0(int ringFd, long sqRingAddress, long sqRingSize,
+                                            long cqRingAddress, long cqRingSize, long sqesAddress, long sqesSize);
+
+    /**
+     * Submits {@code toSubmit} entries and waits for at least {@code minComplete} completions if
+     * {@code flags} contains {@link #IORING_ENTER_GETEVENTS}. A negative {@code timeoutNanos} means wait without a
+     * timeout. Returns the number of submitted entries. An elapsed timeout, an interrupt or a temporarily busy ring
+     * are not reported as errors as the caller will just try again in the next round.
+     */
+    static int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags, long timeoutNanos)
+            throws IOException {
+        int res = ioUringEnter0(ringFd, toSubmit, minComplete, flags, timeoutNanos);
+        if (res < 0) {
+            if (res == ERRNO_ETIME_NEGATIVE || res == ERRNO_EINTR_NEGATIVE ||
+                    res == ERRNO_EBUSY_NEGATIVE || res == ERRNO_EAGAIN_NEGATIVE) {
+                return 0;
+            }
+            throw newIOException("io_uring_enter", res);
+        }
+        return res;
+    }
+
+    private static native int ioUringEnter0(int ringFd, int toSubmit, int minComplete, int flags, long timeoutNanos);
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+
+    static native boolean isIPv6(int fd);
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * The submission and completion queues of an io_uring instance which are shared with the kernel.
+ */
+final class RingBuffer {
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final int features;
+    private boolean closed;
+
+    RingBuffer(IOUringSubmissionQueue submissionQueue, IOUringCompletionQueue completionQueue, int features) {
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+        this.features = features;
+    }
+
+    int fd() {
+        return submissionQueue.ringFd;
+    }
+
+    int features() {
+        return features;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * Unmaps the rings and closes the io_uring file descriptor. Once closed further use of the queues may crash
+     * the JVM!
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Native.ioUringExit(submissionQueue, completionQueue);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.NativeInetAddress;
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Encodes and decodes {@code struct sockaddr_in} and {@code struct sockaddr_in6} in native memory, so addresses
+ * can be passed to the kernel as part of a submission without an extra JNI call.
+ */
+final class SockaddrIn {
+    static final int IPV4_ADDRESS_LENGTH = 4;
+    static final int IPV6_ADDRESS_LENGTH = 16;
+
+    // struct sockaddr_in
+    static final int SOCKADDR_IN_SIZE = 16;
+    private static final int SOCKADDR_IN_OFFSETOF_SIN_FAMILY = 0;
+    private static final int SOCKADDR_IN_OFFSETOF_SIN_PORT = 2;
+    private static final int SOCKADDR_IN_OFFSETOF_SIN_ADDR = 4;
+
+    // struct sockaddr_in6
+    static final int SOCKADDR_IN6_SIZE = 28;
+    private static final int SOCKADDR_IN6_OFFSETOF_SIN6_FAMILY = 0;
+    private static final int SOCKADDR_IN6_OFFSETOF_SIN6_PORT = 2;
+    private static final int SOCKADDR_IN6_OFFSETOF_SIN6_ADDR = 8;
+    private static final int SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID = 24;
+
+    private static final byte[] IPV4_MAPPED_IPV6_PREFIX = {
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, (byte) 0xff };
+
+    /**
+     * Write the given {@link InetSocketAddress} to {@code memory} and return the length of the written structure.
+     * If {@code ipv6} is {@code true} an IPv4 address is written as IPv4-mapped IPv6 address.
+     */
+    static int write(boolean ipv6, long memory, InetSocketAddress address) {
+        InetAddress inetAddress = address.getAddress();
+        if (ipv6) {
+            PlatformDependent.setMemory(memory, SOCKADDR_IN6_SIZE, (byte) 0);
+            PlatformDependent.putShort(memory + SOCKADDR_IN6_OFFSETOF_SIN6_FAMILY, (short) Native.AF_INET6);
+            writePort(memory + SOCKADDR_IN6_OFFSETOF_SIN6_PORT, address.getPort());
+            if (inetAddress instanceof Inet6Address) {
+                PlatformDependent.copyMemory(inetAddress.getAddress(), 0,
+                        memory + SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, IPV6_ADDRESS_LENGTH);
+                PlatformDependent.putInt(memory + SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID,
+                        ((Inet6Address) inetAddress).getScopeId());
+            } else {
+                PlatformDependent.copyMemory(NativeInetAddress.ipv4MappedIpv6Address(inetAddress.getAddress()), 0,
+                        memory + SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, IPV6_ADDRESS_LENGTH);
+            }
+            return SOCKADDR_IN6_SIZE;
+        }
+        if (!(inetAddress instanceof Inet4Address)) {
+            throw new IllegalArgumentException("Only IPv4 addresses are supported by this socket: " + address);
+        }
+        PlatformDependent.setMemory(memory, SOCKADDR_IN_SIZE, (byte) 0);
+        PlatformDependent.putShort(memory + SOCKADDR_IN_OFFSETOF_SIN_FAMILY, (short) Native.AF_INET);
+        writePort(memory + SOCKADDR_IN_OFFSETOF_SIN_PORT, address.getPort());
+        PlatformDependent.copyMemory(inetAddress.getAddress(), 0,
+                memory + SOCKADDR_IN_OFFSETOF_SIN_ADDR, IPV4_ADDRESS_LENGTH);
+        return SOCKADDR_IN_SIZE;
+    }
+
+    /**
+     * Read a {@code struct sockaddr_in} or {@code struct sockaddr_in6} from {@code memory}. IPv4-mapped IPv6
+     * addresses are returned as IPv4 addresses. Returns {@code null} if the address family is not supported.
+     */
+    static InetSocketAddress read(long memory) {
+        int family = PlatformDependent.getShort(memory);
+        try {
+            if (family == Native.AF_INET) {
+                byte[] ipv4 = new byte[IPV4_ADDRESS_LENGTH];
+                PlatformDependent.copyMemory(memory + SOCKADDR_IN_OFFSETOF_SIN_ADDR, ipv4, 0, IPV4_ADDRESS_LENGTH);
+                return new InetSocketAddress(InetAddress.getByAddress(ipv4),
+                        readPort(memory + SOCKADDR_IN_OFFSETOF_SIN_PORT));
+            }
+            if (family == Native.AF_INET6) {
+                int port = readPort(memory + SOCKADDR_IN6_OFFSETOF_SIN6_PORT);
+                byte[] ipv6 = new byte[IPV6_ADDRESS_LENGTH];
+                PlatformDependent.copyMemory(memory + SOCKADDR_IN6_OFFSETOF_SIN6_ADDR, ipv6, 0,
+                        IPV6_ADDRESS_LENGTH);
+                if (isIpv4Mapped(ipv6)) {
+                    byte[] ipv4 = new byte[IPV4_ADDRESS_LENGTH];
+                    System.arraycopy(ipv6, IPV4_MAPPED_IPV6_PREFIX.length, ipv4, 0, IPV4_ADDRESS_LENGTH);
+                    return new InetSocketAddress(InetAddress.getByAddress(ipv4), port);
+                }
+                int scopeId = PlatformDependent.getInt(memory + SOCKADDR_IN6_OFFSETOF_SIN6_SCOPE_ID);
+                return new InetSocketAddress(Inet6Address.getByAddress(null, ipv6, scopeId), port);
+            }
+            return null;
+        } catch (UnknownHostException e) {
+            throw new Error("Should never happen", e);
+        }
+    }
+
+    private static boolean isIpv4Mapped(byte[] ipv6) {
+        for (int i = 0; i < IPV4_MAPPED_IPV6_PREFIX.length; i++) {
+            if (ipv6[i] != IPV4_MAPPED_IPV6_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writePort(long memory, int port) {
+        // The port is always stored in network byte order.
+        PlatformDependent.putByte(memory, (byte) (port >>> 8));
+        PlatformDependent.putByte(memory + 1, (byte) port);
+    }
+
+    private static int readPort(long memory) {
+        return (PlatformDependent.getByte(memory) & 0xFF) << 8 | PlatformDependent.getByte(memory + 1) & 0xFF;
+    }
+
+    private SockaddrIn() { }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * Encodes and decodes the {@code user_data} which is attached to each submission and echoed back by the kernel in
+ * the matching completion.
+ * <p>
+ * The layout is {@code [channel id: 32 bits][opcode: 16 bits][data: 16 bits]}. We use an id which is unique per
+ * registration instead of the file descriptor as the descriptor may be reused by the kernel while a completion for
+ * the old owner is still in flight.
+ */
+final class UserData {
+
+    static long encode(int id, int op, int data) {
+        return ((long) id << 32) | ((op & 0xFFFFL) << 16) | (data & 0xFFFFL);
+    }
+
+    static int decodeId(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static int decodeOp(long userData) {
+        return (int) ((userData >>> 16) & 0xFFFF);
+    }
+
+    static int decodeData(long userData) {
+        return (int) (userData & 0xFFFF);
+    }
+
+    private UserData() { }
+}
@@ -84,17 +84,26 @@ public final class IovArray implements MessageProcessor {
      * {@code false} otherwise.
      */
     public boolean add(ByteBuf buf) {
+        return add(buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    /**
+     * Try to add the given region of the {@link ByteBuf}, which does not need to be readable. This allows to use the
+     * writable part of a buffer as target of a scattering read. Returns {@code true} on success, {@code false}
+     * otherwise.
+     */
+    public boolean add(ByteBuf buf, int offset, int len) {
         if (count == IOV_MAX) {
             // No more room!
             return false;
         } else if (buf.nioBufferCount() == 1) {
-            final int len = buf.readableBytes();
-            return len == 0 || add(buf.memoryAddress(), buf.readerIndex(), len);
+            return len == 0 || add(buf.memoryAddress(), offset, len);
         } else {
-            ByteBuffer[] buffers = buf.nioBuffers();
+            ByteBuffer[] buffers = buf.nioBuffers(offset, len);
             for (ByteBuffer nioBuffer : buffers) {
-                final int len = nioBuffer.remaining();
-                if (len != 0 && (!add(directBufferAddress(nioBuffer), nioBuffer.position(), len) || count == IOV_MAX)) {
+                final int remaining = nioBuffer.remaining();
+                if (remaining != 0 &&
+                        (!add(directBufferAddress(nioBuffer), nioBuffer.position(), remaining) || count == IOV_MAX)) {
                     break;
                 }
             }
@@ -131,6 +131,15 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<Boolean> SINGLE_EVENTEXECUTOR_PER_GROUP =
             valueOf("SINGLE_EVENTEXECUTOR_PER_GROUP");
 
+    /**
+     * Messages of type {@link io.netty.buffer.ByteBuf} whose readable bytes do not exceed this threshold are copied
+     * into a shared aggregation buffer when they are added to the {@link ChannelOutboundBuffer}, so that many small
+     * writes result in a single entry and a single {@link java.nio.ByteBuffer} when written. {@code 0} (the default)
+     * disables coalescing. Only honored by transports which do not use {@link ChannelMetadata#hasDisconnect()}
+     * message semantics, so datagrams are never merged.
+     */
+    public static final ChannelOption<Integer> WRITE_COALESCING_THRESHOLD = valueOf("WRITE_COALESCING_THRESHOLD");
+
     /**
      * Creates a new {@link ChannelOption} with the specified unique {@code name}.
      */
@@ -16,6 +16,7 @@
 package io.netty.channel;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -35,6 +36,7 @@ import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 /**
@@ -52,14 +54,19 @@ import static java.lang.Math.min;
 public final class ChannelOutboundBuffer {
     // Assuming a 64-bit JVM:
     //  - 16 bytes object header
-    //  - 8 reference fields
+    //  - 9 reference fields
     //  - 2 long fields
-    //  - 2 int fields
-    //  - 1 boolean field
+    //  - 3 int fields
+    //  - 2 boolean fields
     //  - padding
     static final int CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD =
             SystemPropertyUtil.getInt("io.netty.transport.outboundBufferEntrySizeOverhead", 96);
 
+    // The minimal capacity of the buffer into which small messages are copied when
+    // ChannelOption.WRITE_COALESCING_THRESHOLD is set.
+    static final int WRITE_COALESCING_BUFFER_SIZE =
+            max(SystemPropertyUtil.getInt("io.netty.transport.outboundBufferCoalescingBufferSize", 4096), 0);
+
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ChannelOutboundBuffer.class);
 
     private static final FastThreadLocal<ByteBuffer[]> NIO_BUFFERS = new FastThreadLocal<ByteBuffer[]>() {
@@ -108,8 +115,15 @@ public final class ChannelOutboundBuffer {
     /**
      * Add given message to this {@link ChannelOutboundBuffer}. The given {@link ChannelPromise} will be notified once
      * the message was written.
+     * <p>
+     * If {@link ChannelOption#WRITE_COALESCING_THRESHOLD} is set and the message is a small {@link ByteBuf}, its
+     * content may be copied into the last unflushed entry instead of creating a new one. The message is released in
+     * this case and the given {@link ChannelPromise} is made uncancellable.
      */
     public void addMessage(Object msg, int size, ChannelPromise promise) {
+        if (coalesceMessage(msg, size, promise)) {
+            return;
+        }
         Entry entry = Entry.newInstance(msg, size, total(msg), promise);
         if (tailEntry == null) {
             flushedEntry = null;
@@ -128,6 +142,91 @@ public final class ChannelOutboundBuffer {
         incrementPendingOutboundBytes(entry.pendingSize, false);
     }
 
+    /**
+     * Try to copy the given message into the last unflushed {@link Entry} and return {@code true} if this was done.
+     */
+    private boolean coalesceMessage(Object msg, int size, ChannelPromise promise) {
+        final int threshold = writeCoalescingThreshold();
+        if (threshold == 0 || !(msg instanceof ByteBuf) || promise instanceof ChannelProgressivePromise) {
+            return false;
+        }
+        final Entry tail = tailEntry;
+        if (tail == null || unflushedEntry == null || tail.cancelled || !(tail.msg instanceof ByteBuf)) {
+            // Nothing unflushed which we could append to.
+            return false;
+        }
+        final ByteBuf buf = (ByteBuf) msg;
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes > threshold || channel.metadata().hasDisconnect()) {
+            // Each message of a transport with disconnect semantics is a datagram on its own and so must never be
+            // merged with others.
+            return false;
+        }
+
+        ByteBuf aggregation = (ByteBuf) tail.msg;
+        if (tail.coalesced) {
+            if (aggregation.writableBytes() < readableBytes) {
+                return false;
+            }
+        } else {
+            final int tailReadableBytes = aggregation.readableBytes();
+            if (tailReadableBytes > threshold || tail.promise instanceof ChannelProgressivePromise) {
+                return false;
+            }
+            // Once the content of the messages is merged it is not possible anymore to cancel the write of only one
+            // of them, so make the promises uncancellable before. Cancelled writes are handled by addFlush() as usual.
+            if (!tail.promise.setUncancellable()) {
+                return false;
+            }
+            final int capacity = max(WRITE_COALESCING_BUFFER_SIZE, tailReadableBytes + readableBytes);
+            final ByteBuf tailBuf = aggregation;
+            aggregation = null;
+            try {
+                final ByteBufAllocator alloc = channel.alloc();
+                aggregation = tailBuf.isDirect() ? alloc.directBuffer(capacity, capacity)
+                                                 : alloc.heapBuffer(capacity, capacity);
+                aggregation.writeBytes(tailBuf, tailBuf.readerIndex(), tailReadableBytes);
+            } catch (Throwable cause) {
+                // Just queue the message on its own.
+                if (aggregation != null) {
+                    ReferenceCountUtil.safeRelease(aggregation);
+                }
+                logger.debug("Failed to coalesce a write, writing it separately.", cause);
+                return false;
+            }
+            ReferenceCountUtil.safeRelease(tailBuf);
+            tail.msg = aggregation;
+            tail.coalesced = true;
+        }
+
+        final int writerIndex = aggregation.writerIndex();
+        try {
+            aggregation.writeBytes(buf, buf.readerIndex(), readableBytes);
+        } catch (Throwable cause) {
+            aggregation.writerIndex(writerIndex);
+            logger.debug("Failed to coalesce a write, writing it separately.", cause);
+            return false;
+        }
+        if (!promise.setUncancellable()) {
+            // Let addMessage(...) handle the cancelled write.
+            aggregation.writerIndex(writerIndex);
+            return false;
+        }
+        ReferenceCountUtil.safeRelease(buf);
+        tail.addCoalescedPromise(promise);
+        tail.total += readableBytes;
+        tail.pendingSize += size;
+
+        incrementPendingOutboundBytes(size, false);
+        return true;
+    }
+
+    private int writeCoalescingThreshold() {
+        ChannelConfig config = channel.config();
+        return config instanceof DefaultChannelConfig ?
+                ((DefaultChannelConfig) config).getWriteCoalescingThreshold() : 0;
+    }
+
     /**
      * Add a flush to this {@link ChannelOutboundBuffer}. This means all previous added messages are marked as flushed
      * and so you will be able to handle them.
@@ -257,6 +356,9 @@ public final class ChannelOutboundBuffer {
             // only release message, notify and decrement if it was not canceled before.
             ReferenceCountUtil.safeRelease(msg);
             safeSuccess(promise);
+            for (int i = 0; i < e.coalescedPromiseCount; i++) {
+                safeSuccess(e.coalescedPromises[i]);
+            }
             decrementPendingOutboundBytes(size, false, true);
         }
 
@@ -293,6 +395,9 @@ public final class ChannelOutboundBuffer {
             ReferenceCountUtil.safeRelease(msg);
 
             safeFail(promise, cause);
+            for (int i = 0; i < e.coalescedPromiseCount; i++) {
+                safeFail(e.coalescedPromises[i], cause);
+            }
             decrementPendingOutboundBytes(size, false, notifyWritability);
         }
 
@@ -678,6 +783,9 @@ public final class ChannelOutboundBuffer {
                 if (!e.cancelled) {
                     ReferenceCountUtil.safeRelease(e.msg);
                     safeFail(e.promise, cause);
+                    for (int i = 0; i < e.coalescedPromiseCount; i++) {
+                        safeFail(e.coalescedPromises[i], cause);
+                    }
                 }
                 e = e.recycleAndGetNext();
             }
@@ -793,11 +901,15 @@ public final class ChannelOutboundBuffer {
         ByteBuffer[] bufs;
         ByteBuffer buf;
         ChannelPromise promise;
+        // The promises of the messages which were copied into msg, see coalesceMessage(...)
+        ChannelPromise[] coalescedPromises;
         long progress;
         long total;
         int pendingSize;
         int count = -1;
+        int coalescedPromiseCount;
         boolean cancelled;
+        boolean coalesced;
 
         private Entry(Handle<Entry> handle) {
             this.handle = handle;
@@ -812,6 +924,22 @@ public final class ChannelOutboundBuffer {
             return entry;
         }
 
+        void addCoalescedPromise(ChannelPromise promise) {
+            ChannelPromise[] promises = coalescedPromises;
+            if (promise instanceof VoidChannelPromise && (promise == this.promise ||
+                    coalescedPromiseCount > 0 && promises[coalescedPromiseCount - 1] == promise)) {
+                // A void promise may fire exceptionCaught(...) on failure, keep it but only once per entry so a failed
+                // write is reported once for all the coalesced writes.
+                return;
+            }
+            if (promises == null) {
+                coalescedPromises = promises = new ChannelPromise[4];
+            } else if (coalescedPromiseCount == promises.length) {
+                coalescedPromises = promises = Arrays.copyOf(promises, promises.length << 1);
+            }
+            promises[coalescedPromiseCount++] = promise;
+        }
+
         int cancel() {
             if (!cancelled) {
                 cancelled = true;
@@ -837,11 +965,14 @@ public final class ChannelOutboundBuffer {
             buf = null;
             msg = null;
             promise = null;
+            coalescedPromises = null;
             progress = 0;
             total = 0;
             pendingSize = 0;
             count = -1;
+            coalescedPromiseCount = 0;
             cancelled = false;
+            coalesced = false;
             handle.recycle(this);
         }
 
@@ -204,6 +204,9 @@ public interface ChannelOutboundInvoker {
      * Request to write a message via this {@link ChannelHandlerContext} through the {@link ChannelPipeline}.
      * This method will not request to actual flush, so be sure to call {@link #flush()}
      * once you want to request to flush all pending data to the actual transport.
+     * <p>
+     * If you are not interested in the outcome, use {@link #write(Object, ChannelPromise)} with
+     * {@link #voidPromise()} instead, which does not create a {@link ChannelPromise} for the write.
      */
     ChannelFuture write(Object msg);
 
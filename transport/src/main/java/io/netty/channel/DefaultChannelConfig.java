@@ -34,6 +34,7 @@ import static io.netty.channel.ChannelOption.SINGLE_EVENTEXECUTOR_PER_GROUP;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_LOW_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_WATER_MARK;
+import static io.netty.channel.ChannelOption.WRITE_COALESCING_THRESHOLD;
 import static io.netty.channel.ChannelOption.WRITE_SPIN_COUNT;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 
@@ -64,6 +65,7 @@ public class DefaultChannelConfig implements ChannelConfig {
     private volatile boolean autoClose = true;
     private volatile WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
     private volatile boolean pinEventExecutor = true;
+    private volatile int writeCoalescingThreshold;
 
     public DefaultChannelConfig(Channel channel) {
         this(channel, new AdaptiveRecvByteBufAllocator());
@@ -82,7 +84,7 @@ public class DefaultChannelConfig implements ChannelConfig {
                 CONNECT_TIMEOUT_MILLIS, MAX_MESSAGES_PER_READ, WRITE_SPIN_COUNT,
                 ALLOCATOR, AUTO_READ, AUTO_CLOSE, RCVBUF_ALLOCATOR, WRITE_BUFFER_HIGH_WATER_MARK,
                 WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_WATER_MARK, MESSAGE_SIZE_ESTIMATOR,
-                SINGLE_EVENTEXECUTOR_PER_GROUP);
+                SINGLE_EVENTEXECUTOR_PER_GROUP, WRITE_COALESCING_THRESHOLD);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -156,6 +158,9 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             return (T) Boolean.valueOf(getPinEventExecutorPerGroup());
         }
+        if (option == WRITE_COALESCING_THRESHOLD) {
+            return (T) Integer.valueOf(getWriteCoalescingThreshold());
+        }
         return null;
     }
 
@@ -188,6 +193,8 @@ public class DefaultChannelConfig implements ChannelConfig {
             setMessageSizeEstimator((MessageSizeEstimator) value);
         } else if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             setPinEventExecutorPerGroup((Boolean) value);
+        } else if (option == WRITE_COALESCING_THRESHOLD) {
+            setWriteCoalescingThreshold((Integer) value);
         } else {
             return false;
         }
@@ -436,4 +443,22 @@ public class DefaultChannelConfig implements ChannelConfig {
         return pinEventExecutor;
     }
 
+    private ChannelConfig setWriteCoalescingThreshold(int writeCoalescingThreshold) {
+        if (writeCoalescingThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "writeCoalescingThreshold: " + writeCoalescingThreshold + " (expected: >= 0)");
+        }
+        this.writeCoalescingThreshold = writeCoalescingThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the value of {@link ChannelOption#WRITE_COALESCING_THRESHOLD}. This is used by
+     * {@link ChannelOutboundBuffer} which can not afford going through {@link #getOption(ChannelOption)} for
+     * every write.
+     */
+    int getWriteCoalescingThreshold() {
+        return writeCoalescingThreshold;
+    }
+
 }
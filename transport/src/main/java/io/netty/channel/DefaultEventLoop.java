@@ -16,7 +16,9 @@
 package io.netty.channel;
 
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.MpscBlockingConsumerQueue;
 
+import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
@@ -46,6 +48,13 @@ public class DefaultEventLoop extends SingleThreadEventLoop {
         super(parent, executor, true);
     }
 
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This event loop only ever consumes from its own thread, so a lock-free MPSC queue keeps producers from
+        // contending on the lock of a LinkedBlockingQueue while still allowing takeTask() to block.
+        return new MpscBlockingConsumerQueue<Runnable>(maxPendingTasks);
+    }
+
     @Override
     protected void run() {
         for (;;) {
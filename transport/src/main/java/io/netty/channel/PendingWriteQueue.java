@@ -144,7 +144,10 @@ public final class PendingWriteQueue {
                     Object msg = write.msg;
                     ChannelPromise promise = write.promise;
                     recycle(write, false);
-                    combiner.add(promise);
+                    if (!promise.isVoid()) {
+                        // A void promise can not be observed and so would only break the PromiseCombiner.
+                        combiner.add(promise);
+                    }
                     ctx.write(msg, promise);
                     write = next;
                 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls how a {@link SimpleChannelPool} maintains its idle {@link Channel}s in the background.
+ * <p>
+ * Every {@code checkIntervalMillis} the pool closes the idle {@link Channel}s which were idle for longer than
+ * {@code idleTimeoutMillis} or which are older than {@code maxLifetimeMillis}, and connects new {@link Channel}s
+ * ahead of demand until at least {@code minIdle} {@link Channel}s are idle. Expired {@link Channel}s are also never
+ * handed out by an acquire. A value of {@code 0} disables the respective feature.
+ */
+public final class ChannelIdlePolicy {
+
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final int minIdle;
+    private final long checkIntervalMillis;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param idleTimeoutMillis     the time (in milliseconds) after which an idle {@link Channel} is closed,
+     *                              or {@code 0} to keep idle {@link Channel}s open
+     * @param maxLifetimeMillis     the time (in milliseconds) after the creation of a {@link Channel} after which it
+     *                              is closed once it becomes idle, or {@code 0} to not limit the lifetime
+     * @param minIdle               the number of idle {@link Channel}s which are created ahead of demand
+     * @param checkIntervalMillis   the time (in milliseconds) between two runs of the background maintenance
+     */
+    public ChannelIdlePolicy(long idleTimeoutMillis, long maxLifetimeMillis, int minIdle, long checkIntervalMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("idleTimeoutMillis: " + idleTimeoutMillis + " (expected: >= 0)");
+        }
+        if (maxLifetimeMillis < 0) {
+            throw new IllegalArgumentException("maxLifetimeMillis: " + maxLifetimeMillis + " (expected: >= 0)");
+        }
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("minIdle: " + minIdle + " (expected: >= 0)");
+        }
+        if (checkIntervalMillis <= 0) {
+            throw new IllegalArgumentException("checkIntervalMillis: " + checkIntervalMillis + " (expected: > 0)");
+        }
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+        this.minIdle = minIdle;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * Returns the time (in milliseconds) after which an idle {@link Channel} is closed, {@code 0} if disabled.
+     */
+    public long idleTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos);
+    }
+
+    /**
+     * Returns the time (in milliseconds) after the creation of a {@link Channel} after which it is closed,
+     * {@code 0} if disabled.
+     */
+    public long maxLifetimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLifetimeNanos);
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s which are created ahead of demand.
+     */
+    public int minIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Returns the time (in milliseconds) between two runs of the background maintenance.
+     */
+    public long checkIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    /**
+     * Returns {@code true} if the idle {@link Channel} must be closed.
+     *
+     * @param creationNanos     the {@link System#nanoTime()} when the {@link Channel} was created
+     * @param idleSinceNanos    the {@link System#nanoTime()} when the {@link Channel} was put into the pool
+     * @param nowNanos          the current {@link System#nanoTime()}
+     */
+    boolean isExpired(long creationNanos, long idleSinceNanos, long nowNanos) {
+        return idleTimeoutNanos > 0 && nowNanos - idleSinceNanos >= idleTimeoutNanos ||
+                maxLifetimeNanos > 0 && nowNanos - creationNanos >= maxLifetimeNanos;
+    }
+}
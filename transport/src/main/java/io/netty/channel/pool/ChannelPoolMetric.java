@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.channel.Channel;
+
+public interface ChannelPoolMetric {
+    /**
+     * Returns the number of idle {@link Channel}s in the {@link ChannelPool}.
+     */
+    int numIdleChannels();
+
+    /**
+     * Returns the number of {@link Channel}s which are currently acquired from the {@link ChannelPool}.
+     */
+    int numAcquiredChannels();
+
+    /**
+     * Returns the number of acquires which wait for a {@link Channel} to be released.
+     */
+    int numPendingAcquires();
+
+    /**
+     * Returns the number of successful acquires since the {@link ChannelPool} was created.
+     */
+    long numAcquires();
+
+    /**
+     * Returns the sum of the time (in nanoseconds) the successful acquires took, from the call of
+     * {@link ChannelPool#acquire()} until the {@link Channel} was handed out. Divide by {@link #numAcquires()} for
+     * the average acquire latency.
+     */
+    long acquireLatencyNanos();
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.ThrowableUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link ChannelPool} implementation which keeps the idle {@link Channel}s partitioned by the {@link EventLoop} they
+ * are registered to.
+ * <p>
+ * An acquire which is done from one of the {@link EventLoop}s of the {@link Bootstrap} prefers the {@link Channel}s
+ * of that {@link EventLoop} and registers new {@link Channel}s with it, so writes to the acquired {@link Channel} do
+ * not need to hop threads. Only if the partition of the caller is empty, an idle {@link Channel} of another
+ * {@link EventLoop} is used. The number of concurrently acquired {@link Channel}s is limited across all partitions.
+ * <p>
+ * Within a partition {@link Channel}s are selected in LIFO order.
+ */
+public class EventLoopAffineChannelPool extends SimpleChannelPool {
+    private static final IllegalStateException FULL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("Too many outstanding acquire operations"),
+            EventLoopAffineChannelPool.class, "acquire(...)");
+    private static final IllegalStateException POOL_CLOSED_ON_RELEASE_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("EventLoopAffineChannelPool was closed"),
+            EventLoopAffineChannelPool.class, "release(...)");
+    private static final IllegalStateException POOL_CLOSED_ON_ACQUIRE_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("EventLoopAffineChannelPool was closed"),
+            EventLoopAffineChannelPool.class, "acquire(...)");
+
+    private final Partition[] partitions;
+    private final Map<EventLoop, Partition> partitionsByLoop = new IdentityHashMap<EventLoop, Partition>();
+    private final Queue<Promise<Channel>> pendingAcquireQueue = new ConcurrentLinkedQueue<Promise<Channel>>();
+    private final AtomicInteger acquiredChannelCount = new AtomicInteger();
+    private final AtomicInteger pendingAcquireCount = new AtomicInteger();
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Only accessed by the background maintenance.
+    private int nextIdlePartition;
+
+    /**
+     * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
+     *
+     * @param bootstrap         the {@link Bootstrap} that is used for connections
+     * @param handler           the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections    the number of maximal active connections across all {@link EventLoop}s, once this is
+     *                          reached new tries to acquire a {@link Channel} will be delayed until a connection is
+     *                          returned to the pool again.
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler, int maxConnections) {
+        this(bootstrap, handler, ChannelHealthChecker.ACTIVE, maxConnections, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy when obtain from the {@link ChannelPool}
+     * @param maxConnections        the number of maximal active connections across all {@link EventLoop}s, once this
+     *                              is reached new tries to acquire a {@link Channel} will be delayed until a
+     *                              connection is returned to the pool again.
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     * @param releaseHealthCheck    will check channel health before offering back if this parameter set to
+     *                              {@code true}.
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                      ChannelHealthChecker healthCheck, int maxConnections, int maxPendingAcquires,
+                                      boolean releaseHealthCheck) {
+        this(bootstrap, handler, healthCheck, maxConnections, maxPendingAcquires, releaseHealthCheck, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy when obtain from the {@link ChannelPool}
+     * @param maxConnections        the number of maximal active connections across all {@link EventLoop}s, once this
+     *                              is reached new tries to acquire a {@link Channel} will be delayed until a
+     *                              connection is returned to the pool again.
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     * @param releaseHealthCheck    will check channel health before offering back if this parameter set to
+     *                              {@code true}.
+     * @param idlePolicy            the {@link ChannelIdlePolicy} that is used to maintain the idle {@link Channel}s
+     *                              in the background or {@code null} if none should be used.
+     */
+    public EventLoopAffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                      ChannelHealthChecker healthCheck, int maxConnections, int maxPendingAcquires,
+                                      boolean releaseHealthCheck, ChannelIdlePolicy idlePolicy) {
+        super(bootstrap, handler, healthCheck, releaseHealthCheck, true, idlePolicy);
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections + " (expected: >= 1)");
+        }
+        if (maxPendingAcquires < 1) {
+            throw new IllegalArgumentException("maxPendingAcquires: " + maxPendingAcquires + " (expected: >= 1)");
+        }
+        this.maxConnections = maxConnections;
+        this.maxPendingAcquires = maxPendingAcquires;
+
+        List<Partition> partitions = new ArrayList<Partition>();
+        for (EventExecutor executor: checkNotNull(bootstrap.config().group(), "group")) {
+            Partition partition = new Partition((EventLoop) executor);
+            partitions.add(partition);
+            partitionsByLoop.put(partition.loop, partition);
+        }
+        this.partitions = partitions.toArray(new Partition[partitions.size()]);
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        checkNotNull(promise, "promise");
+        trackAcquireLatency(promise);
+        if (closed.get()) {
+            promise.setFailure(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
+        } else if (pendingAcquireQueue.isEmpty() && tryIncrementAcquiredCount()) {
+            acquire0(promise);
+        } else if (pendingAcquireCount.incrementAndGet() > maxPendingAcquires) {
+            pendingAcquireCount.decrementAndGet();
+            promise.setFailure(FULL_EXCEPTION);
+        } else {
+            pendingAcquireQueue.offer(promise);
+            // A Channel may have been released while the promise was added, so make sure it is not left behind.
+            runPendingAcquires();
+        }
+        return promise;
+    }
+
+    private void acquire0(final Promise<Channel> promise) {
+        // The counters are atomic so there is no need to notify the listener on a specific EventExecutor.
+        Promise<Channel> p = ImmediateEventExecutor.INSTANCE.newPromise();
+        p.addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(Future<Channel> future) throws Exception {
+                if (future.isSuccess()) {
+                    Channel channel = future.getNow();
+                    if (closed.get()) {
+                        // Since the pool is closed, we have no choice but to close the channel
+                        discardAcquiredChannel(channel);
+                        decrementAndRunPendingAcquires();
+                        promise.tryFailure(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
+                    } else if (!promise.trySuccess(channel)) {
+                        // Promise was completed in the meantime (like cancelled), just release the channel again
+                        release(channel);
+                    }
+                } else {
+                    decrementAndRunPendingAcquires();
+                    promise.tryFailure(future.cause());
+                }
+            }
+        });
+        acquireUntracked(p);
+    }
+
+    @Override
+    public Future<Void> release(final Channel channel, final Promise<Void> promise) {
+        checkNotNull(promise, "promise");
+        Promise<Void> p = ImmediateEventExecutor.INSTANCE.newPromise();
+        super.release(channel, p.addListener(new FutureListener<Void>() {
+            @Override
+            public void operationComplete(Future<Void> future) throws Exception {
+                if (future.isSuccess()) {
+                    decrementAndRunPendingAcquires();
+                    if (closed.get()) {
+                        // Since the pool is closed, we have no choice but to close the channel
+                        partition(channel.eventLoop()).channels.remove(channel);
+                        channel.close();
+                        promise.setFailure(POOL_CLOSED_ON_RELEASE_EXCEPTION);
+                    } else {
+                        promise.setSuccess(null);
+                    }
+                } else {
+                    Throwable cause = future.cause();
+                    // Check if the exception was not because of we passed the Channel to the wrong pool.
+                    if (!(cause instanceof IllegalArgumentException)) {
+                        decrementAndRunPendingAcquires();
+                    }
+                    promise.setFailure(cause);
+                }
+            }
+        }));
+        return promise;
+    }
+
+    private boolean tryIncrementAcquiredCount() {
+        for (;;) {
+            int count = acquiredChannelCount.get();
+            if (count >= maxConnections) {
+                return false;
+            }
+            if (acquiredChannelCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void decrementAndRunPendingAcquires() {
+        int count = acquiredChannelCount.decrementAndGet();
+
+        // We should never have a negative value.
+        assert count >= 0;
+
+        runPendingAcquires();
+    }
+
+    private void runPendingAcquires() {
+        // Check the queue again after giving back a slot, as another thread may have added a promise after we
+        // polled and failed to get a slot before we gave it back.
+        while (!pendingAcquireQueue.isEmpty() && tryIncrementAcquiredCount()) {
+            Promise<Channel> promise = pendingAcquireQueue.poll();
+            if (promise == null) {
+                acquiredChannelCount.decrementAndGet();
+                continue;
+            }
+            pendingAcquireCount.decrementAndGet();
+            if (promise.isDone()) {
+                // Cancelled while waiting.
+                acquiredChannelCount.decrementAndGet();
+                continue;
+            }
+            acquire0(promise);
+        }
+    }
+
+    @Override
+    protected Channel pollChannel() {
+        Partition local = currentPartition();
+        if (local != null) {
+            Channel channel = local.channels.pollLast();
+            if (channel != null) {
+                return channel;
+            }
+        }
+        // Nothing idle on the caller's EventLoop, steal the least recently used Channel of another one. Start at a
+        // random partition so not all callers contend on the same one.
+        final int length = partitions.length;
+        final int start = PlatformDependent.threadLocalRandom().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            Partition partition = partitions[(start + i) % length];
+            if (partition != local) {
+                Channel channel = partition.channels.pollFirst();
+                if (channel != null) {
+                    return channel;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean offerChannel(Channel channel) {
+        return partition(channel.eventLoop()).channels.offer(channel);
+    }
+
+    @Override
+    protected Iterator<Channel> idleChannels() {
+        List<Channel> channels = new ArrayList<Channel>();
+        for (Partition partition: partitions) {
+            channels.addAll(partition.channels);
+        }
+        return channels.iterator();
+    }
+
+    @Override
+    protected boolean removeIdleChannel(Channel channel) {
+        return partition(channel.eventLoop()).channels.remove(channel);
+    }
+
+    @Override
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        Partition local = currentPartition();
+        // Register the new Channel with the caller's EventLoop if possible.
+        return local != null ? super.connectChannel(bs.clone(local.loop)) : super.connectChannel(bs);
+    }
+
+    @Override
+    ChannelFuture connectIdleChannel(Bootstrap bs) {
+        // The maintenance always runs on the same EventLoop, so spread the idle Channels over all partitions.
+        Partition partition = partitions[nextIdlePartition];
+        nextIdlePartition = (nextIdlePartition + 1) % partitions.length;
+        return super.connectChannel(bs.clone(partition.loop));
+    }
+
+    @Override
+    int pendingAcquireCount() {
+        return pendingAcquireCount.get();
+    }
+
+    /**
+     * Returns the number of idle {@link Channel}s in the pool which are registered to the given {@link EventLoop}.
+     */
+    public int idleChannelCount(EventLoop loop) {
+        return partition(checkNotNull(loop, "loop")).channels.size();
+    }
+
+    private Partition currentPartition() {
+        // Not cached in a thread-local, as that would keep the partitions of every pool reachable from each thread
+        // which ever used it. There are only a few EventLoops, so a scan is cheap.
+        for (Partition partition: partitions) {
+            if (partition.loop.inEventLoop()) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    private Partition partition(EventLoop loop) {
+        Partition partition = partitionsByLoop.get(loop);
+        // Only null if a sub-class registered the Channel with a foreign EventLoop, just use the first partition.
+        return partition != null ? partition : partitions[0];
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        for (;;) {
+            Promise<Channel> promise = pendingAcquireQueue.poll();
+            if (promise == null) {
+                break;
+            }
+            pendingAcquireCount.decrementAndGet();
+            promise.tryFailure(new ClosedChannelException());
+        }
+        super.close();
+    }
+
+    private static final class Partition {
+        final EventLoop loop;
+        final Deque<Channel> channels = PlatformDependent.newConcurrentDeque();
+
+        Partition(EventLoop loop) {
+            this.loop = loop;
+        }
+    }
+}
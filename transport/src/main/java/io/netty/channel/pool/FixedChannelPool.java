@@ -181,7 +181,39 @@ public class FixedChannelPool extends SimpleChannelPool {
                             final long acquireTimeoutMillis,
                             int maxConnections, int maxPendingAcquires,
                             boolean releaseHealthCheck, boolean lastRecentUsed) {
-        super(bootstrap, handler, healthCheck, releaseHealthCheck, lastRecentUsed);
+        this(bootstrap, handler, healthCheck, action, acquireTimeoutMillis, maxConnections, maxPendingAcquires,
+                releaseHealthCheck, lastRecentUsed, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck           the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                              still healthy when obtain from the {@link ChannelPool}
+     * @param action                the {@link AcquireTimeoutAction} to use or {@code null} if non should be used.
+     *                              In this case {@param acquireTimeoutMillis} must be {@code -1}.
+     * @param acquireTimeoutMillis  the time (in milliseconds) after which an pending acquire must complete or
+     *                              the {@link AcquireTimeoutAction} takes place.
+     * @param maxConnections        the number of maximal active connections, once this is reached new tries to
+     *                              acquire a {@link Channel} will be delayed until a connection is returned to the
+     *                              pool again.
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     * @param releaseHealthCheck    will check channel health before offering back if this parameter set to
+     *                              {@code true}.
+     * @param lastRecentUsed        {@code true} {@link Channel} selection will be LIFO, if {@code false} FIFO.
+     * @param idlePolicy            the {@link ChannelIdlePolicy} that is used to maintain the idle {@link Channel}s
+     *                              in the background or {@code null} if none should be used.
+     */
+    public FixedChannelPool(Bootstrap bootstrap,
+                            ChannelPoolHandler handler,
+                            ChannelHealthChecker healthCheck, AcquireTimeoutAction action,
+                            final long acquireTimeoutMillis,
+                            int maxConnections, int maxPendingAcquires,
+                            boolean releaseHealthCheck, boolean lastRecentUsed, ChannelIdlePolicy idlePolicy) {
+        super(bootstrap, handler, healthCheck, releaseHealthCheck, lastRecentUsed, idlePolicy);
         if (maxConnections < 1) {
             throw new IllegalArgumentException("maxConnections: " + maxConnections + " (expected: >= 1)");
         }
@@ -215,7 +247,7 @@ public class FixedChannelPool extends SimpleChannelPool {
                         // create a new connection.
                         task.acquired();
 
-                        FixedChannelPool.super.acquire(task.promise);
+                        acquireUntracked(task.promise);
                     }
                 };
                 break;
@@ -230,6 +262,7 @@ public class FixedChannelPool extends SimpleChannelPool {
 
     @Override
     public Future<Channel> acquire(final Promise<Channel> promise) {
+        trackAcquireLatency(promise);
         try {
             if (executor.inEventLoop()) {
                 acquire0(promise);
@@ -263,7 +296,7 @@ public class FixedChannelPool extends SimpleChannelPool {
             AcquireListener l = new AcquireListener(promise);
             l.acquired();
             p.addListener(l);
-            super.acquire(p);
+            acquireUntracked(p);
         } else {
             if (pendingAcquireCount >= maxPendingAcquires) {
                 promise.setFailure(FULL_EXCEPTION);
@@ -284,6 +317,11 @@ public class FixedChannelPool extends SimpleChannelPool {
         }
     }
 
+    @Override
+    int pendingAcquireCount() {
+        return pendingAcquireCount;
+    }
+
     @Override
     public Future<Void> release(final Channel channel, final Promise<Void> promise) {
         ObjectUtil.checkNotNull(promise, "promise");
@@ -346,7 +384,7 @@ public class FixedChannelPool extends SimpleChannelPool {
             --pendingAcquireCount;
             task.acquired();
 
-            super.acquire(task.promise);
+            acquireUntracked(task.promise);
         }
 
         // We should never have a negative value.
@@ -407,7 +445,7 @@ public class FixedChannelPool extends SimpleChannelPool {
             if (closed) {
                 if (future.isSuccess()) {
                     // Since the pool is closed, we have no choice but to close the channel
-                    future.getNow().close();
+                    discardAcquiredChannel(future.getNow());
                 }
                 originalPromise.setFailure(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
                 return;
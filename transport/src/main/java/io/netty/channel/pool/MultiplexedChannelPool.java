@@ -0,0 +1,443 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.ThrowableUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link ChannelPool} implementation which allows to acquire the same {@link Channel} multiple times concurrently,
+ * up to a maximum number of in-flight requests per {@link Channel}. This is useful for protocols which support
+ * pipelining or multiplexing, like HTTP/1.1 pipelining, Redis or the memcache binary protocol.
+ * <p>
+ * Every {@link #acquire()} reserves one in-flight slot on the least loaded active {@link Channel}, and every
+ * {@link #release(Channel)} gives one slot back. A new {@link Channel} is only created if all existing ones have
+ * reached the maximum number of in-flight requests and the maximum number of connections is not reached yet.
+ * Otherwise the acquire is delayed until a slot is released.
+ * <p>
+ * The {@link ChannelPoolHandler} is notified via {@link ChannelPoolHandler#channelAcquired(Channel)} for every
+ * acquire, but via {@link ChannelPoolHandler#channelReleased(Channel)} only once the last in-flight request of the
+ * {@link Channel} was released, as the other requests may still use it.
+ * <p>
+ * The handlers of the {@link Channel} are responsible for matching responses to requests, as the
+ * pool does not know which request a response belongs to. {@link Channel}s which are closed are removed from the
+ * pool, releasing them afterwards is still allowed.
+ */
+public class MultiplexedChannelPool implements ChannelPool {
+    private static final AttributeKey<Entry> ENTRY_KEY = AttributeKey.newInstance("multiplexedChannelPoolEntry");
+    private static final IllegalStateException FULL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("Too many outstanding acquire operations"),
+            MultiplexedChannelPool.class, "acquire(...)");
+    private static final IllegalStateException POOL_CLOSED_ON_ACQUIRE_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new IllegalStateException("MultiplexedChannelPool was closed"),
+            MultiplexedChannelPool.class, "acquire(...)");
+
+    private final Bootstrap bootstrap;
+    private final ChannelPoolHandler handler;
+    private final int maxConnections;
+    private final int maxInFlightPerChannel;
+    private final int maxPendingAcquires;
+
+    // All of the following fields are guarded by this.
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Queue<Promise<Channel>> pendingAcquireQueue = new ArrayDeque<Promise<Channel>>();
+    private int connectingCount;
+    private boolean closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections        the number of maximal active connections
+     * @param maxInFlightPerChannel the number of maximal concurrent acquires of the same {@link Channel}
+     */
+    public MultiplexedChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler,
+                                  int maxConnections, int maxInFlightPerChannel) {
+        this(bootstrap, handler, maxConnections, maxInFlightPerChannel, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} that is used for connections
+     * @param handler               the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param maxConnections        the number of maximal active connections
+     * @param maxInFlightPerChannel the number of maximal concurrent acquires of the same {@link Channel}
+     * @param maxPendingAcquires    the maximum number of pending acquires. Once this is exceed acquire tries will
+     *                              be failed.
+     */
+    public MultiplexedChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler,
+                                  int maxConnections, int maxInFlightPerChannel, int maxPendingAcquires) {
+        this.handler = checkNotNull(handler, "handler");
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections + " (expected: >= 1)");
+        }
+        if (maxInFlightPerChannel < 1) {
+            throw new IllegalArgumentException(
+                    "maxInFlightPerChannel: " + maxInFlightPerChannel + " (expected: >= 1)");
+        }
+        if (maxPendingAcquires < 1) {
+            throw new IllegalArgumentException("maxPendingAcquires: " + maxPendingAcquires + " (expected: >= 1)");
+        }
+        this.maxConnections = maxConnections;
+        this.maxInFlightPerChannel = maxInFlightPerChannel;
+        this.maxPendingAcquires = maxPendingAcquires;
+        // Clone the original Bootstrap as we want to set our own handler
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        this.bootstrap.handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                assert ch.eventLoop().inEventLoop();
+                handler.channelCreated(ch);
+            }
+        });
+    }
+
+    @Override
+    public final Future<Channel> acquire() {
+        return acquire(bootstrap.config().group().next().<Channel>newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        checkNotNull(promise, "promise");
+        Entry entry;
+        int connects;
+        synchronized (this) {
+            if (closed) {
+                promise.setFailure(POOL_CLOSED_ON_ACQUIRE_EXCEPTION);
+                return promise;
+            }
+            entry = pendingAcquireQueue.isEmpty() ? leastLoadedEntry() : null;
+            if (entry != null) {
+                entry.inFlight++;
+                connects = 0;
+            } else if (pendingAcquireQueue.size() >= maxPendingAcquires) {
+                promise.setFailure(FULL_EXCEPTION);
+                return promise;
+            } else {
+                pendingAcquireQueue.add(promise);
+                connects = reserveConnects();
+            }
+        }
+        if (entry != null) {
+            notifyAcquired(entry, promise);
+        } else {
+            connect(connects);
+        }
+        return promise;
+    }
+
+    /**
+     * Returns the active {@link Entry} with the least in-flight requests which still has a free slot, or
+     * {@code null} if there is none. Must be called while holding the lock.
+     */
+    private Entry leastLoadedEntry() {
+        Entry leastLoaded = null;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.inFlight < maxInFlightPerChannel && entry.channel.isActive() &&
+                    (leastLoaded == null || entry.inFlight < leastLoaded.inFlight)) {
+                leastLoaded = entry;
+                if (entry.inFlight == 0) {
+                    break;
+                }
+            }
+        }
+        return leastLoaded;
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which need to be created because the pending acquires can not be served
+     * by the {@link Channel}s which are currently connecting. Must be called while holding the lock, the actual
+     * connects must be done via {@link #connect(int)} after the lock was released.
+     */
+    private int reserveConnects() {
+        int connects = 0;
+        while (pendingAcquireQueue.size() > connectingCount * maxInFlightPerChannel &&
+                entries.size() + connectingCount < maxConnections) {
+            connectingCount++;
+            connects++;
+        }
+        return connects;
+    }
+
+    private void connect(int connects) {
+        for (int i = 0; i < connects; i++) {
+            try {
+                connectChannel(bootstrap.clone()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        onConnect(future.isSuccess() ? future.channel() : null, future.cause());
+                    }
+                });
+            } catch (Throwable cause) {
+                onConnect(null, cause);
+            }
+        }
+    }
+
+    /**
+     * Bootstrap a new {@link Channel}. The default implementation uses {@link Bootstrap#connect()}, sub-classes may
+     * override this.
+     * <p>
+     * The {@link Bootstrap} that is passed in here is cloned via {@link Bootstrap#clone()}, so it is safe to modify.
+     */
+    protected ChannelFuture connectChannel(Bootstrap bs) {
+        return bs.connect();
+    }
+
+    private void onConnect(Channel channel, Throwable cause) {
+        Entry entry = null;
+        Promise<Channel> failed = null;
+        boolean close = false;
+        synchronized (this) {
+            connectingCount--;
+            if (channel == null) {
+                // Fail the oldest waiter with the cause, the others may still be served by another Channel.
+                failed = pendingAcquireQueue.poll();
+            } else if (closed) {
+                close = true;
+            } else {
+                entry = new Entry(this, channel);
+                channel.attr(ENTRY_KEY).set(entry);
+                entries.add(entry);
+            }
+        }
+        if (close) {
+            channel.close();
+            return;
+        }
+        if (entry != null) {
+            final Entry e = entry;
+            channel.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    onClose(e);
+                }
+            });
+        } else if (failed != null) {
+            failed.tryFailure(cause);
+        }
+        runPendingAcquires();
+    }
+
+    private void onClose(Entry entry) {
+        synchronized (this) {
+            entries.remove(entry);
+        }
+        runPendingAcquires();
+    }
+
+    private void runPendingAcquires() {
+        for (;;) {
+            Promise<Channel> promise;
+            Entry entry;
+            int connects = 0;
+            synchronized (this) {
+                promise = pendingAcquireQueue.peek();
+                if (promise == null) {
+                    return;
+                }
+                entry = leastLoadedEntry();
+                if (entry != null) {
+                    pendingAcquireQueue.remove();
+                    entry.inFlight++;
+                } else {
+                    connects = reserveConnects();
+                }
+            }
+            if (entry == null) {
+                connect(connects);
+                return;
+            }
+            notifyAcquired(entry, promise);
+        }
+    }
+
+    private void notifyAcquired(final Entry entry, final Promise<Channel> promise) {
+        EventLoop loop = entry.channel.eventLoop();
+        if (loop.inEventLoop()) {
+            notifyAcquired0(entry, promise);
+        } else {
+            try {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyAcquired0(entry, promise);
+                    }
+                });
+            } catch (Throwable cause) {
+                releaseSlot(entry);
+                promise.tryFailure(cause);
+            }
+        }
+    }
+
+    private void notifyAcquired0(Entry entry, Promise<Channel> promise) {
+        Channel channel = entry.channel;
+        try {
+            handler.channelAcquired(channel);
+        } catch (Throwable cause) {
+            releaseSlot(entry);
+            promise.tryFailure(cause);
+            return;
+        }
+        if (!promise.trySuccess(channel)) {
+            // Promise was completed in the meantime (like cancelled), just release the channel again
+            release(channel);
+        }
+    }
+
+    @Override
+    public final Future<Void> release(Channel channel) {
+        return release(channel, channel.eventLoop().<Void>newPromise());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As the {@link Channel} may still be in use by other requests it is only closed if it was not acquired from
+     * this pool at all.
+     */
+    @Override
+    public Future<Void> release(final Channel channel, final Promise<Void> promise) {
+        checkNotNull(channel, "channel");
+        checkNotNull(promise, "promise");
+        final Entry entry = channel.attr(ENTRY_KEY).get();
+        if (entry == null || entry.pool != this) {
+            channel.close();
+            promise.setFailure(new IllegalArgumentException(
+                    "Channel " + channel + " was not acquired from this ChannelPool"));
+            return promise;
+        }
+        final boolean last;
+        synchronized (this) {
+            if (entry.inFlight == 0) {
+                promise.setFailure(new IllegalArgumentException(
+                        "Channel " + channel + " was released more often than acquired"));
+                return promise;
+            }
+            entry.inFlight--;
+            last = entry.inFlight == 0;
+        }
+        EventLoop loop = channel.eventLoop();
+        if (loop.inEventLoop()) {
+            release0(entry, last, promise);
+        } else {
+            try {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        release0(entry, last, promise);
+                    }
+                });
+            } catch (Throwable cause) {
+                promise.tryFailure(cause);
+                runPendingAcquires();
+            }
+        }
+        return promise;
+    }
+
+    private void release0(Entry entry, boolean last, Promise<Void> promise) {
+        try {
+            if (last) {
+                handler.channelReleased(entry.channel);
+            }
+            promise.setSuccess(null);
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        } finally {
+            runPendingAcquires();
+        }
+    }
+
+    private void releaseSlot(Entry entry) {
+        synchronized (this) {
+            entry.inFlight--;
+            assert entry.inFlight >= 0;
+        }
+        runPendingAcquires();
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which are currently held by this pool.
+     */
+    public synchronized int channelCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of in-flight requests of the given {@link Channel}, or {@code -1} if the {@link Channel} is
+     * not held by this pool.
+     */
+    public synchronized int inFlightCount(Channel channel) {
+        Entry entry = channel.attr(ENTRY_KEY).get();
+        return entry != null && entry.pool == this && entries.contains(entry) ? entry.inFlight : -1;
+    }
+
+    @Override
+    public void close() {
+        List<Entry> entries;
+        List<Promise<Channel>> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            entries = new ArrayList<Entry>(this.entries);
+            this.entries.clear();
+            pending = new ArrayList<Promise<Channel>>(pendingAcquireQueue);
+            pendingAcquireQueue.clear();
+        }
+        for (Promise<Channel> promise: pending) {
+            promise.tryFailure(new ClosedChannelException());
+        }
+        for (Entry entry: entries) {
+            entry.channel.close();
+        }
+    }
+
+    private static final class Entry {
+        final MultiplexedChannelPool pool;
+        final Channel channel;
+        // Guarded by the pool.
+        int inFlight;
+
+        Entry(MultiplexedChannelPool pool, Channel channel) {
+            this.pool = pool;
+            this.channel = channel;
+        }
+    }
+}
@@ -25,10 +25,17 @@ import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.util.internal.ObjectUtil.*;
 
@@ -38,9 +45,13 @@ import static io.netty.util.internal.ObjectUtil.*;
  *
  * This implementation uses LIFO order for {@link Channel}s in the {@link ChannelPool}.
  *
+ * Idle {@link Channel}s can be evicted and created ahead of demand in the background, see {@link ChannelIdlePolicy}.
  */
-public class SimpleChannelPool implements ChannelPool {
+public class SimpleChannelPool implements ChannelPool, ChannelPoolMetricProvider {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(SimpleChannelPool.class);
     private static final AttributeKey<SimpleChannelPool> POOL_KEY = AttributeKey.newInstance("channelPool");
+    private static final AttributeKey<Long> CREATION_TIME_KEY = AttributeKey.newInstance("channelPoolCreationTime");
+    private static final AttributeKey<Long> IDLE_SINCE_KEY = AttributeKey.newInstance("channelPoolIdleSince");
     private static final IllegalStateException FULL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new IllegalStateException("ChannelPool full"), SimpleChannelPool.class, "releaseAndOffer(...)");
 
@@ -50,6 +61,16 @@ public class SimpleChannelPool implements ChannelPool {
     private final Bootstrap bootstrap;
     private final boolean releaseHealthCheck;
     private final boolean lastRecentUsed;
+    private final ChannelIdlePolicy idlePolicy;
+    private final ScheduledFuture<?> maintenanceFuture;
+    private final AtomicInteger prewarmingChannelCount = new AtomicInteger();
+    private final LongCounter acquiredChannelCount = PlatformDependent.newLongCounter();
+    private final LongCounter acquireCount = PlatformDependent.newLongCounter();
+    private final LongCounter acquireLatencyNanos = PlatformDependent.newLongCounter();
+    private final ChannelPoolMetric metric = new SimpleChannelPoolMetric();
+    // The acquire latency is only accounted once someone asked for the metric() to not add a listener per acquire.
+    private volatile boolean metricEnabled;
+    private volatile boolean closed;
 
     /**
      * Creates a new instance using the {@link ChannelHealthChecker#ACTIVE}.
@@ -101,19 +122,59 @@ public class SimpleChannelPool implements ChannelPool {
      */
     public SimpleChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
                              boolean releaseHealthCheck, boolean lastRecentUsed) {
+        this(bootstrap, handler, healthCheck, releaseHealthCheck, lastRecentUsed, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap          the {@link Bootstrap} that is used for connections
+     * @param handler            the {@link ChannelPoolHandler} that will be notified for the different pool actions
+     * @param healthCheck        the {@link ChannelHealthChecker} that will be used to check if a {@link Channel} is
+     *                           still healthy when obtain from the {@link ChannelPool}
+     * @param releaseHealthCheck will check channel health before offering back if this parameter set to {@code true};
+     *                           otherwise, channel health is only checked at acquisition time
+     * @param lastRecentUsed     {@code true} {@link Channel} selection will be LIFO, if {@code false} FIFO.
+     * @param idlePolicy         the {@link ChannelIdlePolicy} that is used to maintain the idle {@link Channel}s in
+     *                           the background or {@code null} if none should be used.
+     */
+    public SimpleChannelPool(Bootstrap bootstrap, final ChannelPoolHandler handler, ChannelHealthChecker healthCheck,
+                             boolean releaseHealthCheck, boolean lastRecentUsed, ChannelIdlePolicy idlePolicy) {
         this.handler = checkNotNull(handler, "handler");
         this.healthCheck = checkNotNull(healthCheck, "healthCheck");
         this.releaseHealthCheck = releaseHealthCheck;
+        this.idlePolicy = idlePolicy;
         // Clone the original Bootstrap as we want to set our own handler
         this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
         this.bootstrap.handler(new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) throws Exception {
                 assert ch.eventLoop().inEventLoop();
+                if (SimpleChannelPool.this.idlePolicy != null) {
+                    ch.attr(CREATION_TIME_KEY).set(System.nanoTime());
+                }
                 handler.channelCreated(ch);
             }
         });
         this.lastRecentUsed = lastRecentUsed;
+
+        if (idlePolicy != null) {
+            // The first run is delayed as well, so sub-classes are fully constructed before their idle Channels are
+            // inspected.
+            long interval = idlePolicy.checkIntervalMillis();
+            maintenanceFuture = this.bootstrap.config().group().next().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        maintainIdleChannels();
+                    } catch (Throwable cause) {
+                        logger.warn("Failed to maintain the idle channels of {}", SimpleChannelPool.this, cause);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            maintenanceFuture = null;
+        }
     }
 
     /**
@@ -161,9 +222,37 @@ public class SimpleChannelPool implements ChannelPool {
     @Override
     public Future<Channel> acquire(final Promise<Channel> promise) {
         checkNotNull(promise, "promise");
+        trackAcquireLatency(promise);
+        return acquireHealthyFromPoolOrNew(promise);
+    }
+
+    /**
+     * Acquires a {@link Channel} without accounting the latency of the acquire, which is used by sub-classes that
+     * delay the acquire and so already called {@link #trackAcquireLatency(Promise)} themselves.
+     */
+    final Future<Channel> acquireUntracked(Promise<Channel> promise) {
         return acquireHealthyFromPoolOrNew(promise);
     }
 
+    /**
+     * Accounts the time until the given acquire {@link Promise} succeeds in the {@link #metric()}.
+     */
+    final void trackAcquireLatency(Promise<Channel> promise) {
+        if (!metricEnabled) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        promise.addListener(new FutureListener<Channel>() {
+            @Override
+            public void operationComplete(Future<Channel> future) {
+                if (future.isSuccess()) {
+                    acquireCount.increment();
+                    acquireLatencyNanos.add(System.nanoTime() - startNanos);
+                }
+            }
+        });
+    }
+
     /**
      * Tries to retrieve healthy channel from the pool if any or creates a new channel otherwise.
      * @param promise the promise to provide acquire result.
@@ -171,7 +260,7 @@ public class SimpleChannelPool implements ChannelPool {
      */
     private Future<Channel> acquireHealthyFromPoolOrNew(final Promise<Channel> promise) {
         try {
-            final Channel ch = pollChannel();
+            final Channel ch = pollUnexpiredChannel();
             if (ch == null) {
                 // No Channel left in the pool bootstrap a new Channel
                 Bootstrap bs = bootstrap.clone();
@@ -209,6 +298,7 @@ public class SimpleChannelPool implements ChannelPool {
     private void notifyConnect(ChannelFuture future, Promise<Channel> promise) {
         if (future.isSuccess()) {
             Channel channel = future.channel();
+            acquiredChannelCount.increment();
             if (!promise.trySuccess(channel)) {
                 // Promise was completed in the meantime (like cancelled), just release the channel again
                 release(channel);
@@ -242,7 +332,12 @@ public class SimpleChannelPool implements ChannelPool {
                 try {
                     ch.attr(POOL_KEY).set(this);
                     handler.channelAcquired(ch);
-                    promise.setSuccess(ch);
+                    acquiredChannelCount.increment();
+                    if (!promise.trySuccess(ch)) {
+                        // Promise was completed in the meantime (like cancelled).
+                        acquiredChannelCount.decrement();
+                        closeChannel(ch);
+                    }
                 } catch (Throwable cause) {
                     closeAndFail(ch, cause, promise);
                 }
@@ -303,6 +398,7 @@ public class SimpleChannelPool implements ChannelPool {
                                  "Channel " + channel + " was not acquired from this ChannelPool"),
                          promise);
         } else {
+            acquiredChannelCount.decrement();
             try {
                 if (releaseHealthCheck) {
                     doHealthCheckOnRelease(channel, promise);
@@ -347,6 +443,9 @@ public class SimpleChannelPool implements ChannelPool {
     }
 
     private void releaseAndOffer(Channel channel, Promise<Void> promise) throws Exception {
+        if (idlePolicy != null) {
+            channel.attr(IDLE_SINCE_KEY).set(System.nanoTime());
+        }
         if (offerChannel(channel)) {
             handler.channelReleased(channel);
             promise.setSuccess(null);
@@ -355,6 +454,18 @@ public class SimpleChannelPool implements ChannelPool {
         }
     }
 
+    /**
+     * Closes a {@link Channel} which was acquired from this pool but is never handed out, for example because the
+     * pool was closed in the meantime. Sub-classes must use this instead of closing the {@link Channel} directly so
+     * it is no longer counted as acquired.
+     */
+    final void discardAcquiredChannel(Channel channel) {
+        if (channel.attr(POOL_KEY).compareAndSet(this, null)) {
+            acquiredChannelCount.decrement();
+        }
+        channel.close();
+    }
+
     private static void closeChannel(Channel channel) {
         channel.attr(POOL_KEY).getAndSet(null);
         channel.close();
@@ -387,8 +498,169 @@ public class SimpleChannelPool implements ChannelPool {
         return deque.offer(channel);
     }
 
+    /**
+     * Returns an {@link Iterator} over the {@link Channel}s in the internal storage, which must not fail if the
+     * storage is modified concurrently. Used to maintain the idle {@link Channel}s in the background.
+     *
+     * Sub-classes which override {@link #pollChannel()} and {@link #offerChannel(Channel)} must override
+     * {@link #idleChannels()} and {@link #removeIdleChannel(Channel)} as well.
+     */
+    protected Iterator<Channel> idleChannels() {
+        return deque.iterator();
+    }
+
+    /**
+     * Removes the given {@link Channel} from the internal storage. This will return {@code true} if the
+     * {@link Channel} was removed, {@code false} if it was not in the internal storage (anymore).
+     *
+     * Sub-classes which override {@link #pollChannel()} and {@link #offerChannel(Channel)} must override
+     * {@link #idleChannels()} and {@link #removeIdleChannel(Channel)} as well.
+     */
+    protected boolean removeIdleChannel(Channel channel) {
+        return deque.remove(channel);
+    }
+
+    private Channel pollUnexpiredChannel() {
+        for (;;) {
+            Channel channel = pollChannel();
+            if (channel == null || idlePolicy == null || !isExpired(channel, System.nanoTime())) {
+                return channel;
+            }
+            closeChannel(channel);
+        }
+    }
+
+    private boolean isExpired(Channel channel, long nowNanos) {
+        Long creationNanos = channel.attr(CREATION_TIME_KEY).get();
+        Long idleSinceNanos = channel.attr(IDLE_SINCE_KEY).get();
+        return idlePolicy.isExpired(creationNanos == null ? nowNanos : creationNanos,
+                                    idleSinceNanos == null ? nowNanos : idleSinceNanos, nowNanos);
+    }
+
+    private void maintainIdleChannels() {
+        final long nowNanos = System.nanoTime();
+        int idle = 0;
+        for (Iterator<Channel> i = idleChannels(); i.hasNext();) {
+            Channel channel = i.next();
+            if (!channel.isActive() || isExpired(channel, nowNanos)) {
+                evictIdleChannel(channel);
+            } else {
+                // Counted as idle until the health check completes, an unhealthy Channel is replaced by the next run.
+                idle++;
+                checkIdleChannelHealth(channel);
+            }
+        }
+        for (int i = idle + prewarmingChannelCount.get(); i < idlePolicy.minIdle() && !closed; i++) {
+            prewarmChannel();
+        }
+    }
+
+    private void evictIdleChannel(Channel channel) {
+        // Only close the Channel if it was not acquired concurrently.
+        if (removeIdleChannel(channel)) {
+            closeChannel(channel);
+        }
+    }
+
+    private void checkIdleChannelHealth(final Channel channel) {
+        EventLoop loop = channel.eventLoop();
+        if (loop.inEventLoop()) {
+            checkIdleChannelHealth0(channel);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    checkIdleChannelHealth0(channel);
+                }
+            });
+        }
+    }
+
+    private void checkIdleChannelHealth0(final Channel channel) {
+        Future<Boolean> f = healthCheck.isHealthy(channel);
+        if (f.isDone()) {
+            evictIfUnhealthy(channel, f);
+        } else {
+            f.addListener(new FutureListener<Boolean>() {
+                @Override
+                public void operationComplete(Future<Boolean> future) {
+                    evictIfUnhealthy(channel, future);
+                }
+            });
+        }
+    }
+
+    private void evictIfUnhealthy(Channel channel, Future<Boolean> future) {
+        if (!future.isSuccess() || !future.getNow()) {
+            evictIdleChannel(channel);
+        }
+    }
+
+    /**
+     * Bootstrap a new {@link Channel} which is offered to the pool as idle {@link Channel} by the background
+     * maintenance. Overridden by sub-classes which need to spread these over their {@link EventLoop}s.
+     */
+    ChannelFuture connectIdleChannel(Bootstrap bs) {
+        return connectChannel(bs);
+    }
+
+    private void prewarmChannel() {
+        prewarmingChannelCount.incrementAndGet();
+        ChannelFuture f;
+        try {
+            f = connectIdleChannel(bootstrap.clone());
+        } catch (Throwable cause) {
+            // Will be retried by the next maintenance run.
+            prewarmingChannelCount.decrementAndGet();
+            logger.debug("Failed to create an idle channel for {}", this, cause);
+            return;
+        }
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                prewarmingChannelCount.decrementAndGet();
+                if (!future.isSuccess()) {
+                    // Will be retried by the next maintenance run.
+                    logger.debug("Failed to create an idle channel for {}", SimpleChannelPool.this, future.cause());
+                    return;
+                }
+                Channel channel = future.channel();
+                channel.attr(IDLE_SINCE_KEY).set(System.nanoTime());
+                if (closed || !offerChannel(channel)) {
+                    channel.close();
+                } else if (closed && removeIdleChannel(channel)) {
+                    // The pool was closed while the Channel was offered.
+                    channel.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which are waiting to be acquired. Overridden by sub-classes which
+     * delay acquires.
+     */
+    int pendingAcquireCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The number of acquires and their latency are only accounted once this method was called the first time.
+     */
+    @Override
+    public ChannelPoolMetric metric() {
+        metricEnabled = true;
+        return metric;
+    }
+
     @Override
     public void close() {
+        closed = true;
+        if (maintenanceFuture != null) {
+            maintenanceFuture.cancel(false);
+        }
         for (;;) {
             Channel channel = pollChannel();
             if (channel == null) {
@@ -397,4 +669,35 @@ public class SimpleChannelPool implements ChannelPool {
             channel.close();
         }
     }
+
+    private final class SimpleChannelPoolMetric implements ChannelPoolMetric {
+        @Override
+        public int numIdleChannels() {
+            int count = 0;
+            for (Iterator<Channel> i = idleChannels(); i.hasNext(); i.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public int numAcquiredChannels() {
+            return (int) acquiredChannelCount.value();
+        }
+
+        @Override
+        public int numPendingAcquires() {
+            return pendingAcquireCount();
+        }
+
+        @Override
+        public long numAcquires() {
+            return acquireCount.value();
+        }
+
+        @Override
+        public long acquireLatencyNanos() {
+            return acquireLatencyNanos.value();
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package io.netty.channel;
 
+import io.netty.buffer.AbstractByteBufAllocator;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
@@ -23,6 +24,7 @@ import org.junit.Test;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.buffer.Unpooled.*;
 import static org.hamcrest.Matchers.*;
@@ -355,6 +357,162 @@ public class ChannelOutboundBufferTest {
         safeClose(ch);
     }
 
+    @Test
+    public void testWriteCoalescing() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8);
+
+        ChannelPromise promise1 = ch.newPromise();
+        ChannelPromise promise2 = ch.newPromise();
+        ch.write(copiedBuffer("abc", CharsetUtil.US_ASCII), promise1);
+        ch.write(copiedBuffer("de", CharsetUtil.US_ASCII), promise2);
+        ch.write(copiedBuffer("f", CharsetUtil.US_ASCII), ch.voidPromise());
+
+        // The promises of coalesced writes can not be cancelled anymore.
+        assertFalse(promise1.cancel(false));
+        assertFalse(promise2.isDone());
+        ch.flush();
+        assertTrue(promise1.isSuccess());
+        assertTrue(promise2.isSuccess());
+
+        ByteBuf buf = ch.readOutbound();
+        assertEquals("abcdef", buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+        assertNull(ch.readOutbound());
+
+        safeClose(ch);
+    }
+
+    @Test
+    public void testWriteCoalescingSkipsLargeMessages() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 4);
+
+        ch.write(copiedBuffer("abc", CharsetUtil.US_ASCII));
+        ch.write(copiedBuffer("defgh", CharsetUtil.US_ASCII));
+        ch.write(copiedBuffer("ij", CharsetUtil.US_ASCII));
+        ch.flush();
+
+        assertOutbound(ch, "abc");
+        assertOutbound(ch, "defgh");
+        assertOutbound(ch, "ij");
+        assertNull(ch.readOutbound());
+
+        safeClose(ch);
+    }
+
+    @Test
+    public void testWriteCoalescingCancelledPromise() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8);
+
+        ChannelPromise promise = ch.newPromise();
+        ch.write(copiedBuffer("abc", CharsetUtil.US_ASCII), promise);
+        assertTrue(promise.cancel(false));
+        // Must not be merged into the cancelled write.
+        ch.write(copiedBuffer("de", CharsetUtil.US_ASCII));
+        ch.flush();
+
+        assertTrue(promise.isCancelled());
+        assertOutbound(ch, "");
+        assertOutbound(ch, "de");
+        assertNull(ch.readOutbound());
+        assertEquals(0, ch.unsafe().outboundBuffer().totalPendingWriteBytes());
+
+        safeClose(ch);
+    }
+
+    @Test
+    public void testWriteCoalescingAllocationFailure() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8);
+        ch.config().setAllocator(new AbstractByteBufAllocator() {
+            @Override
+            protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+                throw new OutOfMemoryError();
+            }
+
+            @Override
+            protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+                throw new OutOfMemoryError();
+            }
+
+            @Override
+            public boolean isDirectBufferPooled() {
+                return false;
+            }
+        });
+
+        ChannelPromise promise = ch.newPromise();
+        ChannelPromise promise2 = ch.newPromise();
+        ch.write(copiedBuffer("abc", CharsetUtil.US_ASCII), promise);
+        ch.write(copiedBuffer("de", CharsetUtil.US_ASCII), promise2);
+        // Nothing was merged, so the second write can still be cancelled on its own.
+        assertTrue(promise2.isCancellable());
+        ch.flush();
+
+        assertTrue(promise.isSuccess());
+        assertTrue(promise2.isSuccess());
+        assertOutbound(ch, "abc");
+        assertOutbound(ch, "de");
+        assertNull(ch.readOutbound());
+
+        safeClose(ch);
+    }
+
+    @Test
+    public void testWriteCoalescingFailureWithVoidPromise() {
+        final AtomicInteger exceptionCaught = new AtomicInteger();
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                exceptionCaught.incrementAndGet();
+            }
+        });
+        ch.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8);
+
+        ChannelPromise promise = ch.newPromise();
+        ch.write(copiedBuffer("abc", CharsetUtil.US_ASCII), promise);
+        ch.write(copiedBuffer("de", CharsetUtil.US_ASCII), ch.voidPromise());
+        ch.write(copiedBuffer("f", CharsetUtil.US_ASCII), ch.voidPromise());
+
+        ChannelOutboundBuffer buffer = ch.unsafe().outboundBuffer();
+        buffer.addFlush();
+        assertEquals(1, buffer.size());
+        Exception cause = new Exception();
+        assertTrue(buffer.remove(cause));
+
+        assertSame(cause, promise.cause());
+        // The failure of the void promises is fired once for the coalesced writes.
+        assertEquals(1, exceptionCaught.get());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testWriteCoalescingOnlyMergesUnflushed() {
+        TestChannel channel = new TestChannel();
+        channel.config().setOption(ChannelOption.WRITE_COALESCING_THRESHOLD, 8);
+
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+        buffer.addMessage(directBuffer().writeBytes(new byte[3]), 3, channel.voidPromise());
+        buffer.addFlush();
+        buffer.addMessage(directBuffer().writeBytes(new byte[2]), 2, channel.voidPromise());
+        buffer.addMessage(directBuffer().writeBytes(new byte[1]), 1, channel.voidPromise());
+        buffer.addFlush();
+
+        assertEquals(2, buffer.size());
+        buffer.nioBuffers();
+        assertEquals(2, buffer.nioBufferCount());
+        assertEquals(6, buffer.nioBufferSize());
+        release(buffer);
+    }
+
+    private static void assertOutbound(EmbeddedChannel ch, String expected) {
+        ByteBuf buf = ch.readOutbound();
+        assertEquals(expected, buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+    }
+
     private static void safeClose(EmbeddedChannel ch) {
         ch.finish();
         for (;;) {
@@ -337,6 +337,26 @@ public class PendingWriteQueueTest {
         assertNull(channel.readInbound());
     }
 
+    @Test
+    public void testRemoveAndWriteAllWithVoidPromise() {
+        EmbeddedChannel channel = newChannel();
+        final PendingWriteQueue queue = new PendingWriteQueue(channel.pipeline().firstContext());
+
+        ChannelPromise promise = channel.newPromise();
+        queue.add(1L, channel.voidPromise());
+        queue.add(2L, promise);
+        ChannelFuture future = queue.removeAndWriteAll();
+        channel.flush();
+        assertTrue(promise.isSuccess());
+        assertTrue(future.isSuccess());
+        assertTrue(queue.isEmpty());
+        assertTrue(channel.finish());
+
+        assertEquals(1L, channel.readOutbound());
+        assertEquals(2L, channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
     // See https://github.com/netty/netty/issues/3967
     @Test
     public void testCloseChannelOnCreation() {
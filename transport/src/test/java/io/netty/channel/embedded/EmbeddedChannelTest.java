@@ -76,6 +76,49 @@ public class EmbeddedChannelTest {
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testWriteWithVoidPromise() {
+        final Queue<ChannelPromise> promises = new ArrayDeque<ChannelPromise>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                promises.add(promise);
+                ctx.write(msg, promise);
+            }
+        });
+
+        channel.write(1, channel.voidPromise());
+        assertNull(channel.readOutbound());
+        channel.pipeline().writeAndFlush(2, channel.voidPromise());
+
+        assertSame(channel.voidPromise(), promises.poll());
+        assertSame(channel.voidPromise(), promises.poll());
+        assertEquals(Integer.valueOf(1), channel.readOutbound());
+        assertEquals(Integer.valueOf(2), channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testWriteWithVoidPromiseFailureFiresExceptionCaught() {
+        final Exception cause = new Exception();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(cause);
+            }
+        });
+
+        channel.writeAndFlush(1, channel.voidPromise());
+        try {
+            channel.checkException();
+            fail();
+        } catch (Exception e) {
+            assertSame(cause, e);
+        }
+        assertFalse(channel.finish());
+    }
+
     @Test(timeout = 2000)
     public void promiseDoesNotInfiniteLoop() throws InterruptedException {
         EmbeddedChannel channel = new EmbeddedChannel();
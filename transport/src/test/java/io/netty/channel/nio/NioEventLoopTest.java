@@ -20,9 +20,11 @@ import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorMetrics;
 import org.junit.Test;
 
 import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -68,4 +70,35 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test
+    public void testMetrics() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        final NioEventLoop loop = (NioEventLoop) group.next();
+        DefaultEventExecutorMetrics metrics = new DefaultEventExecutorMetrics();
+        loop.setMetrics(metrics);
+        try {
+            for (int i = 0; i < 10; i++) {
+                loop.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                }).syncUninterruptibly();
+            }
+            loop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }, 10, TimeUnit.MILLISECONDS).syncUninterruptibly();
+
+            assertTrue(metrics.taskCount() >= 11);
+            assertEquals(1, metrics.scheduledTaskCount());
+            assertTrue(metrics.wakeupCount() > 0);
+            assertTrue(metrics.ioTimeNanos() > 0);
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }
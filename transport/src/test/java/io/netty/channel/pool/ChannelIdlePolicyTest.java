@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ChannelIdlePolicyTest {
+    private static final String LOCAL_ADDR_ID = "test.id";
+
+    private static EventLoopGroup group;
+
+    private Bootstrap cb;
+    private Channel sc;
+
+    @BeforeClass
+    public static void createEventLoop() {
+        group = new LocalEventLoopGroup();
+    }
+
+    @AfterClass
+    public static void destroyEventLoop() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Before
+    public void startServer() {
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+
+        sc = sb.bind(addr).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void stopServer() {
+        sc.close().syncUninterruptibly();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeIdleTimeout() {
+        new ChannelIdlePolicy(-1, 0, 0, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCheckInterval() {
+        new ChannelIdlePolicy(1000, 0, 0, 0);
+    }
+
+    @Test
+    public void testIsExpired() {
+        ChannelIdlePolicy policy = new ChannelIdlePolicy(10, 100, 0, 1000);
+        long millis = 1000000;
+        assertFalse(policy.isExpired(0, 0, 9 * millis));
+        assertTrue(policy.isExpired(0, 0, 10 * millis));
+        assertFalse(policy.isExpired(0, 95 * millis, 99 * millis));
+        assertTrue(policy.isExpired(0, 95 * millis, 100 * millis));
+
+        ChannelIdlePolicy disabled = new ChannelIdlePolicy(0, 0, 0, 1000);
+        assertFalse(disabled.isExpired(0, 0, Long.MAX_VALUE));
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleChannelIsClosed() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(cb, handler, ChannelHealthChecker.ACTIVE, true, true,
+                new ChannelIdlePolicy(50, 0, 0, 10));
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(1, pool.metric().numIdleChannels());
+
+        channel.closeFuture().syncUninterruptibly();
+        while (pool.metric().numIdleChannels() != 0) {
+            Thread.sleep(10);
+        }
+        pool.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testExpiredChannelIsNotAcquired() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        // Use a long check interval so only the acquire itself can close the expired Channel.
+        SimpleChannelPool pool = new SimpleChannelPool(cb, handler, ChannelHealthChecker.ACTIVE, true, true,
+                new ChannelIdlePolicy(0, 50, 0, 60000));
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        pool.release(channel).syncUninterruptibly();
+        Thread.sleep(100);
+
+        Channel channel2 = pool.acquire().syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+        channel.closeFuture().syncUninterruptibly();
+        assertEquals(2, handler.channelCount());
+
+        pool.release(channel2).syncUninterruptibly();
+        pool.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testMinIdleChannelsAreCreated() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(cb, handler, ChannelHealthChecker.ACTIVE, true, true,
+                new ChannelIdlePolicy(0, 0, 2, 10));
+
+        while (pool.metric().numIdleChannels() != 2) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, handler.channelCount());
+
+        // The acquired Channel is replaced by the next maintenance run.
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        assertEquals(1, handler.acquiredCount());
+        while (pool.metric().numIdleChannels() != 2) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, handler.channelCount());
+
+        pool.release(channel).syncUninterruptibly();
+        pool.close();
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    @Test(timeout = 10000)
+    public void testUnhealthyIdleChannelIsClosed() throws Exception {
+        final AtomicBoolean healthy = new AtomicBoolean(true);
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        SimpleChannelPool pool = new SimpleChannelPool(cb, handler, new ChannelHealthChecker() {
+            @Override
+            public Future<Boolean> isHealthy(Channel channel) {
+                return channel.eventLoop().newSucceededFuture(healthy.get());
+            }
+        }, true, true, new ChannelIdlePolicy(0, 0, 0, 10));
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(1, pool.metric().numIdleChannels());
+
+        healthy.set(false);
+        channel.closeFuture().syncUninterruptibly();
+        assertEquals(0, pool.metric().numIdleChannels());
+        pool.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testMinIdleChannelsAreSpreadOverEventLoops() throws Exception {
+        EventLoopGroup group = new LocalEventLoopGroup(2);
+        try {
+            CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+            EventLoopAffineChannelPool pool = new EventLoopAffineChannelPool(cb.clone(group), handler,
+                    ChannelHealthChecker.ACTIVE, 4, Integer.MAX_VALUE, true, new ChannelIdlePolicy(0, 0, 2, 10));
+
+            while (pool.metric().numIdleChannels() != 2) {
+                Thread.sleep(10);
+            }
+            for (EventExecutor loop: group) {
+                assertEquals(1, pool.idleChannelCount((EventLoop) loop));
+            }
+            pool.close();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMetric() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        FixedChannelPool pool = new FixedChannelPool(cb, handler, 1);
+        ChannelPoolMetric metric = pool.metric();
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        assertEquals(0, metric.numIdleChannels());
+        assertEquals(1, metric.numAcquiredChannels());
+        waitForAcquires(metric, 1);
+        assertTrue(metric.acquireLatencyNanos() > 0);
+
+        Future<Channel> future = pool.acquire();
+        while (metric.numPendingAcquires() != 1) {
+            Thread.sleep(10);
+        }
+
+        pool.release(channel).syncUninterruptibly();
+        assertSame(channel, future.syncUninterruptibly().getNow());
+        assertEquals(0, metric.numPendingAcquires());
+        assertEquals(1, metric.numAcquiredChannels());
+        waitForAcquires(metric, 2);
+
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(1, metric.numIdleChannels());
+        assertEquals(0, metric.numAcquiredChannels());
+
+        pool.close();
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    private static void waitForAcquires(ChannelPoolMetric metric, long acquires) throws InterruptedException {
+        // The latency is recorded by a listener which may run after the caller was woken up.
+        while (metric.numAcquires() != acquires) {
+            Thread.sleep(10);
+        }
+    }
+}
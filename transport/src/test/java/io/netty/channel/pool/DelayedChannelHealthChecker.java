@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link ChannelHealthChecker} which behaves like {@link ChannelHealthChecker#ACTIVE} until {@link #delay()} was
+ * called. Afterwards the health checks only complete once the test completes the {@link Promise} it took.
+ */
+final class DelayedChannelHealthChecker implements ChannelHealthChecker {
+    private final BlockingQueue<Promise<Boolean>> pending = new LinkedBlockingQueue<Promise<Boolean>>();
+    private volatile boolean delay;
+
+    @Override
+    public Future<Boolean> isHealthy(Channel channel) {
+        if (!delay) {
+            return ACTIVE.isHealthy(channel);
+        }
+        Promise<Boolean> promise = channel.eventLoop().newPromise();
+        pending.add(promise);
+        return promise;
+    }
+
+    void delay() {
+        delay = true;
+    }
+
+    Promise<Boolean> takePending() throws InterruptedException {
+        return pending.take();
+    }
+}
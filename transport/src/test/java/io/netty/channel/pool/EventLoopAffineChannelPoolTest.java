@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventLoopAffineChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.id";
+
+    private static EventLoopGroup group;
+
+    private Bootstrap cb;
+    private Channel sc;
+
+    @BeforeClass
+    public static void createEventLoop() {
+        group = new LocalEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void destroyEventLoop() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Before
+    public void startServer() {
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+
+        sc = sb.bind(addr).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void stopServer() {
+        sc.close().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquirePrefersCallerEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        EventLoopAffineChannelPool pool = new EventLoopAffineChannelPool(cb, handler, 4);
+        EventLoop loopA = group.next();
+        EventLoop loopB = group.next();
+        assertNotSame(loopA, loopB);
+
+        Channel channelA = acquire(pool, loopA);
+        Channel channelB = acquire(pool, loopB);
+        assertSame(loopA, channelA.eventLoop());
+        assertSame(loopB, channelB.eventLoop());
+
+        pool.release(channelA).syncUninterruptibly();
+        pool.release(channelB).syncUninterruptibly();
+        assertEquals(1, pool.idleChannelCount(loopA));
+        assertEquals(1, pool.idleChannelCount(loopB));
+
+        assertSame(channelB, acquire(pool, loopB));
+        assertSame(channelA, acquire(pool, loopA));
+        assertEquals(2, handler.channelCount());
+
+        pool.close();
+        channelA.close().syncUninterruptibly();
+        channelB.close().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireStealsFromOtherEventLoop() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        EventLoopAffineChannelPool pool = new EventLoopAffineChannelPool(cb, handler, 4);
+        EventLoop loopA = group.next();
+        EventLoop loopB = group.next();
+
+        Channel channel = acquire(pool, loopA);
+        pool.release(channel).syncUninterruptibly();
+
+        assertSame(channel, acquire(pool, loopB));
+        assertEquals(0, pool.idleChannelCount(loopA));
+        assertEquals(1, handler.channelCount());
+
+        pool.close();
+        channel.close().syncUninterruptibly();
+    }
+
+    @Test
+    public void testMaxConnectionsAcrossEventLoops() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        EventLoopAffineChannelPool pool = new EventLoopAffineChannelPool(
+                cb, handler, ChannelHealthChecker.ACTIVE, 1, 1, true);
+        EventLoop loopA = group.next();
+        EventLoop loopB = group.next();
+
+        Channel channel = acquire(pool, loopA);
+        Future<Channel> pending = acquireAsync(pool, loopB);
+        assertFalse(pending.isDone());
+
+        // The pending queue is full.
+        Future<Channel> failed = pool.acquire().awaitUninterruptibly();
+        assertTrue(failed.cause() instanceof IllegalStateException);
+
+        pool.release(channel).syncUninterruptibly();
+        assertTrue(pending.await(1, TimeUnit.SECONDS));
+        assertSame(channel, pending.getNow());
+        assertEquals(1, handler.channelCount());
+
+        Future<Channel> closed = pool.acquire();
+        assertFalse(closed.isDone());
+        pool.close();
+        assertTrue(closed.awaitUninterruptibly().cause() instanceof ClosedChannelException);
+
+        // Releasing to a closed pool closes the Channel.
+        assertFalse(pool.release(channel).awaitUninterruptibly().isSuccess());
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    @Test(timeout = 5000)
+    public void testAcquireCompletedAfterClose() throws Exception {
+        DelayedChannelHealthChecker healthChecker = new DelayedChannelHealthChecker();
+        EventLoopAffineChannelPool pool = new EventLoopAffineChannelPool(
+                cb, new CountingChannelPoolHandler(), healthChecker, 1, 1, false);
+        ChannelPoolMetric metric = pool.metric();
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        assertEquals(1, metric.numAcquiredChannels());
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(0, metric.numAcquiredChannels());
+
+        // Keep the acquire of the idle Channel pending until the pool was closed.
+        healthChecker.delay();
+        Future<Channel> acquire = pool.acquire();
+        Promise<Boolean> healthy = healthChecker.takePending();
+        pool.close();
+        healthy.setSuccess(true);
+
+        assertTrue(acquire.awaitUninterruptibly().cause() instanceof IllegalStateException);
+        channel.closeFuture().syncUninterruptibly();
+        assertEquals(0, metric.numAcquiredChannels());
+    }
+
+    private static Channel acquire(ChannelPool pool, EventLoop loop) throws Exception {
+        return acquireAsync(pool, loop).syncUninterruptibly().getNow();
+    }
+
+    private static Future<Channel> acquireAsync(final ChannelPool pool, EventLoop loop) throws Exception {
+        return loop.submit(new Callable<Future<Channel>>() {
+            @Override
+            public Future<Channel> call() {
+                return pool.acquire();
+            }
+        }).get();
+    }
+}
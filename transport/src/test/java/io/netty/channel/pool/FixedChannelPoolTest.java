@@ -27,6 +27,7 @@ import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.channel.local.LocalServerChannel;
 import io.netty.channel.pool.FixedChannelPool.AcquireTimeoutAction;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -318,6 +319,50 @@ public class FixedChannelPoolTest {
         sc.close().syncUninterruptibly();
     }
 
+    @Test(timeout = 5000)
+    public void testAcquireCompletedAfterClose() throws Exception {
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        Bootstrap cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group).channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    public void initChannel(LocalChannel ch) throws Exception {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+                    }
+                });
+
+        // Start server
+        Channel sc = sb.bind(addr).syncUninterruptibly().channel();
+
+        DelayedChannelHealthChecker healthChecker = new DelayedChannelHealthChecker();
+        FixedChannelPool pool = new FixedChannelPool(cb, new TestChannelPoolHandler(), healthChecker, null, -1,
+                1, Integer.MAX_VALUE, false, true);
+        ChannelPoolMetric metric = pool.metric();
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        assertEquals(1, metric.numAcquiredChannels());
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(0, metric.numAcquiredChannels());
+
+        // Keep the acquire of the idle Channel pending until the pool was closed.
+        healthChecker.delay();
+        Future<Channel> acquire = pool.acquire();
+        Promise<Boolean> healthy = healthChecker.takePending();
+        pool.close();
+        // Runs after the close on the EventLoop of the pool.
+        assertFalse(pool.acquire().awaitUninterruptibly().isSuccess());
+        healthy.setSuccess(true);
+
+        assertSame(FixedChannelPool.POOL_CLOSED_ON_ACQUIRE_EXCEPTION, acquire.awaitUninterruptibly().cause());
+        channel.closeFuture().syncUninterruptibly();
+        assertEquals(0, metric.numAcquiredChannels());
+        sc.close().syncUninterruptibly();
+    }
+
     @Test
     public void testReleaseClosed() {
         LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
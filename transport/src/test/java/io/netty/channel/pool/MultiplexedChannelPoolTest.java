@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.pool;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiplexedChannelPoolTest {
+    private static final String LOCAL_ADDR_ID = "test.id";
+
+    private static EventLoopGroup group;
+
+    private Bootstrap cb;
+    private Channel sc;
+
+    @BeforeClass
+    public static void createEventLoop() {
+        group = new LocalEventLoopGroup();
+    }
+
+    @AfterClass
+    public static void destroyEventLoop() {
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Before
+    public void startServer() {
+        LocalAddress addr = new LocalAddress(LOCAL_ADDR_ID);
+        cb = new Bootstrap();
+        cb.remoteAddress(addr);
+        cb.group(group)
+          .channel(LocalChannel.class);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group)
+          .channel(LocalServerChannel.class)
+          .childHandler(new ChannelInitializer<LocalChannel>() {
+              @Override
+              public void initChannel(LocalChannel ch) throws Exception {
+                  ch.pipeline().addLast(new ChannelInboundHandlerAdapter());
+              }
+          });
+
+        sc = sb.bind(addr).syncUninterruptibly().channel();
+    }
+
+    @After
+    public void stopServer() {
+        sc.close().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireSharesChannel() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        MultiplexedChannelPool pool = new MultiplexedChannelPool(cb, handler, 2, 2, 1);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        assertSame(channel, pool.acquire().syncUninterruptibly().getNow());
+        assertEquals(2, pool.inFlightCount(channel));
+
+        // The first Channel is fully loaded, so a second one is created.
+        Channel channel2 = pool.acquire().syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+        assertSame(channel2, pool.acquire().syncUninterruptibly().getNow());
+        assertEquals(2, pool.channelCount());
+
+        Future<Channel> pending = pool.acquire();
+        assertFalse(pending.isDone());
+        // The pending queue is full.
+        assertTrue(pool.acquire().awaitUninterruptibly().cause() instanceof IllegalStateException);
+
+        pool.release(channel2).syncUninterruptibly();
+        assertTrue(pending.await(1, TimeUnit.SECONDS));
+        assertSame(channel2, pending.getNow());
+
+        assertEquals(2, handler.channelCount());
+        assertEquals(5, handler.acquiredCount());
+        // channel2 is still in use by the other acquire.
+        assertEquals(0, handler.releasedCount());
+
+        Future<Channel> closed = pool.acquire();
+        pool.close();
+        assertTrue(closed.awaitUninterruptibly().cause() instanceof ClosedChannelException);
+        channel.closeFuture().syncUninterruptibly();
+        channel2.closeFuture().syncUninterruptibly();
+    }
+
+    @Test
+    public void testReleasedOnlyNotifiedForLastInFlight() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        MultiplexedChannelPool pool = new MultiplexedChannelPool(cb, handler, 1, 2);
+
+        Future<Channel> first = pool.acquire();
+        Future<Channel> second = pool.acquire();
+        Channel channel = first.syncUninterruptibly().getNow();
+        assertSame(channel, second.syncUninterruptibly().getNow());
+        assertEquals(2, pool.inFlightCount(channel));
+
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(0, handler.releasedCount());
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(1, handler.releasedCount());
+
+        pool.close();
+        channel.closeFuture().syncUninterruptibly();
+    }
+
+    @Test
+    public void testAcquireLeastLoadedChannel() throws Exception {
+        MultiplexedChannelPool pool = new MultiplexedChannelPool(cb, new CountingChannelPoolHandler(), 2, 2);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        pool.acquire().syncUninterruptibly();
+        Channel channel2 = pool.acquire().syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+
+        pool.release(channel).syncUninterruptibly();
+        pool.release(channel).syncUninterruptibly();
+        assertEquals(0, pool.inFlightCount(channel));
+        assertEquals(1, pool.inFlightCount(channel2));
+        assertSame(channel, pool.acquire().syncUninterruptibly().getNow());
+
+        pool.close();
+    }
+
+    @Test
+    public void testClosedChannelIsRemoved() throws Exception {
+        CountingChannelPoolHandler handler = new CountingChannelPoolHandler();
+        MultiplexedChannelPool pool = new MultiplexedChannelPool(cb, handler, 1, 2);
+
+        Channel channel = pool.acquire().syncUninterruptibly().getNow();
+        channel.close().syncUninterruptibly();
+        // Ensure the close listeners did run.
+        channel.eventLoop().submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).syncUninterruptibly();
+        assertEquals(0, pool.channelCount());
+        assertEquals(-1, pool.inFlightCount(channel));
+        pool.release(channel).syncUninterruptibly();
+
+        Channel channel2 = pool.acquire().syncUninterruptibly().getNow();
+        assertNotSame(channel, channel2);
+        assertEquals(2, handler.channelCount());
+
+        pool.release(channel2).syncUninterruptibly();
+        try {
+            pool.release(channel2).syncUninterruptibly();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // The Channel was released more often than acquired.
+            assertTrue(channel2.isActive());
+        }
+        pool.close();
+    }
+}